@@ -0,0 +1,289 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentRepositoryException;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.ActivityPubResourceReference;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.contrib.activitypub.internal.json.JSONLDContextDeserializer;
+import org.xwiki.contrib.activitypub.internal.json.ObjectMapperConfiguration;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubObjectReferenceDeserializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubObjectReferenceSerializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultObjectMapperConfiguration;
+import org.xwiki.contrib.activitypub.internal.json.relative.RelativeActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.internal.json.relative.RelativeActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.internal.json.relative.RelativeActivityPubObjectReferenceDeserializer;
+import org.xwiki.contrib.activitypub.internal.json.relative.RelativeActivityPubObjectReferenceSerializer;
+import org.xwiki.contrib.activitypub.internal.json.relative.RelativeObjectMapperConfiguration;
+import org.xwiki.resource.ResourceReferenceSerializer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Common setup of the JSON benchmarks: the actual parsers and serializers components, running outside of a wiki,
+ * and the payloads to work on.
+ * <p>
+ * The {@code absolute} mapping is the one used for the requests and responses, the {@code relative} one is the one
+ * used for the storage.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public abstract class AbstractJsonBenchmark
+{
+    /**
+     * The number of warmup iterations of each benchmark.
+     */
+    protected static final int WARMUP_ITERATIONS = 3;
+
+    /**
+     * The number of measured iterations of each benchmark.
+     */
+    protected static final int MEASUREMENT_ITERATIONS = 5;
+
+    /**
+     * Hint of the mapping used for the requests and responses.
+     */
+    protected static final String ABSOLUTE = "absolute";
+
+    /**
+     * Hint of the mapping used for the storage.
+     */
+    protected static final String RELATIVE = "relative";
+
+    /**
+     * A Create of a Note with a mention and a hashtag, as sent by Mastodon.
+     */
+    protected static final String MASTODON_CREATE = "mastodon-create";
+
+    /**
+     * A Create of a Note with a mention, as sent by Pleroma.
+     */
+    protected static final String PLEROMA_CREATE = "pleroma-create";
+
+    /**
+     * A Person with its public key, as served by Mastodon.
+     */
+    protected static final String MASTODON_PERSON = "mastodon-person";
+
+    /**
+     * A Person with its public key, as served by Pleroma.
+     */
+    protected static final String PLEROMA_PERSON = "pleroma-person";
+
+    /**
+     * A page of a local outbox, with all its activities and their notes embedded.
+     */
+    protected static final String ORDERED_COLLECTION = "ordered-collection";
+
+    /**
+     * The prefix of the local URIs.
+     */
+    protected static final String PREFIX = "https://xwiki.example.org/xwiki/activitypub/";
+
+    private static final String DEFAULT_HINT = "default";
+
+    private static final int COLLECTION_SIZE = 100;
+
+    private static final String ID = "id";
+
+    private static final String TYPE = "type";
+
+    private static final String TO = "to";
+
+    private static final String PUBLIC = "https://www.w3.org/ns/activitystreams#Public";
+
+    private static final String ACTOR = PREFIX + "Person/XWiki.Bob";
+
+    private static final ObjectMapper PLAIN_MAPPER = new ObjectMapper();
+
+    private static final List<Class<?>> COMPONENTS = Arrays.asList(
+        JSONLDContextDeserializer.class,
+        DefaultActivityPubObjectReferenceSerializer.class,
+        DefaultActivityPubObjectReferenceDeserializer.class,
+        DefaultObjectMapperConfiguration.class,
+        DefaultActivityPubJsonParser.class,
+        DefaultActivityPubJsonSerializer.class,
+        RelativeActivityPubObjectReferenceSerializer.class,
+        RelativeActivityPubObjectReferenceDeserializer.class,
+        RelativeObjectMapperConfiguration.class,
+        RelativeActivityPubJsonParser.class,
+        RelativeActivityPubJsonSerializer.class
+    );
+
+    private EmbeddableComponentManager componentManager;
+
+    /**
+     * Register the JSON components, and the few components they need from a running wiki.
+     *
+     * @throws ComponentRepositoryException in case of error when registering the components
+     */
+    protected void initializeComponents() throws ComponentRepositoryException
+    {
+        this.componentManager = new EmbeddableComponentManager();
+        registerInstance(ComponentManager.class, "context", this.componentManager);
+        ResourceReferenceSerializer<ActivityPubResourceReference, URI> resourceReferenceSerializer =
+            reference -> URI.create(String.format("%s%s/%s", PREFIX, reference.getEntityType(), reference.getUuid()));
+        registerInstance(new DefaultParameterizedType(null, ResourceReferenceSerializer.class,
+            ActivityPubResourceReference.class, URI.class), DEFAULT_HINT, resourceReferenceSerializer);
+        registerInstance(InternalURINormalizer.class, DEFAULT_HINT, new PrefixURINormalizer(PREFIX));
+        registerInstance(ActivityPubStorage.class, DEFAULT_HINT, new IdentifierStorage(PREFIX));
+
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        for (Class<?> componentClass : COMPONENTS) {
+            for (ComponentDescriptor<?> descriptor : loader.getComponentsDescriptors(componentClass)) {
+                this.componentManager.registerComponent(descriptor);
+            }
+        }
+    }
+
+    private <T> void registerInstance(Type role, String hint, T instance) throws ComponentRepositoryException
+    {
+        DefaultComponentDescriptor<T> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(role);
+        descriptor.setRoleHint(hint);
+        this.componentManager.registerComponent(descriptor, instance);
+    }
+
+    /**
+     * @param role the role of the component
+     * @param mapping the mapping of the component, {@link #ABSOLUTE} or {@link #RELATIVE}
+     * @param <T> the type of the component
+     * @return the component for the given mapping
+     * @throws ComponentLookupException in case of error when creating the component
+     */
+    protected <T> T getInstance(Type role, String mapping) throws ComponentLookupException
+    {
+        String hint = DEFAULT_HINT;
+        if (RELATIVE.equals(mapping)) {
+            hint = RELATIVE;
+        }
+        return this.componentManager.getInstance(role, hint);
+    }
+
+    /**
+     * @param mapping the mapping of the parser, {@link #ABSOLUTE} or {@link #RELATIVE}
+     * @return the parser for the given mapping
+     * @throws ComponentLookupException in case of error when creating the parser
+     */
+    protected ActivityPubJsonParser getParser(String mapping) throws ComponentLookupException
+    {
+        return getInstance(ActivityPubJsonParser.class, mapping);
+    }
+
+    /**
+     * @param mapping the mapping of the serializer, {@link #ABSOLUTE} or {@link #RELATIVE}
+     * @return the serializer for the given mapping
+     * @throws ComponentLookupException in case of error when creating the serializer
+     */
+    protected ActivityPubJsonSerializer getSerializer(String mapping) throws ComponentLookupException
+    {
+        return getInstance(ActivityPubJsonSerializer.class, mapping);
+    }
+
+    /**
+     * @param mapping the mapping of the object mapper, {@link #ABSOLUTE} or {@link #RELATIVE}
+     * @return the object mapper for the given mapping
+     * @throws ComponentLookupException in case of error when creating the object mapper
+     */
+    protected ObjectMapper getObjectMapper(String mapping) throws ComponentLookupException
+    {
+        return this.<ObjectMapperConfiguration>getInstance(ObjectMapperConfiguration.class, mapping).getObjectMapper();
+    }
+
+    /**
+     * @param name the name of the payload
+     * @return the payload as received from a remote server: compact, with the properties in their original order
+     * @throws IOException in case of error when reading the payload
+     */
+    protected String getPayload(String name) throws IOException
+    {
+        return getPayloadTree(name).toString();
+    }
+
+    /**
+     * @param name the name of the payload
+     * @return the JSON tree of the payload
+     * @throws IOException in case of error when reading the payload
+     */
+    protected JsonNode getPayloadTree(String name) throws IOException
+    {
+        JsonNode result;
+        if (ORDERED_COLLECTION.equals(name)) {
+            result = createOrderedCollection();
+        } else {
+            try (InputStream stream = getClass().getResourceAsStream(String.format("/payloads/%s.json", name))) {
+                result = PLAIN_MAPPER.readTree(stream);
+            }
+        }
+        return result;
+    }
+
+    private JsonNode createOrderedCollection()
+    {
+        ObjectNode page = PLAIN_MAPPER.createObjectNode();
+        page.putArray("@context").add("https://www.w3.org/ns/activitystreams");
+        page.put(ID, PREFIX + "OrderedCollectionPage/XWiki.Bob-outbox-1");
+        page.put(TYPE, "OrderedCollectionPage");
+        page.put("partOf", PREFIX + "Outbox/XWiki.Bob-outbox");
+        page.put("next", PREFIX + "OrderedCollectionPage/XWiki.Bob-outbox-2");
+        page.put("totalItems", COLLECTION_SIZE);
+        ArrayNode items = page.putArray("orderedItems");
+        for (int i = 0; i < COLLECTION_SIZE; i++) {
+            ObjectNode create = items.addObject();
+            create.put(ID, String.format("%sCreate/%d", PREFIX, i));
+            create.put(TYPE, "Create");
+            create.put("actor", ACTOR);
+            create.put("published", "2022-11-21T10:15:30Z");
+            create.putArray(TO).add(PUBLIC);
+            ObjectNode note = create.putObject("object");
+            note.put(ID, String.format("%sNote/%d", PREFIX, i));
+            note.put(TYPE, "Note");
+            note.put("attributedTo", ACTOR);
+            note.put("published", "2022-11-21T10:15:30Z");
+            note.putArray(TO).add(PUBLIC);
+            note.put("content", String.format("<p>The page <a href=\"https://xwiki.example.org/xwiki/bin/view/Main/"
+                + "Page%1$d\">Page %1$d</a> has been created.</p>", i));
+        }
+        return page;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.internal.json.ActivityPubObjectDeserializer;
+
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.xwiki.contrib.activitypub.internal.json.AbstractActivityPubJsonParser.LOGGER_KEY;
+
+/**
+ * Deserialize payloads through {@link ActivityPubObjectDeserializer}, whose cost depends on how far the
+ * {@code type} property is from the start of the object: the {@code received} order keeps the properties as sent by
+ * the remote servers, the {@code sorted} order sorts them by name, as the compact output of the serializers does.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = AbstractJsonBenchmark.WARMUP_ITERATIONS)
+@Measurement(iterations = AbstractJsonBenchmark.MEASUREMENT_ITERATIONS)
+public class ActivityPubObjectDeserializerBenchmark extends AbstractJsonBenchmark
+{
+    private static final String RECEIVED = "received";
+
+    private static final String SORTED = "sorted";
+
+    @Param({ MASTODON_CREATE, PLEROMA_CREATE, MASTODON_PERSON, PLEROMA_PERSON })
+    private String payload;
+
+    @Param({ RECEIVED, SORTED })
+    private String order;
+
+    private ObjectReader reader;
+
+    private String json;
+
+    /**
+     * Prepare the reader and the JSON to deserialize.
+     *
+     * @throws Exception in case of error during the setup
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        initializeComponents();
+        this.reader = getObjectMapper(ABSOLUTE).reader()
+            .with(new InjectableValues.Std().addValue(LOGGER_KEY, LoggerFactory.getLogger(getClass())))
+            .forType(ActivityPubObject.class);
+        JsonNode tree = getPayloadTree(this.payload);
+        if (SORTED.equals(this.order)) {
+            tree = sort(tree);
+        }
+        this.json = tree.toString();
+    }
+
+    private static JsonNode sort(JsonNode node)
+    {
+        JsonNode result = node;
+        if (node.isObject()) {
+            Map<String, JsonNode> fields = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> iterator = node.fields();
+            while (iterator.hasNext()) {
+                Map.Entry<String, JsonNode> field = iterator.next();
+                fields.put(field.getKey(), sort(field.getValue()));
+            }
+            ObjectNode sortedObject = JsonNodeFactory.instance.objectNode();
+            sortedObject.setAll(fields);
+            result = sortedObject;
+        } else if (node.isArray()) {
+            ArrayNode sortedArray = JsonNodeFactory.instance.arrayNode();
+            node.forEach(element -> sortedArray.add(sort(element)));
+            result = sortedArray;
+        }
+        return result;
+    }
+
+    /**
+     * @return the deserialized entity
+     * @throws Exception in case of error when deserializing
+     */
+    @Benchmark
+    public ActivityPubObject deserialize() throws Exception
+    {
+        return this.reader.readValue(this.json);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Run the benchmarks with the JMH command line, writing the results as JSON by default so that they can be compared
+ * across versions: {@code java -jar target/benchmarks.jar}. All the JMH options are supported, e.g. a regular
+ * expression to select the benchmarks to run, or {@code -rff} to choose the result file.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public final class BenchmarkRunner
+{
+    private static final String RESULT_FORMAT_OPTION = "-rf";
+
+    private static final String RESULT_FILE_OPTION = "-rff";
+
+    private BenchmarkRunner()
+    {
+        // Only a main class.
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args the JMH command line options
+     * @throws Exception in case of error when running the benchmarks
+     */
+    public static void main(String[] args) throws Exception
+    {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains(RESULT_FORMAT_OPTION)) {
+            arguments.add(RESULT_FORMAT_OPTION);
+            arguments.add("json");
+        }
+        if (!arguments.contains(RESULT_FILE_OPTION)) {
+            arguments.add(RESULT_FILE_OPTION);
+            arguments.add("jmh-result.json");
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
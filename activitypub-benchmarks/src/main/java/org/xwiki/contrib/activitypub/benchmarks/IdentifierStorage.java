@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.net.URI;
+import java.util.List;
+
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.webfinger.entities.JSONResourceDescriptor;
+
+/**
+ * A {@link ActivityPubStorage} for the benchmarks: the serializers store the objects without identifier, such as the
+ * tags, to serialize them as links, so this storage only gives them an identifier. The benchmarks don't need any other
+ * operation.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class IdentifierStorage implements ActivityPubStorage
+{
+    private final String prefix;
+
+    /**
+     * Default constructor.
+     *
+     * @param prefix the prefix of the identifiers given to the stored entities.
+     */
+    public IdentifierStorage(String prefix)
+    {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public boolean isStorageReady()
+    {
+        return true;
+    }
+
+    @Override
+    public URI storeEntity(ActivityPubObject entity)
+    {
+        return URI.create(String.format("%s%s/%x", this.prefix, entity.getType(), System.identityHashCode(entity)));
+    }
+
+    @Override
+    public <T extends ActivityPubObject> T retrieveEntity(URI id)
+    {
+        throw new UnsupportedOperationException("The benchmarks don't retrieve any entity.");
+    }
+
+    @Override
+    public void storeWebFinger(JSONResourceDescriptor jsonResourceDescriptor)
+    {
+        throw new UnsupportedOperationException("The benchmarks don't store any WebFinger record.");
+    }
+
+    @Override
+    public List<JSONResourceDescriptor> searchWebFinger(String query, int limit)
+    {
+        throw new UnsupportedOperationException("The benchmarks don't search any WebFinger record.");
+    }
+
+    @Override
+    public <T extends ActivityPubObject> List<T> query(Class<T> type, String query, int limit)
+    {
+        throw new UnsupportedOperationException("The benchmarks don't query the storage.");
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+
+/**
+ * Parse and serialize full payloads, with the parser and serializer of the requests ({@code absolute}) and of the
+ * storage ({@code relative}).
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = AbstractJsonBenchmark.WARMUP_ITERATIONS)
+@Measurement(iterations = AbstractJsonBenchmark.MEASUREMENT_ITERATIONS)
+public class JsonBenchmark extends AbstractJsonBenchmark
+{
+    @Param({ ABSOLUTE, RELATIVE })
+    private String mapping;
+
+    @Param({ MASTODON_CREATE, PLEROMA_CREATE, MASTODON_PERSON, PLEROMA_PERSON, ORDERED_COLLECTION })
+    private String payload;
+
+    private ActivityPubJsonParser parser;
+
+    private ActivityPubJsonSerializer serializer;
+
+    private String json;
+
+    private ActivityPubObject entity;
+
+    /**
+     * Prepare the JSON to parse and the entity to serialize: the stored JSON is the one the relative serializer
+     * produces from the received payload.
+     *
+     * @throws Exception in case of error during the setup
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        initializeComponents();
+        this.parser = getParser(this.mapping);
+        this.serializer = getSerializer(this.mapping);
+        this.json = getPayload(this.payload);
+        if (RELATIVE.equals(this.mapping)) {
+            this.json = this.serializer.serialize(getParser(ABSOLUTE).parse(this.json));
+        }
+        this.entity = this.parser.parse(this.json);
+    }
+
+    /**
+     * @return the parsed entity
+     * @throws Exception in case of error when parsing
+     */
+    @Benchmark
+    public ActivityPubObject parse() throws Exception
+    {
+        return this.parser.parse(this.json);
+    }
+
+    /**
+     * @return the serialized entity
+     * @throws Exception in case of error when serializing
+     */
+    @Benchmark
+    public String serialize() throws Exception
+    {
+        return this.serializer.serialize(this.entity);
+    }
+}
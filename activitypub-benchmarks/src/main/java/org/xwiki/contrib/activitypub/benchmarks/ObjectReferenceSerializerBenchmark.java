@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Note;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Serialize references through the object reference serializers: local links, which the relative serializer
+ * relativizes, remote links, referenced objects with an identifier, and referenced objects without identifier,
+ * which are stored to be serialized as links.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = AbstractJsonBenchmark.WARMUP_ITERATIONS)
+@Measurement(iterations = AbstractJsonBenchmark.MEASUREMENT_ITERATIONS)
+public class ObjectReferenceSerializerBenchmark extends AbstractJsonBenchmark
+{
+    /**
+     * Number of references of each kind.
+     */
+    private static final int REFERENCES_PER_KIND = 25;
+
+    @Param({ ABSOLUTE, RELATIVE })
+    private String mapping;
+
+    private ObjectWriter writer;
+
+    private ActivityPubObjectReference<?>[] references;
+
+    /**
+     * Prepare the writer and the references to serialize.
+     *
+     * @throws Exception in case of error during the setup
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        initializeComponents();
+        this.writer = getObjectMapper(this.mapping).writerFor(ActivityPubObjectReference[].class);
+        List<ActivityPubObjectReference<?>> referenceList = new ArrayList<>();
+        for (int i = 0; i < REFERENCES_PER_KIND; i++) {
+            referenceList.add(new ActivityPubObjectReference<Note>()
+                .setLink(URI.create(String.format("%sNote/%d", PREFIX, i))));
+            referenceList.add(new ActivityPubObjectReference<Note>()
+                .setLink(URI.create(String.format("https://mastodon.example/users/alice/statuses/%d", i))));
+            referenceList.add(new ActivityPubObjectReference<Note>()
+                .setObject(new Note().setId(URI.create(String.format("%sNote/%d", PREFIX, i)))));
+            referenceList.add(new ActivityPubObjectReference<Note>()
+                .setObject(new Note().setContent(String.format("Note %d", i))));
+        }
+        this.references = referenceList.toArray(new ActivityPubObjectReference<?>[0]);
+    }
+
+    /**
+     * @return the serialized references
+     * @throws Exception in case of error when serializing
+     */
+    @Benchmark
+    public String serialize() throws Exception
+    {
+        return this.writer.writeValueAsString(this.references);
+    }
+}
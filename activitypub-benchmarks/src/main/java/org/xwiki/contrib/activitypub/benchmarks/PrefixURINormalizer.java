@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.benchmarks;
+
+import java.net.URI;
+
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+
+/**
+ * A {@link InternalURINormalizer} for the benchmarks, which considers all the URIs starting with a given prefix as
+ * local, without relying on the URL handling of a running wiki.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class PrefixURINormalizer extends InternalURINormalizer
+{
+    private final String prefix;
+
+    /**
+     * Default constructor.
+     *
+     * @param prefix the prefix of the local URIs.
+     */
+    public PrefixURINormalizer(String prefix)
+    {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public URI relativizeURI(URI inputURI)
+    {
+        URI result = inputURI;
+        String uri = inputURI.toASCIIString();
+        if (uri.startsWith(this.prefix)) {
+            result = URI.create(uri.substring(this.prefix.length()));
+        }
+        return result;
+    }
+
+    @Override
+    public URI retrieveAbsoluteURI(URI relativeURI)
+    {
+        URI result = relativeURI;
+        if (!relativeURI.isAbsolute()) {
+            result = URI.create(this.prefix + relativeURI.toASCIIString());
+        }
+        return result;
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.xwiki.contrib.activitypub.internal;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -39,6 +40,8 @@ import org.xwiki.component.annotation.Component;
 @Singleton
 public class DateProvider
 {
+    private static final String DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss z";
+
     /**
      * @return the current time
      */
@@ -74,8 +77,32 @@ public class DateProvider
      */
     public String getFormattedDate(Date date)
     {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+        return createDateFormat().format(date);
+    }
+
+    /**
+     * @param formattedDate a date following the pattern {@code EEE, dd MMM yyyy HH:mm:ss z}, as used in the HTTP
+     *     headers
+     * @return the parsed date, or {@code null} if the given value does not follow the pattern
+     * @since 1.7.12
+     */
+    public Date parseFormattedDate(String formattedDate)
+    {
+        Date result = null;
+        if (formattedDate != null) {
+            try {
+                result = createDateFormat().parse(formattedDate);
+            } catch (ParseException e) {
+                // The date is not valid.
+            }
+        }
+        return result;
+    }
+
+    private SimpleDateFormat createDateFormat()
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN, Locale.US);
         dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-        return dateFormat.format(date);
+        return dateFormat;
     }
 }
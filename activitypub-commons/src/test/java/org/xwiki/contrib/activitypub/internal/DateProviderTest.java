@@ -33,6 +33,7 @@ import static java.util.Calendar.MARCH;
 import static java.util.Calendar.getInstance;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -85,4 +86,15 @@ class DateProviderTest
         String formattedDate = this.dateProvider.getFormattedDate(calendar.getTime());
         assertEquals("Thu, 03 Mar 1910 04:05:06 GMT", formattedDate);
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseFormattedDate()
+    {
+        Calendar calendar = getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.clear();
+        calendar.set(1910, MARCH, 3, 4, 5, 6);
+        assertEquals(calendar.getTime(), this.dateProvider.parseFormattedDate("Thu, 03 Mar 1910 04:05:06 GMT"));
+        assertNull(this.dateProvider.parseFormattedDate("03/03/1910"));
+        assertNull(this.dateProvider.parseFormattedDate(null));
+    }
+}
@@ -66,6 +66,18 @@ public interface ActivityPubClient
      * List of accepted content type, but that should not be according to ActivityPub specifications. 
      */
     String[] CONTENT_TYPES_ACCEPTED = new String[]{ CONTENT_TYPE_HTML_ACCEPTED, CONTENT_TYPE_JSON_ACCEPTED };
+    /**
+     * Name of the response header giving the version identifier of a resource.
+     * @since 1.7.12
+     */
+    @Unstable
+    String ETAG_HEADER = "ETag";
+    /**
+     * Name of the response header giving the date of the last modification of a resource.
+     * @since 1.7.12
+     */
+    @Unstable
+    String LAST_MODIFIED_HEADER = "Last-Modified";
 
     /**
      * Post an activity in the actor inbox.
@@ -97,6 +109,38 @@ public interface ActivityPubClient
      */
     HttpMethod post(URI uri, AbstractActivity activity) throws ActivityPubException, IOException;
 
+    /**
+     * Post an already serialized activity in the given URI.
+     * @param uri the URI where to post the activity (should be an inbox or an outbox).
+     * @param actor the actor of the activity, used to sign the request.
+     * @param content the serialized activity to post.
+     * @return an {@link HttpMethod} which contains the answer.
+     * @throws ActivityPubException in case of error during the signature of the request.
+     * @throws IOException in case of error during the post.
+     * @since 1.7.12
+     */
+    @Unstable
+    HttpMethod post(URI uri, AbstractActor actor, String content) throws ActivityPubException, IOException;
+
+    /**
+     * Post an already serialized activity in the given URI. This method should be preferred when posting the same
+     * activity to many inboxes: the content is encoded and digested once, and only the signature of the request is
+     * computed for each target.
+     * @param uri the URI where to post the activity (should be an inbox or an outbox).
+     * @param actor the resolved actor of the activity, used to sign the request.
+     * @param activity the serialized activity to post.
+     * @return an {@link HttpMethod} which contains the answer.
+     * @throws ActivityPubException in case of error during the signature of the request.
+     * @throws IOException in case of error during the post.
+     * @since 1.7.12
+     */
+    @Unstable
+    default HttpMethod post(URI uri, AbstractActor actor, SerializedActivity activity)
+        throws ActivityPubException, IOException
+    {
+        return post(uri, actor, activity.getContentAsString());
+    }
+
     /**
      * Performs an HTTP GET on the given URI.
      * @param uri the URI to retrieve.
@@ -105,6 +149,25 @@ public interface ActivityPubClient
      */
     HttpMethod get(URI uri) throws IOException;
 
+    /**
+     * Performs a conditional HTTP GET on the given URI: if the resource did not change since the given validators
+     * were answered, the server might answer with a 304 status and without any content. By default the validators
+     * are ignored.
+     * @param uri the URI to retrieve.
+     * @param eTag the value of the {@link #ETAG_HEADER} header answered when the resource was last retrieved, or
+     *     {@code null}.
+     * @param lastModified the value of the {@link #LAST_MODIFIED_HEADER} header answered when the resource was last
+     *     retrieved, or {@code null}.
+     * @return an {@link HttpMethod} which contains the answer.
+     * @throws IOException in case of error with the HTTP request.
+     * @since 1.7.12
+     */
+    @Unstable
+    default HttpMethod get(URI uri, String eTag, String lastModified) throws IOException
+    {
+        return get(uri);
+    }
+
     /**
      * Ensure that the {@link HttpMethod}:
      *   1. has been sent
@@ -114,4 +177,19 @@ public interface ActivityPubClient
      * @throws ActivityPubException in case one of the check is not satisfied.
      */
     void checkAnswer(HttpMethod method) throws ActivityPubException;
+
+    /**
+     * Ensure that the {@link HttpMethod} used to deliver an activity to an inbox has been sent and received a 2xx
+     * status: contrary to {@link #checkAnswer(HttpMethod)}, the answer is not expected to have any content (e.g.
+     * Mastodon answers with a 202 status and an empty body). By default, the answer is checked with
+     * {@link #checkAnswer(HttpMethod)}.
+     * @param method the HttpMethod to check.
+     * @throws ActivityPubException in case one of the check is not satisfied.
+     * @since 1.7.12
+     */
+    @Unstable
+    default void checkDelivery(HttpMethod method) throws ActivityPubException
+    {
+        checkAnswer(method);
+    }
 }
@@ -49,6 +49,88 @@ public interface ActivityPubConfiguration
     @Unstable
     String ACTIVITYPUB_DISCUSSION_TYPE = "activitypub";
 
+    /**
+     * The default maximum number of items served in a single response when getting an ordered collection.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_COLLECTION_PAGE_SIZE = 20;
+
+    /**
+     * The default maximum number of entities kept in the storage cache.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_STORAGE_CACHE_SIZE = 1000;
+
+    /**
+     * The default number of threads used to deliver the activities to the remote inboxes.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_DELIVERY_THREADS = 16;
+
+    /**
+     * The default maximum number of deliveries performed at the same time to a given remote host.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_DELIVERY_MAX_CONNECTIONS_PER_HOST = 2;
+
+    /**
+     * The default maximum number of attempts to deliver an activity to an inbox before giving up.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_DELIVERY_MAX_ATTEMPTS = 10;
+
+    /**
+     * The default delay in seconds before retrying a failed delivery for the first time.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_DELIVERY_INITIAL_BACKOFF = 60;
+
+    /**
+     * The default number of threads used to process the activities received on the inboxes, when they are processed
+     * asynchronously.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_INBOX_THREADS = 4;
+
+    /**
+     * The default number of consecutive failures after which the requests to a remote host are suspended.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_REMOTE_HOST_FAILURE_THRESHOLD = 5;
+
+    /**
+     * The default delay in seconds before checking again a remote host whose requests have been suspended.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_REMOTE_HOST_RETRY_DELAY = 60;
+
+    /**
+     * The default duration in seconds during which a remote URI answering with a 404 or 410 status is not requested
+     * again.
+     *
+     * @since 1.7.12
+     */
+    @Unstable
+    int DEFAULT_NOT_FOUND_CACHE_DURATION = 3600;
+
     /**
      * Behaviour to adopt in case of Follow request.
      */
@@ -104,4 +186,153 @@ public interface ActivityPubConfiguration
      */
     @Unstable
     PageNotificationPolicy getPageNotificationPolicy();
+
+    /**
+     * Define the maximum amount of time, in milliseconds, before a write performed in the storage is committed.
+     * With a strictly positive value, the writes are not committed immediately but grouped by the storage within
+     * the given time window: entities are still retrieved by ID right after being stored, but they might not be
+     * returned by queries, nor listed in the collections they have been appended to, until the window is elapsed.
+     * With a zero or negative value, each write waits for a commit which is shared with the concurrent writes.
+     *
+     * @return the commit window of the storage in milliseconds, or {@code 0} to commit on each write.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getStorageCommitWithin()
+    {
+        return 0;
+    }
+
+    /**
+     * @return {@code true} if the storage should perform soft commits, i.e. commits that make the writes visible
+     *         without flushing them on disk.
+     * @since 1.7.12
+     */
+    @Unstable
+    default boolean isStorageSoftCommitEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the maximum number of entities kept in memory by the storage to avoid retrieving them again, or
+     *         {@code 0} to disable the cache.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getStorageCacheSize()
+    {
+        return DEFAULT_STORAGE_CACHE_SIZE;
+    }
+
+    /**
+     * @return the maximum number of items served in a single response when getting an ordered collection: larger
+     *         collections are served by pages of this size.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getCollectionPageSize()
+    {
+        return DEFAULT_COLLECTION_PAGE_SIZE;
+    }
+
+    /**
+     * @return the number of threads used to deliver the activities to the remote inboxes: this is also the maximum
+     *         number of deliveries in progress at the same time.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getDeliveryThreads()
+    {
+        return DEFAULT_DELIVERY_THREADS;
+    }
+
+    /**
+     * @return the maximum number of deliveries performed at the same time to a given remote host, so that a large
+     *         number of recipients on the same server does not overload it.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getDeliveryMaxConnectionsPerHost()
+    {
+        return DEFAULT_DELIVERY_MAX_CONNECTIONS_PER_HOST;
+    }
+
+    /**
+     * @return the maximum number of attempts to deliver an activity to an inbox: after that the delivery is kept as
+     *         failed and is not retried anymore.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getDeliveryMaxAttempts()
+    {
+        return DEFAULT_DELIVERY_MAX_ATTEMPTS;
+    }
+
+    /**
+     * @return the delay in seconds before retrying a failed delivery for the first time: the delay is doubled after
+     *         each failed attempt.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getDeliveryInitialBackoff()
+    {
+        return DEFAULT_DELIVERY_INITIAL_BACKOFF;
+    }
+
+    /**
+     * @return {@code true} if the activities received on the inboxes should be stored and processed asynchronously:
+     *         the requests are then answered with a 202 status as soon as the activity is validated and stored,
+     *         without waiting for its processing.
+     * @since 1.7.12
+     */
+    @Unstable
+    default boolean isInboxAsyncEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the number of threads used to process the activities received on the inboxes, when
+     *         {@link #isInboxAsyncEnabled()} is {@code true}.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getInboxThreads()
+    {
+        return DEFAULT_INBOX_THREADS;
+    }
+
+    /**
+     * @return the number of consecutive failures (network errors or 5xx statuses) after which the requests to a
+     *         remote host are suspended: they then fail immediately until the host answers again.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getRemoteHostFailureThreshold()
+    {
+        return DEFAULT_REMOTE_HOST_FAILURE_THRESHOLD;
+    }
+
+    /**
+     * @return the delay in seconds before checking again a remote host whose requests have been suspended: the delay
+     *         is doubled after each failed check.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getRemoteHostRetryDelay()
+    {
+        return DEFAULT_REMOTE_HOST_RETRY_DELAY;
+    }
+
+    /**
+     * @return the duration in seconds during which a remote URI answering with a 404 or 410 status is not requested
+     *         again.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int getNotFoundCacheDuration()
+    {
+        return DEFAULT_NOT_FOUND_CACHE_DURATION;
+    }
 }
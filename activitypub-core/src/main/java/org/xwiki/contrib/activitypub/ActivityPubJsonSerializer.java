@@ -52,4 +52,21 @@ public interface ActivityPubJsonSerializer
      * @throws ActivityPubException in case any issue occurred during the serialization.
      */
     <T extends ActivityPubObject> void serialize(OutputStream stream, T object) throws ActivityPubException;
+
+    /**
+     * Serialize the given {@link ActivityPubObject} (or any inherited type) to an indented {@link String}, to be read
+     * by humans. The other serialization methods produce a compact output, which should be preferred for anything
+     * sent over the wire or stored.
+     *
+     * @param object the object to serialize.
+     * @param <T> the concrete type of the given object.
+     * @return a human readable string representing the serialization of the given object.
+     * @throws ActivityPubException in case any issue occurred during the serialization.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> String serializeHumanReadable(T object) throws ActivityPubException
+    {
+        return serialize(object);
+    }
 }
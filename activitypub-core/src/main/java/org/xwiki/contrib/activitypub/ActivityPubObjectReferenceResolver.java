@@ -19,7 +19,10 @@
  */
 package org.xwiki.contrib.activitypub;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -28,6 +31,7 @@ import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Collection;
+import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.entities.Page;
 import org.xwiki.contrib.activitypub.entities.Person;
@@ -72,6 +76,33 @@ public interface ActivityPubObjectReferenceResolver
     <T extends ActivityPubObject> T resolveReference(ActivityPubObjectReference<T> reference)
         throws ActivityPubException;
 
+    /**
+     * Resolve all the given references at once. Contrary to {@link #resolveReference(ActivityPubObjectReference)}
+     * this method does not throw an exception when a reference cannot be resolved: the matching element of the result
+     * is {@code null}. Implementations should retrieve the stored objects with as few requests as possible.
+     *
+     * @param references the references to resolve.
+     * @param <T> the concrete type of the objects pointed by the references.
+     * @return a list with the same size and order as the given references, containing the resolved objects or
+     *         {@code null} for the references that could not be resolved.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> List<T> resolveReferences(List<ActivityPubObjectReference<T>> references)
+    {
+        List<T> result = new ArrayList<>(references.size());
+        for (ActivityPubObjectReference<T> reference : references) {
+            T object;
+            try {
+                object = resolveReference(reference);
+            } catch (ActivityPubException e) {
+                object = null;
+            }
+            result.add(object);
+        }
+        return result;
+    }
+
     /**
      * Resolve the targets of the given object for delivery and perform deduplication.
      * This methods perform a first resolution of the proxy actors and then store the information with
@@ -84,6 +115,32 @@ public interface ActivityPubObjectReferenceResolver
     @Unstable
     Set<AbstractActor> resolveTargets(ActivityPubObject activityPubObject);
 
+    /**
+     * Resolve the inboxes to which the given object should be delivered, based on {@link #resolveTargets}.
+     * Implementations might use the shared inbox of the targets, so that a single request is sent to each remote
+     * server for the objects addressed to many actors.
+     *
+     * @param activityPubObject the object for which to resolve the inboxes
+     * @return the inboxes of the targets, deduplicated.
+     * @since 1.7.12
+     */
+    @Unstable
+    default Set<URI> resolveTargetInboxes(ActivityPubObject activityPubObject)
+    {
+        Set<URI> result = new LinkedHashSet<>();
+        for (AbstractActor target : resolveTargets(activityPubObject)) {
+            ActivityPubObjectReference<Inbox> inbox = target.getInbox();
+            URI inboxURI = null;
+            if (inbox != null) {
+                inboxURI = (inbox.isLink()) ? inbox.getLink() : inbox.getObject().getId();
+            }
+            if (inboxURI != null) {
+                result.add(inboxURI);
+            }
+        }
+        return result;
+    }
+
     /**
      * Define if an information should be refreshed by requesting it from its ID.
      * This method allows to determine if we should try to perform an Http Request even if an information is locally
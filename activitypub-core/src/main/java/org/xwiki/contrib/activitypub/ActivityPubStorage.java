@@ -20,10 +20,16 @@
 package org.xwiki.contrib.activitypub;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.webfinger.entities.JSONResourceDescriptor;
 import org.xwiki.stability.Unstable;
 
@@ -72,6 +78,36 @@ public interface ActivityPubStorage
      * (retrieved from {@link ActivityPubObject#isPublic()})
      */
     String IS_PUBLIC_FIELD = "isPublic";
+    /**
+     * Storage field used to store the identifier of the collection an item record belongs to.
+     * @since 1.7.12
+     */
+    @Unstable
+    String COLLECTION_FIELD = "collection";
+    /**
+     * Storage field used to store the identifier of the item referenced by an item record.
+     * @since 1.7.12
+     */
+    @Unstable
+    String ITEM_FIELD = "item";
+    /**
+     * Storage field used to store the ordering key of an item record inside its collection.
+     * @since 1.7.12
+     */
+    @Unstable
+    String POSITION_FIELD = "position";
+    /**
+     * Storage field used to store the {@code ETag} answered by the server of a remote entity.
+     * @since 1.7.12
+     */
+    @Unstable
+    String REMOTE_ETAG_FIELD = "remoteETag";
+    /**
+     * Storage field used to store the {@code Last-Modified} date answered by the server of a remote entity.
+     * @since 1.7.12
+     */
+    @Unstable
+    String REMOTE_LAST_MODIFIED_FIELD = "remoteLastModified";
 
     /**
      * Check if the current storage is ready to be used.
@@ -105,6 +141,169 @@ public interface ActivityPubStorage
      */
     <T extends ActivityPubObject> T retrieveEntity(URI id) throws ActivityPubException;
 
+    /**
+     * Extract several entities at once from their UUIDs.
+     * Implementations should retrieve all the entities with as few requests as possible.
+     *
+     * @param ids the unique identifiers of the entities as given by {@link #storeEntity(ActivityPubObject)}.
+     * @param <T> the concrete type of the entities to retrieve.
+     * @return a list with the same size and order as the given identifiers, containing the stored entities or
+     *         {@code null} for the entities that have not been found.
+     * @throws ActivityPubException if the retrieval or the parsing of the entities failed.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> List<T> retrieveEntities(Collection<URI> ids) throws ActivityPubException
+    {
+        List<T> result = new ArrayList<>(ids.size());
+        for (URI id : ids) {
+            result.add(retrieveEntity(id));
+        }
+        return result;
+    }
+
+    /**
+     * Mark a stored entity as up to date, without storing it again: this is used when its server answered that it has
+     * not been modified since it was retrieved. By default the entity is retrieved and stored again.
+     *
+     * @param id the unique identifier of the entity as given by {@link #storeEntity(ActivityPubObject)}.
+     * @return the date of the update.
+     * @throws ActivityPubException if the entity cannot be found or updated.
+     * @since 1.7.12
+     */
+    @Unstable
+    default Date touchEntity(URI id) throws ActivityPubException
+    {
+        ActivityPubObject entity = retrieveEntity(id);
+        if (entity == null) {
+            throw new ActivityPubException(String.format("Cannot find the entity [%s] to update.", id));
+        }
+        storeEntity(entity);
+        return entity.getLastUpdated();
+    }
+
+    /**
+     * Append an item to the given collection and store it.
+     * Implementations might store the items of the collections separately from the collection themselves, so that
+     * appending an item does not require to store again the whole collection. Note that the collection is expected to
+     * have been stored before if it has an ID.
+     *
+     * @param collection the collection in which to append the item: the instance is updated with the new item.
+     * @param item the item to append.
+     * @param <T> the type of the items of the collection.
+     * @throws ActivityPubException in case of problem when storing the item.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> void appendItem(OrderedCollection<T> collection, T item)
+        throws ActivityPubException
+    {
+        collection.addItem(item);
+        storeEntity(collection);
+    }
+
+    /**
+     * Retrieve an ordered collection without necessarily loading all its items: the returned collection gives its
+     * {@link OrderedCollection#getTotalItems()} but its items should be retrieved with
+     * {@link #retrieveItems(OrderedCollection, int, int)}. By default the collection is fully loaded.
+     *
+     * @param id the unique identifier of the collection.
+     * @param <T> the concrete type of the collection to retrieve.
+     * @return the stored collection or null if it has not been found.
+     * @throws ActivityPubException if the parsing of the collection failed.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> T retrieveCollectionSummary(URI id) throws ActivityPubException
+    {
+        return retrieveEntity(id);
+    }
+
+    /**
+     * Retrieve a range of the items of the given ordered collection, in the order of the collection.
+     *
+     * @param collection a collection retrieved with {@link #retrieveEntity(URI)} or
+     *                   {@link #retrieveCollectionSummary(URI)}.
+     * @param startIndex the index of the first item to retrieve, starting at 0.
+     * @param count the maximum number of items to retrieve.
+     * @param <T> the type of the items of the collection.
+     * @return the references to the items in the given range, which might be less than {@code count} items at the end
+     *         of the collection.
+     * @throws ActivityPubException in case of problem when retrieving the items.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> List<ActivityPubObjectReference<T>> retrieveItems(
+        OrderedCollection<T> collection, int startIndex, int count) throws ActivityPubException
+    {
+        List<ActivityPubObjectReference<T>> items = collection.getOrderedItems();
+        int fromIndex = Math.min(Math.max(startIndex, 0), items.size());
+        int toIndex = Math.min(fromIndex + Math.max(count, 0), items.size());
+        return new ArrayList<>(items.subList(fromIndex, toIndex));
+    }
+
+    /**
+     * Retrieve a range of the public items of the given ordered collection, in the order of the collection: the items
+     * which are stored and addressed publicly, see {@link ActivityPubObject#isPublic()}. By default all the items are
+     * retrieved and filtered.
+     *
+     * @param collection a collection retrieved with {@link #retrieveEntity(URI)} or
+     *                   {@link #retrieveCollectionSummary(URI)}.
+     * @param startIndex the index of the first public item to retrieve, starting at 0.
+     * @param count the maximum number of items to retrieve.
+     * @param <T> the type of the items of the collection.
+     * @return the references to the public items in the given range.
+     * @throws ActivityPubException in case of problem when retrieving the items.
+     * @since 1.7.12
+     */
+    @Unstable
+    default <T extends ActivityPubObject> List<ActivityPubObjectReference<T>> retrievePublicItems(
+        OrderedCollection<T> collection, int startIndex, int count) throws ActivityPubException
+    {
+        List<ActivityPubObjectReference<T>> publicItems = new ArrayList<>();
+        for (ActivityPubObjectReference<T> item : retrieveItems(collection, 0, collection.getTotalItems())) {
+            ActivityPubObject entity = item.isLink() ? retrieveEntity(item.getLink()) : item.getObject();
+            if (entity != null && entity.isPublic()) {
+                publicItems.add(item);
+            }
+        }
+        int fromIndex = Math.min(Math.max(startIndex, 0), publicItems.size());
+        int toIndex = Math.min(fromIndex + Math.max(count, 0), publicItems.size());
+        return new ArrayList<>(publicItems.subList(fromIndex, toIndex));
+    }
+
+    /**
+     * Count the public items of the given ordered collection, see
+     * {@link #retrievePublicItems(OrderedCollection, int, int)}.
+     *
+     * @param collection a collection retrieved with {@link #retrieveEntity(URI)} or
+     *                   {@link #retrieveCollectionSummary(URI)}.
+     * @return the number of public items of the collection.
+     * @throws ActivityPubException in case of problem when counting the items.
+     * @since 1.7.12
+     */
+    @Unstable
+    default int countPublicItems(OrderedCollection<?> collection) throws ActivityPubException
+    {
+        return retrievePublicItems(collection, 0, collection.getTotalItems()).size();
+    }
+
+    /**
+     * Retrieve the ordered collections stored as separated item records which contain the given item. By default no
+     * collection is returned, since the items are not stored separately.
+     *
+     * @param itemId the identifier of the item to look for.
+     * @param limit the maximum number of collections to return.
+     * @return the identifiers of the collections containing the item.
+     * @throws ActivityPubException in case of problem when querying the storage.
+     * @since 1.7.12
+     */
+    @Unstable
+    default List<URI> retrieveCollectionsContaining(URI itemId, int limit) throws ActivityPubException
+    {
+        return Collections.emptyList();
+    }
+
     /**
      * Store information about WebFinger.
      *
@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import org.xwiki.stability.Unstable;
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * The body of a request sending an activity, encoded once with its SHA-256 digest so that it can be posted to many
+ * inboxes: only the signature of the request then depends on the target.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Unstable
+public final class SerializedActivity
+{
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final byte[] content;
+
+    private final String digest;
+
+    /**
+     * Default constructor.
+     *
+     * @param content the serialized activity.
+     */
+    public SerializedActivity(String content)
+    {
+        this.content = content.getBytes(StandardCharsets.UTF_8);
+        try {
+            this.digest = Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance(DIGEST_ALGORITHM).digest(this.content));
+        } catch (NoSuchAlgorithmException e) {
+            // Every implementation of the Java platform is required to support SHA-256.
+            throw new IllegalStateException(String.format("The [%s] algorithm is not supported.", DIGEST_ALGORITHM),
+                e);
+        }
+    }
+
+    /**
+     * @return the serialized activity encoded in UTF-8: the returned array must not be modified.
+     */
+    public byte[] getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the serialized activity.
+     */
+    public String getContentAsString()
+    {
+        return new String(this.content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the SHA-256 digest of the content, encoded in base 64.
+     */
+    public String getDigest()
+    {
+        return this.digest;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("digest", getDigest())
+            .append("length", this.content.length)
+            .build();
+    }
+}
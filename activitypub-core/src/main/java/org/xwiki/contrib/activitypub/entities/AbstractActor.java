@@ -47,6 +47,7 @@ public abstract class AbstractActor extends ActivityPubObject
     private ActivityPubObjectReference<OrderedCollection<AbstractActor>> following;
     private PublicKey publicKey;
     private ActivityPubObjectReference<OrderedCollection<ActivityPubObject>> liked;
+    private Endpoints endpoints;
 
     /**
      * @return the username of the actor.
@@ -196,6 +197,29 @@ public abstract class AbstractActor extends ActivityPubObject
         return (T) this;
     }
 
+    /**
+     * @return the endpoints of the actor, or {@code null} if it doesn't declare any.
+     * @since 1.7.12
+     */
+    @Unstable
+    public Endpoints getEndpoints()
+    {
+        return endpoints;
+    }
+
+    /**
+     * @param endpoints the endpoints of the actor.
+     * @param <T> the type of the actor.
+     * @return the current instance.
+     * @since 1.7.12
+     */
+    @Unstable
+    public <T extends AbstractActor> T setEndpoints(Endpoints endpoints)
+    {
+        this.endpoints = endpoints;
+        return (T) this;
+    }
+
     @Override
     public boolean isActor()
     {
@@ -232,7 +256,8 @@ public abstract class AbstractActor extends ActivityPubObject
             .append(followers, object.followers)
             .append(following, object.following)
             .append(publicKey, object.publicKey)
-            .append(liked, object.liked).build();
+            .append(liked, object.liked)
+            .append(endpoints, object.endpoints).build();
     }
 
     @Override
@@ -246,7 +271,8 @@ public abstract class AbstractActor extends ActivityPubObject
             .append(followers)
             .append(following)
             .append(publicKey)
-            .append(liked).build();
+            .append(liked)
+            .append(endpoints).build();
     }
 
     /**
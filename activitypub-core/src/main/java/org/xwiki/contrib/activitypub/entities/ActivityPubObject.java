@@ -75,6 +75,10 @@ public class ActivityPubObject extends JSONLDObjects
 
     private Date lastUpdated;
 
+    private String remoteETag;
+
+    private String remoteLastModified;
+
     private List<ActivityPubObjectReference<?>> tag;
 
     private ActivityPubObjectReference<OrderedCollection<Like>> likes;
@@ -495,6 +499,58 @@ public class ActivityPubObject extends JSONLDObjects
         return (T) this;
     }
 
+    /**
+     * @return the {@code ETag} answered by the server of the object when it was last retrieved, or {@code null}.
+     * @since 1.7.12
+     */
+    @Unstable
+    @JsonIgnore
+    public String getRemoteETag()
+    {
+        return this.remoteETag;
+    }
+
+    /**
+     * @param remoteETag the {@code ETag} answered by the server of the object when it was last retrieved.
+     * @param <T> the concrete type of this object.
+     * @return the current object.
+     * @since 1.7.12
+     */
+    @Unstable
+    @JsonIgnore
+    public <T extends ActivityPubObject> T setRemoteETag(String remoteETag)
+    {
+        this.remoteETag = remoteETag;
+        return (T) this;
+    }
+
+    /**
+     * @return the {@code Last-Modified} date answered by the server of the object when it was last retrieved, as
+     *         received, or {@code null}.
+     * @since 1.7.12
+     */
+    @Unstable
+    @JsonIgnore
+    public String getRemoteLastModified()
+    {
+        return this.remoteLastModified;
+    }
+
+    /**
+     * @param remoteLastModified the {@code Last-Modified} date answered by the server of the object when it was last
+     *     retrieved, as received.
+     * @param <T> the concrete type of this object.
+     * @return the current object.
+     * @since 1.7.12
+     */
+    @Unstable
+    @JsonIgnore
+    public <T extends ActivityPubObject> T setRemoteLastModified(String remoteLastModified)
+    {
+        this.remoteLastModified = remoteLastModified;
+        return (T) this;
+    }
+
     /**
      * @return {@code true} only if the current object is a document of any kind.
      */
@@ -28,6 +28,8 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.xwiki.stability.Unstable;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
@@ -46,6 +48,12 @@ public class OrderedCollection<T extends ActivityPubObject> extends AbstractColl
 {
     private List<ActivityPubObjectReference<T>> orderedItems;
 
+    private Integer totalItems;
+
+    private ActivityPubObjectReference<OrderedCollectionPage<T>> first;
+
+    private ActivityPubObjectReference<OrderedCollectionPage<T>> last;
+
     /**
      * Default constructor to initialize the internal {@link ArrayList}.
      */
@@ -74,9 +82,73 @@ public class OrderedCollection<T extends ActivityPubObject> extends AbstractColl
     }
 
     @Override
+    @JsonProperty
     public int getTotalItems()
     {
-        return this.orderedItems.size();
+        return (this.totalItems != null) ? this.totalItems : this.orderedItems.size();
+    }
+
+    /**
+     * Define the number of items of the collection when its items are not all loaded, e.g. when the collection is
+     * served by pages. This value is never read from a JSON document: by default the number of items is the size of
+     * {@link #getOrderedItems()}.
+     *
+     * @param totalItems the number of items of the collection, or {@code null} to rely on the loaded items.
+     * @return the current collection for fluent API.
+     * @since 1.7.12
+     */
+    @Unstable
+    @JsonIgnore
+    public OrderedCollection<T> setTotalItems(Integer totalItems)
+    {
+        this.totalItems = totalItems;
+        return this;
+    }
+
+    /**
+     * @return a reference to the first page of the collection.
+     * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-first">ActivityStream definition</a>
+     * @since 1.7.12
+     */
+    @Unstable
+    public ActivityPubObjectReference<OrderedCollectionPage<T>> getFirst()
+    {
+        return this.first;
+    }
+
+    /**
+     * @param first a reference to the first page of the collection.
+     * @return the current collection for fluent API.
+     * @since 1.7.12
+     */
+    @Unstable
+    public OrderedCollection<T> setFirst(ActivityPubObjectReference<OrderedCollectionPage<T>> first)
+    {
+        this.first = first;
+        return this;
+    }
+
+    /**
+     * @return a reference to the last page of the collection.
+     * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-last">ActivityStream definition</a>
+     * @since 1.7.12
+     */
+    @Unstable
+    public ActivityPubObjectReference<OrderedCollectionPage<T>> getLast()
+    {
+        return this.last;
+    }
+
+    /**
+     * @param last a reference to the last page of the collection.
+     * @return the current collection for fluent API.
+     * @since 1.7.12
+     */
+    @Unstable
+    public OrderedCollection<T> setLast(ActivityPubObjectReference<OrderedCollectionPage<T>> last)
+    {
+        this.last = last;
+        return this;
     }
 
     @Override
@@ -115,7 +187,9 @@ public class OrderedCollection<T extends ActivityPubObject> extends AbstractColl
         OrderedCollection<?> object = (OrderedCollection<?>) o;
         return new EqualsBuilder()
             .appendSuper(super.equals(o))
-            .append(orderedItems, object.orderedItems).build();
+            .append(orderedItems, object.orderedItems)
+            .append(first, object.first)
+            .append(last, object.last).build();
     }
 
     @Override
@@ -123,6 +197,8 @@ public class OrderedCollection<T extends ActivityPubObject> extends AbstractColl
     {
         return new HashCodeBuilder()
             .appendSuper(super.hashCode())
-            .append(orderedItems).build();
+            .append(orderedItems)
+            .append(first)
+            .append(last).build();
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.entities;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.xwiki.stability.Unstable;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+/**
+ * Represents a page of an {@link OrderedCollection} as defined by ActivityStream.
+ * The {@link #getOrderedItems()} of a page only contains the items of the page, while {@link #getTotalItems()}
+ * gives the total number of items of the paged collection.
+ *
+ * @param <T> the type of {@link ActivityPubObject} contained in the collection.
+ * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-orderedcollectionpage">ActivityStream
+ * OrderedCollectionPage definition</a>
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Unstable
+@JsonDeserialize(as = OrderedCollectionPage.class)
+public class OrderedCollectionPage<T extends ActivityPubObject> extends OrderedCollection<T>
+{
+    private ActivityPubObjectReference<OrderedCollection<T>> partOf;
+
+    private ActivityPubObjectReference<OrderedCollectionPage<T>> next;
+
+    private ActivityPubObjectReference<OrderedCollectionPage<T>> prev;
+
+    private Integer startIndex;
+
+    /**
+     * @return a reference to the collection this page belongs to.
+     * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-partof">ActivityStream definition</a>
+     */
+    public ActivityPubObjectReference<OrderedCollection<T>> getPartOf()
+    {
+        return this.partOf;
+    }
+
+    /**
+     * @param partOf a reference to the collection this page belongs to.
+     * @return the current page for fluent API.
+     */
+    public OrderedCollectionPage<T> setPartOf(ActivityPubObjectReference<OrderedCollection<T>> partOf)
+    {
+        this.partOf = partOf;
+        return this;
+    }
+
+    /**
+     * @return a reference to the next page, or {@code null} if this page is the last one.
+     * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-next">ActivityStream definition</a>
+     */
+    public ActivityPubObjectReference<OrderedCollectionPage<T>> getNext()
+    {
+        return this.next;
+    }
+
+    /**
+     * @param next a reference to the next page.
+     * @return the current page for fluent API.
+     */
+    public OrderedCollectionPage<T> setNext(ActivityPubObjectReference<OrderedCollectionPage<T>> next)
+    {
+        this.next = next;
+        return this;
+    }
+
+    /**
+     * @return a reference to the previous page, or {@code null} if this page is the first one.
+     * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-prev">ActivityStream definition</a>
+     */
+    public ActivityPubObjectReference<OrderedCollectionPage<T>> getPrev()
+    {
+        return this.prev;
+    }
+
+    /**
+     * @param prev a reference to the previous page.
+     * @return the current page for fluent API.
+     */
+    public OrderedCollectionPage<T> setPrev(ActivityPubObjectReference<OrderedCollectionPage<T>> prev)
+    {
+        this.prev = prev;
+        return this;
+    }
+
+    /**
+     * @return the index of the first item of the page in the whole collection, starting at 0.
+     * @see <a href="https://www.w3.org/TR/activitystreams-vocabulary/#dfn-startindex">ActivityStream definition</a>
+     */
+    public Integer getStartIndex()
+    {
+        return this.startIndex;
+    }
+
+    /**
+     * @param startIndex the index of the first item of the page in the whole collection, starting at 0.
+     * @return the current page for fluent API.
+     */
+    public OrderedCollectionPage<T> setStartIndex(Integer startIndex)
+    {
+        this.startIndex = startIndex;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        OrderedCollectionPage<?> object = (OrderedCollectionPage<?>) o;
+        return new EqualsBuilder()
+            .appendSuper(super.equals(o))
+            .append(partOf, object.partOf)
+            .append(next, object.next)
+            .append(prev, object.prev)
+            .append(startIndex, object.startIndex).build();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return new HashCodeBuilder()
+            .appendSuper(super.hashCode())
+            .append(partOf)
+            .append(next)
+            .append(prev)
+            .append(startIndex).build();
+    }
+}
@@ -20,17 +20,26 @@
 package org.xwiki.contrib.activitypub.internal;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubClient;
@@ -39,8 +48,10 @@ import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
 import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
 import org.xwiki.contrib.activitypub.ActivityPubStorage;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.AbstractCollection;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.Page;
 import org.xwiki.contrib.activitypub.entities.ProxyActor;
 import org.xwiki.model.reference.DocumentReference;
@@ -76,6 +87,17 @@ public class DefaultActivityPubObjectReferenceResolver implements ActivityPubObj
     @Inject
     private EntityReferenceSerializer<String> serializer;
 
+    @Inject
+    private RemoteObjectRefresher refresher;
+
+    /**
+     * Remote retrievals in progress, indexed by link: the concurrent resolutions of the same link wait for the
+     * retrieval started by the first one instead of performing their own request and storage. The futures are only
+     * used to signal the end of the retrieval: the retrieved object is returned to the first resolution only, and the
+     * waiting resolutions get their own instance from the storage once it has been stored.
+     */
+    private final Map<URI, CompletableFuture<ActivityPubObject>> inProgress = new ConcurrentHashMap<>();
+
     @Override
     public <T extends ActivityPubObject> T resolveReference(ActivityPubObjectReference<T> reference)
         throws ActivityPubException
@@ -95,30 +117,157 @@ public class DefaultActivityPubObjectReferenceResolver implements ActivityPubObj
             reference.setObject(result);
         }
 
-        // If the storage didn't provide any result, or if it provided outdated result, then we need to reload the
-        // information.
-        if (result == null || this.shouldBeRefreshed(result)) {
+        // If the storage didn't provide any result we need to retrieve the information, while an outdated result is
+        // returned as is and refreshed in the background.
+        if (result == null) {
             try {
-                ActivityPubClient activityPubClient = this.activityPubClientProvider.get();
-                HttpMethod getMethod = activityPubClient.get(reference.getLink());
-                try {
-                    activityPubClient.checkAnswer(getMethod);
-                    result = this.activityPubJsonParser.parse(getMethod.getResponseBodyAsString());
-                } finally {
-                    getMethod.releaseConnection();
-                }
+                result = coalesce(reference.getLink(), null);
                 reference.setObject(result);
-                activityPubStorage.storeEntity(result);
             } catch (IOException | ActivityPubException e) {
-                // We might be trying to refresh an information, in that case we just rely on the information we already
-                // manage to retrieve from the storage.
-                if (result == null) {
-                    throw new ActivityPubException(
-                        String
-                            .format("Error when retrieving the ActivityPub information from [%s]", reference.getLink()),
-                        e);
+                throw new ActivityPubException(
+                    String.format("Error when retrieving the ActivityPub information from [%s]", reference.getLink()),
+                    e);
+            }
+        } else if (this.shouldBeRefreshed(result)) {
+            URI link = reference.getLink();
+            T stored = result;
+            this.refresher.schedule(link, () -> coalesce(link, stored));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends ActivityPubObject> T coalesce(URI link, ActivityPubObject stored)
+        throws IOException, ActivityPubException
+    {
+        CompletableFuture<ActivityPubObject> future = new CompletableFuture<>();
+        CompletableFuture<ActivityPubObject> existing = this.inProgress.putIfAbsent(link, future);
+        ActivityPubObject result;
+        if (existing != null) {
+            await(link, existing);
+            result = retrieveStored(link);
+        } else {
+            try {
+                result = fetch(link, stored);
+                future.complete(result);
+            } catch (IOException | ActivityPubException e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                // Never let the waiting callers hang, whatever happened.
+                if (!future.isDone()) {
+                    future.completeExceptionally(
+                        new ActivityPubException(String.format("Failed to retrieve [%s]", link)));
                 }
+                this.inProgress.remove(link, future);
+            }
+        }
+        return (T) result;
+    }
+
+    private ActivityPubObject await(URI link, CompletableFuture<ActivityPubObject> future)
+        throws ActivityPubException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActivityPubException(String.format("Interrupted while waiting for [%s]", link), e);
+        } catch (ExecutionException e) {
+            throw new ActivityPubException(String.format("Failed to retrieve [%s]", link), e.getCause());
+        }
+    }
+
+    /**
+     * Retrieve the object from its server and store it. When the stored version is given, the request is conditional
+     * and the stored version is only marked as up to date if the server answers that it has not been modified, in
+     * which case a new instance of the stored version is returned.
+     */
+    private ActivityPubObject fetch(URI link, ActivityPubObject stored) throws IOException, ActivityPubException
+    {
+        ActivityPubObject result;
+        ActivityPubClient activityPubClient = this.activityPubClientProvider.get();
+        boolean conditional =
+            stored != null && (stored.getRemoteETag() != null || stored.getRemoteLastModified() != null);
+        HttpMethod getMethod = (conditional)
+            ? activityPubClient.get(link, stored.getRemoteETag(), stored.getRemoteLastModified())
+            : activityPubClient.get(link);
+        boolean modified;
+        try {
+            modified = !conditional || getMethod.getStatusCode() != HttpStatus.SC_NOT_MODIFIED;
+            if (modified) {
+                activityPubClient.checkAnswer(getMethod);
+                result = this.activityPubJsonParser.parse(getMethod.getResponseBodyAsString());
+                result.setRemoteETag(getHeaderValue(getMethod, ActivityPubClient.ETAG_HEADER));
+                result.setRemoteLastModified(getHeaderValue(getMethod, ActivityPubClient.LAST_MODIFIED_HEADER));
+            } else {
+                result = null;
             }
+        } finally {
+            getMethod.releaseConnection();
+        }
+        ActivityPubStorage activityPubStorage = this.activityPubStorageProvider.get();
+        if (modified) {
+            activityPubStorage.storeEntity(result);
+        } else {
+            // The stored version might already be used by other callers: retrieve a new instance with the new date
+            // rather than modifying it.
+            activityPubStorage.touchEntity(link);
+            result = retrieveStored(link);
+        }
+        return result;
+    }
+
+    private ActivityPubObject retrieveStored(URI link) throws ActivityPubException
+    {
+        ActivityPubObject result = this.activityPubStorageProvider.get().retrieveEntity(link);
+        if (result == null) {
+            throw new ActivityPubException(String.format("The entity [%s] is not stored anymore.", link));
+        }
+        return result;
+    }
+
+    private String getHeaderValue(HttpMethod method, String name)
+    {
+        Header header = method.getResponseHeader(name);
+        return (header != null) ? header.getValue() : null;
+    }
+
+    @Override
+    public <T extends ActivityPubObject> List<T> resolveReferences(List<ActivityPubObjectReference<T>> references)
+    {
+        // Load at once from the storage all the references which are not resolved yet.
+        List<ActivityPubObjectReference<T>> unresolvedReferences = new ArrayList<>();
+        List<URI> links = new ArrayList<>();
+        for (ActivityPubObjectReference<T> reference : references) {
+            if (reference != null && reference.isLink() && reference.getObject() == null) {
+                unresolvedReferences.add(reference);
+                links.add(reference.getLink());
+            }
+        }
+        if (!links.isEmpty()) {
+            try {
+                List<T> storedObjects = this.activityPubStorageProvider.get().retrieveEntities(links);
+                for (int i = 0; i < unresolvedReferences.size(); i++) {
+                    unresolvedReferences.get(i).setObject(storedObjects.get(i));
+                }
+            } catch (ActivityPubException e) {
+                this.logger.warn("Error while retrieving the references from the storage, they will be resolved one "
+                    + "by one. Cause: [{}]", ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        // The references missing from the storage or outdated are then resolved one by one.
+        List<T> result = new ArrayList<>(references.size());
+        for (ActivityPubObjectReference<T> reference : references) {
+            T object;
+            try {
+                object = this.resolveReference(reference);
+            } catch (ActivityPubException e) {
+                this.logger.error("Cannot resolve reference [{}].", reference, e);
+                object = null;
+            }
+            result.add(object);
         }
         return result;
     }
@@ -137,6 +286,66 @@ public class DefaultActivityPubObjectReferenceResolver implements ActivityPubObj
         return resolvedTargets;
     }
 
+    @Override
+    public Set<URI> resolveTargetInboxes(ActivityPubObject activityPubObject)
+    {
+        // Only the objects addressed publicly or to collections (e.g. followers) are sent to the shared inboxes: the
+        // objects addressed to specific actors are sent to their own inboxes. The followers are often addressed in cc.
+        boolean useSharedInbox =
+            isAddressedToMany(activityPubObject.getTo()) || isAddressedToMany(activityPubObject.getCc());
+        Set<URI> result = new LinkedHashSet<>();
+        for (AbstractActor target : resolveTargets(activityPubObject)) {
+            URI sharedInbox = (target.getEndpoints() != null) ? target.getEndpoints().getSharedInbox() : null;
+            URI inbox = getInboxURI(target);
+            if (useSharedInbox && sharedInbox != null) {
+                result.add(sharedInbox);
+            } else if (inbox != null) {
+                result.add(inbox);
+            } else {
+                this.logger.warn("The target [{}] does not have any inbox.", target.getId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the URI of the inbox of the given actor, whether its reference is a link or an expanded inbox, or
+     *     {@code null} if the actor does not have any inbox.
+     */
+    private URI getInboxURI(AbstractActor actor)
+    {
+        ActivityPubObjectReference<Inbox> inboxReference = actor.getInbox();
+        URI result = null;
+        if (inboxReference != null) {
+            result = (inboxReference.isLink()) ? inboxReference.getLink() : inboxReference.getObject().getId();
+        }
+        return result;
+    }
+
+    private boolean isAddressedToMany(List<ProxyActor> proxyActorList)
+    {
+        boolean result = false;
+        if (proxyActorList != null) {
+            for (ProxyActor proxyActor : proxyActorList) {
+                result = proxyActor.isPublic() || isCollection(proxyActor);
+                if (result) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isCollection(ProxyActor proxyActor)
+    {
+        try {
+            return resolveReference(proxyActor) instanceof AbstractCollection;
+        } catch (ActivityPubException e) {
+            // The proxy actor cannot be resolved: it's already logged when resolving the targets.
+            return false;
+        }
+    }
+
     @Override
     public <T extends ActivityPubObject> boolean shouldBeRefreshed(T activityPubObject)
     {
@@ -184,13 +393,11 @@ public class DefaultActivityPubObjectReferenceResolver implements ActivityPubObj
                 }
             }
 
-            for (ActivityPubObjectReference<AbstractActor> actorReference : targetActors) {
-                try {
-                    resolvedTargets.add(this.resolveReference(actorReference));
-                } catch (ActivityPubException e) {
-                    // FIXME: for now we only log the error, in the future it would need a specific handling
-                    // to try again later. See XAP-39
-                    this.logger.error("Cannot resolve actor [{}].", actorReference, e);
+            // FIXME: the actors which cannot be resolved are only logged, in the future it would need a specific
+            // handling to try again later. See XAP-39
+            for (AbstractActor actor : this.resolveReferences(targetActors)) {
+                if (actor != null) {
+                    resolvedTargets.add(actor);
                 }
             }
         }
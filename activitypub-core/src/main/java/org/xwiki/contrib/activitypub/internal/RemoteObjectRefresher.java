@@ -0,0 +1,220 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
+
+/**
+ * Refresh the outdated remote objects in the background, so that the resolution of a reference never waits for a
+ * remote server when the object is already stored. The refreshes are deduplicated by link, and performed by batches
+ * of at most {@link #BATCH_SIZE} links every {@link #BATCH_INTERVAL} milliseconds, with at most one refresh per remote
+ * host every {@link #HOST_INTERVAL} milliseconds.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = RemoteObjectRefresher.class)
+@Singleton
+public class RemoteObjectRefresher implements Initializable, Disposable
+{
+    /**
+     * Interval in milliseconds between two batches of refreshes.
+     */
+    public static final long BATCH_INTERVAL = 1000;
+
+    /**
+     * Maximum number of refreshes performed in a batch.
+     */
+    public static final int BATCH_SIZE = 20;
+
+    /**
+     * Minimal interval in milliseconds between two refreshes of objects from the same remote host.
+     */
+    public static final long HOST_INTERVAL = 1000;
+
+    /**
+     * Maximum number of refreshes waiting to be performed: the refreshes requested beyond are dropped, and requested
+     * again on the next resolution of the outdated object.
+     */
+    private static final int MAX_PENDING = 10000;
+
+    /**
+     * The refresh of an object.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface Refresh
+    {
+        /**
+         * Retrieve the object from its server and store it.
+         *
+         * @throws IOException in case of error when retrieving the object.
+         * @throws ActivityPubException in case of error when parsing or storing the object.
+         */
+        void run() throws IOException, ActivityPubException;
+    }
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The refreshes waiting to be performed, in the order of their request.
+     */
+    private final Map<URI, Refresh> pending = new LinkedHashMap<>();
+
+    /**
+     * Time of the last refresh performed for each remote host.
+     */
+    private final Map<String, Long> lastRefreshByHost = new ConcurrentHashMap<>();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = new ScheduledThreadPoolExecutor(1,
+            new BasicThreadFactory.Builder().namingPattern("ActivityPub refresher %d").daemon(true).build());
+        this.executor.scheduleWithFixedDelay(this::refreshBatch, BATCH_INTERVAL, BATCH_INTERVAL,
+            TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Request the refresh of an object: nothing is done if a refresh of the same link is already waiting.
+     *
+     * @param link the link of the object to refresh.
+     * @param refresh the refresh to perform.
+     * @return {@code true} if the refresh has been scheduled, {@code false} if a refresh of the same link is already
+     *     waiting or if too many refreshes are waiting.
+     */
+    public boolean schedule(URI link, Refresh refresh)
+    {
+        synchronized (this.pending) {
+            boolean result = this.pending.size() < MAX_PENDING && !this.pending.containsKey(link);
+            if (result) {
+                this.pending.put(link, refresh);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Perform the next batch of refreshes.
+     */
+    synchronized void refreshBatch()
+    {
+        long now = System.currentTimeMillis();
+        this.lastRefreshByHost.values().removeIf(time -> now - time >= HOST_INTERVAL);
+        Map<URI, Refresh> batch = nextBatch();
+        if (!batch.isEmpty()) {
+            try {
+                this.executionContextManager.initialize(new ExecutionContext());
+                for (Map.Entry<URI, Refresh> entry : batch.entrySet()) {
+                    refresh(entry.getKey(), entry.getValue());
+                }
+            } catch (Exception e) {
+                // Catch everything: an exception would cancel the next batches.
+                this.logger.error("Error while refreshing the remote objects [{}].", batch.keySet(), e);
+            } finally {
+                this.execution.removeContext();
+                removePending(batch.keySet());
+            }
+        }
+    }
+
+    /**
+     * @return the first waiting refreshes whose remote host has not been requested recently, at most one per host.
+     */
+    private Map<URI, Refresh> nextBatch()
+    {
+        Map<URI, Refresh> result = new LinkedHashMap<>();
+        Set<String> hosts = new HashSet<>();
+        synchronized (this.pending) {
+            Iterator<Map.Entry<URI, Refresh>> iterator = this.pending.entrySet().iterator();
+            while (result.size() < BATCH_SIZE && iterator.hasNext()) {
+                Map.Entry<URI, Refresh> entry = iterator.next();
+                String host = String.valueOf(entry.getKey().getRawAuthority());
+                if (!this.lastRefreshByHost.containsKey(host) && hosts.add(host)) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void refresh(URI link, Refresh refresh)
+    {
+        this.lastRefreshByHost.put(String.valueOf(link.getRawAuthority()), System.currentTimeMillis());
+        try {
+            refresh.run();
+        } catch (IOException | ActivityPubException e) {
+            this.logger.warn("Failed to refresh the remote object [{}], the stored version is kept. Cause: [{}]",
+                link, getRootCauseMessage(e));
+        } catch (RuntimeException e) {
+            // Don't let an unexpected error abandon the rest of the batch.
+            this.logger.error("Unexpected error while refreshing the remote object [{}].", link, e);
+        }
+    }
+
+    private void removePending(Set<URI> links)
+    {
+        synchronized (this.pending) {
+            this.pending.keySet().removeAll(links);
+        }
+    }
+}
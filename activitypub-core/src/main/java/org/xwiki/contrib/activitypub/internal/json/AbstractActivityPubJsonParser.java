@@ -22,26 +22,31 @@ package org.xwiki.contrib.activitypub.internal.json;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
+import org.xwiki.component.phase.Initializable;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * Abstract implementation of {@link ActivityPubJsonParser}.
  * This class provides almost everything to for parsing, it just needs an {@link ObjectMapper} to work, which is
- * generally provided by {@link ObjectMapperConfiguration}.
+ * generally provided by {@link ObjectMapperConfiguration}. The readers are built once from this mapper, and never
+ * modified afterwards: they can be used concurrently without any synchronization.
  *
  * @version $Id$
  * @since 1.2
  */
-public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonParser
+public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonParser, Initializable
 {
     /**
      * Logger injection key.
@@ -55,6 +60,10 @@ public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonPa
     @Inject
     private Logger logger;
 
+    private ObjectReader reader;
+
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
     /**
      * Retrieve an object mapper for the parsing operations: this is generally provided by
      * a {@link ObjectMapperConfiguration}.
@@ -63,6 +72,15 @@ public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonPa
      */
     public abstract ObjectMapper getObjectMapper();
 
+    @Override
+    public void initialize()
+    {
+        // Give access to a logger to the deserializer using Jackson's injection mechanism.
+        // We need to do it than way instead of components because deserializers are declared by annotating
+        // parsed classes.
+        this.reader = this.getObjectMapper().reader(new InjectableValues.Std().addValue(LOGGER_KEY, this.logger));
+    }
+
     @Override
     public <T extends ActivityPubObject> T parse(String requestBody) throws ActivityPubException
     {
@@ -73,7 +91,7 @@ public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonPa
     public <T extends ActivityPubObject> T parse(String requestBody, Class<T> type) throws ActivityPubException
     {
         try {
-            return getInitializedReader().readValue(requestBody, type);
+            return getReader(type).readValue(requestBody);
         } catch (IOException e) {
             throw new ActivityPubException(String.format(ERROR_MSG_KNOWN_TYPE, type), e);
         } catch (RuntimeException e) {
@@ -91,7 +109,7 @@ public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonPa
     public <T extends ActivityPubObject> T parse(Reader requestBodyReader, Class<T> type) throws ActivityPubException
     {
         try {
-            return getInitializedReader().readValue(requestBodyReader, type);
+            return getReader(type).readValue(requestBodyReader);
         } catch (IOException e) {
             throw new ActivityPubException(String.format(ERROR_MSG_KNOWN_TYPE, type), e);
         }
@@ -108,19 +126,20 @@ public abstract class AbstractActivityPubJsonParser implements ActivityPubJsonPa
         throws ActivityPubException
     {
         try {
-            return getInitializedReader().readValue(requestBodyInputStream, type);
+            return getReader(type).readValue(requestBodyInputStream);
         } catch (IOException e) {
             throw new ActivityPubException(String.format(ERROR_MSG_KNOWN_TYPE, type), e);
         }
     }
 
-    private ObjectMapper getInitializedReader()
+    private ObjectReader getReader(Class<?> type)
     {
-        ObjectMapper objectMapper = this.getObjectMapper();
-        // Give access to a logger to the deserializer using Jackson's injection mechanism.
-        // We need to do it than way instead of components because deserializers are declared by annotating 
-        // parsed classes.
-        objectMapper.setInjectableValues(new InjectableValues.Std().addValue(LOGGER_KEY, this.logger));
-        return objectMapper;
+        // The readers are only built once per type: there's a bounded number of entity types.
+        ObjectReader typeReader = this.readers.get(type);
+        if (typeReader == null) {
+            typeReader = this.reader.forType(type);
+            this.readers.putIfAbsent(type, typeReader);
+        }
+        return typeReader;
     }
 }
@@ -19,27 +19,32 @@
  */
 package org.xwiki.contrib.activitypub.internal.json;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 
+import org.xwiki.component.phase.Initializable;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Abstract implementation of {@link ActivityPubJsonSerializer}.
  * This class provides almost everything for serialization, it just needs to define the appropriate
- * {@link ObjectMapper} for operating. This is generally provided by {@link ObjectMapperConfiguration}.
+ * {@link ObjectMapper} for operating. This is generally provided by {@link ObjectMapperConfiguration}. The writers
+ * are built once from this mapper, and never modified afterwards: they can be used concurrently.
  *
  * @version $Id$
  * @since 1.2
  */
-public abstract class AbstractActivityPubJsonSerializer implements ActivityPubJsonSerializer
+public abstract class AbstractActivityPubJsonSerializer implements ActivityPubJsonSerializer, Initializable
 {
+    private ObjectWriter writer;
+
+    private ObjectWriter humanReadableWriter;
+
     /**
      * Retrieve an object mapper for the serialization operations: this is generally provided by
      * a {@link ObjectMapperConfiguration}.
@@ -48,19 +53,49 @@ public abstract class AbstractActivityPubJsonSerializer implements ActivityPubJs
      */
     public abstract ObjectMapper getObjectMapper();
 
+    /**
+     * Retrieve an object mapper producing an indented output, for the human readable serialization: this is
+     * generally provided by a {@link ObjectMapperConfiguration}.
+     *
+     * @return the object mapper to be used for the human readable serialization.
+     * @since 1.7.12
+     */
+    public abstract ObjectMapper getHumanReadableObjectMapper();
+
+    @Override
+    public void initialize()
+    {
+        this.writer = this.getObjectMapper().writer();
+        this.humanReadableWriter = this.getHumanReadableObjectMapper().writer();
+    }
+
     @Override
     public <T extends ActivityPubObject> String serialize(T object) throws ActivityPubException
     {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        this.serialize(byteArrayOutputStream, object);
-        return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+        return serialize(this.writer, object);
+    }
+
+    @Override
+    public <T extends ActivityPubObject> String serializeHumanReadable(T object) throws ActivityPubException
+    {
+        return serialize(this.humanReadableWriter, object);
+    }
+
+    private String serialize(ObjectWriter objectWriter, ActivityPubObject object) throws ActivityPubException
+    {
+        try {
+            return objectWriter.writeValueAsString(object);
+        } catch (IOException e) {
+            throw new ActivityPubException(
+                String.format("Error while serializing the stream to type [%s]", object.getClass()), e);
+        }
     }
 
     @Override
     public <T extends ActivityPubObject> void serialize(OutputStream stream, T object) throws ActivityPubException
     {
         try {
-            this.getObjectMapper().writeValue(stream, object);
+            this.writer.writeValue(stream, object);
         } catch (IOException e) {
             throw new ActivityPubException(
                 String.format("Error while serializing the stream to type [%s]", object.getClass()), e);
@@ -31,7 +31,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * An abstract Jackson Deserializer to deserialize references {@link ActivityPubObjectReference}.
@@ -50,14 +49,14 @@ public abstract class AbstractActivityPubObjectReferenceDeserializer
     public ActivityPubObjectReference<ActivityPubObject> deserialize(JsonParser jsonParser,
         DeserializationContext deserializationContext) throws IOException, JsonProcessingException
     {
-        ObjectMapper mapper = (ObjectMapper) jsonParser.getCodec();
-
+        // Read the values in the current context: it holds the configuration and injectable values of the parsing.
         ActivityPubObjectReference<ActivityPubObject> objectReference = new ActivityPubObjectReference<>();
         if (jsonParser.currentToken() == JsonToken.START_OBJECT) {
-            objectReference.setObject(mapper.readValue(jsonParser, ActivityPubObject.class));
+            objectReference.setObject(deserializationContext.readValue(jsonParser, ActivityPubObject.class));
         } else {
             try {
-                objectReference.setLink(this.transformURI(mapper.readValue(jsonParser, URI.class)));
+                objectReference.setLink(this.transformURI(
+                    deserializationContext.readValue(jsonParser, URI.class)));
             } catch (ActivityPubException e) {
                 throw new IOException("Error when deserializing link", e);
             }
@@ -53,6 +53,8 @@ public abstract class AbstractObjectMapperConfiguration implements ObjectMapperC
 
     private ObjectMapper objectMapper;
 
+    private ObjectMapper humanReadableObjectMapper;
+
     /**
      * @return the concrete implementation of serializer for {@link ActivityPubObjectReference}.
      */
@@ -88,17 +90,26 @@ public abstract class AbstractObjectMapperConfiguration implements ObjectMapperC
             // will be covered by the API: the specification is clear on the fact that anyone can extend it
             // as he/she wants
             .disable(FAIL_ON_UNKNOWN_PROPERTIES)
-            // Order properties alphabetically: easier to test the result.
+            // Order properties alphabetically: easier to test the result, and the stored content of an entity stays
+            // the same as long as the entity doesn't change. The order is computed only once per type.
             .enable(SORT_PROPERTIES_ALPHABETICALLY)
-            .enable(INDENT_OUTPUT)
             .registerModule(module);
+        // The indentation is only useful to humans: the output of the main mapper is sent over the wire and stored.
+        this.humanReadableObjectMapper = this.objectMapper.copy().enable(INDENT_OUTPUT);
     }
 
     /**
-     * @return a configured object mapper ready to be used.
+     * @return a configured object mapper ready to be used, with a compact output.
      */
+    @Override
     public ObjectMapper getObjectMapper()
     {
         return this.objectMapper;
     }
+
+    @Override
+    public ObjectMapper getHumanReadableObjectMapper()
+    {
+        return this.humanReadableObjectMapper;
+    }
 }
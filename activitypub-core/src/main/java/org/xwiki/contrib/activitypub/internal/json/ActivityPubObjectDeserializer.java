@@ -21,88 +21,155 @@ package org.xwiki.contrib.activitypub.internal.json;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
+import org.xwiki.contrib.activitypub.entities.Accept;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.Announce;
+import org.xwiki.contrib.activitypub.entities.Collection;
+import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.Document;
+import org.xwiki.contrib.activitypub.entities.Follow;
+import org.xwiki.contrib.activitypub.entities.Inbox;
+import org.xwiki.contrib.activitypub.entities.Like;
+import org.xwiki.contrib.activitypub.entities.Link;
+import org.xwiki.contrib.activitypub.entities.Mention;
+import org.xwiki.contrib.activitypub.entities.Note;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.entities.OrderedCollectionPage;
+import org.xwiki.contrib.activitypub.entities.Outbox;
+import org.xwiki.contrib.activitypub.entities.Page;
+import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.entities.Reject;
+import org.xwiki.contrib.activitypub.entities.Service;
 import org.xwiki.contrib.activitypub.entities.UnknownTypeObject;
+import org.xwiki.contrib.activitypub.entities.Update;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import static org.xwiki.contrib.activitypub.internal.json.AbstractActivityPubJsonParser.LOGGER_KEY;
 
 /**
  * A custom Jackson deserializer for {@link ActivityPubObject}. The main role of this deserializer is to check the type
- * property of a JSON to create the right objects. Some utility methods are provided to allow finding the POJO in
- * various packages.
+ * property of a JSON to create the right objects. The types are resolved with a registry of the concrete entities,
+ * computed once.
+ * <p>
+ * The object is read in a single pass: only the properties preceding the type are buffered, then they are replayed
+ * before the rest of the object, which is read directly from the parser.
  *
  * @version $Id$
  */
 public class ActivityPubObjectDeserializer extends JsonDeserializer<ActivityPubObject>
 {
+    private static final String TYPE_PROPERTY = "type";
+
     /**
-     * Packages where to look for POJOs.
+     * The concrete entities indexed by their type: any new concrete entity needs to be registered here to be parsed.
      */
-    private static final List<String> PACKAGES_ENTITIES = Arrays.asList(
-        "org.xwiki.contrib.activitypub.entities"
-    );
+    private static final Map<String, Class<? extends ActivityPubObject>> TYPES = Collections.unmodifiableMap(
+        Arrays.<Class<? extends ActivityPubObject>>asList(
+            Accept.class,
+            Announce.class,
+            Collection.class,
+            Create.class,
+            Document.class,
+            Follow.class,
+            Inbox.class,
+            Like.class,
+            Link.class,
+            Mention.class,
+            Note.class,
+            OrderedCollection.class,
+            OrderedCollectionPage.class,
+            Outbox.class,
+            Page.class,
+            Person.class,
+            Reject.class,
+            Service.class,
+            Update.class
+        ).stream().collect(Collectors.toMap(Class::getSimpleName, Function.identity())));
+
+    /**
+     * @param type the type of an entity, as returned by {@link ActivityPubObject#getType()}.
+     * @return the concrete entity class registered for the given type, or {@code null} if the type is unknown.
+     */
+    public static Class<? extends ActivityPubObject> getEntityClass(String type)
+    {
+        return TYPES.get(type);
+    }
 
     /**
      * {@inheritDoc}
      * <p>
      * Deserialize the current object based on the given "type" property. If the type attribute does not exist, or  if
-     * no class is found with the same type name, then the object is deserialized using {@link ActivityPubObject} as
+     * no class is found with the same type name, then the object is deserialized using {@link UnknownTypeObject} as
      * fallback.
      */
     @Override
     public ActivityPubObject deserialize(JsonParser jsonParser, DeserializationContext deserializationContext)
         throws IOException
     {
-        ObjectMapper mapper = (ObjectMapper) jsonParser.getCodec();
-        ObjectNode root = mapper.readTree(jsonParser);
-
-        Logger logger = (Logger) deserializationContext.findInjectableValue(LOGGER_KEY, null, null);
+        JsonToken token = jsonParser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = jsonParser.nextToken();
+        }
+        TokenBuffer buffer = new TokenBuffer(jsonParser, deserializationContext);
+        String type = null;
+        while (type == null && token == JsonToken.FIELD_NAME) {
+            String fieldName = jsonParser.getCurrentName();
+            token = jsonParser.nextToken();
+            if (TYPE_PROPERTY.equals(fieldName)) {
+                type = (token.isScalarValue()) ? jsonParser.getText() : "";
+            }
+            // The type is buffered too since it's also a property of the entities.
+            buffer.writeFieldName(fieldName);
+            buffer.copyCurrentStructure(jsonParser);
+            if (type == null) {
+                token = jsonParser.nextToken();
+            }
+        }
 
-        JsonNode type = root.get("type");
-        Class<? extends ActivityPubObject> instanceClass;
+        JsonParser objectParser;
         if (type != null) {
-            instanceClass = findClass(type.asText(), logger).orElse(UnknownTypeObject.class);
+            // Replay the buffered properties, then continue with the rest of the object.
+            jsonParser.clearCurrentToken();
+            objectParser = JsonParserSequence.createFlattened(false, buffer.asParser(jsonParser), jsonParser);
+        } else if (token == JsonToken.END_OBJECT) {
+            // The whole object has been buffered.
+            buffer.writeEndObject();
+            objectParser = buffer.asParser(jsonParser);
         } else {
-            instanceClass = UnknownTypeObject.class;
+            throw deserializationContext.wrongTokenException(jsonParser, ActivityPubObject.class,
+                JsonToken.START_OBJECT, "An ActivityPub object must be a JSON object.");
         }
-        return mapper.treeToValue(root, instanceClass);
+        objectParser.nextToken();
+        return deserializationContext.readValue(objectParser, findClass(type, deserializationContext));
     }
 
-    private Optional<Class<? extends ActivityPubObject>> findClass(String type, Logger logger)
+    private Class<? extends ActivityPubObject> findClass(String type, DeserializationContext deserializationContext)
+        throws IOException
     {
-        Class<? extends ActivityPubObject> classInPackage;
-        for (String packageExtension : PACKAGES_ENTITIES) {
-            classInPackage = findClassInPackage(packageExtension, type);
-            if (classInPackage != null) {
-                return Optional.of(classInPackage);
+        Class<? extends ActivityPubObject> result = UnknownTypeObject.class;
+        if (type != null) {
+            Class<? extends ActivityPubObject> typeClass = getEntityClass(type);
+            if (typeClass != null) {
+                result = typeClass;
+            } else {
+                Logger logger = (Logger) deserializationContext.findInjectableValue(LOGGER_KEY, null, null);
+                // The level is set to warn to ease the access to this information but this log level should be
+                // decreased to info or debug once the application gain in stability.
+                logger.warn("ActivityPub Object type [{}] not found.", type);
             }
         }
-
-        // The level is set to warn to ease the access to this information but this log level should be decreased to 
-        // info or debug once the application gain in stability.
-        logger.warn("ActivityPub Object type [{}] not found.", type);
-
-        return Optional.empty();
-    }
-
-    private Class<? extends ActivityPubObject> findClassInPackage(String packageName, String type)
-    {
-        String fqn = String.format("%s.%s", packageName, type);
-        try {
-            return (Class<? extends ActivityPubObject>) getClass().getClassLoader().loadClass(fqn);
-        } catch (ClassNotFoundException e) {
-            return null;
-        }
+        return result;
     }
 }
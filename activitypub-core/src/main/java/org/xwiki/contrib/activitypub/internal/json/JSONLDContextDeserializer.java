@@ -34,7 +34,6 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 
@@ -55,10 +54,8 @@ public class JSONLDContextDeserializer extends JsonDeserializer<JSONLDContext>
         throws IOException
     {
         JSONLDContext ret = new JSONLDContext();
-        ObjectMapper mapper = (ObjectMapper) jsonParser.getCodec();
-
         if (jsonParser.currentToken() == JsonToken.START_ARRAY) {
-            ArrayNode lst = mapper.readValue(jsonParser, ArrayNode.class);
+            ArrayNode lst = ctxt.readValue(jsonParser, ArrayNode.class);
             for (JsonNode e : lst) {
                 if (e instanceof TextNode) {
                     ret.add(URI.create(e.asText()));
@@ -67,7 +64,7 @@ public class JSONLDContextDeserializer extends JsonDeserializer<JSONLDContext>
                 }
             }
         } else {
-            ret.add(mapper.readValue(jsonParser, URI.class));
+            ret.add(ctxt.readValue(jsonParser, URI.class));
         }
         return ret;
     }
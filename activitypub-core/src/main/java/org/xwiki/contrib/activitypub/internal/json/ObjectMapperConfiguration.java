@@ -35,7 +35,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public interface ObjectMapperConfiguration
 {
     /**
-     * @return the actual object mapper to be used in a Jackson parser/serializer.
+     * @return the actual object mapper to be used in a Jackson parser/serializer: its output is compact, since it is
+     *         sent over the wire and stored.
      */
     ObjectMapper getObjectMapper();
+
+    /**
+     * @return an object mapper with the same configuration as {@link #getObjectMapper()}, except that its output is
+     *         indented to be read by humans, e.g. for debugging or in tests.
+     * @since 1.7.12
+     */
+    ObjectMapper getHumanReadableObjectMapper();
 }
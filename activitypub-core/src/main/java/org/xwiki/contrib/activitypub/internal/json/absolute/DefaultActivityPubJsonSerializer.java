@@ -48,4 +48,10 @@ public class DefaultActivityPubJsonSerializer extends AbstractActivityPubJsonSer
     {
         return this.objectMapperConfiguration.getObjectMapper();
     }
+
+    @Override
+    public ObjectMapper getHumanReadableObjectMapper()
+    {
+        return this.objectMapperConfiguration.getHumanReadableObjectMapper();
+    }
 }
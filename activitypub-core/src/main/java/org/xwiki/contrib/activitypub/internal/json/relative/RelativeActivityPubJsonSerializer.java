@@ -50,4 +50,10 @@ public class RelativeActivityPubJsonSerializer extends AbstractActivityPubJsonSe
     {
         return this.objectMapperConfiguration.getObjectMapper();
     }
+
+    @Override
+    public ObjectMapper getHumanReadableObjectMapper()
+    {
+        return this.objectMapperConfiguration.getHumanReadableObjectMapper();
+    }
 }
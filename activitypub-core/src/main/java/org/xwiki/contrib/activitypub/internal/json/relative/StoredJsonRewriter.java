@@ -0,0 +1,279 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.json.relative;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.entities.UnknownTypeObject;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.contrib.activitypub.internal.json.ActivityPubObjectDeserializer;
+import org.xwiki.contrib.activitypub.internal.json.ObjectMapperConfiguration;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+/**
+ * Rewrite the JSON of an entity as stored, where the local references are relative, to the JSON served to the other
+ * servers, where they are absolute, without parsing it to an {@link ActivityPubObject}: the tokens are copied one by
+ * one and only the values of the {@link ActivityPubObjectReference} properties are transformed, the properties being
+ * found by introspecting the class of the entity. The identifier of the entity, which is not stored in its content, is
+ * inserted at its place in the alphabetical order of the properties.
+ * <p>
+ * The objects expanded in the references are the only parts read as trees, since their identifier and their type are
+ * only known once read. Like the serializer of the references, the objects with an identifier are written as links.
+ * The objects without identifier, which the serializer would store, are written expanded.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = StoredJsonRewriter.class)
+@Singleton
+public class StoredJsonRewriter
+{
+    /**
+     * The package of the entities: their properties which are not ActivityPub objects, such as the endpoints or the
+     * public key of the actors, are beans of this package too.
+     */
+    private static final String ENTITIES_PACKAGE = ActivityPubObject.class.getPackage().getName();
+
+    private static final String ID_PROPERTY = "id";
+
+    private static final String TYPE_PROPERTY = "type";
+
+    @Inject
+    private ObjectMapperConfiguration objectMapperConfiguration;
+
+    @Inject
+    private InternalURINormalizer internalURINormalizer;
+
+    private final Map<Class<?>, BeanProperties> properties = new ConcurrentHashMap<>();
+
+    /**
+     * The properties of a class which need to be handled when rewriting.
+     */
+    private static final class BeanProperties
+    {
+        private final Set<String> references;
+
+        private final Map<String, Class<?>> beans;
+
+        BeanProperties(Set<String> references, Map<String, Class<?>> beans)
+        {
+            this.references = references;
+            this.beans = beans;
+        }
+    }
+
+    /**
+     * Check if the entities of the given type are served as stored: the actors are completed when served and the
+     * items of the collections are stored separately, so they are not.
+     *
+     * @param type the type of the entity, as returned by {@link ActivityPubObject#getType()}.
+     * @return {@code true} if the stored JSON of the entities of this type can be rewritten with
+     *     {@link #write(String, String, URI, OutputStream)}.
+     */
+    public boolean isSupported(String type)
+    {
+        Class<? extends ActivityPubObject> entityClass = findClass(type);
+        return !UnknownTypeObject.class.equals(entityClass) && !AbstractActor.class.isAssignableFrom(entityClass)
+            && !OrderedCollection.class.isAssignableFrom(entityClass);
+    }
+
+    /**
+     * Write the absolute JSON of a stored entity.
+     *
+     * @param content the stored JSON of the entity, with relative local references.
+     * @param type the type of the entity.
+     * @param id the absolute identifier of the entity.
+     * @param output the stream where to write the entity: it is closed once the entity is written.
+     * @throws ActivityPubException in case of error when reading the stored JSON or when writing the entity.
+     */
+    public void write(String content, String type, URI id, OutputStream output) throws ActivityPubException
+    {
+        ObjectMapper objectMapper = this.objectMapperConfiguration.getObjectMapper();
+        try (JsonParser parser = objectMapper.getFactory().createParser(content);
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8))
+        {
+            if (objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+                generator.useDefaultPrettyPrinter();
+            }
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ActivityPubException(String.format("The stored content of [%s] is not an object.", id));
+            }
+            copyObject(parser, generator, findClass(type), id);
+        } catch (IOException e) {
+            throw new ActivityPubException(String.format("Error while writing the stored entity [%s].", id), e);
+        }
+    }
+
+    /**
+     * Copy the object starting at the current token of the parser.
+     *
+     * @param id the identifier to insert in the object, or {@code null} to keep the one of the object.
+     */
+    private void copyObject(JsonParser parser, JsonGenerator generator, Class<?> objectClass, URI id)
+        throws IOException
+    {
+        BeanProperties beanProperties = getProperties(objectClass);
+        boolean idWritten = id == null;
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (!idWritten && name.compareTo(ID_PROPERTY) >= 0) {
+                generator.writeStringField(ID_PROPERTY, id.toASCIIString());
+                idWritten = true;
+            }
+            if (id != null && ID_PROPERTY.equals(name)) {
+                parser.skipChildren();
+            } else {
+                generator.writeFieldName(name);
+                if (beanProperties.references.contains(name)) {
+                    copyValues(parser, generator, null);
+                } else if (beanProperties.beans.containsKey(name)) {
+                    copyValues(parser, generator, beanProperties.beans.get(name));
+                } else {
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+        }
+        if (!idWritten) {
+            generator.writeStringField(ID_PROPERTY, id.toASCIIString());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Copy a value, or each value of an array, of a property holding references or beans.
+     *
+     * @param beanClass the class of the beans, or {@code null} for references.
+     */
+    private void copyValues(JsonParser parser, JsonGenerator generator, Class<?> beanClass) throws IOException
+    {
+        if (parser.currentToken() == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                copyValue(parser, generator, beanClass);
+            }
+            generator.writeEndArray();
+        } else {
+            copyValue(parser, generator, beanClass);
+        }
+    }
+
+    private void copyValue(JsonParser parser, JsonGenerator generator, Class<?> beanClass) throws IOException
+    {
+        JsonToken token = parser.currentToken();
+        if (beanClass == null && token == JsonToken.VALUE_STRING) {
+            generator.writeString(transformURI(parser.getText()));
+        } else if (token == JsonToken.START_OBJECT
+            && (beanClass == null || ActivityPubObject.class.isAssignableFrom(beanClass)))
+        {
+            copyExpandedObject(parser, generator);
+        } else if (token == JsonToken.START_OBJECT) {
+            copyObject(parser, generator, beanClass, null);
+        } else {
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    private void copyExpandedObject(JsonParser parser, JsonGenerator generator) throws IOException
+    {
+        JsonNode node = parser.readValueAsTree();
+        if (node.path(ID_PROPERTY).isTextual()) {
+            generator.writeString(node.get(ID_PROPERTY).asText());
+        } else {
+            try (JsonParser nodeParser = node.traverse(parser.getCodec())) {
+                nodeParser.nextToken();
+                copyObject(nodeParser, generator, findClass(node.path(TYPE_PROPERTY).asText()), null);
+            }
+        }
+    }
+
+    private String transformURI(String value) throws IOException
+    {
+        try {
+            return this.internalURINormalizer.retrieveAbsoluteURI(new URI(value)).toASCIIString();
+        } catch (URISyntaxException | ActivityPubException e) {
+            throw new IOException(String.format("Error when rewriting the link [%s]", value), e);
+        }
+    }
+
+    /**
+     * Find the class of an entity with the registry of the deserializer of the entities.
+     */
+    private Class<? extends ActivityPubObject> findClass(String type)
+    {
+        Class<? extends ActivityPubObject> result = ActivityPubObjectDeserializer.getEntityClass(type);
+        return (result != null) ? result : UnknownTypeObject.class;
+    }
+
+    private BeanProperties getProperties(Class<?> beanClass)
+    {
+        return this.properties.computeIfAbsent(beanClass, this::introspect);
+    }
+
+    private BeanProperties introspect(Class<?> beanClass)
+    {
+        ObjectMapper objectMapper = this.objectMapperConfiguration.getObjectMapper();
+        Set<String> references = new HashSet<>();
+        Map<String, Class<?>> beans = new HashMap<>();
+        for (BeanPropertyDefinition property : objectMapper.getSerializationConfig()
+            .introspect(objectMapper.constructType(beanClass)).findProperties())
+        {
+            JavaType type = property.getPrimaryType();
+            if (type.isContainerType() && type.getContentType() != null) {
+                type = type.getContentType();
+            }
+            Class<?> rawClass = type.getRawClass();
+            if (ActivityPubObjectReference.class.isAssignableFrom(rawClass)) {
+                references.add(property.getName());
+            } else if (rawClass.getName().startsWith(ENTITIES_PACKAGE) && !rawClass.isEnum()) {
+                beans.put(property.getName(), rawClass);
+            }
+        }
+        return new BeanProperties(Collections.unmodifiableSet(references), Collections.unmodifiableMap(beans));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link SerializedActivity}.
+ *
+ * @version $Id$
+ */
+class SerializedActivityTest
+{
+    @Test
+    void contentAndDigest()
+    {
+        SerializedActivity serializedActivity = new SerializedActivity("{}");
+        assertArrayEquals("{}".getBytes(StandardCharsets.UTF_8), serializedActivity.getContent());
+        assertEquals("{}", serializedActivity.getContentAsString());
+        assertEquals("RBNvo1WzZ4oRRq0W9+hknpT7T8If536DEMBg9hyq/4o=", serializedActivity.getDigest());
+    }
+}
@@ -56,7 +56,7 @@ public class AcceptTest extends AbstractEntityTest
                                 new ProxyActor(new URI("https://chatty.example/ben/"))
                             ));
         String expectedJson = this.readResource("accept/accept1.json");
-        assertEquals(expectedJson, this.serializer.serialize(accept));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(accept));
     }
 
     @Test
@@ -77,7 +77,7 @@ public class AcceptTest extends AbstractEntityTest
                                 new ProxyActor(new URI("https://chatty.example/ben/"))
                             ));
         String expectedJson = this.readResource("accept/accept1.json");
-        assertEquals(expectedJson, this.serializer.serialize(accept));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(accept));
     }
 
     @Test
@@ -64,4 +64,37 @@ class ActivityPubObjectTest extends AbstractEntityTest
         assertEquals(Level.WARN, this.logCapture.getLogEvent(0).getLevel());
         assertEquals("ActivityPub Object type [Wrong] not found.", this.logCapture.getMessage(0));
     }
+
+    @Test
+    void parseWithoutType() throws Exception
+    {
+        ActivityPubObject expected = new UnknownTypeObject()
+            .setId(URI.create("http://localhost:8080/xwiki/activitypub/Note/XWiki.Foo-note"));
+        String json = "{\"id\":\"http://localhost:8080/xwiki/activitypub/Note/XWiki.Foo-note\",\"name\":null}";
+
+        assertEquals(expected, this.parser.parse(json));
+    }
+
+    @Test
+    void parseWithNotConcreteType() throws Exception
+    {
+        ActivityPubObject expected = new UnknownTypeObject().setType("AbstractActivity")
+            .setId(URI.create("http://localhost:8080/xwiki/activitypub/Note/XWiki.Foo-note"));
+        String json = "{\"type\":\"AbstractActivity\",\"id\":"
+            + "\"http://localhost:8080/xwiki/activitypub/Note/XWiki.Foo-note\"}";
+
+        assertEquals(expected, this.parser.parse(json));
+        assertEquals(1, this.logCapture.size());
+        assertEquals(Level.WARN, this.logCapture.getLogEvent(0).getLevel());
+        assertEquals("ActivityPub Object type [AbstractActivity] not found.", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void parseNotAnObject()
+    {
+        ActivityPubException e = assertThrows(ActivityPubException.class,
+            () -> this.parser.parse("\"http://localhost:8080/xwiki/activitypub/Note/XWiki.Foo-note\""));
+        assertEquals("Error while parsing request with type [class org.xwiki.contrib.activitypub.entities."
+            + "ActivityPubObject].", e.getMessage());
+    }
 }
@@ -56,7 +56,7 @@ public class AnnounceTest extends AbstractEntityTest
                         new ProxyActor(new URI("https://chatty.example/ben/"))
                 ));
         String expectedJson = this.readResource("announce/announce1.json");
-        assertEquals(expectedJson, this.serializer.serialize(announce));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(announce));
     }
 
     @Test
@@ -77,7 +77,7 @@ public class AnnounceTest extends AbstractEntityTest
                         new ProxyActor(new URI("https://chatty.example/ben/"))
                 ));
         String expectedJson = this.readResource("announce/announce1.json");
-        assertEquals(expectedJson, this.serializer.serialize(announce));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(announce));
     }
 
     @Test
@@ -97,7 +97,7 @@ public class CollectionTest extends AbstractEntityTest
                                                        .addItem(new Accept().setId(URI.create("http://test/accept/2")));
 
         String expectedSerialization = this.readResource("collection/collection1.json");
-        String serialize = this.serializer.serialize(collection);
+        String serialize = this.serializer.serializeHumanReadable(collection);
             assertEquals(expectedSerialization, serialize);
     }
 
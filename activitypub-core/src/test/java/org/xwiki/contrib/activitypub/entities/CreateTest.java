@@ -56,7 +56,7 @@ public class CreateTest extends AbstractEntityTest
                                 new ProxyActor(new URI("https://chatty.example/ben/"))
                             ));
         String expectedJson = this.readResource("create/create1.json");
-        assertEquals(expectedJson, this.serializer.serialize(create));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(create));
     }
 
     @Test
@@ -77,7 +77,7 @@ public class CreateTest extends AbstractEntityTest
                                 new ProxyActor(new URI("https://chatty.example/ben/"))
                             ));
         String expectedJson = this.readResource("create/create1.json");
-        assertEquals(expectedJson, this.serializer.serialize(create));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(create));
     }
 
     @Test
@@ -45,7 +45,7 @@ public class FollowTest extends AbstractEntityTest
     {
         Follow follow = this.initFollow();
         String expectedJson = this.readResource("follow/follow1.json");
-        assertEquals(expectedJson, this.serializer.serialize(follow));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(follow));
     }
 
     @Test
@@ -53,7 +53,7 @@ public class FollowTest extends AbstractEntityTest
     {
         Follow follow = this.initFollow();
         String expectedJson = this.readResource("follow/follow1.json");
-        assertEquals(expectedJson, this.serializer.serialize(follow));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(follow));
     }
 
     @Test
@@ -47,7 +47,7 @@ public class InboxTest extends AbstractEntityTest
         inbox.addItem(new Accept().setId(URI.create("http://test/create/1")));
 
         String expectedSerialization = this.readResource("inbox/inbox1.json");
-        assertEquals(expectedSerialization, this.serializer.serialize(inbox));
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(inbox));
     }
 
     @Test
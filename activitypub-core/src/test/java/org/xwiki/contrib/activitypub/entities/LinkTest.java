@@ -41,7 +41,7 @@ class LinkTest extends AbstractEntityTest
         Link inbox = new Link().setId(new URI(LINK_ID));
 
         String expectedSerialization = this.readResource("link/link1.json");
-        assertEquals(expectedSerialization, this.serializer.serialize(inbox));
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(inbox));
     }
 
     @Test
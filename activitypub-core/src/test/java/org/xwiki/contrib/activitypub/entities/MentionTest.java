@@ -41,7 +41,7 @@ class MentionTest extends AbstractEntityTest
         Mention inbox = new Mention().setId(new URI(MENTION_ID));
 
         String expectedSerialization = this.readResource("mention/mention1.json");
-        assertEquals(expectedSerialization, this.serializer.serialize(inbox));
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(inbox));
     }
 
     @Test
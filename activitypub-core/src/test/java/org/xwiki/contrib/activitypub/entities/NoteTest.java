@@ -26,10 +26,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.xwiki.test.junit5.LogCaptureExtension;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import ch.qos.logback.classic.Level;
 
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.xwiki.test.LogLevel.DEBUG;
 
 /**
@@ -49,7 +54,20 @@ class NoteTest extends AbstractEntityTest
         Note note = initializeNote();
 
         String expectedSerialization = this.readResource("note/note1.json");
-        assertEquals(expectedSerialization, this.serializer.serialize(note));
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(note));
+    }
+
+    @Test
+    void compactSerialization() throws Exception
+    {
+        Note note = initializeNote();
+
+        String expectedSerialization = this.readResource("note/note1.json");
+        String serialization = this.serializer.serialize(note);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(objectMapper.readTree(expectedSerialization), objectMapper.readTree(serialization));
+        assertFalse(serialization.contains("\n"));
+        assertTrue(serialization.length() < expectedSerialization.length());
     }
 
     @Test
@@ -65,6 +83,8 @@ class NoteTest extends AbstractEntityTest
         assertEquals(expectedNote, actual0);
         ActivityPubObject actual1 = this.parser.parse(json);
         assertEquals(expectedNote, actual1);
+        // The parsing relies on readers built once: the shared mapper is never modified.
+        assertNull(this.parser.getObjectMapper().getInjectableValues());
     }
 
     @Test
@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.entities;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test of {@link OrderedCollectionPage}.
+ *
+ * @version $Id$
+ */
+public class OrderedCollectionPageTest extends AbstractEntityTest
+{
+    private static final String OUTBOX_ID = "http://localhost:8080/xwiki/activitypub/Outbox/XWiki.Foo-outbox";
+
+    private <T extends ActivityPubObject> ActivityPubObjectReference<T> link(String uri)
+    {
+        return new ActivityPubObjectReference<T>().setLink(URI.create(uri));
+    }
+
+    @Test
+    void serialization() throws Exception
+    {
+        OrderedCollectionPage<AbstractActivity> page = new OrderedCollectionPage<AbstractActivity>()
+            .setPartOf(link(OUTBOX_ID))
+            .setNext(link(OUTBOX_ID + "?page=3"))
+            .setPrev(link(OUTBOX_ID + "?page=1"))
+            .setStartIndex(2);
+        page.setTotalItems(5);
+        page.setId(URI.create(OUTBOX_ID + "?page=2"));
+        page.addItem(new Accept().setId(URI.create("http://test/create/1")));
+        page.addItem(new Follow().setId(URI.create("http://test/follow/2")));
+
+        String expectedSerialization = this.readResource("orderedcollectionpage/orderedcollectionpage1.json");
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(page));
+    }
+
+    @Test
+    void parsing() throws Exception
+    {
+        OrderedCollectionPage<AbstractActivity> expectedPage = new OrderedCollectionPage<AbstractActivity>()
+            .setPartOf(link(OUTBOX_ID))
+            .setNext(link(OUTBOX_ID + "?page=3"))
+            .setPrev(link(OUTBOX_ID + "?page=1"))
+            .setStartIndex(2);
+        expectedPage.setId(URI.create(OUTBOX_ID + "?page=2"));
+        expectedPage.setOrderedItems(Arrays.asList(link("http://test/create/1"), link("http://test/follow/2")));
+
+        String json = this.readResource("orderedcollectionpage/orderedcollectionpage1.json");
+        OrderedCollectionPage<AbstractActivity> page = this.parser.parse(json, OrderedCollectionPage.class);
+        assertEquals(expectedPage, page);
+        assertEquals(expectedPage, this.parser.parse(json));
+        // the total number of items is never parsed: it's computed from the items.
+        assertEquals(2, page.getTotalItems());
+    }
+}
@@ -45,7 +45,7 @@ public class OutboxTest extends AbstractEntityTest
         outbox.addItem(new Accept().setId(URI.create("http://test/create/1")));
 
         String expectedSerialization = this.readResource("outbox/outbox1.json");
-        assertEquals(expectedSerialization, this.serializer.serialize(outbox));
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(outbox));
     }
 
     @Test
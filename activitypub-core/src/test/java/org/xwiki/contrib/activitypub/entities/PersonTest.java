@@ -52,7 +52,7 @@ public class PersonTest extends AbstractEntityTest
                             .setId(new URI("http://www.xwiki.org/wiki/activitypub/Foo"))
                             .setName("XWiki.Foo");
         String expectedPerson = this.readResource("person/person1.json");
-        String serializedPerson = this.serializer.serialize(person);
+        String serializedPerson = this.serializer.serializeHumanReadable(person);
         assertEquals(expectedPerson, serializedPerson);
     }
 
@@ -114,6 +114,7 @@ public class PersonTest extends AbstractEntityTest
         assertEquals(2, obtainedPerson.getContext().size());
         assertEquals(URI.create("https://www.w3.org/ns/activitystreams"), obtainedPerson.getContext().get(0));
         assertEquals(URI.create("https://w3id.org/security/v1"), obtainedPerson.getContext().get(1));
+        assertEquals(URI.create("http://mastodon.local/inbox"), obtainedPerson.getEndpoints().getSharedInbox());
         assertEquals(1, this.logCapture.size());
         assertEquals("The JsonNode [{\"manuallyApprovesFollowers\":\"as:manuallyApprovesFollowers\"," 
                          + "\"toot\":\"http://joinmastodon.org/ns#\"," 
@@ -62,7 +62,7 @@ public class ProxyActorTest extends AbstractEntityTest
             alissa.getProxyActor()));
 
         String expectedSerialization = this.readResource("note/note2.json");
-        assertEquals(expectedSerialization, this.serializer.serialize(note));
+        assertEquals(expectedSerialization, this.serializer.serializeHumanReadable(note));
     }
 
     @Test
@@ -56,7 +56,7 @@ public class RejectTest extends AbstractEntityTest
                                 new ProxyActor(new URI("https://chatty.example/ben/"))
                             ));
         String expectedJson = this.readResource("reject/reject1.json");
-        assertEquals(expectedJson, this.serializer.serialize(reject));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(reject));
     }
 
     @Test
@@ -77,7 +77,7 @@ public class RejectTest extends AbstractEntityTest
                                 new ProxyActor(new URI("https://chatty.example/ben/"))
                             ));
         String expectedJson = this.readResource("reject/reject1.json");
-        assertEquals(expectedJson, this.serializer.serialize(reject));
+        assertEquals(expectedJson, this.serializer.serializeHumanReadable(reject));
     }
 
     @Test
@@ -25,16 +25,24 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.lang3.time.DateUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.contrib.activitypub.ActivityPubClient;
@@ -45,6 +53,8 @@ import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.Accept;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Endpoints;
+import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.entities.Page;
 import org.xwiki.contrib.activitypub.entities.Person;
@@ -63,9 +73,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -105,11 +119,24 @@ class DefaultActivityPubObjectReferenceResolverTest
     @MockComponent
     private EntityReferenceSerializer<String> serializer;
 
+    @MockComponent
+    private RemoteObjectRefresher refresher;
+
     @BeforeEach
     public void setup() throws Exception
     {
         when(this.activityPubStorageProvider.get()).thenReturn(this.activityPubStorage);
         when(this.activityPubClientProvider.get()).thenReturn(this.activityPubClient);
+        // rely on the default implementation to retrieve the entities one by one with the stubbed retrieveEntity
+        doCallRealMethod().when(this.activityPubStorage).retrieveEntities(any());
+    }
+
+    private RemoteObjectRefresher.Refresh getScheduledRefresh(URI link)
+    {
+        ArgumentCaptor<RemoteObjectRefresher.Refresh> captor =
+            ArgumentCaptor.forClass(RemoteObjectRefresher.Refresh.class);
+        verify(this.refresher).schedule(eq(link), captor.capture());
+        return captor.getValue();
     }
 
     @Test
@@ -135,6 +162,7 @@ class DefaultActivityPubObjectReferenceResolverTest
         ActivityPubObject actual = this.resolver.resolveReference(new ActivityPubObjectReference<>().setObject(person));
 
         assertEquals(actual, person);
+        assertThrows(ActivityPubException.class, () -> getScheduledRefresh(URI.create("http://person/1")).run());
         verify(httpMethod).releaseConnection();
         verify(this.activityPubStorage, never()).storeEntity(any());
     }
@@ -190,6 +218,71 @@ class DefaultActivityPubObjectReferenceResolverTest
         assertEquals("Error when retrieving the ActivityPub information from [http://test/create/1]", e.getMessage());
     }
 
+    @Test
+    void resolveReferenceConcurrentRetrievalsAreCoalesced() throws Exception
+    {
+        Accept accept = new Accept();
+        URI uri = URI.create("http://test/create/1");
+        HttpMethod hm = mock(HttpMethod.class);
+        when(hm.getResponseBodyAsString()).thenReturn("{accept}");
+        when(this.activityPubJsonParser.parse("{accept}")).thenReturn(accept);
+        Accept stored = new Accept();
+        // Nothing is stored when the resolutions start, the retrieved object is stored once the request is over.
+        when(this.activityPubStorage.retrieveEntity(uri)).thenReturn(null, null, stored);
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.activityPubClient.get(uri)).then(invocation -> {
+            fetching.countDown();
+            release.await(1, TimeUnit.MINUTES);
+            return hm;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ActivityPubObject> first = executor.submit(
+                () -> this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(uri)));
+            fetching.await(1, TimeUnit.MINUTES);
+            Future<ActivityPubObject> second = executor.submit(
+                () -> this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(uri)));
+            // Let the second resolution join the retrieval in progress.
+            Thread.sleep(100);
+            release.countDown();
+
+            assertSame(accept, first.get(1, TimeUnit.MINUTES));
+            // the second resolution gets its own instance of the retrieved object from the storage.
+            assertSame(stored, second.get(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(this.activityPubClient, times(1)).get(uri);
+        verify(this.activityPubStorage, times(1)).storeEntity(accept);
+    }
+
+    @Test
+    void resolveReferences() throws Exception
+    {
+        URI storedURI = URI.create("http://test/create/1");
+        URI missingURI = URI.create("http://test/create/2");
+        Accept stored = new Accept().setId(storedURI);
+        Accept resolved = new Accept();
+        ActivityPubObjectReference<ActivityPubObject> storedReference =
+            new ActivityPubObjectReference<>().setLink(storedURI);
+        ActivityPubObjectReference<ActivityPubObject> missingReference =
+            new ActivityPubObjectReference<>().setLink(missingURI);
+        ActivityPubObjectReference<ActivityPubObject> resolvedReference =
+            new ActivityPubObjectReference<>().setObject(resolved);
+        doReturn(Arrays.asList(stored, null)).when(this.activityPubStorage)
+            .retrieveEntities(Arrays.asList(storedURI, missingURI));
+        when(this.activityPubClient.get(missingURI)).thenThrow(new IOException(""));
+
+        assertEquals(Arrays.asList(stored, null, resolved),
+            this.resolver.resolveReferences(Arrays.asList(storedReference, missingReference, resolvedReference)));
+        assertSame(stored, storedReference.getObject());
+        verify(this.activityPubStorage).retrieveEntities(any());
+        verify(this.activityPubStorage, never()).retrieveEntity(storedURI);
+        verify(this.activityPubClient, never()).get(storedURI);
+    }
+
     @Test
     void resolveTargetsWithComputedTargets() throws Exception
     {
@@ -250,6 +343,85 @@ class DefaultActivityPubObjectReferenceResolverTest
             this.resolver.resolveTargets(activityPubObject));
     }
 
+    @Test
+    void resolveTargetInboxesToFollowers() throws Exception
+    {
+        URI followersURI = URI.create("http://server/followers");
+        when(this.activityPubStorage.retrieveEntity(followersURI)).thenReturn(mock(OrderedCollection.class));
+        ActivityPubObject activityPubObject = mock(ActivityPubObject.class);
+        when(activityPubObject.getTo()).thenReturn(Collections.singletonList(new ProxyActor(followersURI)));
+        when(activityPubObject.getComputedTargets()).thenReturn(new LinkedHashSet<>(Arrays.asList(
+            createActor("http://remote1/users/1", "http://remote1/inbox"),
+            createActor("http://remote1/users/2", "http://remote1/inbox"),
+            createActor("http://remote2/users/1", null))));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList(URI.create("http://remote1/inbox"),
+            URI.create("http://remote2/users/1/inbox"))), this.resolver.resolveTargetInboxes(activityPubObject));
+    }
+
+    @Test
+    void resolveTargetInboxesToFollowersInCc() throws Exception
+    {
+        URI followersURI = URI.create("http://server/followers");
+        when(this.activityPubStorage.retrieveEntity(followersURI)).thenReturn(mock(OrderedCollection.class));
+        Person actor = createActor("http://remote1/users/1", "http://remote1/inbox");
+        when(this.activityPubStorage.retrieveEntity(actor.getId())).thenReturn(actor);
+        ActivityPubObject activityPubObject = mock(ActivityPubObject.class);
+        when(activityPubObject.getTo()).thenReturn(Collections.singletonList(actor.getProxyActor()));
+        when(activityPubObject.getCc()).thenReturn(Collections.singletonList(new ProxyActor(followersURI)));
+        when(activityPubObject.getComputedTargets()).thenReturn(new LinkedHashSet<>(Arrays.asList(actor,
+            createActor("http://remote1/users/2", "http://remote1/inbox"))));
+
+        assertEquals(Collections.singleton(URI.create("http://remote1/inbox")),
+            this.resolver.resolveTargetInboxes(activityPubObject));
+    }
+
+    @Test
+    void resolveTargetInboxesToActors() throws Exception
+    {
+        Person actor1 = createActor("http://remote1/users/1", "http://remote1/inbox");
+        Person actor2 = createActor("http://remote1/users/2", "http://remote1/inbox");
+        when(this.activityPubStorage.retrieveEntity(actor1.getId())).thenReturn(actor1);
+        when(this.activityPubStorage.retrieveEntity(actor2.getId())).thenReturn(actor2);
+        ActivityPubObject activityPubObject = mock(ActivityPubObject.class);
+        when(activityPubObject.getTo()).thenReturn(Arrays.asList(actor1.getProxyActor(), actor2.getProxyActor()));
+        when(activityPubObject.getComputedTargets()).thenReturn(new LinkedHashSet<>(Arrays.asList(actor1, actor2)));
+
+        // the object is not addressed publicly or to a collection: the shared inboxes are not used.
+        assertEquals(new LinkedHashSet<>(Arrays.asList(URI.create("http://remote1/users/1/inbox"),
+            URI.create("http://remote1/users/2/inbox"))), this.resolver.resolveTargetInboxes(activityPubObject));
+    }
+
+    @Test
+    void resolveTargetInboxesWithExpandedInbox() throws Exception
+    {
+        Person actor1 = createActor("http://remote1/users/1", null);
+        actor1.setInbox(new ActivityPubObjectReference<Inbox>()
+            .setObject(new Inbox().setId(URI.create("http://remote1/users/1/expanded-inbox"))));
+        Person actor2 = createActor("http://remote1/users/2", null);
+        actor2.setInbox(null);
+        Person actor3 = createActor("http://remote1/users/3", null);
+        actor3.setInbox(new ActivityPubObjectReference<Inbox>().setObject(new Inbox()));
+        ActivityPubObject activityPubObject = mock(ActivityPubObject.class);
+        when(activityPubObject.getComputedTargets())
+            .thenReturn(new LinkedHashSet<>(Arrays.asList(actor1, actor2, actor3)));
+
+        // the targets without inbox are skipped.
+        assertEquals(Collections.singleton(URI.create("http://remote1/users/1/expanded-inbox")),
+            this.resolver.resolveTargetInboxes(activityPubObject));
+    }
+
+    private Person createActor(String id, String sharedInbox)
+    {
+        Person person = new Person()
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create(id + "/inbox")))
+            .setId(URI.create(id));
+        if (sharedInbox != null) {
+            person.setEndpoints(new Endpoints().setSharedInbox(URI.create(sharedInbox)));
+        }
+        return person;
+    }
+
     @Test
     void shouldBeRefreshed()
     {
@@ -281,6 +453,8 @@ class DefaultActivityPubObjectReferenceResolverTest
         person.setId(uri);
         Date twoDaysAgo = DateUtils.addDays(new Date(), -2);
         person.setLastUpdated(twoDaysAgo);
+        Person refreshed = new Person();
+        refreshed.setId(uri);
 
         HttpMethod hm = mock(HttpMethod.class);
         when(hm.getResponseBodyAsString()).thenReturn("{1}");
@@ -288,13 +462,19 @@ class DefaultActivityPubObjectReferenceResolverTest
         ActivityPubObjectReference<ActivityPubObject> reference = new ActivityPubObjectReference<>().setLink(uri);
         when(this.activityPubStorage.retrieveEntity(uri)).thenReturn(person);
         when(this.activityPubClient.get(uri)).thenReturn(hm);
-        when(this.activityPubJsonParser.parse("{1}")).thenReturn(person);
+        when(this.activityPubJsonParser.parse("{1}")).thenReturn(refreshed);
         when(this.dateProvider.isElapsed(any(), any(), anyInt())).thenReturn(true);
+
+        // The stored version is returned without waiting for the refresh.
         assertSame(person, this.resolver.resolveReference(reference));
         assertSame(person, reference.getObject());
         verify(this.activityPubStorage).retrieveEntity(uri);
+        verify(this.activityPubClient, never()).get(uri);
+
+        getScheduledRefresh(uri).run();
         verify(this.activityPubClient).get(uri);
-        verify(this.activityPubStorage).storeEntity(person);
+        verify(this.activityPubStorage).storeEntity(refreshed);
+        assertSame(person, reference.getObject());
     }
 
     @Test
@@ -306,21 +486,77 @@ class DefaultActivityPubObjectReferenceResolverTest
         Date twoDaysAgo = DateUtils.addDays(new Date(), -2);
         person.setLastUpdated(twoDaysAgo);
 
-        HttpMethod hm = mock(HttpMethod.class);
-        when(hm.getResponseBodyAsString()).thenReturn("{1}");
-
         ActivityPubObjectReference<ActivityPubObject> reference = new ActivityPubObjectReference<>().setLink(uri);
         when(this.activityPubStorage.retrieveEntity(uri)).thenReturn(person);
         when(this.activityPubClient.get(uri)).thenThrow(new IOException("error"));
-        when(this.activityPubJsonParser.parse("{1}")).thenReturn(person);
         when(this.dateProvider.isElapsed(any(), any(), anyInt())).thenReturn(true);
         assertSame(person, this.resolver.resolveReference(reference));
         assertSame(person, reference.getObject());
         verify(this.activityPubStorage).retrieveEntity(uri);
+
+        assertThrows(IOException.class, () -> getScheduledRefresh(uri).run());
         verify(this.activityPubClient).get(uri);
         verify(this.activityPubStorage, never()).storeEntity(any());
     }
 
+    @Test
+    void resolveReferenceNeedRefreshNotModified() throws Exception
+    {
+        URI uri = URI.create("http://test/person/1");
+        Person person = new Person().setRemoteETag("\"1\"");
+        person.setId(uri);
+        Date twoDaysAgo = DateUtils.addDays(new Date(), -2);
+        person.setLastUpdated(twoDaysAgo);
+        Person touched = new Person();
+        touched.setId(uri);
+
+        HttpMethod hm = mock(HttpMethod.class);
+        when(hm.getStatusCode()).thenReturn(304);
+        when(this.activityPubStorage.retrieveEntity(uri)).thenReturn(person, touched);
+        when(this.activityPubClient.get(uri, "\"1\"", null)).thenReturn(hm);
+        when(this.dateProvider.isElapsed(any(), any(), anyInt())).thenReturn(true);
+
+        assertSame(person, this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(uri)));
+        getScheduledRefresh(uri).run();
+
+        // The instance returned to the caller is left untouched.
+        assertSame(twoDaysAgo, person.getLastUpdated());
+        verify(this.activityPubStorage).touchEntity(uri);
+        verify(this.activityPubStorage, times(2)).retrieveEntity(uri);
+        verify(hm).releaseConnection();
+        verify(hm, never()).getResponseBodyAsString();
+        verify(this.activityPubClient, never()).checkAnswer(hm);
+        verify(this.activityPubStorage, never()).storeEntity(any());
+    }
+
+    @Test
+    void resolveReferenceNeedRefreshModified() throws Exception
+    {
+        URI uri = URI.create("http://test/person/1");
+        Person person = new Person().setRemoteLastModified("Fri, 16 Oct 2026 10:00:00 GMT");
+        person.setId(uri);
+        person.setLastUpdated(DateUtils.addDays(new Date(), -2));
+        Person refreshed = new Person();
+
+        HttpMethod hm = mock(HttpMethod.class);
+        when(hm.getStatusCode()).thenReturn(200);
+        when(hm.getResponseBodyAsString()).thenReturn("{1}");
+        when(hm.getResponseHeader("ETag")).thenReturn(new Header("ETag", "\"2\""));
+        when(hm.getResponseHeader("Last-Modified")).thenReturn(new Header("Last-Modified", "Sat, 17 Oct 2026"));
+        when(this.activityPubStorage.retrieveEntity(uri)).thenReturn(person);
+        when(this.activityPubClient.get(uri, null, "Fri, 16 Oct 2026 10:00:00 GMT")).thenReturn(hm);
+        when(this.activityPubJsonParser.parse("{1}")).thenReturn(refreshed);
+        when(this.dateProvider.isElapsed(any(), any(), anyInt())).thenReturn(true);
+
+        assertSame(person, this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(uri)));
+        getScheduledRefresh(uri).run();
+
+        assertEquals("\"2\"", refreshed.getRemoteETag());
+        assertEquals("Sat, 17 Oct 2026", refreshed.getRemoteLastModified());
+        verify(this.activityPubStorage).storeEntity(refreshed);
+        verify(this.activityPubStorage, never()).touchEntity(any());
+    }
+
     @Test
     void resolveDocumentReferenceAlreadyStored() throws Exception
     {
@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test of {@link RemoteObjectRefresher}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class RemoteObjectRefresherTest
+{
+    private static final URI FOO = URI.create("http://remote1/users/foo");
+
+    private static final URI BAR = URI.create("http://remote1/users/bar");
+
+    private static final URI BAZ = URI.create("http://remote2/users/baz");
+
+    @InjectMockComponents
+    private RemoteObjectRefresher refresher;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @MockComponent
+    private Execution execution;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    private final List<URI> refreshed = new ArrayList<>();
+
+    private RemoteObjectRefresher.Refresh refresh(URI link)
+    {
+        return () -> this.refreshed.add(link);
+    }
+
+    @Test
+    void scheduleDeduplicated()
+    {
+        assertTrue(this.refresher.schedule(FOO, refresh(FOO)));
+        assertFalse(this.refresher.schedule(FOO, refresh(FOO)));
+
+        this.refresher.refreshBatch();
+
+        assertEquals(Arrays.asList(FOO), this.refreshed);
+        assertTrue(this.refresher.schedule(FOO, refresh(FOO)));
+    }
+
+    @Test
+    void refreshBatchOnePerHost() throws Exception
+    {
+        this.refresher.schedule(FOO, refresh(FOO));
+        this.refresher.schedule(BAR, refresh(BAR));
+        this.refresher.schedule(BAZ, refresh(BAZ));
+
+        this.refresher.refreshBatch();
+
+        assertEquals(Arrays.asList(FOO, BAZ), this.refreshed);
+        verify(this.executionContextManager).initialize(any(ExecutionContext.class));
+        verify(this.execution).removeContext();
+        // The refresh of BAR is still waiting, and its host has just been requested.
+        assertFalse(this.refresher.schedule(BAR, refresh(BAR)));
+        this.refresher.refreshBatch();
+        assertEquals(Arrays.asList(FOO, BAZ), this.refreshed);
+
+        Thread.sleep(RemoteObjectRefresher.HOST_INTERVAL);
+        this.refresher.refreshBatch();
+        assertEquals(Arrays.asList(FOO, BAZ, BAR), this.refreshed);
+    }
+
+    @Test
+    void refreshBatchFailure() throws Exception
+    {
+        this.refresher.schedule(FOO, () -> {
+            throw new IOException("timeout");
+        });
+        this.refresher.schedule(BAZ, refresh(BAZ));
+
+        this.refresher.refreshBatch();
+
+        assertEquals(Arrays.asList(BAZ), this.refreshed);
+        assertEquals("Failed to refresh the remote object [http://remote1/users/foo], the stored version is kept. "
+            + "Cause: [IOException: timeout]", this.logCapture.getMessage(0));
+        assertTrue(this.refresher.schedule(FOO, refresh(FOO)));
+    }
+
+    @Test
+    void refreshBatchUnexpectedFailure()
+    {
+        this.refresher.schedule(FOO, () -> {
+            throw new IllegalStateException("unexpected");
+        });
+        this.refresher.schedule(BAZ, refresh(BAZ));
+
+        this.refresher.refreshBatch();
+
+        // The rest of the batch is still refreshed.
+        assertEquals(Arrays.asList(BAZ), this.refreshed);
+        assertEquals("Unexpected error while refreshing the remote object [http://remote1/users/foo].",
+            this.logCapture.getMessage(0));
+        assertTrue(this.refresher.schedule(FOO, refresh(FOO)));
+    }
+
+    @Test
+    void refreshBatchEmpty() throws Exception
+    {
+        this.refresher.refreshBatch();
+        verify(this.executionContextManager, never()).initialize(any());
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.json.relative;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.ActivityPubResourceReference;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.Note;
+import org.xwiki.contrib.activitypub.entities.ProxyActor;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.contrib.activitypub.internal.json.JSONLDContextDeserializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubObjectReferenceDeserializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultActivityPubObjectReferenceSerializer;
+import org.xwiki.contrib.activitypub.internal.json.absolute.DefaultObjectMapperConfiguration;
+import org.xwiki.resource.ResourceReferenceSerializer;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link StoredJsonRewriter}: the rewritten JSON must be the one obtained by parsing the stored JSON and
+ * serializing the entity.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+@ComponentList({
+    DefaultObjectMapperConfiguration.class,
+    DefaultActivityPubObjectReferenceSerializer.class,
+    DefaultActivityPubObjectReferenceDeserializer.class,
+    DefaultActivityPubJsonSerializer.class,
+    RelativeObjectMapperConfiguration.class,
+    RelativeActivityPubObjectReferenceSerializer.class,
+    RelativeActivityPubObjectReferenceDeserializer.class,
+    RelativeActivityPubJsonParser.class,
+    RelativeActivityPubJsonSerializer.class,
+    JSONLDContextDeserializer.class
+})
+class StoredJsonRewriterTest
+{
+    private static final String PREFIX = "http://www.xwiki.org/xwiki/activitypub/";
+
+    @InjectMockComponents
+    private StoredJsonRewriter storedJsonRewriter;
+
+    @MockComponent
+    private InternalURINormalizer internalURINormalizer;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    private ActivityPubJsonSerializer serializer;
+
+    private ActivityPubJsonSerializer relativeSerializer;
+
+    private ActivityPubJsonParser relativeParser;
+
+    @BeforeComponent
+    void beforeComponent(MockitoComponentManager componentManager) throws Exception
+    {
+        componentManager.registerMockComponent(ActivityPubStorage.class);
+        componentManager.registerMockComponent(new DefaultParameterizedType(null, ResourceReferenceSerializer.class,
+            ActivityPubResourceReference.class, URI.class));
+        componentManager.registerComponent(ComponentManager.class, "context", componentManager);
+    }
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.serializer = this.componentManager.getInstance(ActivityPubJsonSerializer.class);
+        this.relativeSerializer = this.componentManager.getInstance(ActivityPubJsonSerializer.class, "relative");
+        this.relativeParser = this.componentManager.getInstance(ActivityPubJsonParser.class, "relative");
+
+        when(this.internalURINormalizer.relativizeURI(any())).thenAnswer(invocation -> {
+            String uri = invocation.<URI>getArgument(0).toASCIIString();
+            return URI.create(uri.startsWith(PREFIX) ? uri.substring(PREFIX.length()) : uri);
+        });
+        when(this.internalURINormalizer.retrieveAbsoluteURI(any())).thenAnswer(invocation -> {
+            URI uri = invocation.getArgument(0);
+            return uri.isAbsolute() ? uri : URI.create(PREFIX + uri.toASCIIString());
+        });
+    }
+
+    private String rewrite(String content, String type, URI id) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.storedJsonRewriter.write(content, type, id, output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String parseAndSerialize(String content, URI id) throws Exception
+    {
+        ActivityPubObject entity = this.relativeParser.parse(content);
+        entity.setId(id);
+        return this.serializer.serialize(entity);
+    }
+
+    @Test
+    void isSupported()
+    {
+        assertTrue(this.storedJsonRewriter.isSupported("Create"));
+        assertTrue(this.storedJsonRewriter.isSupported("Note"));
+        assertFalse(this.storedJsonRewriter.isSupported("Person"));
+        assertFalse(this.storedJsonRewriter.isSupported("OrderedCollection"));
+        assertFalse(this.storedJsonRewriter.isSupported("Inbox"));
+        assertFalse(this.storedJsonRewriter.isSupported("Foo"));
+        // only the registered entities are found, not any class of the entities package.
+        assertFalse(this.storedJsonRewriter.isSupported("AbstractActivity"));
+    }
+
+    @Test
+    void write() throws Exception
+    {
+        Note note = new Note()
+            .setContent("Some content")
+            .setInReplyTo(URI.create(PREFIX + "Note/41"))
+            .setAttributedTo(Collections.singletonList(
+                new ActivityPubObjectReference<AbstractActor>().setLink(URI.create(PREFIX + "Person/foo"))))
+            .setTo(Arrays.asList(ProxyActor.getPublicActor(), new ProxyActor(URI.create(PREFIX + "Person/bar"))));
+        note.setId(URI.create(PREFIX + "Note/42"));
+        Create create = new Create()
+            .setActor(new ActivityPubObjectReference<AbstractActor>().setLink(URI.create(PREFIX + "Person/foo")))
+            .setObject(new ActivityPubObjectReference<>().setObject(note).setExpand(true))
+            .setTo(Arrays.asList(ProxyActor.getPublicActor(), new ProxyActor(URI.create("http://remote/users/baz"))));
+
+        // the entities are stored without their identifier.
+        String stored = this.relativeSerializer.serialize(create);
+        assertTrue(stored.contains("\"Person/foo\""));
+        URI id = URI.create(PREFIX + "Create/42");
+
+        String rewritten = rewrite(stored, "Create", id);
+        assertEquals(parseAndSerialize(stored, id), rewritten);
+        assertTrue(rewritten.contains("\"" + PREFIX + "Person/foo\""));
+        // the expanded object has an identifier: it's served as a link.
+        assertTrue(rewritten.contains("\"" + PREFIX + "Note/42\""));
+        assertFalse(rewritten.contains("Some content"));
+    }
+
+    @Test
+    void writeExpandedObjectWithoutId() throws Exception
+    {
+        Note note = new Note()
+            // not a reference: it's kept as it is.
+            .setName("Note/42")
+            .setTo(Arrays.asList(ProxyActor.getPublicActor(), new ProxyActor(URI.create(PREFIX + "Person/bar"))));
+        Create create = new Create()
+            .setActor(new ActivityPubObjectReference<AbstractActor>().setLink(URI.create(PREFIX + "Person/foo")))
+            .setObject(new ActivityPubObjectReference<>().setObject(note).setExpand(true));
+        String stored = this.relativeSerializer.serialize(create);
+        assertTrue(stored.contains("\"Person/bar\""));
+
+        String rewritten = rewrite(stored, "Create", URI.create(PREFIX + "Create/42"));
+        assertTrue(rewritten.contains(String.format("\"id\":\"%sCreate/42\"", PREFIX)));
+        assertTrue(rewritten.contains("\"" + PREFIX + "Person/foo\""));
+        assertTrue(rewritten.contains("\"" + PREFIX + "Person/bar\""));
+        assertFalse(rewritten.contains("\"Person/"));
+        assertTrue(rewritten.contains("\"Note/42\""));
+    }
+
+    @Test
+    void writeReplacesStoredId() throws Exception
+    {
+        String stored = "{\"content\":\"foo\",\"id\":\"Note/1\",\"type\":\"Note\"}";
+        URI id = URI.create(PREFIX + "Note/2");
+        assertEquals(parseAndSerialize(stored, id), rewrite(stored, "Note", id));
+    }
+}
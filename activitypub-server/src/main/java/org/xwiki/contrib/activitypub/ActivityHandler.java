@@ -20,9 +20,11 @@
 package org.xwiki.contrib.activitypub;
 
 import java.io.IOException;
+import java.util.Set;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.contrib.activitypub.entities.AbstractActivity;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.stability.Unstable;
 
 /**
@@ -50,4 +52,25 @@ public interface ActivityHandler<T extends AbstractActivity>
      * @throws ActivityPubException in case of error when handling the request.
      */
     void handleOutboxRequest(ActivityRequest<T> activityRequest) throws IOException, ActivityPubException;
+
+    /**
+     * Handle a post of the activity in the shared inbox of the instance, on behalf of the given local recipients.
+     * Contrary to {@link #handleInboxRequest(ActivityRequest)}, this method does not answer the request: the answer
+     * is performed once by the caller. By default the activity is handled as if it was posted in the inbox of each
+     * recipient: implementations should store it only once when possible.
+     *
+     * @param activity the activity to handle.
+     * @param recipients the local actors to which the activity is addressed.
+     * @throws IOException in case of problem when handling the activity.
+     * @throws ActivityPubException in case of error when handling the activity.
+     * @since 1.7.12
+     */
+    @Unstable
+    default void handleSharedInboxRequest(T activity, Set<AbstractActor> recipients)
+        throws IOException, ActivityPubException
+    {
+        for (AbstractActor recipient : recipients) {
+            handleInboxRequest(new ActivityRequest<>(recipient, activity));
+        }
+    }
 }
@@ -45,6 +45,23 @@ public interface SignatureService
     void generateSignature(HttpMethod postMethod, AbstractActor actor, String content)
         throws ActivityPubException;
 
+    /**
+     * Generate the signature of a message send to an external ActivityPub inbox, using the digest already computed
+     * for the content.
+     *
+     * @param postMethod the post method to sign
+     * @param actor the actor who posts the message
+     * @param activity the serialized activity sent in the body of the request
+     * @throws ActivityPubException in case of error when signing the request
+     * @since 1.7.12
+     */
+    @Unstable
+    default void generateSignature(HttpMethod postMethod, AbstractActor actor, SerializedActivity activity)
+        throws ActivityPubException
+    {
+        generateSignature(postMethod, actor, activity.getContentAsString());
+    }
+
     /**
      * Retrieve the public key of an actor.
      *
@@ -28,12 +28,12 @@ import javax.inject.Singleton;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.RequestEntity;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -41,11 +41,13 @@ import org.xwiki.contrib.activitypub.ActivityPubClient;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
 import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.SerializedActivity;
 import org.xwiki.contrib.activitypub.SignatureService;
 import org.xwiki.contrib.activitypub.entities.AbstractActivity;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.internal.client.RemoteHostMonitor;
 
 /**
  * Default implementation of the {@link ActivityPubClient}.
@@ -58,6 +60,8 @@ public class DefaultActivityPubClient implements ActivityPubClient
 {
     private static final String CONTENT_TYPE_HEADER_NAME = "Content-Type";
 
+    private static final String REQUEST_CONTENT_TYPE = CONTENT_TYPE_STRICT + "; charset=UTF-8";
+
     private HttpClient httpClient;
 
     @Inject
@@ -72,6 +76,9 @@ public class DefaultActivityPubClient implements ActivityPubClient
     @Inject
     private ActivityPubObjectReferenceResolver resolver;
 
+    @Inject
+    private RemoteHostMonitor remoteHostMonitor;
+
     /**
      * Default constructor.
      */
@@ -122,24 +129,65 @@ public class DefaultActivityPubClient implements ActivityPubClient
     public HttpMethod post(URI uri, AbstractActivity activity) throws ActivityPubException, IOException
     {
         String content = this.activityPubJsonSerializer.serialize(activity);
-        RequestEntity bodyRequest = new StringRequestEntity(content, CONTENT_TYPE_STRICT, "UTF-8");
-        PostMethod postMethod = new PostMethod(uri.toASCIIString());
-        postMethod.setRequestEntity(bodyRequest);
         AbstractActor actor = this.resolver.resolveReference(activity.getActor());
-        this.signature.generateSignature(postMethod, actor, content);
-        this.httpClient.executeMethod(postMethod);
+        return this.post(uri, actor, content);
+    }
+
+    @Override
+    public HttpMethod post(URI uri, AbstractActor actor, String content) throws ActivityPubException, IOException
+    {
+        return this.post(uri, actor, new SerializedActivity(content));
+    }
+
+    @Override
+    public HttpMethod post(URI uri, AbstractActor actor, SerializedActivity activity)
+        throws ActivityPubException, IOException
+    {
+        PostMethod postMethod = new PostMethod(uri.toASCIIString());
+        postMethod.setRequestEntity(new ByteArrayRequestEntity(activity.getContent(), REQUEST_CONTENT_TYPE));
+        this.signature.generateSignature(postMethod, actor, activity);
+        execute(uri, postMethod, false);
         return postMethod;
     }
 
     @Override
     public HttpMethod get(URI uri) throws IOException
+    {
+        return get(uri, null, null);
+    }
+
+    @Override
+    public HttpMethod get(URI uri, String eTag, String lastModified) throws IOException
     {
         GetMethod getMethod = new GetMethod(uri.toASCIIString());
         getMethod.addRequestHeader("Accept", CONTENT_TYPE_STRICT);
-        this.httpClient.executeMethod(getMethod);
+        if (eTag != null) {
+            getMethod.addRequestHeader("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            getMethod.addRequestHeader("If-Modified-Since", lastModified);
+        }
+        execute(uri, getMethod, true);
         return getMethod;
     }
 
+    /**
+     * Perform the request unless it's known to fail, and record its outcome in the health of the remote host.
+     */
+    private void execute(URI uri, HttpMethod method, boolean retrieval) throws IOException
+    {
+        this.remoteHostMonitor.checkRequest(uri, retrieval);
+        long start = System.currentTimeMillis();
+        int status;
+        try {
+            status = this.httpClient.executeMethod(method);
+        } catch (IOException e) {
+            this.remoteHostMonitor.recordFailure(uri, System.currentTimeMillis() - start, e);
+            throw e;
+        }
+        this.remoteHostMonitor.recordResponse(uri, status, System.currentTimeMillis() - start, retrieval);
+    }
+
     private boolean checkContentTypeHeader(Header contentTypeHeader)
     {
         if (contentTypeHeader == null) {
@@ -171,28 +219,58 @@ public class DefaultActivityPubClient implements ActivityPubClient
         if (!method.isRequestSent()) {
             exceptionMessage = "The request has not been sent.";
         } else if (method.getStatusCode() >= 400) {
-            String responseBody = null;
-            try {
-                responseBody = method.getResponseBodyAsString();
-            } catch (IOException e) {
-                this.logger.error("Cannot retrieve response body of a request.", e);
-            }
             exceptionMessage = String.format("200 status code expected, got [%s] instead with body: [%s].",
-                method.getStatusCode(), responseBody);
+                method.getStatusCode(), getResponseBody(method));
         } else if (!this.checkContentTypeHeader(method.getResponseHeader(CONTENT_TYPE_HEADER_NAME))) {
             exceptionMessage = String.format("Content-Type header should return '%s' and got [%s] instead.",
                 CONTENT_TYPE_STRICT, method.getResponseHeader(CONTENT_TYPE_HEADER_NAME));
         }
 
         if (exceptionMessage != null) {
-            String baseMessage = null;
-            try {
-                baseMessage = String.format("Error when performing [%s] on [%s]: ",
-                    method.getName(), method.getURI());
-            } catch (URIException e) {
-                this.logger.error("Cannot retrieve URI from HttpMethod.", e);
-            }
-            throw new ActivityPubException(baseMessage + exceptionMessage);
+            throw createAnswerException(method, exceptionMessage);
+        }
+    }
+
+    @Override
+    public void checkDelivery(HttpMethod method) throws ActivityPubException
+    {
+        String exceptionMessage = null;
+        if (!method.isRequestSent()) {
+            exceptionMessage = "The request has not been sent.";
+        } else if (!isSuccess(method.getStatusCode())) {
+            exceptionMessage = String.format("2xx status code expected, got [%s] instead with body: [%s].",
+                method.getStatusCode(), getResponseBody(method));
+        }
+
+        if (exceptionMessage != null) {
+            throw createAnswerException(method, exceptionMessage);
+        }
+    }
+
+    private String getResponseBody(HttpMethod method)
+    {
+        String responseBody = null;
+        try {
+            responseBody = method.getResponseBodyAsString();
+        } catch (IOException e) {
+            this.logger.error("Cannot retrieve response body of a request.", e);
+        }
+        return responseBody;
+    }
+
+    private boolean isSuccess(int statusCode)
+    {
+        return statusCode >= HttpStatus.SC_OK && statusCode < HttpStatus.SC_MULTIPLE_CHOICES;
+    }
+
+    private ActivityPubException createAnswerException(HttpMethod method, String exceptionMessage)
+    {
+        String baseMessage = null;
+        try {
+            baseMessage = String.format("Error when performing [%s] on [%s]: ", method.getName(), method.getURI());
+        } catch (URIException e) {
+            this.logger.error("Cannot retrieve URI from HttpMethod.", e);
         }
+        return new ActivityPubException(baseMessage + exceptionMessage);
     }
 }
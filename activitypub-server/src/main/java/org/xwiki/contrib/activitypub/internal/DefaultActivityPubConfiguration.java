@@ -40,10 +40,16 @@ public class DefaultActivityPubConfiguration implements ActivityPubConfiguration
 {
     private static final String ADMIN_GROUP = "XWiki.XWikiAdminGroup";
 
+    private static final String PREFIX = "activitypub.";
+
     @Inject
     @Named("activitypub")
     private ConfigurationSource configuration;
 
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource xwikiProperties;
+
     @Inject
     @Named("currentmixed")
     private DocumentReferenceResolver<String> stringEntityReferenceResolver;
@@ -83,4 +89,85 @@ public class DefaultActivityPubConfiguration implements ActivityPubConfiguration
             return PageNotificationPolicy.WIKIANDUSER;
         }
     }
+
+    @Override
+    public int getStorageCommitWithin()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "storage.commitWithin", 0);
+    }
+
+    @Override
+    public boolean isStorageSoftCommitEnabled()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "storage.softCommit", false);
+    }
+
+    @Override
+    public int getStorageCacheSize()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "storage.cacheSize", DEFAULT_STORAGE_CACHE_SIZE);
+    }
+
+    @Override
+    public int getCollectionPageSize()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "collection.pageSize", DEFAULT_COLLECTION_PAGE_SIZE);
+    }
+
+    @Override
+    public int getDeliveryThreads()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "delivery.threads", DEFAULT_DELIVERY_THREADS);
+    }
+
+    @Override
+    public int getDeliveryMaxConnectionsPerHost()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "delivery.maxConnectionsPerHost",
+            DEFAULT_DELIVERY_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    @Override
+    public int getDeliveryMaxAttempts()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "delivery.maxAttempts", DEFAULT_DELIVERY_MAX_ATTEMPTS);
+    }
+
+    @Override
+    public int getDeliveryInitialBackoff()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "delivery.initialBackoff", DEFAULT_DELIVERY_INITIAL_BACKOFF);
+    }
+
+    @Override
+    public boolean isInboxAsyncEnabled()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "inbox.async", false);
+    }
+
+    @Override
+    public int getInboxThreads()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "inbox.threads", DEFAULT_INBOX_THREADS);
+    }
+
+    @Override
+    public int getRemoteHostFailureThreshold()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "client.failureThreshold",
+            DEFAULT_REMOTE_HOST_FAILURE_THRESHOLD);
+    }
+
+    @Override
+    public int getRemoteHostRetryDelay()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "client.retryDelay", DEFAULT_REMOTE_HOST_RETRY_DELAY);
+    }
+
+    @Override
+    public int getNotFoundCacheDuration()
+    {
+        return this.xwikiProperties.getProperty(PREFIX + "client.notFoundCacheDuration",
+            DEFAULT_NOT_FOUND_CACHE_DURATION);
+    }
 }
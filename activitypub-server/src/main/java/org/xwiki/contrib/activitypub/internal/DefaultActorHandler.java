@@ -251,6 +251,14 @@ public class DefaultActorHandler implements ActorHandler
         // TODO: this would need to be improved, for example by directly storing the publickey in the DB.
         this.activityPubStorage.storeEntity(actor);
 
+        // The owner of the collections is used to find the local followers of the actors posting on the shared inbox.
+        ActivityPubObjectReference<AbstractActor> owner =
+            new ActivityPubObjectReference<AbstractActor>().setLink(actor.getId());
+        following.setAttributedTo(Collections.singletonList(owner));
+        this.activityPubStorage.storeEntity(following);
+        followers.setAttributedTo(Collections.singletonList(owner));
+        this.activityPubStorage.storeEntity(followers);
+
         PublicKey publicKey = this.initPublicKey(actor);
         actor.setPublicKey(publicKey);
 
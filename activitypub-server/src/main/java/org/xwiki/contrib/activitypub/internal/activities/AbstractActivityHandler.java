@@ -20,7 +20,9 @@
 package org.xwiki.contrib.activitypub.internal.activities;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletResponse;
@@ -37,8 +39,10 @@ import org.xwiki.contrib.activitypub.ActorHandler;
 import org.xwiki.contrib.activitypub.entities.AbstractActivity;
 import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Inbox;
-import org.xwiki.contrib.activitypub.entities.Outbox;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.internal.delivery.ActivityPubDeliveryQueue;
 
 /**
  * Abstract handler for all {@link ActivityHandler}.
@@ -69,6 +73,9 @@ public abstract class AbstractActivityHandler<T extends AbstractActivity> implem
     @Inject
     protected ActivityPubConfiguration activityPubConfiguration;
 
+    @Inject
+    protected ActivityPubDeliveryQueue deliveryQueue;
+
     @Inject
     protected Logger logger;
 
@@ -84,14 +91,58 @@ public abstract class AbstractActivityHandler<T extends AbstractActivity> implem
     }
 
     /**
-     * Helper method to return the actual {@link Outbox} from an {@link AbstractActor}.
-     * @param actor the actor from which to retrieve the outbox
-     * @return a concrete instance of outbox
-     * @throws ActivityPubException in case of error when resolving the reference.
+     * Helper method to return the URI of the {@link Inbox} of an {@link AbstractActor}, without resolving it.
+     * @param actor the actor from which to retrieve the inbox URI
+     * @return the URI of the inbox, whether its reference is a link or an expanded inbox
+     * @throws ActivityPubException if the actor does not have any inbox.
+     * @since 1.7.12
+     */
+    protected URI getInboxURI(AbstractActor actor) throws ActivityPubException
+    {
+        ActivityPubObjectReference<Inbox> inboxReference = actor.getInbox();
+        URI result = null;
+        if (inboxReference != null) {
+            result = (inboxReference.isLink()) ? inboxReference.getLink() : inboxReference.getObject().getId();
+        }
+        if (result == null) {
+            throw new ActivityPubException(String.format("The actor [%s] does not have any inbox.", actor.getId()));
+        }
+        return result;
+    }
+
+    /**
+     * Helper method to return an ordered collection in which an item is appended, without loading its items: see
+     * {@link ActivityPubStorage#retrieveCollectionSummary(URI)}. The collections which are not stored, such as the
+     * remote ones never retrieved, are resolved.
+     * @param reference the reference to the collection
+     * @param <C> the type of the collection
+     * @return the summary of the stored collection, or the resolved collection if it is not stored
+     * @throws ActivityPubException in case of error when retrieving or resolving the collection.
+     * @since 1.7.12
+     */
+    protected <C extends OrderedCollection<?>> C getCollectionSummary(ActivityPubObjectReference<C> reference)
+        throws ActivityPubException
+    {
+        C result = null;
+        if (reference != null && reference.getLink() != null) {
+            result = this.activityPubStorage.retrieveCollectionSummary(reference.getLink());
+        }
+        if (result == null) {
+            result = this.activityPubObjectReferenceResolver.resolveReference(reference);
+        }
+        return result;
+    }
+
+    /**
+     * Deliver the given activity to the given inboxes through the delivery queue.
+     * The deliveries are performed in background: the queue reports their outcome once they have all been attempted.
+     * @param activity the activity to deliver.
+     * @param inboxes the inboxes to which the activity should be delivered.
+     * @throws ActivityPubException in case of error when enqueuing the deliveries.
      */
-    protected Outbox getOutbox(AbstractActor actor) throws ActivityPubException
+    protected void deliver(AbstractActivity activity, Collection<URI> inboxes) throws ActivityPubException
     {
-        return this.activityPubObjectReferenceResolver.resolveReference(actor.getOutbox());
+        this.deliveryQueue.enqueue(activity, inboxes);
     }
 
     /**
@@ -21,24 +21,19 @@ package org.xwiki.contrib.activitypub.internal.activities;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.List;
 
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.httpclient.HttpMethod;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityRequest;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.Accept;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
-import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Follow;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 
-import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
-
 /**
  * Specific handler for {@link Accept} activities.
  *
@@ -71,9 +66,8 @@ public class AcceptActivityHandler extends AbstractActivityHandler<Accept>
 
                 boolean found = this.isDuplicate(followingActorfollowings, acceptingActor, followingActor);
                 if (!found) {
-                    followingActorfollowings.addItem(acceptingActor);
+                    this.activityPubStorage.appendItem(followingActorfollowings, acceptingActor);
                 }
-                this.activityPubStorage.storeEntity(followingActorfollowings);
 
                 this.notifier.notify(accept, Collections.singleton(followingActor));
                 this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, accept);
@@ -90,22 +84,15 @@ public class AcceptActivityHandler extends AbstractActivityHandler<Accept>
      * @param acceptingActor the actor being followed.
      * @param followingActor the actor who follows.
      * @return true if a duplicate is found.
-     * @throws ActivityPubException In case of error when resolving references.
      */
     private boolean isDuplicate(OrderedCollection<AbstractActor> list, AbstractActor acceptingActor,
-        AbstractActor followingActor) throws ActivityPubException
+        AbstractActor followingActor)
     {
-        List<ActivityPubObjectReference<AbstractActor>> lst = list.getOrderedItems();
         boolean found = false;
-        for (ActivityPubObjectReference<AbstractActor> x : lst) {
-            try {
-                AbstractActor rx = this.activityPubObjectReferenceResolver.resolveReference(x);
-                if (rx.equals(followingActor) || rx.equals(acceptingActor)) {
-                    found = true;
-                    break;
-                }
-            } catch (ActivityPubException e) {
-                this.logger.warn("User [{}] not resolved. Cause: [{}]", x, getRootCauseMessage(e));
+        for (AbstractActor actor : this.activityPubObjectReferenceResolver.resolveReferences(list.getOrderedItems())) {
+            if (actor != null && (actor.equals(followingActor) || actor.equals(acceptingActor))) {
+                found = true;
+                break;
             }
         }
         return found;
@@ -126,20 +113,11 @@ public class AcceptActivityHandler extends AbstractActivityHandler<Accept>
                 this.activityPubObjectReferenceResolver.resolveReference(acceptingActor.getFollowers());
             boolean found = this.isDuplicate(acceptingActorFollowers, acceptingActor, followingActor);
             if (!found) {
-                acceptingActorFollowers.addItem(followingActor);
+                this.activityPubStorage.appendItem(acceptingActorFollowers, followingActor);
             }
-            this.activityPubStorage.storeEntity(acceptingActorFollowers);
 
             accept.getObject().setExpand(true);
-            HttpMethod postMethod = this.activityPubClient.postInbox(followingActor, accept);
-            try {
-                this.activityPubClient.checkAnswer(postMethod);
-            } catch (ActivityPubException e) {
-                // FIXME: in that case is the final answer still a 200 OK?
-                this.logger.error("Error while posting the accept to the following user.", e);
-            } finally {
-                postMethod.releaseConnection();
-            }
+            this.deliver(accept, Collections.singleton(this.getInboxURI(followingActor)));
 
             this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, accept);
         } else {
@@ -21,11 +21,11 @@ package org.xwiki.contrib.activitypub.internal.activities;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Set;
 
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.httpclient.HttpMethod;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityRequest;
@@ -55,25 +55,32 @@ public class AnnounceActivityHandler extends AbstractActivityHandler<Announce>
             this.answerError(activityRequest.getResponse(), HttpServletResponse.SC_BAD_REQUEST,
                     "The ID of the activity must not be null.");
         } else {
-            if (announce.getObject() != null) {
-                announce.getObject().setExpand(true);
-            }
-            this.activityPubStorage.storeEntity(announce);
-            AbstractActor actor = activityRequest.getActor();
-            Inbox inbox = this.getInbox(actor);
-            inbox.addItem(announce);
-            this.activityPubStorage.storeEntity(inbox);
-            ActivityPubObject object = this.getOrPersist(announce.getObject());
-            ActivityPubObjectReference<OrderedCollection<Announce>> shares = this.getSharesOrInit(object);
-
-            shares.getObject().addItem(announce);
-
-            this.activityPubStorage.storeEntity(object);
-            this.notifier.notify(announce, Collections.singleton(actor));
+            this.handleSharedInboxRequest(announce, Collections.singleton(activityRequest.getActor()));
             this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, announce);
         }
     }
 
+    @Override
+    public void handleSharedInboxRequest(Announce announce, Set<AbstractActor> recipients)
+        throws ActivityPubException
+    {
+        if (announce.getObject() != null) {
+            announce.getObject().setExpand(true);
+        }
+        this.activityPubStorage.storeEntity(announce);
+        for (AbstractActor recipient : recipients) {
+            Inbox inbox = this.getCollectionSummary(recipient.getInbox());
+            this.activityPubStorage.appendItem(inbox, announce);
+        }
+        ActivityPubObject object = this.getOrPersist(announce.getObject());
+        ActivityPubObjectReference<OrderedCollection<Announce>> shares = this.getSharesOrInit(object);
+
+        this.activityPubStorage.appendItem(this.getCollectionSummary(shares), announce);
+
+        this.activityPubStorage.storeEntity(object);
+        this.notifier.notify(announce, recipients);
+    }
+
     /**
      * Get the shares collection of an {@link ActivityPubObject}. If the collection does not exist, it is created and
      * returned.
@@ -91,6 +98,7 @@ public class AnnounceActivityHandler extends AbstractActivityHandler<Announce>
             OrderedCollection<Announce> announces = new OrderedCollection<>();
             this.activityPubStorage.storeEntity(announces);
             shares = new ActivityPubObjectReference<OrderedCollection<Announce>>().setObject(announces);
+            activityPubObject.setShares(shares);
         }
         return shares;
     }
@@ -113,23 +121,11 @@ public class AnnounceActivityHandler extends AbstractActivityHandler<Announce>
         this.activityPubStorage.storeEntity(announce);
 
         AbstractActor actor = activityRequest.getActor();
-        Outbox outbox = this.getOutbox(actor);
-        outbox.addItem(announce);
-        this.activityPubStorage.storeEntity(outbox);
+        Outbox outbox = this.getCollectionSummary(actor.getOutbox());
+        this.activityPubStorage.appendItem(outbox, announce);
 
-        for (AbstractActor targetActor : this.activityPubObjectReferenceResolver.resolveTargets(announce)) {
-            announce.getObject().setExpand(true);
-            HttpMethod postMethod = this.activityPubClient.postInbox(targetActor, announce);
-
-            try {
-                this.activityPubClient.checkAnswer(postMethod);
-            } catch (ActivityPubException e) {
-                // FIXME: in that case is the final answer still a 200 OK?
-                this.logger.error("The sharing to followers didn't go well.", e);
-            } finally {
-                postMethod.releaseConnection();
-            }
-        }
+        announce.getObject().setExpand(true);
+        this.deliver(announce, this.activityPubObjectReferenceResolver.resolveTargetInboxes(announce));
         this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, announce);
     }
 }
@@ -21,11 +21,11 @@ package org.xwiki.contrib.activitypub.internal.activities;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Set;
 
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.httpclient.HttpMethod;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityRequest;
@@ -52,18 +52,24 @@ public class CreateActivityHandler extends AbstractActivityHandler<Create>
             this.answerError(activityRequest.getResponse(), HttpServletResponse.SC_BAD_REQUEST,
                 "The ID of the activity must not be null.");
         } else {
-            AbstractActor actor = activityRequest.getActor();
-            this.activityPubStorage.storeEntity(create);
-            Inbox inbox = this.getInbox(actor);
-            inbox.addItem(create);
-            this.activityPubStorage.storeEntity(inbox);
-            ActivityPubObject entity = this.activityPubObjectReferenceResolver.resolveReference(create.getObject());
-            this.activityPubStorage.storeEntity(entity);
-            this.notifier.notify(create, Collections.singleton(actor));
+            this.handleSharedInboxRequest(create, Collections.singleton(activityRequest.getActor()));
             this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, create);
         }
     }
 
+    @Override
+    public void handleSharedInboxRequest(Create create, Set<AbstractActor> recipients) throws ActivityPubException
+    {
+        this.activityPubStorage.storeEntity(create);
+        for (AbstractActor recipient : recipients) {
+            Inbox inbox = this.getCollectionSummary(recipient.getInbox());
+            this.activityPubStorage.appendItem(inbox, create);
+        }
+        ActivityPubObject entity = this.activityPubObjectReferenceResolver.resolveReference(create.getObject());
+        this.activityPubStorage.storeEntity(entity);
+        this.notifier.notify(create, recipients);
+    }
+
     @Override
     public void handleOutboxRequest(ActivityRequest<Create> activityRequest)
         throws IOException, ActivityPubException
@@ -72,23 +78,11 @@ public class CreateActivityHandler extends AbstractActivityHandler<Create>
         this.activityPubStorage.storeEntity(create);
 
         AbstractActor actor = activityRequest.getActor();
-        Outbox outbox = this.getOutbox(actor);
-        outbox.addItem(create);
-        this.activityPubStorage.storeEntity(outbox);
+        Outbox outbox = this.getCollectionSummary(actor.getOutbox());
+        this.activityPubStorage.appendItem(outbox, create);
 
-        for (AbstractActor targetActor : this.activityPubObjectReferenceResolver.resolveTargets(create)) {
-            create.getObject().setExpand(true);
-            HttpMethod postMethod = this.activityPubClient.postInbox(targetActor, create);
-
-            try {
-                this.activityPubClient.checkAnswer(postMethod);
-            } catch (ActivityPubException e) {
-                // FIXME: in that case is the final answer still a 200 OK?
-                this.logger.error("The sharing to followers didn't go well.", e);
-            } finally {
-                postMethod.releaseConnection();
-            }
-        }
+        create.getObject().setExpand(true);
+        this.deliver(create, this.activityPubObjectReferenceResolver.resolveTargetInboxes(create));
         this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, create);
     }
 }
@@ -54,13 +54,12 @@ public class LikeActivityHandler extends AbstractActivityHandler<Like>
         ActivityPubObjectReference<OrderedCollection<Like>> likesReference = likedObject.getLikes();
         OrderedCollection<Like> likes;
         if (likesReference != null) {
-            likes = this.activityPubObjectReferenceResolver.resolveReference(likesReference);
+            likes = this.getCollectionSummary(likesReference);
         } else {
             likes = new OrderedCollection<>();
         }
-        likes.addItem(activity);
-        this.activityPubStorage.storeEntity(likes);
         this.activityPubStorage.storeEntity(activity);
+        this.activityPubStorage.appendItem(likes, activity);
 
         // If it's the first like then we just created the ordered collection and we need to store its reference.
         if (likesReference == null) {
@@ -81,12 +80,12 @@ public class LikeActivityHandler extends AbstractActivityHandler<Like>
         ActivityPubObjectReference<OrderedCollection<ActivityPubObject>> likedReference = actor.getLiked();
         OrderedCollection<ActivityPubObject> liked;
         if (likedReference != null) {
-            liked = this.activityPubObjectReferenceResolver.resolveReference(likedReference);
+            liked = this.getCollectionSummary(likedReference);
         } else {
             liked = new OrderedCollection<>();
         }
-        liked.addItem(this.activityPubObjectReferenceResolver.resolveReference(activity.getObject()));
-        this.activityPubStorage.storeEntity(liked);
+        this.activityPubStorage.appendItem(liked,
+            this.activityPubObjectReferenceResolver.resolveReference(activity.getObject()));
 
         // if it's the first like then we just created the ordered collection and we need to store its reference.
         if (likedReference == null) {
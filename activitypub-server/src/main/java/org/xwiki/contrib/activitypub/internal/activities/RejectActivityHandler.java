@@ -25,7 +25,6 @@ import java.util.Collections;
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.httpclient.HttpMethod;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityRequest;
@@ -84,16 +83,7 @@ public class RejectActivityHandler extends AbstractActivityHandler<Reject>
         if (object instanceof Follow) {
             Follow follow = (Follow) object;
             AbstractActor followingActor = this.activityPubObjectReferenceResolver.resolveReference(follow.getActor());
-            HttpMethod postMethod = this.activityPubClient.postInbox(followingActor, reject);
-
-            try {
-                this.activityPubClient.checkAnswer(postMethod);
-            } catch (ActivityPubException e) {
-                // FIXME: in that case is the final answer still a 200 OK?
-                this.logger.error("Error while posting the accept to the following user.", e);
-            } finally {
-                postMethod.releaseConnection();
-            }
+            this.deliver(reject, Collections.singleton(this.getInboxURI(followingActor)));
 
             this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, reject);
         } else {
@@ -21,11 +21,11 @@ package org.xwiki.contrib.activitypub.internal.activities;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Set;
 
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.httpclient.HttpMethod;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityRequest;
@@ -53,18 +53,24 @@ public class UpdateActivityHandler extends AbstractActivityHandler<Update>
             this.answerError(activityRequest.getResponse(), HttpServletResponse.SC_BAD_REQUEST,
                 "The ID of the activity must not be null.");
         } else {
-            AbstractActor actor = activityRequest.getActor();
-            this.activityPubStorage.storeEntity(update);
-            Inbox inbox = this.getInbox(actor);
-            inbox.addItem(update);
-            this.activityPubStorage.storeEntity(inbox);
-            ActivityPubObject entity = this.activityPubObjectReferenceResolver.resolveReference(update.getObject());
-            this.activityPubStorage.storeEntity(entity);
-            this.notifier.notify(update, Collections.singleton(actor));
+            this.handleSharedInboxRequest(update, Collections.singleton(activityRequest.getActor()));
             this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, update);
         }
     }
 
+    @Override
+    public void handleSharedInboxRequest(Update update, Set<AbstractActor> recipients) throws ActivityPubException
+    {
+        this.activityPubStorage.storeEntity(update);
+        for (AbstractActor recipient : recipients) {
+            Inbox inbox = this.getCollectionSummary(recipient.getInbox());
+            this.activityPubStorage.appendItem(inbox, update);
+        }
+        ActivityPubObject entity = this.activityPubObjectReferenceResolver.resolveReference(update.getObject());
+        this.activityPubStorage.storeEntity(entity);
+        this.notifier.notify(update, recipients);
+    }
+
     @Override
     public void handleOutboxRequest(ActivityRequest<Update> activityRequest)
         throws IOException, ActivityPubException
@@ -73,23 +79,11 @@ public class UpdateActivityHandler extends AbstractActivityHandler<Update>
         this.activityPubStorage.storeEntity(update);
 
         AbstractActor actor = activityRequest.getActor();
-        Outbox outbox = this.getOutbox(actor);
-        outbox.addItem(update);
-        this.activityPubStorage.storeEntity(outbox);
+        Outbox outbox = this.getCollectionSummary(actor.getOutbox());
+        this.activityPubStorage.appendItem(outbox, update);
 
-        for (AbstractActor targetActor : this.activityPubObjectReferenceResolver.resolveTargets(update)) {
-            update.getObject().setExpand(true);
-            HttpMethod postMethod = this.activityPubClient.postInbox(targetActor, update);
-
-            try {
-                this.activityPubClient.checkAnswer(postMethod);
-            } catch (ActivityPubException e) {
-                // FIXME: in that case is the final answer still a 200 OK?
-                this.logger.error("The sharing to followers didn't go well.", e);
-            } finally {
-                postMethod.releaseConnection();
-            }
-        }
+        update.getObject().setExpand(true);
+        this.deliver(update, this.activityPubObjectReferenceResolver.resolveTargetInboxes(update));
         this.answer(activityRequest.getResponse(), HttpServletResponse.SC_OK, update);
     }
 }
@@ -0,0 +1,253 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.client;
+
+import java.util.Date;
+
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * Health of a remote host, computed from the outcome of the requests performed to it. The host is considered
+ * unavailable ({@link #OPEN} state) after too many consecutive failures, until a check of the host succeeds.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class HostHealth
+{
+    /**
+     * State of the hosts to which the requests are performed.
+     */
+    public static final String CLOSED = "closed";
+
+    /**
+     * State of the hosts considered unavailable: the requests to them fail immediately.
+     */
+    public static final String OPEN = "open";
+
+    /**
+     * Weight of the last request in the average latency.
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final String host;
+
+    private final String root;
+
+    private String state = CLOSED;
+
+    private int consecutiveFailures;
+
+    private long failures;
+
+    private long successes;
+
+    private double averageLatency = -1;
+
+    private Date lastFailure;
+
+    private String lastError;
+
+    private long retryDelay;
+
+    private long nextCheck;
+
+    /**
+     * Default constructor.
+     *
+     * @param host the authority of the host (name and port).
+     * @param root the root URL of the host, used to check if it's available again.
+     */
+    public HostHealth(String host, String root)
+    {
+        this.host = host;
+        this.root = root;
+    }
+
+    /**
+     * @return the authority of the host (name and port).
+     */
+    public String getHost()
+    {
+        return this.host;
+    }
+
+    /**
+     * @return the root URL of the host, used to check if it's available again.
+     */
+    public String getRoot()
+    {
+        return this.root;
+    }
+
+    /**
+     * @return the state of the host: {@link #CLOSED} or {@link #OPEN}.
+     */
+    public synchronized String getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @return {@code true} if the host is considered unavailable.
+     */
+    public synchronized boolean isOpen()
+    {
+        return OPEN.equals(this.state);
+    }
+
+    /**
+     * @return the number of failures since the last successful request.
+     */
+    public synchronized int getConsecutiveFailures()
+    {
+        return this.consecutiveFailures;
+    }
+
+    /**
+     * @return the number of failed requests since the start of the instance.
+     */
+    public synchronized long getFailures()
+    {
+        return this.failures;
+    }
+
+    /**
+     * @return the number of successful requests since the start of the instance.
+     */
+    public synchronized long getSuccesses()
+    {
+        return this.successes;
+    }
+
+    /**
+     * @return the exponential moving average of the durations of the requests, in milliseconds, or {@code -1} if no
+     *         request has been performed yet.
+     */
+    public synchronized long getAverageLatency()
+    {
+        return Math.round(this.averageLatency);
+    }
+
+    /**
+     * @return the date of the last failure, or {@code null} if no request failed.
+     */
+    public synchronized Date getLastFailure()
+    {
+        return this.lastFailure;
+    }
+
+    /**
+     * @return the cause of the last failure, or {@code null} if no request failed.
+     */
+    public synchronized String getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * @return the date of the next check of the host if it's considered unavailable, {@code null} otherwise.
+     */
+    public synchronized Date getNextCheck()
+    {
+        return (isOpen()) ? new Date(this.nextCheck) : null;
+    }
+
+    /**
+     * @param now the current time in milliseconds.
+     * @return {@code true} if the host is considered unavailable and should be checked again.
+     */
+    synchronized boolean isCheckDue(long now)
+    {
+        return isOpen() && now >= this.nextCheck;
+    }
+
+    /**
+     * Record a successful request: the host is considered available again.
+     *
+     * @param latency the duration of the request in milliseconds.
+     */
+    synchronized void success(long latency)
+    {
+        this.successes++;
+        this.consecutiveFailures = 0;
+        this.state = CLOSED;
+        updateLatency(latency);
+    }
+
+    /**
+     * Record a failed request.
+     *
+     * @param latency the duration of the request in milliseconds.
+     * @param error the cause of the failure.
+     * @param threshold the number of consecutive failures after which the host is considered unavailable.
+     * @param delay the delay in milliseconds before checking the host again, when it becomes unavailable.
+     * @return {@code true} if the host has just become unavailable.
+     */
+    synchronized boolean failure(long latency, String error, int threshold, long delay)
+    {
+        this.failures++;
+        this.consecutiveFailures++;
+        this.lastFailure = new Date();
+        this.lastError = error;
+        updateLatency(latency);
+        boolean opened = !isOpen() && this.consecutiveFailures >= threshold;
+        if (opened) {
+            this.state = OPEN;
+            this.retryDelay = delay;
+            this.nextCheck = this.lastFailure.getTime() + delay;
+        }
+        return opened;
+    }
+
+    /**
+     * Record a failed check of an unavailable host: the delay before the next check is doubled.
+     *
+     * @param error the cause of the failure.
+     * @param maxDelay the maximum delay in milliseconds between two checks.
+     */
+    synchronized void checkFailed(String error, long maxDelay)
+    {
+        this.lastFailure = new Date();
+        this.lastError = error;
+        this.retryDelay = Math.min(this.retryDelay * 2, maxDelay);
+        this.nextCheck = this.lastFailure.getTime() + this.retryDelay;
+    }
+
+    private void updateLatency(long latency)
+    {
+        if (this.averageLatency < 0) {
+            this.averageLatency = latency;
+        } else {
+            this.averageLatency += LATENCY_WEIGHT * (latency - this.averageLatency);
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("host", getHost())
+            .append("state", getState())
+            .append("consecutiveFailures", getConsecutiveFailures())
+            .append("averageLatency", getAverageLatency())
+            .build();
+    }
+}
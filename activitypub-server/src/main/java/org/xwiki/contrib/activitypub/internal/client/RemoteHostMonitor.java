@@ -0,0 +1,322 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
+
+/**
+ * Track the health of the remote hosts from the outcome of the requests performed to them, so that the requests
+ * which are known to fail are not performed anymore:
+ * <ul>
+ *   <li>after {@link ActivityPubConfiguration#getRemoteHostFailureThreshold()} consecutive network errors or 5xx
+ *   statuses, a host is considered unavailable and its requests fail immediately; it's checked again in the
+ *   background after {@link ActivityPubConfiguration#getRemoteHostRetryDelay()} seconds, the delay being doubled
+ *   after each failed check;</li>
+ *   <li>the URIs answered with a 404 or 410 status are not retrieved again during
+ *   {@link ActivityPubConfiguration#getNotFoundCacheDuration()} seconds.</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = RemoteHostMonitor.class)
+@Singleton
+public class RemoteHostMonitor implements Initializable, Disposable
+{
+    /**
+     * Interval in seconds between two scans of the unavailable hosts to check.
+     */
+    private static final long CHECK_INTERVAL = 10;
+
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+
+    private static final int CHECK_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private static final int NOT_FOUND_CACHE_SIZE = 10000;
+
+    /**
+     * Maximum number of hosts whose health is tracked: the least recently requested ones are forgotten beyond.
+     */
+    private static final int MAX_HOSTS = 1000;
+
+    /**
+     * Status code answered by the hosts limiting the rate of the requests, not defined by {@link HttpStatus}.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ActivityPubConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Health of the hosts, in access order so that the least recently requested host is the first one. Guarded by
+     * itself.
+     */
+    private final Map<String, HostHealth> hosts = new LinkedHashMap<String, HostHealth>(MAX_HOSTS, 1F, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HostHealth> eldest)
+        {
+            return size() > MAX_HOSTS;
+        }
+    };
+
+    /**
+     * Expiration dates of the URIs answered as not found.
+     */
+    private Cache<Long> notFound;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private HttpClient httpClient;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.notFound = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("activitypub.client.notFound", NOT_FOUND_CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the ActivityPub not found URIs cache.", e);
+        }
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setConnectionTimeout(CHECK_TIMEOUT);
+        params.setSoTimeout(CHECK_TIMEOUT);
+        this.httpClient = new HttpClient(connectionManager);
+        this.executor = new ScheduledThreadPoolExecutor(1,
+            new BasicThreadFactory.Builder().namingPattern("ActivityPub host check %d").daemon(true).build());
+        this.executor.scheduleWithFixedDelay(this::checkUnavailableHosts, CHECK_INTERVAL, CHECK_INTERVAL,
+            TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+        this.notFound.dispose();
+    }
+
+    /**
+     * A setter for the HTTP client used to check the unavailable hosts, for testing purpose.
+     *
+     * @param client the {@link HttpClient} implementation to use.
+     */
+    protected void setHttpClient(HttpClient client)
+    {
+        this.httpClient = client;
+    }
+
+    /**
+     * Ensure that a request to the given URI might succeed.
+     *
+     * @param uri the target of the request.
+     * @param retrieval {@code true} if the request retrieves the URI: it's then skipped if the URI has recently been
+     *     answered as not found.
+     * @throws SkippedRequestException if the host of the URI is considered unavailable, or if the URI has recently
+     *     been answered as not found.
+     */
+    public void checkRequest(URI uri, boolean retrieval) throws SkippedRequestException
+    {
+        HostHealth health = getHealth(uri);
+        if (health != null && health.isOpen()) {
+            throw new SkippedRequestException(String.format("The host [%s] is considered unavailable until [%s].",
+                health.getHost(), health.getNextCheck()));
+        }
+        if (retrieval) {
+            Long expiration = this.notFound.get(uri.toString());
+            if (expiration != null && expiration > System.currentTimeMillis()) {
+                throw new SkippedRequestException(String.format("[%s] has recently been answered as not found.",
+                    uri));
+            }
+        }
+    }
+
+    /**
+     * Record the answer to a request.
+     *
+     * @param uri the target of the request.
+     * @param status the status code of the answer.
+     * @param latency the duration of the request in milliseconds.
+     * @param retrieval {@code true} if the request retrieves the URI: a 404 or 410 status is then remembered.
+     */
+    public void recordResponse(URI uri, int status, long latency, boolean retrieval)
+    {
+        HostHealth health = getOrCreateHealth(uri);
+        if (health != null) {
+            if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == TOO_MANY_REQUESTS) {
+                recordFailure(health, latency, String.format("Status code [%s]", status));
+            } else {
+                health.success(latency);
+            }
+        }
+        if (retrieval && (status == HttpStatus.SC_NOT_FOUND || status == HttpStatus.SC_GONE)) {
+            this.notFound.set(uri.toString(),
+                System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.configuration.getNotFoundCacheDuration()));
+        }
+    }
+
+    /**
+     * Record a request which failed without any answer.
+     *
+     * @param uri the target of the request.
+     * @param latency the duration of the request in milliseconds.
+     * @param cause the cause of the failure.
+     */
+    public void recordFailure(URI uri, long latency, IOException cause)
+    {
+        HostHealth health = getOrCreateHealth(uri);
+        if (health != null) {
+            recordFailure(health, latency, getRootCauseMessage(cause));
+        }
+    }
+
+    /**
+     * @return the health of the remote hosts to which requests have been performed since the start of the instance,
+     *         sorted by host, limited to the most recently requested ones.
+     */
+    public List<HostHealth> getHosts()
+    {
+        List<HostHealth> result;
+        synchronized (this.hosts) {
+            result = new ArrayList<>(this.hosts.values());
+        }
+        result.sort(Comparator.comparing(HostHealth::getHost));
+        return result;
+    }
+
+    /**
+     * Check the unavailable hosts whose retry delay is elapsed: a host is available again as soon as it answers a
+     * request without a 5xx status.
+     */
+    void checkUnavailableHosts()
+    {
+        long now = System.currentTimeMillis();
+        List<HostHealth> healths;
+        synchronized (this.hosts) {
+            healths = new ArrayList<>(this.hosts.values());
+        }
+        for (HostHealth health : healths) {
+            if (health.isCheckDue(now)) {
+                check(health);
+            }
+        }
+    }
+
+    private void check(HostHealth health)
+    {
+        HeadMethod headMethod = new HeadMethod(health.getRoot());
+        long start = System.currentTimeMillis();
+        try {
+            int status = this.httpClient.executeMethod(headMethod);
+            if (status < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                health.success(System.currentTimeMillis() - start);
+                this.logger.info("The host [{}] is available again.", health.getHost());
+            } else {
+                health.checkFailed(String.format("Status code [%s]", status), MAX_RETRY_DELAY);
+            }
+        } catch (Exception e) {
+            // Catch everything: an exception would cancel the next checks.
+            health.checkFailed(getRootCauseMessage(e), MAX_RETRY_DELAY);
+        } finally {
+            headMethod.releaseConnection();
+        }
+    }
+
+    private void recordFailure(HostHealth health, long latency, String error)
+    {
+        boolean opened = health.failure(latency, error, this.configuration.getRemoteHostFailureThreshold(),
+            TimeUnit.SECONDS.toMillis(this.configuration.getRemoteHostRetryDelay()));
+        if (opened) {
+            this.logger.warn("The host [{}] is considered unavailable after [{}] consecutive failures: its requests "
+                + "are suspended until it answers again. Cause: [{}]", health.getHost(),
+                health.getConsecutiveFailures(), error);
+        }
+    }
+
+    private HostHealth getHealth(URI uri)
+    {
+        String host = getHost(uri);
+        HostHealth result = null;
+        if (host != null) {
+            synchronized (this.hosts) {
+                result = this.hosts.get(host);
+            }
+        }
+        return result;
+    }
+
+    private HostHealth getOrCreateHealth(URI uri)
+    {
+        String host = getHost(uri);
+        HostHealth result = null;
+        if (host != null) {
+            synchronized (this.hosts) {
+                result = this.hosts.computeIfAbsent(host,
+                    key -> new HostHealth(key, String.format("%s://%s/", uri.getScheme(), key)));
+            }
+        }
+        return result;
+    }
+
+    private String getHost(URI uri)
+    {
+        return (uri.getRawAuthority() != null) ? uri.getRawAuthority().toLowerCase(Locale.ROOT) : null;
+    }
+}
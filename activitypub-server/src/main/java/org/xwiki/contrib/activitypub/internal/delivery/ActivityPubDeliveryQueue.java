@@ -0,0 +1,435 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.delivery;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.activitypub.ActivityPubClient;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.SerializedActivity;
+import org.xwiki.contrib.activitypub.entities.AbstractActivity;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
+
+/**
+ * Persistent queue of the activities to deliver to remote inboxes.
+ * Each delivery is stored before being attempted by a pool of worker threads, so that the callers do not wait for
+ * the remote servers and no delivery is lost in case of restart. The deliveries are performed in parallel, up to the
+ * number of threads, but no more than {@link ActivityPubConfiguration#getDeliveryMaxConnectionsPerHost()} deliveries
+ * are performed at the same time to the same host. A failed delivery is retried with an exponential
+ * backoff, until {@link ActivityPubConfiguration#getDeliveryMaxAttempts()} is reached: it's then kept with the
+ * {@link DeliveryRecord#FAILED} state and not retried anymore.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = ActivityPubDeliveryQueue.class)
+@Singleton
+public class ActivityPubDeliveryQueue implements Initializable, Disposable
+{
+    /**
+     * Key of the statistic giving the number of activities enqueued since the start whose delivery has been given up
+     * for at least one of their inboxes at the first attempt.
+     */
+    public static final String UNDELIVERED_ACTIVITIES = "undeliveredActivities";
+
+    /**
+     * Interval in seconds between two scans of the storage for the due deliveries which are not scheduled: those are
+     * the deliveries stored before a restart, or which could not be scheduled.
+     */
+    private static final long SWEEP_INTERVAL = 30;
+
+    /**
+     * Maximum number of deliveries waiting in the worker pool after a scan of the storage.
+     */
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private static final long MAX_BACKOFF = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * Delay in milliseconds before trying again a delivery whose host has already too many deliveries in progress.
+     */
+    private static final long HOST_BUSY_DELAY = 200;
+
+    @Inject
+    private DeliveryRecordStore store;
+
+    @Inject
+    private ActivityPubJsonSerializer activityPubJsonSerializer;
+
+    @Inject
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @Inject
+    private ActivityPubClient activityPubClient;
+
+    @Inject
+    private ActivityPubConfiguration configuration;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Identifiers of the deliveries currently scheduled or in progress.
+     */
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of deliveries in progress indexed by remote host: the hosts without any delivery in progress are removed.
+     */
+    private final Map<String, Integer> inProgressByHost = new ConcurrentHashMap<>();
+
+    /**
+     * Outcomes of the first attempt of the deliveries enqueued since the start, indexed by delivery identifier.
+     */
+    private final Map<String, CompletableFuture<DeliveryRecord>> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * Number of activities enqueued since the start whose delivery has been given up for at least one inbox.
+     */
+    private final AtomicLong undeliveredActivities = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = new ScheduledThreadPoolExecutor(this.configuration.getDeliveryThreads(),
+            new BasicThreadFactory.Builder().namingPattern("ActivityPub delivery %d").daemon(true).build());
+        this.executor.scheduleWithFixedDelay(this::sweep, 0, SWEEP_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Store the deliveries of the given activity to the given inboxes, and schedule them.
+     * The activity is serialized, digested and its actor resolved once for all the inboxes, so it should be ready to be
+     * sent when calling this method: only the signature is computed for each inbox. The outcome of the deliveries is
+     * reported once they have all been attempted: with a warning if some of them have been given up.
+     *
+     * @param activity the activity to deliver.
+     * @param inboxes the inboxes to which the activity should be delivered.
+     * @return the outcomes of the deliveries, in the order of the inboxes: each future is completed with the delivery
+     *         after its first attempt, its state being {@link DeliveryRecord#DELIVERED} in case of success,
+     *         {@link DeliveryRecord#PENDING} if it will be retried or {@link DeliveryRecord#FAILED}.
+     * @throws ActivityPubException in case of error when serializing the activity, resolving its actor or storing
+     *         the deliveries.
+     */
+    public List<CompletableFuture<DeliveryRecord>> enqueue(AbstractActivity activity, Collection<URI> inboxes)
+        throws ActivityPubException
+    {
+        if (inboxes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String content = this.activityPubJsonSerializer.serialize(activity);
+        SerializedActivity serializedActivity = new SerializedActivity(content);
+        AbstractActor actor = this.resolver.resolveReference(activity.getActor());
+        Date now = new Date();
+        List<DeliveryRecord> records = new ArrayList<>(inboxes.size());
+        for (URI inbox : inboxes) {
+            records.add(new DeliveryRecord()
+                .setId(String.format("%s-%s", DeliveryRecordStore.DELIVERY_TYPE, UUID.randomUUID()))
+                .setActivity(activity.getId())
+                .setActor(activity.getActor().getLink())
+                .setInbox(inbox)
+                .setContent(content)
+                .setSerializedActivity(serializedActivity)
+                .setResolvedActor(actor)
+                .setNextAttempt(now)
+                .setState(DeliveryRecord.PENDING));
+        }
+        // The deliveries are marked as scheduled before being saved, so that a concurrent sweep does not perform them.
+        List<CompletableFuture<DeliveryRecord>> result = new ArrayList<>(records.size());
+        for (DeliveryRecord record : records) {
+            CompletableFuture<DeliveryRecord> outcome = new CompletableFuture<>();
+            this.outcomes.put(record.getId(), outcome);
+            this.scheduled.add(record.getId());
+            result.add(outcome);
+        }
+        try {
+            this.store.save(records);
+        } catch (ActivityPubException | RuntimeException e) {
+            for (DeliveryRecord record : records) {
+                this.scheduled.remove(record.getId());
+                this.outcomes.remove(record.getId());
+            }
+            throw e;
+        }
+        for (DeliveryRecord record : records) {
+            submit(record, 0);
+        }
+        CompletableFuture.allOf(result.toArray(new CompletableFuture[0]))
+            .thenRun(() -> report(activity.getId(), result));
+        return result;
+    }
+
+    private void report(URI activity, List<CompletableFuture<DeliveryRecord>> outcomes)
+    {
+        Map<String, Long> states = outcomes.stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.groupingBy(DeliveryRecord::getState, Collectors.counting()));
+        long failed = states.getOrDefault(DeliveryRecord.FAILED, 0L);
+        String message = "Delivery of [{}] to [{}] inboxes: [{}] delivered, [{}] to be retried, [{}] failed.";
+        long delivered = states.getOrDefault(DeliveryRecord.DELIVERED, 0L);
+        long pending = states.getOrDefault(DeliveryRecord.PENDING, 0L);
+        Object[] arguments = new Object[] { activity, outcomes.size(), delivered, pending, failed };
+        if (failed > 0) {
+            this.undeliveredActivities.incrementAndGet();
+            this.logger.warn(message, arguments);
+        } else {
+            this.logger.debug(message, arguments);
+        }
+    }
+
+    /**
+     * @return the number of stored deliveries indexed by state ({@link DeliveryRecord#PENDING} and
+     *         {@link DeliveryRecord#FAILED}), and the number of activities enqueued since the start whose delivery has
+     *         been given up for at least one inbox ({@link #UNDELIVERED_ACTIVITIES}).
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public Map<String, Long> getStatistics() throws ActivityPubException
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put(DeliveryRecord.PENDING, this.store.count(DeliveryRecord.PENDING));
+        result.put(DeliveryRecord.FAILED, this.store.count(DeliveryRecord.FAILED));
+        result.put(UNDELIVERED_ACTIVITIES, this.undeliveredActivities.get());
+        return result;
+    }
+
+    /**
+     * Schedule the due deliveries found in the storage which are not scheduled yet. The search might return deliveries
+     * whose last attempt is not committed yet: those are checked again with a real-time get, to not perform again a
+     * delivery which has been removed or postponed since.
+     */
+    void sweep()
+    {
+        try {
+            for (DeliveryRecord record : this.store.getDueRecords(SWEEP_BATCH_SIZE + this.scheduled.size())) {
+                if (this.executor.getQueue().size() >= SWEEP_BATCH_SIZE) {
+                    break;
+                }
+                if (!this.scheduled.contains(record.getId())) {
+                    DeliveryRecord currentRecord = this.store.get(record.getId());
+                    if (isDue(currentRecord)) {
+                        schedule(currentRecord, 0);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Catch everything: an exception would cancel the next scans.
+            this.logger.warn("Error while looking for the deliveries to perform. Cause: [{}]",
+                getRootCauseMessage(e));
+        }
+    }
+
+    private boolean isDue(DeliveryRecord record)
+    {
+        return record != null && DeliveryRecord.PENDING.equals(record.getState())
+            && (record.getNextAttempt() == null || !record.getNextAttempt().after(new Date()));
+    }
+
+    private void schedule(DeliveryRecord record, long delay)
+    {
+        if (this.scheduled.add(record.getId())) {
+            submit(record, TimeUnit.SECONDS.toMillis(delay));
+        }
+    }
+
+    private void submit(DeliveryRecord record, long delay)
+    {
+        try {
+            this.executor.schedule(() -> deliver(record), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The queue is being disposed: the delivery will be performed after the next start.
+            this.scheduled.remove(record.getId());
+            complete(record);
+        }
+    }
+
+    /**
+     * Perform an attempt of the given delivery, and schedule the next attempt in case of failure.
+     */
+    private void deliver(DeliveryRecord record)
+    {
+        String host = StringUtils.defaultString(record.getInbox().getAuthority());
+        if (!acquireHost(host)) {
+            // Wait for the deliveries in progress to this host without holding a worker thread.
+            submit(record, HOST_BUSY_DELAY);
+            return;
+        }
+
+        long retryDelay;
+        try {
+            // The outcome of the attempt is stored before the delivery is unmarked: the sweep checks the stored
+            // version of the deliveries which are not marked.
+            retryDelay = attempt(record);
+        } finally {
+            releaseHost(host);
+            this.scheduled.remove(record.getId());
+        }
+        complete(record);
+        if (retryDelay >= 0) {
+            schedule(record, retryDelay);
+        }
+    }
+
+    private boolean acquireHost(String host)
+    {
+        int maxConnections = Math.max(this.configuration.getDeliveryMaxConnectionsPerHost(), 1);
+        boolean[] acquired = new boolean[1];
+        this.inProgressByHost.compute(host, (key, count) -> {
+            int current = (count != null) ? count : 0;
+            acquired[0] = current < maxConnections;
+            return (acquired[0]) ? current + 1 : count;
+        });
+        return acquired[0];
+    }
+
+    private void releaseHost(String host)
+    {
+        this.inProgressByHost.computeIfPresent(host, (key, count) -> (count > 1) ? count - 1 : null);
+    }
+
+    private void complete(DeliveryRecord record)
+    {
+        CompletableFuture<DeliveryRecord> outcome = this.outcomes.remove(record.getId());
+        if (outcome != null) {
+            outcome.complete(record);
+        }
+    }
+
+    /**
+     * @return the delay in seconds before the next attempt, or {@code -1} if the delivery should not be retried.
+     */
+    private long attempt(DeliveryRecord record)
+    {
+        long result = -1;
+        boolean delivered = false;
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            if (record.getResolvedActor() == null) {
+                record.setResolvedActor(this.resolver.resolveReference(
+                    new ActivityPubObjectReference<AbstractActor>().setLink(record.getActor())));
+            }
+            HttpMethod postMethod = this.activityPubClient.post(record.getInbox(), record.getResolvedActor(),
+                record.getSerializedActivity());
+            try {
+                this.activityPubClient.checkDelivery(postMethod);
+                delivered = true;
+            } finally {
+                postMethod.releaseConnection();
+            }
+        } catch (Exception e) {
+            result = fail(record, e);
+        } finally {
+            this.execution.removeContext();
+        }
+
+        if (delivered) {
+            record.setState(DeliveryRecord.DELIVERED);
+            try {
+                this.store.remove(record);
+            } catch (ActivityPubException e) {
+                this.logger.error("Error while removing the performed delivery [{}].", record, e);
+            }
+        }
+        return result;
+    }
+
+    private long fail(DeliveryRecord record, Exception cause)
+    {
+        long result = -1;
+        record.setAttempts(record.getAttempts() + 1).setLastError(getRootCauseMessage(cause));
+        if (record.getAttempts() >= this.configuration.getDeliveryMaxAttempts()) {
+            record.setState(DeliveryRecord.FAILED);
+            this.logger.error("Giving up the delivery of the activity [{}] to [{}] after [{}] attempts. Cause: [{}]",
+                record.getActivity(), record.getInbox(), record.getAttempts(), record.getLastError());
+        } else {
+            result = getBackoff(record.getAttempts());
+            record.setNextAttempt(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(result)));
+            this.logger.warn("The delivery of the activity [{}] to [{}] failed, it will be retried in [{}] seconds. "
+                + "Cause: [{}]", record.getActivity(), record.getInbox(), result, record.getLastError());
+        }
+        try {
+            this.store.save(Collections.singletonList(record));
+        } catch (ActivityPubException e) {
+            this.logger.error("Error while storing the failed delivery [{}].", record, e);
+        }
+        return result;
+    }
+
+    /**
+     * @return the delay in seconds before the next attempt, doubled after each failed attempt.
+     */
+    private long getBackoff(int attempts)
+    {
+        long backoff = Math.max(this.configuration.getDeliveryInitialBackoff(), 0);
+        for (int i = 1; i < attempts && backoff < MAX_BACKOFF; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, MAX_BACKOFF);
+    }
+}
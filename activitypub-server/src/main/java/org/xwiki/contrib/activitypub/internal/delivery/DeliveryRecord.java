@@ -0,0 +1,290 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.delivery;
+
+import java.net.URI;
+import java.util.Date;
+
+import org.xwiki.contrib.activitypub.SerializedActivity;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * The delivery of a serialized activity to a single inbox, as persisted in the delivery queue.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class DeliveryRecord
+{
+    /**
+     * State of the deliveries waiting to be attempted.
+     */
+    public static final String PENDING = "pending";
+
+    /**
+     * State of the deliveries which are not retried anymore.
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * State of the deliveries which have been performed: those are not stored anymore.
+     */
+    public static final String DELIVERED = "delivered";
+
+    private String id;
+
+    private URI activity;
+
+    private URI actor;
+
+    private URI inbox;
+
+    private String content;
+
+    private int attempts;
+
+    private Date nextAttempt;
+
+    private String state;
+
+    private String lastError;
+
+    private SerializedActivity serializedActivity;
+
+    private AbstractActor resolvedActor;
+
+    /**
+     * @return the identifier of the record in the storage.
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @param id the identifier of the record in the storage.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setId(String id)
+    {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * @return the identifier of the delivered activity.
+     */
+    public URI getActivity()
+    {
+        return this.activity;
+    }
+
+    /**
+     * @param activity the identifier of the delivered activity.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setActivity(URI activity)
+    {
+        this.activity = activity;
+        return this;
+    }
+
+    /**
+     * @return the identifier of the actor of the activity, used to sign the requests.
+     */
+    public URI getActor()
+    {
+        return this.actor;
+    }
+
+    /**
+     * @param actor the identifier of the actor of the activity, used to sign the requests.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setActor(URI actor)
+    {
+        this.actor = actor;
+        return this;
+    }
+
+    /**
+     * @return the inbox to which the activity is delivered.
+     */
+    public URI getInbox()
+    {
+        return this.inbox;
+    }
+
+    /**
+     * @param inbox the inbox to which the activity is delivered.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setInbox(URI inbox)
+    {
+        this.inbox = inbox;
+        return this;
+    }
+
+    /**
+     * @return the serialized activity.
+     */
+    public String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @param content the serialized activity.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setContent(String content)
+    {
+        this.content = content;
+        this.serializedActivity = null;
+        return this;
+    }
+
+    /**
+     * @return the serialized activity ready to be posted, computed from the content if it has not been set: this
+     *         value is not persisted.
+     */
+    public SerializedActivity getSerializedActivity()
+    {
+        if (this.serializedActivity == null && this.content != null) {
+            this.serializedActivity = new SerializedActivity(this.content);
+        }
+        return this.serializedActivity;
+    }
+
+    /**
+     * @param serializedActivity the serialized activity ready to be posted, which should match the content: it
+     *     allows to share the same instance between the deliveries of an activity to many inboxes.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setSerializedActivity(SerializedActivity serializedActivity)
+    {
+        this.serializedActivity = serializedActivity;
+        return this;
+    }
+
+    /**
+     * @return the resolved actor of the activity used to sign the requests, or {@code null} if it has not been
+     *         resolved yet: this value is not persisted.
+     */
+    public AbstractActor getResolvedActor()
+    {
+        return this.resolvedActor;
+    }
+
+    /**
+     * @param resolvedActor the resolved actor of the activity used to sign the requests.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setResolvedActor(AbstractActor resolvedActor)
+    {
+        this.resolvedActor = resolvedActor;
+        return this;
+    }
+
+    /**
+     * @return the number of failed attempts.
+     */
+    public int getAttempts()
+    {
+        return this.attempts;
+    }
+
+    /**
+     * @param attempts the number of failed attempts.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setAttempts(int attempts)
+    {
+        this.attempts = attempts;
+        return this;
+    }
+
+    /**
+     * @return the date from which the delivery should be attempted.
+     */
+    public Date getNextAttempt()
+    {
+        return this.nextAttempt;
+    }
+
+    /**
+     * @param nextAttempt the date from which the delivery should be attempted.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setNextAttempt(Date nextAttempt)
+    {
+        this.nextAttempt = nextAttempt;
+        return this;
+    }
+
+    /**
+     * @return the state of the delivery: {@link #PENDING}, {@link #FAILED} or {@link #DELIVERED}.
+     */
+    public String getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @param state the state of the delivery.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setState(String state)
+    {
+        this.state = state;
+        return this;
+    }
+
+    /**
+     * @return the cause of the last failed attempt.
+     */
+    public String getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * @param lastError the cause of the last failed attempt.
+     * @return the current instance for fluent API.
+     */
+    public DeliveryRecord setLastError(String lastError)
+    {
+        this.lastError = lastError;
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("id", getId())
+            .append("activity", getActivity())
+            .append("inbox", getInbox())
+            .append("attempts", getAttempts())
+            .append("state", getState())
+            .build();
+    }
+}
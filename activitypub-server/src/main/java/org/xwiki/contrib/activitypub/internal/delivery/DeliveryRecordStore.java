@@ -0,0 +1,239 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.delivery;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.internal.storage.ActivityPubSolrWriter;
+import org.xwiki.search.solr.Solr;
+
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.CONTENT_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.ID_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.TYPE_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.UPDATED_DATE_FIELD;
+
+/**
+ * Persistence of the {@link DeliveryRecord} in the ActivityPub Solr core.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = DeliveryRecordStore.class)
+@Singleton
+public class DeliveryRecordStore
+{
+    /**
+     * Value of the type field for the delivery records.
+     */
+    public static final String DELIVERY_TYPE = "delivery";
+
+    /**
+     * Storage field used to store the identifier of the delivered activity.
+     */
+    public static final String ACTIVITY_FIELD = "deliveryActivity";
+
+    /**
+     * Storage field used to store the identifier of the actor signing the delivery.
+     */
+    public static final String ACTOR_FIELD = "deliveryActor";
+
+    /**
+     * Storage field used to store the inbox to which the activity is delivered.
+     */
+    public static final String INBOX_FIELD = "deliveryInbox";
+
+    /**
+     * Storage field used to store the state of the delivery.
+     */
+    public static final String STATE_FIELD = "deliveryState";
+
+    /**
+     * Storage field used to store the number of failed attempts.
+     */
+    public static final String ATTEMPTS_FIELD = "deliveryAttempts";
+
+    /**
+     * Storage field used to store the date from which the delivery should be attempted.
+     */
+    public static final String NEXT_ATTEMPT_FIELD = "deliveryNextAttempt";
+
+    /**
+     * Storage field used to store the cause of the last failed attempt.
+     */
+    public static final String ERROR_FIELD = "deliveryError";
+
+    private static final String ACTIVITYPUB = "activitypub";
+
+    private static final String FILTER_QUERY = "%s:%s";
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private ActivityPubSolrWriter solrWriter;
+
+    /**
+     * Store the given records, replacing the previous version of the records with the same identifier.
+     *
+     * @param records the records to store.
+     * @throws ActivityPubException in case of error when storing the records.
+     */
+    public void save(Collection<DeliveryRecord> records) throws ActivityPubException
+    {
+        List<SolrInputDocument> documents = new ArrayList<>(records.size());
+        for (DeliveryRecord record : records) {
+            documents.add(toDocument(record));
+        }
+        try {
+            this.solrWriter.write(documents);
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while storing the deliveries [%s]", records), e);
+        }
+    }
+
+    /**
+     * Remove the given record from the storage.
+     *
+     * @param record the record to remove.
+     * @throws ActivityPubException in case of error when removing the record.
+     */
+    public void remove(DeliveryRecord record) throws ActivityPubException
+    {
+        try {
+            this.solrWriter.replace(
+                String.format(FILTER_QUERY, ID_FIELD, ClientUtils.escapeQueryChars(record.getId())),
+                Collections.emptyList());
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while removing the delivery [%s]", record), e);
+        }
+    }
+
+    /**
+     * Retrieve the current version of the given record, including the changes which are not committed yet.
+     *
+     * @param id the identifier of the record.
+     * @return the record, or {@code null} if it has been removed.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public DeliveryRecord get(String id) throws ActivityPubException
+    {
+        try {
+            // getById relies on Solr real-time get: the last write is returned even if it's not committed yet.
+            SolrDocument document = this.solr.getClient(ACTIVITYPUB).getById(id);
+            return (document != null) ? fromDocument(document) : null;
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while retrieving the delivery [%s]", id), e);
+        }
+    }
+
+    /**
+     * @param limit the maximum number of records to return.
+     * @return the pending records whose next attempt is due, the oldest first.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public List<DeliveryRecord> getDueRecords(int limit) throws ActivityPubException
+    {
+        SolrQuery query = createQuery(DeliveryRecord.PENDING)
+            .addFilterQuery(String.format("%s:[* TO NOW]", NEXT_ATTEMPT_FIELD))
+            .addSort(NEXT_ATTEMPT_FIELD, SolrQuery.ORDER.asc)
+            .setRows(limit);
+        try {
+            List<DeliveryRecord> result = new ArrayList<>();
+            for (SolrDocument document : this.solr.getClient(ACTIVITYPUB).query(query).getResults()) {
+                result.add(fromDocument(document));
+            }
+            return result;
+        } catch (Exception e) {
+            throw new ActivityPubException("Error while retrieving the due deliveries.", e);
+        }
+    }
+
+    /**
+     * @param state the state of the records to count.
+     * @return the number of stored records with the given state.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public long count(String state) throws ActivityPubException
+    {
+        try {
+            return this.solr.getClient(ACTIVITYPUB).query(createQuery(state).setRows(0)).getResults().getNumFound();
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while counting the [%s] deliveries.", state), e);
+        }
+    }
+
+    private SolrQuery createQuery(String state)
+    {
+        return new SolrQuery("*:*")
+            .addFilterQuery(String.format(FILTER_QUERY, TYPE_FIELD, DELIVERY_TYPE))
+            .addFilterQuery(String.format(FILTER_QUERY, STATE_FIELD, state));
+    }
+
+    private SolrInputDocument toDocument(DeliveryRecord record)
+    {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField(ID_FIELD, record.getId());
+        document.addField(TYPE_FIELD, DELIVERY_TYPE);
+        document.addField(CONTENT_FIELD, record.getContent());
+        document.addField(UPDATED_DATE_FIELD, new Date());
+        if (record.getActivity() != null) {
+            document.addField(ACTIVITY_FIELD, record.getActivity().toASCIIString());
+        }
+        document.addField(ACTOR_FIELD, record.getActor().toASCIIString());
+        document.addField(INBOX_FIELD, record.getInbox().toASCIIString());
+        document.addField(STATE_FIELD, record.getState());
+        document.addField(ATTEMPTS_FIELD, (long) record.getAttempts());
+        document.addField(NEXT_ATTEMPT_FIELD, record.getNextAttempt());
+        if (record.getLastError() != null) {
+            document.addField(ERROR_FIELD, record.getLastError());
+        }
+        return document;
+    }
+
+    private DeliveryRecord fromDocument(SolrDocument document)
+    {
+        String activity = (String) document.getFieldValue(ACTIVITY_FIELD);
+        Number attempts = (Number) document.getFieldValue(ATTEMPTS_FIELD);
+        return new DeliveryRecord()
+            .setId((String) document.getFieldValue(ID_FIELD))
+            .setActivity((activity != null) ? URI.create(activity) : null)
+            .setActor(URI.create((String) document.getFieldValue(ACTOR_FIELD)))
+            .setInbox(URI.create((String) document.getFieldValue(INBOX_FIELD)))
+            .setContent((String) document.getFieldValue(CONTENT_FIELD))
+            .setState((String) document.getFieldValue(STATE_FIELD))
+            .setAttempts((attempts != null) ? attempts.intValue() : 0)
+            .setNextAttempt((Date) document.getFieldValue(NEXT_ATTEMPT_FIELD))
+            .setLastError((String) document.getFieldValue(ERROR_FIELD));
+    }
+}
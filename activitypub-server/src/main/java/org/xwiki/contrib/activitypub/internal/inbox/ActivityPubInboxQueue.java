@@ -0,0 +1,352 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.inbox;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.activitypub.ActivityHandler;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.entities.AbstractActivity;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.internal.resource.SharedInboxRecipientResolver;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
+
+/**
+ * Persistent queue of the activities received on the inboxes, used when
+ * {@link ActivityPubConfiguration#isInboxAsyncEnabled()} is enabled.
+ * The received activities are stored before being processed by a bounded pool of worker threads, so that the remote
+ * servers get an answer without waiting for the processing and no activity is lost in case of restart. When the pool
+ * is busy, the activities stay in the storage until a periodic scan schedules them. A failed processing is retried
+ * up to {@link #MAX_ATTEMPTS} times with an exponential backoff: it's then kept with the {@link InboxRecord#FAILED}
+ * state during {@link #FAILED_RETENTION} days.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = ActivityPubInboxQueue.class)
+@Singleton
+public class ActivityPubInboxQueue implements Initializable, Disposable
+{
+    /**
+     * Maximum number of attempts to process an activity.
+     */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Number of days during which the activities whose processing has been given up are kept in the storage.
+     */
+    public static final int FAILED_RETENTION = 30;
+
+    /**
+     * Interval in seconds between two scans of the storage for the due activities which are not scheduled: those are
+     * the activities stored before a restart, or which could not be scheduled because the pool was busy.
+     */
+    private static final long SWEEP_INTERVAL = 30;
+
+    /**
+     * Maximum number of activities waiting in the worker pool: the other ones are kept in the storage.
+     */
+    private static final int MAX_WAITING = 100;
+
+    /**
+     * Delay in seconds before the first retry of a failed processing, doubled after each failed attempt.
+     */
+    private static final long RETRY_DELAY = 60;
+
+    /**
+     * Interval in hours between two removals of the activities given up for more than {@link #FAILED_RETENTION} days.
+     */
+    private static final long PURGE_INTERVAL = 24;
+
+    @Inject
+    private InboxRecordStore store;
+
+    @Inject
+    private ActivityPubJsonParser activityPubJsonParser;
+
+    @Inject
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @Inject
+    private SharedInboxRecipientResolver sharedInboxRecipientResolver;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private ActivityPubConfiguration configuration;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Identifiers of the records currently scheduled or in progress.
+     */
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(this.configuration.getInboxThreads(), 1),
+            new BasicThreadFactory.Builder().namingPattern("ActivityPub inbox %d").daemon(true).build());
+        this.executor.scheduleWithFixedDelay(this::sweep, 0, SWEEP_INTERVAL, TimeUnit.SECONDS);
+        this.executor.scheduleWithFixedDelay(this::purge, 0, PURGE_INTERVAL, TimeUnit.HOURS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Store the given activity and schedule its processing.
+     *
+     * @param content the body of the request, as received.
+     * @param activity the activity parsed from the body, already validated.
+     * @param recipients the identifiers of the local actors whose inbox received the activity, or an empty list if the
+     *     activity has been received on the shared inbox.
+     * @return the stored record.
+     * @throws ActivityPubException in case of error when storing the activity.
+     */
+    public InboxRecord enqueue(String content, AbstractActivity activity, List<URI> recipients)
+        throws ActivityPubException
+    {
+        InboxRecord record = new InboxRecord()
+            .setId(String.format("%s-%s", InboxRecordStore.INBOX_TYPE, UUID.randomUUID()))
+            .setActivity(activity.getId())
+            .setContent(content)
+            .setRecipients(recipients)
+            .setSharedInbox(recipients.isEmpty())
+            .setNextAttempt(new Date())
+            .setState(InboxRecord.PENDING);
+        this.store.save(record);
+        if (this.executor.getQueue().size() < MAX_WAITING) {
+            schedule(record, 0);
+        }
+        return record;
+    }
+
+    /**
+     * @return the number of stored activities indexed by state ({@link InboxRecord#PENDING} and
+     *         {@link InboxRecord#FAILED}).
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public Map<String, Long> getStatistics() throws ActivityPubException
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put(InboxRecord.PENDING, this.store.count(InboxRecord.PENDING));
+        result.put(InboxRecord.FAILED, this.store.count(InboxRecord.FAILED));
+        return result;
+    }
+
+    /**
+     * Schedule the due activities found in the storage which are not scheduled yet. The search might return activities
+     * whose processing is not committed yet: those are checked again with a real-time get, to not process again an
+     * activity which has been removed or postponed since.
+     */
+    void sweep()
+    {
+        try {
+            for (InboxRecord record : this.store.getDueRecords(MAX_WAITING + this.scheduled.size())) {
+                if (this.executor.getQueue().size() >= MAX_WAITING) {
+                    break;
+                }
+                if (!this.scheduled.contains(record.getId())) {
+                    InboxRecord currentRecord = this.store.get(record.getId());
+                    if (isDue(currentRecord)) {
+                        schedule(currentRecord, 0);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Catch everything: an exception would cancel the next scans.
+            this.logger.warn("Error while looking for the received activities to process. Cause: [{}]",
+                getRootCauseMessage(e));
+        }
+    }
+
+    private boolean isDue(InboxRecord record)
+    {
+        return record != null && InboxRecord.PENDING.equals(record.getState())
+            && (record.getNextAttempt() == null || !record.getNextAttempt().after(new Date()));
+    }
+
+    /**
+     * Remove the activities given up for more than {@link #FAILED_RETENTION} days.
+     */
+    private void purge()
+    {
+        try {
+            this.store.removeFailed(FAILED_RETENTION);
+        } catch (Exception e) {
+            // Catch everything: an exception would cancel the next removals.
+            this.logger.warn("Error while removing the failed received activities. Cause: [{}]",
+                getRootCauseMessage(e));
+        }
+    }
+
+    private void schedule(InboxRecord record, long delay)
+    {
+        if (this.scheduled.add(record.getId())) {
+            try {
+                this.executor.schedule(() -> process(record), delay, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                // The queue is being disposed: the activity will be processed after the next start.
+                this.scheduled.remove(record.getId());
+            }
+        }
+    }
+
+    private void process(InboxRecord record)
+    {
+        long retryDelay = -1;
+        boolean processed = false;
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            handle(record);
+            processed = true;
+        } catch (Exception e) {
+            retryDelay = fail(record, e);
+        } finally {
+            this.execution.removeContext();
+        }
+
+        try {
+            if (processed) {
+                record.setState(InboxRecord.PROCESSED);
+                try {
+                    this.store.remove(record);
+                } catch (ActivityPubException e) {
+                    this.logger.error("Error while removing the processed activity [{}].", record, e);
+                }
+            }
+        } finally {
+            // The outcome of the processing is stored before the record is unmarked: the sweep checks the stored
+            // version of the records which are not marked.
+            this.scheduled.remove(record.getId());
+        }
+        if (retryDelay >= 0) {
+            schedule(record, retryDelay);
+        }
+    }
+
+    private <T extends AbstractActivity> void handle(InboxRecord record) throws IOException, ActivityPubException
+    {
+        ActivityPubObject object = this.activityPubJsonParser.parse(record.getContent());
+        if (!(object instanceof AbstractActivity)) {
+            throw new ActivityPubException(String.format("The stored content of [%s] is not an activity.", record));
+        }
+        T activity = (T) object;
+        Set<AbstractActor> recipients;
+        if (record.isSharedInbox()) {
+            recipients = this.sharedInboxRecipientResolver.resolveRecipients(activity);
+        } else {
+            recipients = new LinkedHashSet<>();
+            for (URI recipient : record.getRecipients()) {
+                recipients.add(
+                    this.resolver.resolveReference(new ActivityPubObjectReference<AbstractActor>().setLink(recipient)));
+            }
+        }
+        getHandler(activity).handleSharedInboxRequest(activity, recipients);
+    }
+
+    private <T extends AbstractActivity> ActivityHandler<T> getHandler(T activity) throws ActivityPubException
+    {
+        try {
+            Type activityHandlerType = new DefaultParameterizedType(null, ActivityHandler.class, activity.getClass());
+            return this.componentManagerProvider.get().getInstance(activityHandlerType);
+        } catch (ComponentLookupException e) {
+            throw new ActivityPubException(
+                String.format("Error while getting the ActivityHandler for activity [%s]", activity.getType()), e);
+        }
+    }
+
+    /**
+     * @return the delay in seconds before the next attempt, or {@code -1} if the processing should not be retried.
+     */
+    private long fail(InboxRecord record, Exception cause)
+    {
+        long result = -1;
+        record.setAttempts(record.getAttempts() + 1).setLastError(getRootCauseMessage(cause));
+        if (record.getAttempts() >= MAX_ATTEMPTS) {
+            record.setState(InboxRecord.FAILED);
+            this.logger.error("Giving up the processing of the activity [{}] after [{}] attempts. Cause: [{}]",
+                record.getActivity(), record.getAttempts(), record.getLastError());
+        } else {
+            result = RETRY_DELAY << (record.getAttempts() - 1);
+            record.setNextAttempt(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(result)));
+            this.logger.warn("The processing of the activity [{}] failed, it will be retried in [{}] seconds. "
+                + "Cause: [{}]", record.getActivity(), result, record.getLastError());
+        }
+        try {
+            this.store.save(record);
+        } catch (ActivityPubException e) {
+            this.logger.error("Error while storing the failed activity [{}].", record, e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.inbox;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.internal.storage.ActivityPubSolrWriter;
+import org.xwiki.search.solr.Solr;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.ID_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.TYPE_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.UPDATED_DATE_FIELD;
+
+/**
+ * Keep track of the activities received on the inboxes to drop the ones delivered again by the remote servers.
+ * An activity is identified by its id and the inbox which received it: the same activity received on two inboxes is
+ * handled for each recipient, but not twice for the same one. The received activities are persisted in the ActivityPub
+ * Solr core for {@link #RETENTION} days, and the most recent ones are kept in memory so that the replays are detected
+ * without querying the storage.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = InboxDeduplicator.class)
+@Singleton
+public class InboxDeduplicator implements Initializable, Disposable
+{
+    /**
+     * Outcome of the registration of a received activity.
+     */
+    public enum Registration
+    {
+        /**
+         * First reception of the activity by the inbox: it should be handled, then either
+         * {@link InboxDeduplicator#release(URI, URI) released} or
+         * {@link InboxDeduplicator#unregister(URI, URI) unregistered} depending on the outcome of the handling.
+         */
+        FIRST,
+
+        /**
+         * The activity has already been received and handled by the inbox.
+         */
+        DUPLICATE,
+
+        /**
+         * The activity is being handled for the inbox, and it's not known yet if it will be successful: the remote
+         * server should deliver it again later.
+         */
+        IN_PROGRESS
+    }
+
+    /**
+     * Value of the type field for the records of the received activities.
+     */
+    public static final String SEEN_TYPE = "inboxSeen";
+
+    /**
+     * Number of days during which a received activity is remembered.
+     */
+    public static final long RETENTION = 7;
+
+    private static final int CACHE_SIZE = 10000;
+
+    private static final String ACTIVITYPUB = "activitypub";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private ActivityPubSolrWriter solrWriter;
+
+    @Inject
+    private Logger logger;
+
+    private Cache<Boolean> cache;
+
+    private ScheduledExecutorService purgeExecutor;
+
+    /**
+     * Keys of the activities being handled, to detect the concurrent deliveries of the same activity.
+     */
+    private final Map<String, Boolean> inProgress = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache =
+                this.cacheManager.createNewCache(new LRUCacheConfiguration("activitypub.inbox.seen", CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the ActivityPub received activities cache.", e);
+        }
+        this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("ActivityPub inbox purge").daemon(true).build());
+        this.purgeExecutor.scheduleWithFixedDelay(this::purge, 1, 1, TimeUnit.DAYS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.purgeExecutor.shutdownNow();
+        this.cache.dispose();
+    }
+
+    /**
+     * Register the reception of the given activity by the given inbox. When it's the first reception, the activity is
+     * considered in progress until {@link #release(URI, URI)} or {@link #unregister(URI, URI)} is called.
+     *
+     * @param activity the identifier of the received activity, or {@code null} if it does not have one: such
+     *     activities cannot be deduplicated.
+     * @param recipient the identifier of the local actor whose inbox received the activity, or {@code null} for the
+     *     shared inbox of the instance.
+     * @return {@link Registration#FIRST} if it's the first reception of this activity by this inbox and it should be
+     *         handled, {@link Registration#DUPLICATE} if it has already been received and handled, or
+     *         {@link Registration#IN_PROGRESS} if it's still being handled.
+     * @throws ActivityPubException in case of error when checking or storing the reception.
+     */
+    public Registration register(URI activity, URI recipient) throws ActivityPubException
+    {
+        Registration result = Registration.FIRST;
+        String key = getKey(activity, recipient);
+        if (key != null) {
+            if (this.inProgress.putIfAbsent(key, Boolean.TRUE) != null) {
+                result = Registration.IN_PROGRESS;
+            } else {
+                boolean registered = false;
+                try {
+                    if (this.cache.get(key) == null) {
+                        registered = registerInStorage(key);
+                        this.cache.set(key, Boolean.TRUE);
+                    }
+                } finally {
+                    if (!registered) {
+                        this.inProgress.remove(key);
+                    }
+                }
+                result = (registered) ? Registration.FIRST : Registration.DUPLICATE;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mark the given activity as handled for the given inbox: this should be called when the activity registered for
+     * the first time has been handled successfully.
+     *
+     * @param activity the identifier of the received activity.
+     * @param recipient the identifier of the local actor whose inbox received the activity, or {@code null} for the
+     *     shared inbox of the instance.
+     */
+    public void release(URI activity, URI recipient)
+    {
+        String key = getKey(activity, recipient);
+        if (key != null) {
+            this.inProgress.remove(key);
+        }
+    }
+
+    /**
+     * Forget the reception of the given activity by the given inbox, so that it's handled when it's received again:
+     * this should be called when the activity could not be handled.
+     *
+     * @param activity the identifier of the received activity.
+     * @param recipient the identifier of the local actor whose inbox received the activity, or {@code null} for the
+     *     shared inbox of the instance.
+     */
+    public void unregister(URI activity, URI recipient)
+    {
+        String key = getKey(activity, recipient);
+        if (key != null) {
+            this.cache.remove(key);
+            try {
+                this.solrWriter.replace(String.format("%s:%s", ID_FIELD, ClientUtils.escapeQueryChars(key)),
+                    Collections.emptyList());
+            } catch (Exception e) {
+                this.logger.warn("Error while forgetting the received activity [{}]. Cause: [{}]", key,
+                    getRootCauseMessage(e));
+            }
+            // Only accept the new deliveries once the reception is forgotten.
+            this.inProgress.remove(key);
+        }
+    }
+
+    private String getKey(URI activity, URI recipient)
+    {
+        String result = null;
+        if (activity != null) {
+            result = String.format("%s-%s %s", SEEN_TYPE, activity.toASCIIString(),
+                (recipient != null) ? recipient.toASCIIString() : "");
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if the key was not stored yet.
+     */
+    private boolean registerInStorage(String key) throws ActivityPubException
+    {
+        try {
+            boolean result = this.solr.getClient(ACTIVITYPUB).getById(key) == null;
+            if (result) {
+                SolrInputDocument document = new SolrInputDocument();
+                document.addField(ID_FIELD, key);
+                document.addField(TYPE_FIELD, SEEN_TYPE);
+                document.addField(UPDATED_DATE_FIELD, new Date());
+                this.solrWriter.write(document);
+            }
+            return result;
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while registering the received activity [%s]", key),
+                e);
+        }
+    }
+
+    /**
+     * Remove the received activities older than the retention period from the storage.
+     */
+    private void purge()
+    {
+        try {
+            this.solrWriter.replace(String.format("%s:%s AND %s:[* TO NOW-%dDAYS]", TYPE_FIELD, SEEN_TYPE,
+                UPDATED_DATE_FIELD, RETENTION), Collections.emptyList());
+        } catch (Exception e) {
+            // Catch everything: an exception would cancel the next purges.
+            this.logger.warn("Error while removing the old received activities. Cause: [{}]", getRootCauseMessage(e));
+        }
+    }
+}
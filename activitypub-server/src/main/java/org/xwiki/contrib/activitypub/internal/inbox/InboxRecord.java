@@ -0,0 +1,245 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.inbox;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * An activity received on an inbox, as persisted in the inbox queue until it's processed.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class InboxRecord
+{
+    /**
+     * State of the activities waiting to be processed.
+     */
+    public static final String PENDING = "pending";
+
+    /**
+     * State of the activities whose processing is not retried anymore.
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * State of the activities which have been processed: those are not stored anymore.
+     */
+    public static final String PROCESSED = "processed";
+
+    private String id;
+
+    private URI activity;
+
+    private String content;
+
+    private List<URI> recipients = Collections.emptyList();
+
+    private boolean sharedInbox;
+
+    private int attempts;
+
+    private Date nextAttempt;
+
+    private String state;
+
+    private String lastError;
+
+    /**
+     * @return the identifier of the record in the storage.
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @param id the identifier of the record in the storage.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setId(String id)
+    {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * @return the identifier of the received activity.
+     */
+    public URI getActivity()
+    {
+        return this.activity;
+    }
+
+    /**
+     * @param activity the identifier of the received activity.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setActivity(URI activity)
+    {
+        this.activity = activity;
+        return this;
+    }
+
+    /**
+     * @return the body of the request, as received.
+     */
+    public String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @param content the body of the request, as received.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setContent(String content)
+    {
+        this.content = content;
+        return this;
+    }
+
+    /**
+     * @return the identifiers of the local actors whose inbox received the activity: empty for the activities
+     *         received on the shared inbox, whose recipients are computed when processing them.
+     */
+    public List<URI> getRecipients()
+    {
+        return this.recipients;
+    }
+
+    /**
+     * @param recipients the identifiers of the local actors whose inbox received the activity.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setRecipients(List<URI> recipients)
+    {
+        this.recipients = recipients;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if the activity has been received on the shared inbox of the instance.
+     */
+    public boolean isSharedInbox()
+    {
+        return this.sharedInbox;
+    }
+
+    /**
+     * @param sharedInbox {@code true} if the activity has been received on the shared inbox of the instance.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setSharedInbox(boolean sharedInbox)
+    {
+        this.sharedInbox = sharedInbox;
+        return this;
+    }
+
+    /**
+     * @return the number of failed attempts.
+     */
+    public int getAttempts()
+    {
+        return this.attempts;
+    }
+
+    /**
+     * @param attempts the number of failed attempts.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setAttempts(int attempts)
+    {
+        this.attempts = attempts;
+        return this;
+    }
+
+    /**
+     * @return the date from which the processing should be attempted.
+     */
+    public Date getNextAttempt()
+    {
+        return this.nextAttempt;
+    }
+
+    /**
+     * @param nextAttempt the date from which the processing should be attempted.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setNextAttempt(Date nextAttempt)
+    {
+        this.nextAttempt = nextAttempt;
+        return this;
+    }
+
+    /**
+     * @return the state of the processing: {@link #PENDING}, {@link #FAILED} or {@link #PROCESSED}.
+     */
+    public String getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @param state the state of the processing.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setState(String state)
+    {
+        this.state = state;
+        return this;
+    }
+
+    /**
+     * @return the cause of the last failed attempt.
+     */
+    public String getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * @param lastError the cause of the last failed attempt.
+     * @return the current instance for fluent API.
+     */
+    public InboxRecord setLastError(String lastError)
+    {
+        this.lastError = lastError;
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("id", getId())
+            .append("activity", getActivity())
+            .append("recipients", getRecipients())
+            .append("sharedInbox", isSharedInbox())
+            .append("attempts", getAttempts())
+            .append("state", getState())
+            .build();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.inbox;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.internal.storage.ActivityPubSolrWriter;
+import org.xwiki.search.solr.Solr;
+
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.CONTENT_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.ID_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.TYPE_FIELD;
+import static org.xwiki.contrib.activitypub.ActivityPubStorage.UPDATED_DATE_FIELD;
+
+/**
+ * Persistence of the {@link InboxRecord} in the ActivityPub Solr core.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = InboxRecordStore.class)
+@Singleton
+public class InboxRecordStore
+{
+    /**
+     * Value of the type field for the inbox records.
+     */
+    public static final String INBOX_TYPE = "inboxItem";
+
+    /**
+     * Storage field used to store the identifier of the received activity.
+     */
+    public static final String ACTIVITY_FIELD = "inboxActivity";
+
+    /**
+     * Storage field used to store the identifiers of the local actors whose inbox received the activity.
+     */
+    public static final String RECIPIENTS_FIELD = "inboxRecipients";
+
+    /**
+     * Storage field used to store if the activity has been received on the shared inbox.
+     */
+    public static final String SHARED_FIELD = "inboxShared";
+
+    /**
+     * Storage field used to store the state of the processing.
+     */
+    public static final String STATE_FIELD = "inboxState";
+
+    /**
+     * Storage field used to store the number of failed attempts.
+     */
+    public static final String ATTEMPTS_FIELD = "inboxAttempts";
+
+    /**
+     * Storage field used to store the date from which the processing should be attempted.
+     */
+    public static final String NEXT_ATTEMPT_FIELD = "inboxNextAttempt";
+
+    /**
+     * Storage field used to store the cause of the last failed attempt.
+     */
+    public static final String ERROR_FIELD = "inboxError";
+
+    private static final String ACTIVITYPUB = "activitypub";
+
+    private static final String FILTER_QUERY = "%s:%s";
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private ActivityPubSolrWriter solrWriter;
+
+    /**
+     * Store the given record, replacing the previous version of the record with the same identifier.
+     *
+     * @param record the record to store.
+     * @throws ActivityPubException in case of error when storing the record.
+     */
+    public void save(InboxRecord record) throws ActivityPubException
+    {
+        try {
+            this.solrWriter.write(Collections.singletonList(toDocument(record)));
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while storing the inbox item [%s]", record), e);
+        }
+    }
+
+    /**
+     * Remove the given record from the storage.
+     *
+     * @param record the record to remove.
+     * @throws ActivityPubException in case of error when removing the record.
+     */
+    public void remove(InboxRecord record) throws ActivityPubException
+    {
+        try {
+            this.solrWriter.replace(
+                String.format(FILTER_QUERY, ID_FIELD, ClientUtils.escapeQueryChars(record.getId())),
+                Collections.emptyList());
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while removing the inbox item [%s]", record), e);
+        }
+    }
+
+    /**
+     * Retrieve the current version of the given record, including the changes which are not committed yet.
+     *
+     * @param id the identifier of the record.
+     * @return the record, or {@code null} if it has been removed.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public InboxRecord get(String id) throws ActivityPubException
+    {
+        try {
+            // getById relies on Solr real-time get: the last write is returned even if it's not committed yet.
+            SolrDocument document = this.solr.getClient(ACTIVITYPUB).getById(id);
+            return (document != null) ? fromDocument(document) : null;
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while retrieving the inbox item [%s]", id), e);
+        }
+    }
+
+    /**
+     * Remove the records given up for more than the given number of days.
+     *
+     * @param days the number of days during which the failed records are kept.
+     * @throws ActivityPubException in case of error when removing the records.
+     */
+    public void removeFailed(int days) throws ActivityPubException
+    {
+        String query = String.join(" AND ", String.format(FILTER_QUERY, TYPE_FIELD, INBOX_TYPE),
+            String.format(FILTER_QUERY, STATE_FIELD, InboxRecord.FAILED),
+            String.format("%s:[* TO NOW-%dDAYS]", UPDATED_DATE_FIELD, days));
+        try {
+            this.solrWriter.replace(query, Collections.emptyList());
+        } catch (Exception e) {
+            throw new ActivityPubException("Error while removing the failed inbox items.", e);
+        }
+    }
+
+    /**
+     * @param limit the maximum number of records to return.
+     * @return the pending records whose processing is due, the oldest first.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public List<InboxRecord> getDueRecords(int limit) throws ActivityPubException
+    {
+        SolrQuery query = createQuery(InboxRecord.PENDING)
+            .addFilterQuery(String.format("%s:[* TO NOW]", NEXT_ATTEMPT_FIELD))
+            .addSort(NEXT_ATTEMPT_FIELD, SolrQuery.ORDER.asc)
+            .setRows(limit);
+        try {
+            List<InboxRecord> result = new ArrayList<>();
+            for (SolrDocument document : this.solr.getClient(ACTIVITYPUB).query(query).getResults()) {
+                result.add(fromDocument(document));
+            }
+            return result;
+        } catch (Exception e) {
+            throw new ActivityPubException("Error while retrieving the due inbox items.", e);
+        }
+    }
+
+    /**
+     * @param state the state of the records to count.
+     * @return the number of stored records with the given state.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public long count(String state) throws ActivityPubException
+    {
+        try {
+            return this.solr.getClient(ACTIVITYPUB).query(createQuery(state).setRows(0)).getResults().getNumFound();
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while counting the [%s] inbox items.", state), e);
+        }
+    }
+
+    private SolrQuery createQuery(String state)
+    {
+        return new SolrQuery("*:*")
+            .addFilterQuery(String.format(FILTER_QUERY, TYPE_FIELD, INBOX_TYPE))
+            .addFilterQuery(String.format(FILTER_QUERY, STATE_FIELD, state));
+    }
+
+    private SolrInputDocument toDocument(InboxRecord record)
+    {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField(ID_FIELD, record.getId());
+        document.addField(TYPE_FIELD, INBOX_TYPE);
+        document.addField(CONTENT_FIELD, record.getContent());
+        document.addField(UPDATED_DATE_FIELD, new Date());
+        if (record.getActivity() != null) {
+            document.addField(ACTIVITY_FIELD, record.getActivity().toASCIIString());
+        }
+        for (URI recipient : record.getRecipients()) {
+            document.addField(RECIPIENTS_FIELD, recipient.toASCIIString());
+        }
+        document.addField(SHARED_FIELD, record.isSharedInbox());
+        document.addField(STATE_FIELD, record.getState());
+        document.addField(ATTEMPTS_FIELD, (long) record.getAttempts());
+        document.addField(NEXT_ATTEMPT_FIELD, record.getNextAttempt());
+        if (record.getLastError() != null) {
+            document.addField(ERROR_FIELD, record.getLastError());
+        }
+        return document;
+    }
+
+    private InboxRecord fromDocument(SolrDocument document)
+    {
+        String activity = (String) document.getFieldValue(ACTIVITY_FIELD);
+        Number attempts = (Number) document.getFieldValue(ATTEMPTS_FIELD);
+        List<URI> recipients = new ArrayList<>();
+        Collection<Object> recipientValues = document.getFieldValues(RECIPIENTS_FIELD);
+        if (recipientValues != null) {
+            for (Object recipient : recipientValues) {
+                recipients.add(URI.create((String) recipient));
+            }
+        }
+        return new InboxRecord()
+            .setId((String) document.getFieldValue(ID_FIELD))
+            .setActivity((activity != null) ? URI.create(activity) : null)
+            .setContent((String) document.getFieldValue(CONTENT_FIELD))
+            .setRecipients(recipients)
+            .setSharedInbox(Boolean.TRUE.equals(document.getFieldValue(SHARED_FIELD)))
+            .setState((String) document.getFieldValue(STATE_FIELD))
+            .setAttempts((attempts != null) ? attempts.intValue() : 0)
+            .setNextAttempt((Date) document.getFieldValue(NEXT_ATTEMPT_FIELD))
+            .setLastError((String) document.getFieldValue(ERROR_FIELD));
+    }
+}
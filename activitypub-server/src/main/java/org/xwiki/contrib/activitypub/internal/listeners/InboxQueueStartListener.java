@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.internal.inbox.ActivityPubInboxQueue;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Start the inbox queue once the application is ready, so that the received activities stored before a restart
+ * are processed without waiting for a new activity to be received.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component
+@Singleton
+@Named(InboxQueueStartListener.NAME)
+public class InboxQueueStartListener extends AbstractEventListener
+{
+    /**
+     * Name of the listener.
+     */
+    public static final String NAME = "ActivityPubInboxQueueStartListener";
+
+    private static final List<Event> EVENTS = singletonList(new ApplicationReadyEvent());
+
+    @Inject
+    private Provider<ActivityPubInboxQueue> inboxQueueProvider;
+
+    /**
+     * Default constructor.
+     */
+    public InboxQueueStartListener()
+    {
+        super(NAME, EVENTS);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // The queue starts its workers when it's initialized.
+        this.inboxQueueProvider.get();
+    }
+}
@@ -20,14 +20,18 @@
 package org.xwiki.contrib.activitypub.internal.resource;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -35,6 +39,9 @@ import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.HttpHeaders;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -46,6 +53,7 @@ import org.xwiki.container.servlet.ServletRequest;
 import org.xwiki.container.servlet.ServletResponse;
 import org.xwiki.contrib.activitypub.ActivityHandler;
 import org.xwiki.contrib.activitypub.ActivityPubClient;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
 import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
@@ -58,18 +66,31 @@ import org.xwiki.contrib.activitypub.entities.AbstractActivity;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.AbstractBox;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Endpoints;
 import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.entities.OrderedCollectionPage;
 import org.xwiki.contrib.activitypub.entities.Outbox;
 import org.xwiki.contrib.activitypub.internal.XWikiUserBridge;
-import org.xwiki.contrib.activitypub.internal.filters.CollectionFilter;
+import org.xwiki.contrib.activitypub.internal.inbox.ActivityPubInboxQueue;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxDeduplicator;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxDeduplicator.Registration;
+import org.xwiki.contrib.activitypub.internal.signature.HttpSignatureException;
+import org.xwiki.contrib.activitypub.internal.signature.HttpSignatureVerifier;
+import org.xwiki.contrib.activitypub.internal.storage.EntityVersion;
+import org.xwiki.contrib.activitypub.internal.storage.EntityVersionStore;
+import org.xwiki.contrib.activitypub.internal.storage.StoredEntityWriter;
 import org.xwiki.contrib.activitypub.webfinger.WebfingerException;
 import org.xwiki.contrib.activitypub.webfinger.WebfingerService;
 import org.xwiki.resource.AbstractResourceReferenceHandler;
 import org.xwiki.resource.ResourceReference;
 import org.xwiki.resource.ResourceReferenceHandlerChain;
 import org.xwiki.resource.ResourceReferenceHandlerException;
+import org.xwiki.resource.ResourceReferenceSerializer;
 import org.xwiki.resource.ResourceType;
+import org.xwiki.resource.SerializeResourceReferenceException;
+import org.xwiki.resource.UnsupportedResourceReferenceException;
 import org.xwiki.resource.annotations.Authenticate;
 import org.xwiki.user.UserReference;
 
@@ -85,6 +106,23 @@ import org.xwiki.user.UserReference;
  * In case of POST request some checks are performed to ensure the user is authorized to do it, and then the activity
  * is sent to the right {@link ActivityHandler}.
  *
+ * The POST requests on the shared inbox of the instance are dispatched to all the local recipients of the activity,
+ * see {@link SharedInboxRecipientResolver}.
+ *
+ * The HTTP signatures of the POST requests on the inboxes are verified before handling their activities, see
+ * {@link HttpSignatureVerifier}. When {@link ActivityPubConfiguration#isInboxAsyncEnabled()} is enabled, the verified
+ * activities are stored and answered with a 202 status, their processing being performed by the
+ * {@link ActivityPubInboxQueue}. The activities already received by an inbox are answered with a 202 status without
+ * being handled again, and the ones which are still being handled with a 503 status so that they are delivered again,
+ * see {@link InboxDeduplicator}.
+ *
+ * The GET requests on the entities other than the collections are answered with the {@code ETag} and
+ * {@code Last-Modified} headers of their stored version, see {@link EntityVersionStore}: the conditional requests
+ * matching the stored version are answered with a 304 status without retrieving the entity. The {@code Cache-Control}
+ * header depends on the type of the served entity. The entities which are neither completed nor filtered when served,
+ * i.e. the ones which are not actors nor collections, are written directly from their stored JSON, see
+ * {@link StoredEntityWriter}.
+ *
  * @version $Id$
  */
 @Component
@@ -97,6 +135,35 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
 
     private static final String TEXTPLAIN_CONTENTTYPE = "text/plain";
 
+    private static final String PAGE_PARAMETER = "page";
+
+    private static final String TEXTHTML_CONTENTTYPE = "text/html";
+
+    private static final String ANY_ETAG = "*";
+
+    private static final String WEAK_ETAG_PREFIX = "W/";
+
+    private static final long MILLISECONDS_PER_SECOND = 1000;
+
+    /**
+     * The actors are fetched by every remote server interacting with them, and rarely change.
+     */
+    private static final String ACTOR_CACHE_CONTROL = "public, max-age=300";
+
+    private static final String PUBLIC_CACHE_CONTROL = "public, max-age=60";
+
+    private static final String PRIVATE_CACHE_CONTROL = "private, no-cache";
+
+    /**
+     * The items of the collections are stored separately from the collections, which thus have no stored version.
+     */
+    private static final String COLLECTION_CACHE_CONTROL = "no-cache";
+
+    /**
+     * Delay in seconds after which a remote server should deliver again an activity which was being handled.
+     */
+    private static final int IN_PROGRESS_RETRY_AFTER = 60;
+
     @Inject
     private Logger logger;
 
@@ -122,15 +189,36 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
     @Inject
     private ActivityPubObjectReferenceResolver objectReferenceResolver;
 
-    @Inject
-    private CollectionFilter<OrderedCollection<AbstractActivity>> publicActivityCollectionFilter;
-
     @Inject
     private XWikiUserBridge xWikiUserBridge;
 
     @Inject
     private WebfingerService webfingerService;
 
+    @Inject
+    private ActivityPubConfiguration configuration;
+
+    @Inject
+    private SharedInboxRecipientResolver sharedInboxRecipientResolver;
+
+    @Inject
+    private ResourceReferenceSerializer<ActivityPubResourceReference, URI> serializer;
+
+    @Inject
+    private HttpSignatureVerifier signatureVerifier;
+
+    @Inject
+    private ActivityPubInboxQueue inboxQueue;
+
+    @Inject
+    private InboxDeduplicator inboxDeduplicator;
+
+    @Inject
+    private EntityVersionStore entityVersionStore;
+
+    @Inject
+    private StoredEntityWriter storedEntityWriter;
+
     @Override
     public List<ResourceType> getSupportedResourceReferences()
     {
@@ -145,43 +233,10 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
         HttpServletRequest request = ((ServletRequest) this.container.getRequest()).getHttpServletRequest();
         HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
         try {
-            ActivityPubObject entity =
-                this.activityPubStorage.retrieveEntity(new URI(request.getRequestURL().toString()));
-
-            this.issueMissingPublicKey(entity);
-
-            // We didn't manage to retrieve the entity from storage, but it's about an Actor: we lazily create it.
-            if (entity == null && isAboutActor(resourceReference)) {
-                entity = this.actorHandler.getActor(resourceReference);
-            }
-
-            // if the entity is still null, then it's a 404: we don't know about it.
-            if (entity == null) {
-                this.sendErrorResponse(HttpServletResponse.SC_NOT_FOUND,
-                        String.format("The entity of type [%s] and uid [%s] cannot be found.",
-                                resourceReference.getEntityType(), resourceReference.getUuid()));
-
-            // FIXME: we should check the Content-Type and Accept headers
-            // See: https://www.w3.org/TR/activitypub/#client-to-server-interactions for POST and
-            // https://www.w3.org/TR/activitypub/#retrieving-objects for GET
-            // We are in a GET request with an entity: we just serve it.
-            } else if (isGet(request)) {
-                this.handleGetOnExistingEntity(request, response, entity);
-
-            // We are in a POST request but not in a box: we don't accept those requests.
-            } else if (!isAboutBox(resourceReference)) {
-                this.sendErrorResponse(HttpServletResponse.SC_BAD_REQUEST,
-                    "POST requests are only allowed on inbox or outbox.");
-
-            // We are in a POST request, in a box, but the attributedTo entity is empty: this shouldn't happen
-            // we cannot identify who the box belongs to, so we have to report an error.
-            } else if (!isAttributedTo(entity)) {
-                this.sendErrorResponse(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                    "This box is not attributed. Please report the error to the administrator.");
-
-            // We are finally in a POST request to a box and we can handle it.
+            if (this.sharedInboxRecipientResolver.isSharedInbox(resourceReference)) {
+                this.handleSharedInbox(request);
             } else {
-                this.handleBox((AbstractBox) entity);
+                this.handleEntity(resourceReference, request);
             }
         } catch (ActivityPubException | IOException | URISyntaxException e) {
             try {
@@ -196,21 +251,199 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
         chain.handleNext(reference);
     }
 
+    /**
+     * Handle the requests performed on an entity: the entity is served in case of GET, and the activity is handled in
+     * case of POST on a box.
+     *
+     * @param resourceReference the reference of the entity.
+     * @param request the request.
+     * @throws ActivityPubException in case of error when handling the entity.
+     * @throws IOException in case of error during the HTTP response.
+     * @throws URISyntaxException in case of error when computing the URI of the entity.
+     */
+    private void handleEntity(ActivityPubResourceReference resourceReference, HttpServletRequest request)
+        throws ActivityPubException, IOException, URISyntaxException
+    {
+        HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
+        URI entityURI = new URI(request.getRequestURL().toString());
+        EntityVersion version = this.getVersion(resourceReference, request, entityURI);
+        if (version != null && isNotModified(request, version)) {
+            this.setVersionHeaders(response, version, isAboutActor(resourceReference), version.isPublic());
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else if (version != null && this.storedEntityWriter.isSupported(version.getType())) {
+            this.handleGetOnStoredEntity(response, entityURI, version);
+        } else {
+            this.handleEntity(resourceReference, request, entityURI, version);
+        }
+    }
+
+    /**
+     * Handle the requests performed on an entity which is not answered with a 304 status.
+     *
+     * @param resourceReference the reference of the entity.
+     * @param request the request.
+     * @param entityURI the URI of the entity.
+     * @param storedVersion the stored version of the entity, or {@code null} if it's not available.
+     * @throws ActivityPubException in case of error when handling the entity.
+     * @throws IOException in case of error during the HTTP response.
+     */
+    private void handleEntity(ActivityPubResourceReference resourceReference, HttpServletRequest request,
+        URI entityURI, EntityVersion storedVersion) throws ActivityPubException, IOException
+    {
+        HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
+        EntityVersion version = storedVersion;
+        ActivityPubObject entity;
+        // the items of the collections are retrieved by pages when serving them.
+        if (isAboutOrderedCollection(resourceReference)) {
+            entity = this.activityPubStorage.retrieveCollectionSummary(entityURI);
+        } else {
+            entity = this.activityPubStorage.retrieveEntity(entityURI);
+        }
+
+        if (this.issueMissingPublicKey(entity)) {
+            // The stored version changed.
+            version = this.getVersion(resourceReference, request, entityURI);
+        }
+
+        // We didn't manage to retrieve the entity from storage, but it's about an Actor: we lazily create it.
+        if (entity == null && isAboutActor(resourceReference)) {
+            entity = this.actorHandler.getActor(resourceReference);
+        }
+
+        // if the entity is still null, then it's a 404: we don't know about it.
+        if (entity == null) {
+            this.sendErrorResponse(HttpServletResponse.SC_NOT_FOUND,
+                    String.format("The entity of type [%s] and uid [%s] cannot be found.",
+                            resourceReference.getEntityType(), resourceReference.getUuid()));
+
+        // FIXME: we should check the Content-Type and Accept headers
+        // See: https://www.w3.org/TR/activitypub/#client-to-server-interactions for POST and
+        // https://www.w3.org/TR/activitypub/#retrieving-objects for GET
+        // We are in a GET request with an entity: we just serve it.
+        } else if (isGet(request)) {
+            this.handleGetOnExistingEntity(request, response, entity, version);
+
+        // We are in a POST request but not in a box: we don't accept those requests.
+        } else if (!isAboutBox(resourceReference)) {
+            this.sendErrorResponse(HttpServletResponse.SC_BAD_REQUEST,
+                "POST requests are only allowed on inbox or outbox.");
+
+        // We are in a POST request, in a box, but the attributedTo entity is empty: this shouldn't happen
+        // we cannot identify who the box belongs to, so we have to report an error.
+        } else if (!isAttributedTo(entity)) {
+            this.sendErrorResponse(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "This box is not attributed. Please report the error to the administrator.");
+
+        // We are finally in a POST request to a box and we can handle it.
+        } else {
+            this.handleBox((AbstractBox) entity);
+        }
+    }
+
+    /**
+     * Handle the POST made on the shared inbox of the instance: the activity is parsed once and then handled for all
+     * its local recipients.
+     *
+     * @param request the request.
+     * @throws ActivityPubException in case of error when handling the activity.
+     * @throws IOException in case of error during the HTTP response.
+     */
+    private void handleSharedInbox(HttpServletRequest request)
+        throws ActivityPubException, IOException
+    {
+        if (isGet(request)) {
+            this.sendErrorResponse(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                "Only POST requests are allowed on the shared inbox.");
+        } else {
+            byte[] body = IOUtils.toByteArray(request.getInputStream());
+            AbstractActivity activity = this.parseActivity(new ByteArrayInputStream(body));
+            if (activity.getActor() == null) {
+                this.sendErrorResponse(HttpServletResponse.SC_BAD_REQUEST,
+                    "The activity posted on the shared inbox must have an actor.");
+            } else if (this.verifySignature(request, body, activity)) {
+                this.handleReceivedActivity(body, activity, null, null);
+            }
+        }
+    }
+
+    private void handleSharedInboxActivity(AbstractActivity activity) throws ActivityPubException, IOException
+    {
+        HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
+        Set<AbstractActor> recipients = this.sharedInboxRecipientResolver.resolveRecipients(activity);
+        this.getHandler(activity).handleSharedInboxRequest(activity, recipients);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.toString());
+        this.activityPubJsonSerializer.serialize(response.getOutputStream(), activity);
+    }
+
+    /**
+     * Handle an activity received on an inbox, whose signature has been verified: the activities already received by
+     * the same inbox are ignored, and the other ones are either handled or enqueued.
+     *
+     * @param body the body of the request.
+     * @param activity the activity parsed from the body.
+     * @param recipient the owner of the inbox, or {@code null} for the shared inbox.
+     * @param box the inbox, or {@code null} for the shared inbox.
+     * @throws ActivityPubException in case of error when handling the activity.
+     * @throws IOException in case of error during the HTTP response.
+     */
+    private void handleReceivedActivity(byte[] body, AbstractActivity activity, AbstractActor recipient,
+        AbstractBox box) throws ActivityPubException, IOException
+    {
+        URI recipientId = (recipient != null) ? recipient.getId() : null;
+        Registration registration = this.inboxDeduplicator.register(activity.getId(), recipientId);
+        if (registration == Registration.IN_PROGRESS) {
+            // The outcome of the delivery in progress is not known yet: let the remote server deliver it again.
+            HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(IN_PROGRESS_RETRY_AFTER));
+            this.sendErrorResponse(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                String.format("The activity [%s] is already being handled.", activity.getId()));
+        } else if (registration == Registration.DUPLICATE) {
+            this.logger.debug("Ignoring the activity [{}] already received by [{}].", activity.getId(), recipientId);
+            this.sendAccepted(activity);
+        } else {
+            boolean handled = false;
+            try {
+                if (this.configuration.isInboxAsyncEnabled()) {
+                    this.enqueue(body, activity,
+                        (recipientId != null) ? Collections.singletonList(recipientId) : Collections.emptyList());
+                } else if (recipient != null) {
+                    this.handleActivity(box, recipient, activity);
+                } else {
+                    this.handleSharedInboxActivity(activity);
+                }
+                handled = true;
+            } finally {
+                if (handled) {
+                    this.inboxDeduplicator.release(activity.getId(), recipientId);
+                } else {
+                    // Let the remote server deliver it again.
+                    this.inboxDeduplicator.unregister(activity.getId(), recipientId);
+                }
+            }
+        }
+    }
+
     /**
      * Generates and store a public key for an {@link AbstractActor} if she/it does not already hvae one.
      *
      * @param entity The entity to possibly update.
+     * @return {@code true} if the entity has been updated.
      * @throws ActivityPubException In case of error during the public key generation or the entity storage.
      */
-    private void issueMissingPublicKey(ActivityPubObject entity) throws ActivityPubException
+    private boolean issueMissingPublicKey(ActivityPubObject entity) throws ActivityPubException
     {
+        boolean result = false;
         if (entity instanceof AbstractActor) {
             AbstractActor abstractActor = (AbstractActor) entity;
             if (abstractActor.getPublicKey() == null) {
                 abstractActor.setPublicKey(this.actorHandler.initPublicKey(abstractActor));
                 this.activityPubStorage.storeEntity(abstractActor);
+                result = true;
             }
         }
+        return result;
     }
 
     /**
@@ -224,15 +457,70 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
     private void handleBox(AbstractBox box) throws ActivityPubException, IOException
     {
         HttpServletRequest request = ((ServletRequest) this.container.getRequest()).getHttpServletRequest();
-        HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
 
         // resolve the actor with the attributed to reference
         AbstractActor actor = this.objectReferenceResolver.resolveReference(box.getAttributedTo().get(0));
 
-        // Parse the body of the request to retrieve the activity
-        ActivityPubObject object = this.activityPubJsonParser.parse(
-            new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)));
-        AbstractActivity activity = getActivity(object);
+        // Parse the body of the request to retrieve the activity: the activities received on an inbox must be signed
+        // by their actor.
+        AbstractActivity activity;
+        byte[] body = null;
+        boolean verified = true;
+        if (box instanceof Inbox) {
+            body = IOUtils.toByteArray(request.getInputStream());
+            activity = this.parseActivity(new ByteArrayInputStream(body));
+            verified = this.verifySignature(request, body, activity);
+        } else {
+            activity = this.parseActivity(request.getInputStream());
+        }
+
+        if (verified && body != null) {
+            this.handleReceivedActivity(body, activity, actor, box);
+        } else if (verified) {
+            this.handleActivity(box, actor, activity);
+        }
+    }
+
+    /**
+     * Store the given activity received on an inbox to process it asynchronously, and answer with a 202 status.
+     *
+     * @param body the body of the request.
+     * @param activity the activity parsed from the body.
+     * @param recipients the local actors whose inbox received the activity, or an empty list for the shared inbox.
+     * @throws ActivityPubException if the activity is not supported or in case of error when storing it.
+     * @throws IOException in case of error during the HTTP response.
+     */
+    private void enqueue(byte[] body, AbstractActivity activity, List<URI> recipients)
+        throws ActivityPubException, IOException
+    {
+        // Ensure the activity is supported before accepting it.
+        this.getHandler(activity);
+        this.inboxQueue.enqueue(new String(body, StandardCharsets.UTF_8), activity, recipients);
+        this.sendAccepted(activity);
+    }
+
+    /**
+     * Answer with a 202 status and the accepted activity: the answer has the same content type as the answers of the
+     * activities handled synchronously, which the previous versions of this application require.
+     *
+     * @param activity the accepted activity.
+     * @throws ActivityPubException in case of error when serializing the activity.
+     * @throws IOException in case of error during the HTTP response.
+     */
+    private void sendAccepted(AbstractActivity activity) throws ActivityPubException, IOException
+    {
+        HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.toString());
+        this.activityPubJsonSerializer.serialize(response.getOutputStream(), activity);
+    }
+
+    private void handleActivity(AbstractBox box, AbstractActor actor, AbstractActivity activity)
+        throws ActivityPubException, IOException
+    {
+        HttpServletRequest request = ((ServletRequest) this.container.getRequest()).getHttpServletRequest();
+        HttpServletResponse response = ((ServletResponse) this.container.getResponse()).getHttpServletResponse();
 
         // Create the ActivityRequest and retrieve the handler for it
         ActivityRequest<AbstractActivity> activityRequest = new ActivityRequest<>(actor, activity, request, response);
@@ -253,6 +541,37 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
         }
     }
 
+    private AbstractActivity parseActivity(InputStream body) throws ActivityPubException, IOException
+    {
+        ActivityPubObject object = this.activityPubJsonParser.parse(
+            new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+        return getActivity(object);
+    }
+
+    /**
+     * Verify the HTTP signature of a request received on an inbox, and answer with a 401 if it's not valid.
+     *
+     * @param request the request.
+     * @param body the body of the request.
+     * @param activity the activity parsed from the body.
+     * @return {@code true} if the signature is valid and the activity can be handled.
+     * @throws IOException in case of error during the HTTP response.
+     */
+    private boolean verifySignature(HttpServletRequest request, byte[] body, AbstractActivity activity)
+        throws IOException
+    {
+        boolean result = true;
+        try {
+            this.signatureVerifier.verify(request, body, activity);
+        } catch (HttpSignatureException e) {
+            this.logger.debug("Invalid signature for the activity [{}] posted on [{}]: [{}]", activity.getId(),
+                request.getRequestURI(), e.getMessage());
+            this.sendErrorResponse(HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+            result = false;
+        }
+        return result;
+    }
+
     /**
      * Ensure that the given {@link ActivityPubObject} has an attributedTo parameter filled.
      * @param entity the object that needs an attributedTo parameter.
@@ -274,6 +593,17 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
             || "outbox".equalsIgnoreCase(resourceReference.getEntityType());
     }
 
+    /**
+     * Check if the given {@link ActivityPubResourceReference} is about an ordered collection.
+     * @param resourceReference the reference to check
+     * @return {@code true} if the type of the reference is an inbox, an outbox or an ordered collection.
+     */
+    private boolean isAboutOrderedCollection(ActivityPubResourceReference resourceReference)
+    {
+        return isAboutBox(resourceReference)
+            || "orderedcollection".equalsIgnoreCase(resourceReference.getEntityType());
+    }
+
     /**
      * Ensure that the request method is a GET.
      * @param request the request to test
@@ -290,35 +620,65 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
      * @param request the request.
      * @param response the response servlet to use.
      * @param entity the entity to serialize.
+     * @param version the stored version of the entity, or {@code null} if it's not available.
      * @throws IOException in case of error during the HTTP response.
      * @throws ActivityPubException in case of error during the serialization.
      */
     private void handleGetOnExistingEntity(HttpServletRequest request, HttpServletResponse response,
-        ActivityPubObject entity)
+        ActivityPubObject entity, EntityVersion version)
         throws IOException, ActivityPubException
     {
         response.setStatus(HttpServletResponse.SC_OK);
         response.setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
         response.setCharacterEncoding(StandardCharsets.UTF_8.toString());
+        if (entity instanceof AbstractBox) {
+            // The content of the boxes depends on the current user.
+            response.setHeader(HttpHeaders.CACHE_CONTROL, PRIVATE_CACHE_CONTROL);
+        } else if (entity instanceof OrderedCollection) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, COLLECTION_CACHE_CONTROL);
+        } else {
+            this.setVersionHeaders(response, version, entity instanceof AbstractActor, entity.isPublic());
+        }
 
         // FIXME: check if the entity is an actor and redirect if the content type is not activitypub compliant
         // if the entity is an inbox or an outbox we filtered out some content
         if (entity instanceof Inbox) {
-            this.handleGetOnBox(response, (Inbox) entity);
+            this.handleGetOnBox(request, response, (Inbox) entity);
         } else if (entity instanceof Outbox) {
-            this.handleGetOnBox(response, (Outbox) entity);
-            // else we directly serialize the entity
+            this.handleGetOnBox(request, response, (Outbox) entity);
         } else if (entity instanceof AbstractActor) {
             this.handleGetOnAbstractActor(request, response, (AbstractActor) entity);
+        } else if (entity instanceof OrderedCollection) {
+            this.handleGetOnCollection(request, response, (OrderedCollection<?>) entity, false);
+            // else we directly serialize the entity
         } else {
             this.activityPubJsonSerializer.serialize(response.getOutputStream(), entity);
         }
     }
 
+    /**
+     * Serve an entity which is neither completed nor filtered directly from its stored JSON, without parsing it.
+     *
+     * @param response the response servlet to use.
+     * @param entityURI the URI of the entity.
+     * @param version the stored version of the entity.
+     * @throws IOException in case of error during the HTTP response.
+     * @throws ActivityPubException in case of error when writing the stored entity.
+     */
+    private void handleGetOnStoredEntity(HttpServletResponse response, URI entityURI, EntityVersion version)
+        throws IOException, ActivityPubException
+    {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.toString());
+        this.setVersionHeaders(response, version, false, version.isPublic());
+        this.storedEntityWriter.write(entityURI, response.getOutputStream());
+    }
+
     private void handleGetOnAbstractActor(HttpServletRequest request, HttpServletResponse response,
         AbstractActor entity) throws IOException, ActivityPubException
     {
-        if (request.getHeader(HttpHeaders.ACCEPT).contains("text/html")) {
+        if (request.getHeader(HttpHeaders.ACCEPT).contains(TEXTHTML_CONTENTTYPE)) {
             try {
                 URI uri = this.webfingerService.resolveXWikiUserUrl(entity);
                 response.sendRedirect(uri.toASCIIString());
@@ -326,27 +686,188 @@ public class ActivityPubResourceReferenceHandler extends AbstractResourceReferen
                 throw new ActivityPubException("Error during the redirection of [" + entity + "]", e);
             }
         } else {
+            // Advertise the shared inbox of the instance for the remote servers to deliver once to all local actors.
+            try {
+                URI sharedInbox = this.serializer.serialize(SharedInboxRecipientResolver.SHARED_INBOX_REFERENCE);
+                entity.setEndpoints(new Endpoints().setSharedInbox(sharedInbox));
+            } catch (SerializeResourceReferenceException | UnsupportedResourceReferenceException e) {
+                throw new ActivityPubException("Error while computing the URI of the shared inbox.", e);
+            }
             this.activityPubJsonSerializer.serialize(response.getOutputStream(), entity);
         }
     }
 
     /**
-     * Filter to keep only public activities if the logged-in users is not an owner of the inbox/outbox.
+     * Retrieve the stored version of the entity targeted by a GET request, to answer the conditional requests and set
+     * the validators of the response.
+     *
+     * @return the stored version, or {@code null} if the request is not a GET, targets a collection, or is a browser
+     *     request on an actor, which is redirected.
      */
-    private void handleGetOnBox(HttpServletResponse response, OrderedCollection<AbstractActivity> box)
-        throws ActivityPubException, IOException
+    private EntityVersion getVersion(ActivityPubResourceReference resourceReference, HttpServletRequest request,
+        URI entityURI) throws ActivityPubException
+    {
+        EntityVersion result = null;
+        if (isGet(request) && !isAboutOrderedCollection(resourceReference)
+            && !(isAboutActor(resourceReference)
+            && StringUtils.contains(request.getHeader(HttpHeaders.ACCEPT), TEXTHTML_CONTENTTYPE)))
+        {
+            result = this.entityVersionStore.getVersion(entityURI);
+        }
+        return result;
+    }
+
+    /**
+     * Check if the conditional headers of the request match the stored version: {@code If-None-Match} takes
+     * precedence over {@code If-Modified-Since}, whose precision is the second.
+     */
+    private boolean isNotModified(HttpServletRequest request, EntityVersion version)
+    {
+        boolean result = false;
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String eTag : StringUtils.split(ifNoneMatch, ',')) {
+                String candidate = StringUtils.removeStart(eTag.trim(), WEAK_ETAG_PREFIX);
+                result |= ANY_ETAG.equals(candidate) || version.getETag().equals(candidate);
+            }
+        } else {
+            try {
+                long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+                result = ifModifiedSince >= 0 && version.getUpdatedDate().getTime() / MILLISECONDS_PER_SECOND
+                    <= ifModifiedSince / MILLISECONDS_PER_SECOND;
+            } catch (IllegalArgumentException e) {
+                this.logger.debug("Ignoring the invalid If-Modified-Since header of [{}]: [{}]",
+                    request.getRequestURI(), e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set the validators of the stored version, and the {@code Cache-Control} header of the served entity.
+     *
+     * @param response the response.
+     * @param version the stored version of the entity, or {@code null} if it's not available.
+     * @param actor {@code true} if the entity is an actor.
+     * @param isPublic {@code true} if the entity is addressed publicly.
+     */
+    private void setVersionHeaders(HttpServletResponse response, EntityVersion version, boolean actor,
+        boolean isPublic)
+    {
+        if (version != null) {
+            response.setHeader(HttpHeaders.ETAG, version.getETag());
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, version.getUpdatedDate().getTime());
+        }
+        if (actor) {
+            // Browsers requesting an actor are redirected to the profile of the user.
+            response.setHeader(HttpHeaders.CACHE_CONTROL, ACTOR_CACHE_CONTROL);
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        } else if (isPublic) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, PUBLIC_CACHE_CONTROL);
+        } else {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, PRIVATE_CACHE_CONTROL);
+        }
+    }
+
+    /**
+     * Serve only the public activities if the logged-in users is not an owner of the inbox/outbox.
+     */
+    private void handleGetOnBox(HttpServletRequest request, HttpServletResponse response,
+        OrderedCollection<AbstractActivity> box) throws ActivityPubException, IOException
     {
-        OrderedCollection<AbstractActivity> filteredBox;
         // resolve the actor with the attributed to reference
         AbstractActor actor = this.objectReferenceResolver.resolveReference(box.getAttributedTo().get(0));
         UserReference userReference = this.xWikiUserBridge.getCurrentUserReference();
+        boolean publicOnly = !this.actorHandler.isAuthorizedToActFor(userReference, actor);
+        this.handleGetOnCollection(request, response, box, publicOnly);
+    }
+
+    /**
+     * Serve an ordered collection: collections with more items than
+     * {@link ActivityPubConfiguration#getCollectionPageSize()} are served with links to their first and last pages, and
+     * the pages are served when the page parameter is given. When only the public items are served, they are filtered
+     * and counted by the storage, see {@link ActivityPubStorage#retrievePublicItems(OrderedCollection, int, int)}.
+     */
+    private <T extends ActivityPubObject> void handleGetOnCollection(HttpServletRequest request,
+        HttpServletResponse response, OrderedCollection<T> collection, boolean publicOnly)
+        throws ActivityPubException, IOException
+    {
+        int pageSize = Math.max(1, this.configuration.getCollectionPageSize());
+        int totalItems = publicOnly ? this.activityPubStorage.countPublicItems(collection) : collection.getTotalItems();
+        String pageParameter = request.getParameter(PAGE_PARAMETER);
+        OrderedCollection<T> result;
+        if (pageParameter != null) {
+            int page = NumberUtils.toInt(pageParameter, 0);
+            if (page < 1) {
+                this.sendErrorResponse(HttpServletResponse.SC_BAD_REQUEST,
+                    String.format("The page [%s] is not a valid page number.", pageParameter));
+                return;
+            }
+            result = this.getCollectionPage(collection, page, pageSize, totalItems, publicOnly);
+        } else if (totalItems <= pageSize) {
+            result = this.copyCollection(collection);
+            result.setOrderedItems(this.retrieveItems(collection, 0, pageSize, publicOnly));
+            result.setTotalItems(null);
+        } else {
+            int lastPage = (totalItems - 1) / pageSize + 1;
+            result = this.copyCollection(collection);
+            result.setOrderedItems(Collections.emptyList());
+            result.setTotalItems(totalItems);
+            result.setFirst(this.getPageReference(collection, 1));
+            result.setLast(this.getPageReference(collection, lastPage));
+        }
+        this.activityPubJsonSerializer.serialize(response.getOutputStream(), result);
+    }
+
+    /**
+     * Copy the retrieved collection before filling it with the served items and pages: the retrieved instance might
+     * be shared with other callers, which should never see the items filtered for the current user.
+     */
+    private <T extends ActivityPubObject> OrderedCollection<T> copyCollection(OrderedCollection<T> collection)
+        throws ActivityPubException
+    {
+        return this.activityPubJsonParser.parse(this.activityPubJsonSerializer.serialize(collection));
+    }
+
+    private <T extends ActivityPubObject> OrderedCollectionPage<T> getCollectionPage(OrderedCollection<T> collection,
+        int page, int pageSize, int totalItems, boolean publicOnly) throws ActivityPubException
+    {
+        int lastPage = Math.max(1, (totalItems - 1) / pageSize + 1);
+        OrderedCollectionPage<T> result = new OrderedCollectionPage<T>()
+            .setPartOf(new ActivityPubObjectReference<OrderedCollection<T>>().setLink(collection.getId()));
+        result.setId(this.getPageReference(collection, page).getLink());
+        result.setTotalItems(totalItems);
+        if (page <= lastPage) {
+            int startIndex = (page - 1) * pageSize;
+            result.setStartIndex(startIndex);
+            result.setOrderedItems(this.retrieveItems(collection, startIndex, pageSize, publicOnly));
+        }
+        if (page > 1) {
+            result.setPrev(this.getPageReference(collection, Math.min(page, lastPage + 1) - 1));
+        }
+        if (page < lastPage) {
+            result.setNext(this.getPageReference(collection, page + 1));
+        }
+        return result;
+    }
 
-        if (this.actorHandler.isAuthorizedToActFor(userReference, actor)) {
-            filteredBox = box;
+    private <T extends ActivityPubObject> List<ActivityPubObjectReference<T>> retrieveItems(
+        OrderedCollection<T> collection, int startIndex, int count, boolean publicOnly) throws ActivityPubException
+    {
+        List<ActivityPubObjectReference<T>> result;
+        if (publicOnly) {
+            result = this.activityPubStorage.retrievePublicItems(collection, startIndex, count);
         } else {
-            filteredBox = this.publicActivityCollectionFilter.filter(box);
+            result = this.activityPubStorage.retrieveItems(collection, startIndex, count);
         }
-        this.activityPubJsonSerializer.serialize(response.getOutputStream(), filteredBox);
+        return result;
+    }
+
+    private <T extends ActivityPubObject> ActivityPubObjectReference<OrderedCollectionPage<T>> getPageReference(
+        OrderedCollection<T> collection, int page)
+    {
+        URI pageURI = URI.create(String.format("%s?%s=%d", collection.getId().toASCIIString(), PAGE_PARAMETER, page));
+        return new ActivityPubObjectReference<OrderedCollectionPage<T>>().setLink(pageURI);
     }
 
     /**
@@ -0,0 +1,224 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.resource;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.ActivityPubResourceReference;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.entities.AbstractActivity;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.entities.ProxyActor;
+import org.xwiki.contrib.activitypub.entities.Service;
+import org.xwiki.contrib.activitypub.internal.DefaultURLHandler;
+
+/**
+ * Compute the local recipients of an activity received on the shared inbox of the instance, based on its addressing:
+ * the local actors directly addressed in the {@code to} and {@code cc} fields, and the local followers of the sender
+ * when its followers collection is addressed.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = SharedInboxRecipientResolver.class)
+@Singleton
+public class SharedInboxRecipientResolver
+{
+    /**
+     * The resource reference of the shared inbox of the instance.
+     */
+    public static final ActivityPubResourceReference SHARED_INBOX_REFERENCE =
+        new ActivityPubResourceReference("sharedinbox", "instance");
+
+    /**
+     * All the collections containing an actor are needed to find its local followers.
+     */
+    private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    private static final String LOCAL_ACTORS_QUERY = String.format("filter(%s:[* TO *])",
+        ActivityPubStorage.XWIKI_REFERENCE_FIELD);
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ActivityPubStorage activityPubStorage;
+
+    @Inject
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @Inject
+    private DefaultURLHandler urlHandler;
+
+    private final AtomicBoolean ownersCompleted = new AtomicBoolean();
+
+    /**
+     * Check if the given resource reference targets the shared inbox of the instance.
+     *
+     * @param resourceReference the reference to check.
+     * @return {@code true} if the reference is the one of the shared inbox.
+     */
+    public boolean isSharedInbox(ActivityPubResourceReference resourceReference)
+    {
+        return SHARED_INBOX_REFERENCE.getEntityType().equalsIgnoreCase(resourceReference.getEntityType());
+    }
+
+    /**
+     * Compute the local recipients of the given activity.
+     *
+     * @param activity an activity received on the shared inbox.
+     * @return the local actors to which the activity should be delivered, without duplicates.
+     * @throws ActivityPubException in case of error when resolving the actor of the activity.
+     */
+    public Set<AbstractActor> resolveRecipients(AbstractActivity activity) throws ActivityPubException
+    {
+        Set<AbstractActor> result = new LinkedHashSet<>();
+        AbstractActor sender = this.resolver.resolveReference(activity.getActor());
+        URI senderFollowers = (sender.getFollowers() != null) ? sender.getFollowers().getLink() : null;
+
+        List<ProxyActor> addressees = new ArrayList<>();
+        if (activity.getTo() != null) {
+            addressees.addAll(activity.getTo());
+        }
+        if (activity.getCc() != null) {
+            addressees.addAll(activity.getCc());
+        }
+
+        for (ProxyActor addressee : addressees) {
+            URI link = addressee.getLink();
+            if (link == null || addressee.isPublic()) {
+                this.logger.debug("Ignoring the addressee [{}] of an activity received on the shared inbox.", link);
+            } else if (link.equals(senderFollowers)) {
+                result.addAll(this.getLocalFollowers(sender));
+            } else if (this.urlHandler.belongsToCurrentInstance(link)) {
+                this.addLocalActor(link, result);
+            }
+        }
+        return result;
+    }
+
+    private void addLocalActor(URI link, Set<AbstractActor> recipients)
+    {
+        try {
+            ActivityPubObject object = this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(link));
+            if (object instanceof AbstractActor) {
+                recipients.add((AbstractActor) object);
+            }
+        } catch (ActivityPubException e) {
+            this.logger.warn("Cannot resolve the addressee [{}] of an activity received on the shared inbox: [{}]",
+                link, e.getMessage());
+            this.logger.debug("Full stack trace of the resolution failure:", e);
+        }
+    }
+
+    /**
+     * The followers of an actor are the owners of the following collections which contain it: those are found with the
+     * collection items stored for the following collections of the local actors.
+     */
+    private List<AbstractActor> getLocalFollowers(AbstractActor sender) throws ActivityPubException
+    {
+        List<AbstractActor> result = new ArrayList<>();
+        Set<URI> withoutOwner = new HashSet<>();
+        for (URI collectionId : this.activityPubStorage.retrieveCollectionsContaining(sender.getId(), NO_LIMIT)) {
+            OrderedCollection<AbstractActor> collection =
+                this.activityPubStorage.retrieveCollectionSummary(collectionId);
+            if (collection == null) {
+                this.logger.debug("Ignoring the collection [{}] which is not stored anymore.", collectionId);
+            } else if (collection.getAttributedTo() == null || collection.getAttributedTo().isEmpty()) {
+                withoutOwner.add(collectionId);
+            } else {
+                AbstractActor owner = this.resolver.resolveReference(collection.getAttributedTo().get(0));
+                // The followers collections of the local actors followed by the sender contain it too.
+                if (owner.getFollowing() != null && collectionId.equals(owner.getFollowing().getLink())) {
+                    result.add(owner);
+                }
+            }
+        }
+        if (!withoutOwner.isEmpty() && this.ownersCompleted.compareAndSet(false, true)) {
+            try {
+                result.addAll(completeOwners(withoutOwner));
+            } catch (ActivityPubException e) {
+                this.ownersCompleted.set(false);
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The following and followers collections of the actors created before 1.7.12 have no owner: it is set for the
+     * collections of all the local actors the first time such a collection is found, so that the local actors are only
+     * browsed once.
+     *
+     * @param followingCollections the following collections, containing the sender, without owner
+     * @return the local actors owning the given following collections
+     */
+    private List<AbstractActor> completeOwners(Set<URI> followingCollections) throws ActivityPubException
+    {
+        List<AbstractActor> result = new ArrayList<>();
+        List<AbstractActor> localActors = new ArrayList<>();
+        localActors.addAll(this.activityPubStorage.query(Person.class, LOCAL_ACTORS_QUERY, NO_LIMIT));
+        localActors.addAll(this.activityPubStorage.query(Service.class, LOCAL_ACTORS_QUERY, NO_LIMIT));
+        for (AbstractActor localActor : localActors) {
+            if (localActor.getFollowing() != null
+                && followingCollections.contains(localActor.getFollowing().getLink()))
+            {
+                result.add(localActor);
+            }
+            completeOwner(localActor, localActor.getFollowing());
+            completeOwner(localActor, localActor.getFollowers());
+        }
+        return result;
+    }
+
+    private void completeOwner(AbstractActor owner,
+        ActivityPubObjectReference<OrderedCollection<AbstractActor>> reference) throws ActivityPubException
+    {
+        if (reference != null) {
+            // The whole collection is loaded since it is stored again with its items.
+            OrderedCollection<AbstractActor> collection = this.resolver.resolveReference(reference);
+            if (collection != null
+                && (collection.getAttributedTo() == null || collection.getAttributedTo().isEmpty()))
+            {
+                collection.setAttributedTo(
+                    Collections.singletonList(new ActivityPubObjectReference<AbstractActor>().setLink(owner.getId())));
+                this.activityPubStorage.storeEntity(collection);
+            }
+        }
+    }
+}
@@ -35,14 +35,22 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.URIException;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActorHandler;
 import org.xwiki.contrib.activitypub.CryptoService;
+import org.xwiki.contrib.activitypub.SerializedActivity;
 import org.xwiki.contrib.activitypub.SignatureService;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.internal.DateProvider;
@@ -58,14 +66,37 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Default implementation of the signature service.
+ * The private keys and the public key PEMs of the most recently used actors are kept in memory once read from the key
+ * store, so that signing a request does not require to read and decode the key file again. The {@link Signature}
+ * instances are reused per thread.
  *
  * @version $Id$
  * @since 1.1
  */
 @Component
 @Singleton
-public class DefaultSignatureService implements SignatureService
+public class DefaultSignatureService implements SignatureService, Initializable, Disposable
 {
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    private static final int HTTP_DEFAULT_PORT = 80;
+
+    private static final int HTTPS_DEFAULT_PORT = 443;
+
+    /**
+     * Maximum number of actors whose keys are kept in memory.
+     */
+    private static final int KEYS_CACHE_SIZE = 1000;
+
+    private static final ThreadLocal<Signature> SIGNATURE = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance(SIGNATURE_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("The [%s] algorithm is not supported.",
+                SIGNATURE_ALGORITHM), e);
+        }
+    });
+
     @Inject
     private DateProvider dateProvider;
 
@@ -82,17 +113,65 @@ public class DefaultSignatureService implements SignatureService
     @Inject
     private Environment environment;
 
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<PrivateKey> privateKeys;
+
+    private Cache<String> publicKeyPEMs;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.privateKeys = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("activitypub.signature.privateKeys", KEYS_CACHE_SIZE));
+            this.publicKeyPEMs = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("activitypub.signature.publicKeys", KEYS_CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the ActivityPub signature keys caches.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.privateKeys.dispose();
+        this.publicKeyPEMs.dispose();
+    }
+
+    /**
+     * Compute the value of the Host header sent with the request: the port is part of it when it's not the default
+     * one, and the signed value must match what the receiving server gets.
+     */
+    private String getHostHeader(URI uri) throws URIException
+    {
+        String result = uri.getHost();
+        int port = uri.getPort();
+        if (port > 0 && port != HTTP_DEFAULT_PORT && port != HTTPS_DEFAULT_PORT) {
+            result += ":" + port;
+        }
+        return result;
+    }
+
     @Override
     public void generateSignature(HttpMethod postMethod, AbstractActor actor, String content)
         throws ActivityPubException
+    {
+        this.generateSignature(postMethod, actor, new SerializedActivity(content));
+    }
+
+    @Override
+    public void generateSignature(HttpMethod postMethod, AbstractActor actor, SerializedActivity activity)
+        throws ActivityPubException
     {
         String date = this.dateProvider.getFormattedDate();
 
         try {
             URI postMethodURI = postMethod.getURI();
             String uriPath = postMethodURI.getPath();
-            String host = postMethodURI.getHost();
-            String digest = Base64.getEncoder().encodeToString(DigestUtils.sha256(content));
+            String host = getHostHeader(postMethodURI);
+            String digest = activity.getDigest();
             String signatureStr =
                 String.format("(request-target): post %s\nhost: %s\ndate: %s\ndigest: SHA-256=%s", uriPath, host, date,
                     digest);
@@ -111,12 +190,19 @@ public class DefaultSignatureService implements SignatureService
         }
     }
 
-    private CertifiedKeyPair getCertifiedKeyPair(AbstractActor actor) throws ActivityPubException
+    private DocumentReference getStoreDocument(AbstractActor actor) throws ActivityPubException
     {
-        DocumentReference dr = this.actorHandlerProvider
+        return this.actorHandlerProvider
             .get()
             .getStoreDocument(actor);
+    }
 
+    /**
+     * Synchronized so that concurrent first usages of the keys of an actor don't generate several key pairs: this is
+     * only called when the keys are not in memory yet.
+     */
+    private synchronized CertifiedKeyPair getCertifiedKeyPair(DocumentReference dr) throws ActivityPubException
+    {
         CertifiedKeyPair stored;
         try {
             stored = this.keyStore.retrieve(this.buildFileStoreReference(dr));
@@ -135,20 +221,33 @@ public class DefaultSignatureService implements SignatureService
         throws ActivityPubException
     {
         try {
-            PrivateKeyParameters pk = this.getCertifiedKeyPair(actor).getPrivateKey();
-            byte[] encoded = pk.getEncoded();
-            KeyFactory rsa = KeyFactory.getInstance("RSA");
-            PrivateKey key = rsa.generatePrivate(new PKCS8EncodedKeySpec(encoded));
-            Signature sign = Signature.getInstance("SHA256withRSA");
+            PrivateKey key = this.getPrivateKey(this.getStoreDocument(actor));
+            Signature sign = SIGNATURE.get();
             sign.initSign(key);
             sign.update(signedString.getBytes(UTF_8));
             return sign.sign();
-        } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException | InvalidKeySpecException e) {
+        } catch (InvalidKeyException | SignatureException e) {
             throw new ActivityPubException(String.format("Error while signing [%s] for [%s]", signedString, actor),
                 e);
         }
     }
 
+    private PrivateKey getPrivateKey(DocumentReference dr) throws ActivityPubException
+    {
+        PrivateKey key = this.privateKeys.get(dr.toString());
+        if (key == null) {
+            PrivateKeyParameters pk = this.getCertifiedKeyPair(dr).getPrivateKey();
+            try {
+                KeyFactory rsa = KeyFactory.getInstance("RSA");
+                key = rsa.generatePrivate(new PKCS8EncodedKeySpec(pk.getEncoded()));
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+                throw new ActivityPubException(String.format("Error while decoding the private key of [%s]", dr), e);
+            }
+            this.privateKeys.set(dr.toString(), key);
+        }
+        return key;
+    }
+
     private CertifiedKeyPair initKeys(DocumentReference user) throws ActivityPubException
     {
         try {
@@ -172,9 +271,20 @@ public class DefaultSignatureService implements SignatureService
 
     @Override
     public String getPublicKeyPEM(AbstractActor actor) throws ActivityPubException
+    {
+        DocumentReference dr = this.getStoreDocument(actor);
+        String pem = this.publicKeyPEMs.get(dr.toString());
+        if (pem == null) {
+            pem = this.computePublicKeyPEM(dr);
+            this.publicKeyPEMs.set(dr.toString(), pem);
+        }
+        return pem;
+    }
+
+    private String computePublicKeyPEM(DocumentReference dr) throws ActivityPubException
     {
         byte[] encoded = this
-            .getCertifiedKeyPair(actor)
+            .getCertifiedKeyPair(dr)
             .getPublicKey()
             .getEncoded();
 
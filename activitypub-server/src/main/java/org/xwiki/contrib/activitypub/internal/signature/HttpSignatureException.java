@@ -0,0 +1,54 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.signature;
+
+import org.xwiki.contrib.activitypub.ActivityPubException;
+
+/**
+ * Exception raised when the HTTP signature of a request is missing or cannot be verified.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class HttpSignatureException extends ActivityPubException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default constructor.
+     *
+     * @param message the reason of the failure.
+     */
+    public HttpSignatureException(String message)
+    {
+        super(message);
+    }
+
+    /**
+     * Constructor with a cause.
+     *
+     * @param message the reason of the failure.
+     * @param cause the cause of the failure.
+     */
+    public HttpSignatureException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
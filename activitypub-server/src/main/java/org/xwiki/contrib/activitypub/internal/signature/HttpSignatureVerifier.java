@@ -0,0 +1,267 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.signature;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.entities.AbstractActivity;
+import org.xwiki.contrib.activitypub.internal.DateProvider;
+
+/**
+ * Verify the HTTP signatures of the requests received on the inboxes.
+ * The {@code Digest} header must match the body of the request, and the {@code Signature} header must cover at least
+ * the request target, the date and the digest, and be verified by the public key of the actor of the activity.
+ * The keys are retrieved through the {@link RemotePublicKeyCache}: in case of verification failure, the key is
+ * retrieved again once from the server of the actor, to handle the rotation of the keys.
+ *
+ * @see <a href="https://tools.ietf.org/html/draft-cavage-http-signatures-12">Signing HTTP Messages</a>
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = HttpSignatureVerifier.class)
+@Singleton
+public class HttpSignatureVerifier
+{
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    private static final ThreadLocal<Signature> SIGNATURE = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance(SIGNATURE_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("The [%s] algorithm is not supported.",
+                SIGNATURE_ALGORITHM), e);
+        }
+    });
+
+    private static final Pattern SIGNATURE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    private static final String REQUEST_TARGET = "(request-target)";
+
+    private static final String DATE = "date";
+
+    private static final String DIGEST = "digest";
+
+    private static final String DIGEST_PREFIX = "SHA-256=";
+
+    private static final List<String> REQUIRED_HEADERS = Arrays.asList(REQUEST_TARGET, DATE, DIGEST);
+
+    private static final List<String> SUPPORTED_ALGORITHMS = Arrays.asList("rsa-sha256", "hs2019");
+
+    /**
+     * Maximum difference between the date of a request and the current date.
+     */
+    private static final long MAX_CLOCK_SKEW = TimeUnit.HOURS.toMillis(12);
+
+    @Inject
+    private RemotePublicKeyCache keyCache;
+
+    @Inject
+    private DateProvider dateProvider;
+
+    /**
+     * Verify the signature of the given request.
+     *
+     * @param request the received request.
+     * @param body the body of the request.
+     * @param activity the activity sent in the body of the request: its actor must be the owner of the key.
+     * @throws HttpSignatureException if the request is not signed or if its signature cannot be verified.
+     */
+    public void verify(HttpServletRequest request, byte[] body, AbstractActivity activity)
+        throws HttpSignatureException
+    {
+        verifyDigest(request, body);
+
+        Map<String, String> parameters = parseSignatureHeader(request);
+        String keyId = parameters.get("keyId");
+        String signature = parameters.get("signature");
+        String algorithm = parameters.get("algorithm");
+        if (keyId == null || signature == null) {
+            throw new HttpSignatureException("The signature must define a keyId and a signature.");
+        }
+        if (algorithm != null && !SUPPORTED_ALGORITHMS.contains(algorithm.toLowerCase(Locale.ROOT))) {
+            throw new HttpSignatureException(String.format("The signature algorithm [%s] is not supported.",
+                algorithm));
+        }
+        List<String> headers = Arrays.asList(
+            StringUtils.split(parameters.getOrDefault("headers", DATE).toLowerCase(Locale.ROOT), ' '));
+        if (!headers.containsAll(REQUIRED_HEADERS)) {
+            throw new HttpSignatureException(String.format("The signature must cover the headers %s.",
+                REQUIRED_HEADERS));
+        }
+        verifyDate(request);
+
+        byte[] signingString = getSigningString(request, headers).getBytes(StandardCharsets.UTF_8);
+        byte[] signatureBytes = decodeSignature(signature);
+        VerificationKey key = getKey(keyId, false);
+        boolean valid = isValid(key, signingString, signatureBytes);
+        if (!valid) {
+            // The key might have been rotated since it has been retrieved.
+            VerificationKey refreshedKey = getKey(keyId, true);
+            if (refreshedKey != key) {
+                key = refreshedKey;
+                valid = isValid(key, signingString, signatureBytes);
+            }
+        }
+        if (!valid) {
+            throw new HttpSignatureException(String.format("The signature of the request cannot be verified with the "
+                + "key [%s].", keyId));
+        }
+
+        URI actorId = (activity.getActor() != null) ? activity.getActor().getLink() : null;
+        if (!key.getOwner().equals(actorId)) {
+            throw new HttpSignatureException(String.format("The request is signed by [%s] but the actor of the "
+                + "activity is [%s].", key.getOwner(), actorId));
+        }
+    }
+
+    private void verifyDigest(HttpServletRequest request, byte[] body) throws HttpSignatureException
+    {
+        String expectedDigest = null;
+        String digestHeader = request.getHeader(DIGEST);
+        if (digestHeader != null) {
+            for (String digest : StringUtils.split(digestHeader, ',')) {
+                String trimmedDigest = digest.trim();
+                if (StringUtils.startsWithIgnoreCase(trimmedDigest, DIGEST_PREFIX)) {
+                    expectedDigest = trimmedDigest.substring(DIGEST_PREFIX.length());
+                }
+            }
+        }
+        if (expectedDigest == null) {
+            throw new HttpSignatureException("The request must have a SHA-256 Digest header.");
+        }
+
+        byte[] actualDigest;
+        try {
+            actualDigest = MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new HttpSignatureException("Cannot compute the digest of the request.", e);
+        }
+        if (!MessageDigest.isEqual(Base64.getEncoder().encode(actualDigest),
+            expectedDigest.getBytes(StandardCharsets.US_ASCII)))
+        {
+            throw new HttpSignatureException("The Digest header does not match the body of the request.");
+        }
+    }
+
+    private Map<String, String> parseSignatureHeader(HttpServletRequest request) throws HttpSignatureException
+    {
+        String signatureHeader = request.getHeader("signature");
+        if (signatureHeader == null) {
+            throw new HttpSignatureException("The request must have a Signature header.");
+        }
+        Map<String, String> result = new HashMap<>();
+        Matcher matcher = SIGNATURE_PARAMETER.matcher(signatureHeader);
+        while (matcher.find()) {
+            result.put(matcher.group(1), matcher.group(2));
+        }
+        return result;
+    }
+
+    private void verifyDate(HttpServletRequest request) throws HttpSignatureException
+    {
+        Date date = this.dateProvider.parseFormattedDate(request.getHeader(DATE));
+        if (date == null) {
+            throw new HttpSignatureException("The request must have a valid Date header.");
+        }
+        if (Math.abs(this.dateProvider.currentTime().getTime() - date.getTime()) > MAX_CLOCK_SKEW) {
+            throw new HttpSignatureException(String.format("The date of the request [%s] is too far from the current "
+                + "date.", request.getHeader(DATE)));
+        }
+    }
+
+    private String getSigningString(HttpServletRequest request, List<String> headers) throws HttpSignatureException
+    {
+        StringBuilder result = new StringBuilder();
+        for (String header : headers) {
+            String value;
+            if (REQUEST_TARGET.equals(header)) {
+                value = request.getMethod().toLowerCase(Locale.ROOT) + ' ' + request.getRequestURI();
+                if (request.getQueryString() != null) {
+                    value += '?' + request.getQueryString();
+                }
+            } else {
+                value = request.getHeader(header);
+                if (value == null) {
+                    throw new HttpSignatureException(String.format("The signed header [%s] is missing.", header));
+                }
+            }
+            if (result.length() > 0) {
+                result.append('\n');
+            }
+            result.append(header).append(": ").append(value);
+        }
+        return result.toString();
+    }
+
+    private byte[] decodeSignature(String signature) throws HttpSignatureException
+    {
+        try {
+            return Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            throw new HttpSignatureException("The signature is not encoded in base 64.", e);
+        }
+    }
+
+    private VerificationKey getKey(String keyId, boolean refresh) throws HttpSignatureException
+    {
+        try {
+            return this.keyCache.getKey(keyId, refresh);
+        } catch (ActivityPubException e) {
+            throw new HttpSignatureException(String.format("Cannot retrieve the key [%s].", keyId), e);
+        }
+    }
+
+    private boolean isValid(VerificationKey key, byte[] signingString, byte[] signature)
+    {
+        boolean result;
+        try {
+            Signature verifier = SIGNATURE.get();
+            verifier.initVerify(key.getPublicKey());
+            verifier.update(signingString);
+            result = verifier.verify(signature);
+        } catch (InvalidKeyException | SignatureException e) {
+            result = false;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.signature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.activitypub.ActivityPubClient;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.PublicKey;
+
+/**
+ * Bounded cache of the decoded public keys of the remote actors, indexed by the {@code keyId} used in the signatures
+ * of their requests.
+ * The concurrent retrievals of the same key are coalesced: only one request is performed to the remote server and the
+ * other callers wait for its result. A key can be retrieved again from the remote server, for instance when a
+ * signature cannot be verified because the key has been rotated: those refreshes are limited to one per key every
+ * {@link #MIN_REFRESH_INTERVAL} milliseconds.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = RemotePublicKeyCache.class)
+@Singleton
+public class RemotePublicKeyCache implements Initializable, Disposable
+{
+    /**
+     * Minimal interval in milliseconds between two refreshes of the same key.
+     */
+    public static final long MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int CACHE_SIZE = 1000;
+
+    private static final String PEM_DECORATIONS = "-----(BEGIN|END) PUBLIC KEY-----|\\s";
+
+    private static final String REFRESH_PREFIX = "refresh:";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @Inject
+    private Provider<ActivityPubClient> activityPubClientProvider;
+
+    @Inject
+    private Provider<ActivityPubStorage> activityPubStorageProvider;
+
+    @Inject
+    private ActivityPubJsonParser activityPubJsonParser;
+
+    private Cache<VerificationKey> cache;
+
+    /**
+     * Retrievals in progress, indexed by key identifier, prefixed by {@link #REFRESH_PREFIX} for the refreshes.
+     */
+    private final Map<String, CompletableFuture<VerificationKey>> inProgress = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("activitypub.signature.keys", CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the ActivityPub public keys cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * Retrieve the key with the given identifier.
+     *
+     * @param keyId the identifier of the key, as given in a signature.
+     * @param refresh {@code true} to retrieve the key from the server of its actor, bypassing the cache and the
+     *     storage, unless it has already been retrieved from there less than {@link #MIN_REFRESH_INTERVAL}
+     *     milliseconds ago.
+     * @return the decoded key.
+     * @throws ActivityPubException in case of error when retrieving or decoding the key.
+     */
+    public VerificationKey getKey(String keyId, boolean refresh) throws ActivityPubException
+    {
+        VerificationKey result = this.cache.get(keyId);
+        boolean fetch = result == null
+            || (refresh && System.currentTimeMillis() - result.getRefreshTime() >= MIN_REFRESH_INTERVAL);
+        if (fetch) {
+            result = coalesce(keyId, refresh);
+        }
+        return result;
+    }
+
+    private VerificationKey coalesce(String keyId, boolean refresh) throws ActivityPubException
+    {
+        String inProgressKey = (refresh) ? REFRESH_PREFIX + keyId : keyId;
+        CompletableFuture<VerificationKey> future = new CompletableFuture<>();
+        CompletableFuture<VerificationKey> existing = this.inProgress.putIfAbsent(inProgressKey, future);
+        VerificationKey result;
+        if (existing != null) {
+            result = await(keyId, existing);
+        } else {
+            try {
+                result = fetch(keyId, refresh);
+                this.cache.set(keyId, result);
+                future.complete(result);
+            } catch (ActivityPubException e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                // Never let the waiting callers hang, whatever happened.
+                if (!future.isDone()) {
+                    future.completeExceptionally(
+                        new ActivityPubException(String.format("Failed to retrieve the key [%s]", keyId)));
+                }
+                this.inProgress.remove(inProgressKey, future);
+            }
+        }
+        return result;
+    }
+
+    private VerificationKey await(String keyId, CompletableFuture<VerificationKey> future)
+        throws ActivityPubException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActivityPubException(String.format("Interrupted while waiting for the key [%s]", keyId), e);
+        } catch (ExecutionException e) {
+            throw new ActivityPubException(String.format("Failed to retrieve the key [%s]", keyId), e.getCause());
+        }
+    }
+
+    private VerificationKey fetch(String keyId, boolean refresh) throws ActivityPubException
+    {
+        URI actorId = getActorId(keyId);
+        AbstractActor actor;
+        if (refresh) {
+            actor = fetchActor(actorId);
+        } else {
+            actor = this.resolver.resolveReference(new ActivityPubObjectReference<AbstractActor>().setLink(actorId));
+        }
+        PublicKey publicKey = actor.getPublicKey();
+        if (publicKey == null || publicKey.getPublicKeyPem() == null) {
+            throw new ActivityPubException(String.format("The actor [%s] does not have any public key.", actorId));
+        }
+        if (publicKey.getOwner() != null && !URI.create(publicKey.getOwner()).equals(actor.getId())) {
+            throw new ActivityPubException(String.format("The key [%s] is owned by [%s] and not by its actor [%s].",
+                keyId, publicKey.getOwner(), actor.getId()));
+        }
+        long refreshTime = (refresh) ? System.currentTimeMillis() : 0;
+        return new VerificationKey(actor.getId(), decode(publicKey.getPublicKeyPem()), refreshTime);
+    }
+
+    /**
+     * The key identifiers are usually the identifier of the actor with a fragment, such as {@code #main-key}.
+     */
+    private URI getActorId(String keyId) throws ActivityPubException
+    {
+        try {
+            URI keyURI = new URI(keyId);
+            return new URI(keyURI.getScheme(), keyURI.getSchemeSpecificPart(), null);
+        } catch (URISyntaxException e) {
+            throw new ActivityPubException(String.format("The key identifier [%s] is not a valid URI.", keyId), e);
+        }
+    }
+
+    /**
+     * Retrieve the actor from its server, bypassing the storage, and store the retrieved version.
+     */
+    private AbstractActor fetchActor(URI actorId) throws ActivityPubException
+    {
+        ActivityPubClient activityPubClient = this.activityPubClientProvider.get();
+        ActivityPubObject object;
+        try {
+            HttpMethod getMethod = activityPubClient.get(actorId);
+            try {
+                activityPubClient.checkAnswer(getMethod);
+                object = this.activityPubJsonParser.parse(getMethod.getResponseBodyAsString());
+            } finally {
+                getMethod.releaseConnection();
+            }
+        } catch (IOException e) {
+            throw new ActivityPubException(String.format("Error when retrieving the actor [%s]", actorId), e);
+        }
+        if (!(object instanceof AbstractActor)) {
+            throw new ActivityPubException(String.format("The object [%s] is not an actor.", actorId));
+        }
+        this.activityPubStorageProvider.get().storeEntity(object);
+        return (AbstractActor) object;
+    }
+
+    private java.security.PublicKey decode(String pem) throws ActivityPubException
+    {
+        try {
+            byte[] encoded = Base64.getDecoder().decode(pem.replaceAll(PEM_DECORATIONS, ""));
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (IllegalArgumentException | NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new ActivityPubException(String.format("Cannot decode the public key [%s]", pem), e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.signature;
+
+import java.net.URI;
+import java.security.PublicKey;
+
+/**
+ * A decoded public key of a remote actor, ready to verify the signatures of its requests.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class VerificationKey
+{
+    private final URI owner;
+
+    private final PublicKey publicKey;
+
+    private final long refreshTime;
+
+    /**
+     * Default constructor.
+     *
+     * @param owner the identifier of the actor owning the key.
+     * @param publicKey the decoded public key.
+     * @param refreshTime the time in milliseconds at which the key has been retrieved from the server of its actor,
+     *     or {@code 0} if it has been retrieved from the storage.
+     */
+    public VerificationKey(URI owner, PublicKey publicKey, long refreshTime)
+    {
+        this.owner = owner;
+        this.publicKey = publicKey;
+        this.refreshTime = refreshTime;
+    }
+
+    /**
+     * @return the identifier of the actor owning the key.
+     */
+    public URI getOwner()
+    {
+        return this.owner;
+    }
+
+    /**
+     * @return the decoded public key.
+     */
+    public PublicKey getPublicKey()
+    {
+        return this.publicKey;
+    }
+
+    /**
+     * @return the time in milliseconds at which the key has been retrieved from the server of its actor, or {@code 0}
+     *         if it has been retrieved from the storage.
+     */
+    public long getRefreshTime()
+    {
+        return this.refreshTime;
+    }
+}
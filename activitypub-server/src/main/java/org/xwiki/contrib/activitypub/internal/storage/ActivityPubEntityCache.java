@@ -0,0 +1,223 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.solr.common.SolrDocument;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+
+/**
+ * Bounded cache of the stored entities, keyed by their storage identifier.
+ * The cache holds the stored documents rather than the parsed entities: the entities are mutable and are modified
+ * by their consumers, so each retrieval still parses its own instance, but the storage is not queried anymore.
+ * The entries are invalidated each time an entity is stored. To avoid caching a document retrieved before a
+ * concurrent invalidation, the documents should only be put with the generation obtained with
+ * {@link #getGeneration()} before retrieving them.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = ActivityPubEntityCache.class)
+@Singleton
+public class ActivityPubEntityCache implements Initializable, Disposable
+{
+    /**
+     * Statistic key for the number of retrievals served by the cache.
+     */
+    public static final String HITS = "hits";
+
+    /**
+     * Statistic key for the number of retrievals not served by the cache.
+     */
+    public static final String MISSES = "misses";
+
+    /**
+     * Statistic key for the number of entries removed to keep the cache bounded.
+     */
+    public static final String EVICTIONS = "evictions";
+
+    /**
+     * Statistic key for the number of entries removed because their entity has been stored.
+     */
+    public static final String INVALIDATIONS = "invalidations";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ActivityPubConfiguration configuration;
+
+    private Cache<SolrDocument> cache;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Lock making the puts and the invalidations mutually exclusive: a document checked against the generation must
+     * not be set once an invalidation has incremented the generation and removed the entry.
+     */
+    private final Object lock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder removals = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int size = this.configuration.getStorageCacheSize();
+        if (size > 0) {
+            try {
+                this.cache = this.cacheManager.createNewCache(
+                    new LRUCacheConfiguration("activitypub.storage.entities", size));
+            } catch (CacheException e) {
+                throw new InitializationException("Failed to create the ActivityPub storage cache.", e);
+            }
+            this.cache.addCacheEntryListener(new CacheEntryListener<SolrDocument>()
+            {
+                @Override
+                public void cacheEntryAdded(CacheEntryEvent<SolrDocument> event)
+                {
+                    // nothing to count
+                }
+
+                @Override
+                public void cacheEntryRemoved(CacheEntryEvent<SolrDocument> event)
+                {
+                    removals.increment();
+                }
+
+                @Override
+                public void cacheEntryModified(CacheEntryEvent<SolrDocument> event)
+                {
+                    // nothing to count
+                }
+            });
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @return the current generation of the cache, to be given to {@link #put(String, SolrDocument, long)}.
+     */
+    public long getGeneration()
+    {
+        return this.generation.get();
+    }
+
+    /**
+     * @param storageId the storage identifier of an entity.
+     * @return the cached document of the entity, or {@code null} if it's not cached.
+     */
+    public SolrDocument get(String storageId)
+    {
+        SolrDocument result = null;
+        // a disabled cache doesn't count any hit or miss.
+        if (this.cache != null) {
+            result = this.cache.get(storageId);
+            if (result != null) {
+                this.hits.increment();
+            } else {
+                this.misses.increment();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cache the given document, unless an entity has been invalidated since the given generation.
+     *
+     * @param storageId the storage identifier of the entity.
+     * @param document the stored document of the entity.
+     * @param fromGeneration the value of {@link #getGeneration()} before retrieving the document.
+     */
+    public void put(String storageId, SolrDocument document, long fromGeneration)
+    {
+        if (this.cache != null) {
+            synchronized (this.lock) {
+                if (this.generation.get() == fromGeneration) {
+                    this.cache.set(storageId, document);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the entity from the cache: this should be called after the entity has been stored.
+     *
+     * @param storageId the storage identifier of the stored entity.
+     */
+    public void invalidate(String storageId)
+    {
+        synchronized (this.lock) {
+            this.generation.incrementAndGet();
+            if (this.cache != null && this.cache.get(storageId) != null) {
+                this.invalidations.increment();
+                this.cache.remove(storageId);
+            }
+        }
+    }
+
+    /**
+     * The statistics are computed since the start of the instance, and stay at zero when the cache is disabled. The
+     * number of evictions is approximated from the number of removed entries which have not been invalidated.
+     *
+     * @return the statistics of the cache, indexed by {@link #HITS}, {@link #MISSES}, {@link #EVICTIONS} and
+     *         {@link #INVALIDATIONS}.
+     */
+    public Map<String, Long> getStatistics()
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        long invalidationsCount = this.invalidations.sum();
+        result.put(HITS, this.hits.sum());
+        result.put(MISSES, this.misses.sum());
+        result.put(EVICTIONS, Math.max(0, this.removals.sum() - invalidationsCount));
+        result.put(INVALIDATIONS, invalidationsCount);
+        return result;
+    }
+}
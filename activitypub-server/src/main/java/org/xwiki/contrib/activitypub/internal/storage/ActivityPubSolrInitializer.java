@@ -31,6 +31,8 @@ import org.apache.solr.client.solrj.request.schema.SchemaRequest;
 import org.apache.solr.client.solrj.response.schema.SchemaResponse;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.internal.delivery.DeliveryRecordStore;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxRecordStore;
 import org.xwiki.search.solr.AbstractSolrCoreInitializer;
 import org.xwiki.search.solr.SolrException;
 
@@ -46,7 +48,17 @@ import org.xwiki.search.solr.SolrException;
 public class ActivityPubSolrInitializer extends AbstractSolrCoreInitializer
 {
     private static final String NAME = "name";
-    private static final long CURRENT_VERSION = 10200000;
+    private static final long CURRENT_VERSION = 10712004;
+
+    private static final long COLLECTION_ITEMS_VERSION = 10712000;
+
+    private static final long DELIVERY_QUEUE_VERSION = 10712001;
+
+    private static final long INBOX_QUEUE_VERSION = 10712002;
+
+    private static final long REMOTE_VALIDATORS_VERSION = 10712003;
+
+    private static final long CONTENT_HASH_VERSION = 10712004;
 
     @Override
     protected long getVersion()
@@ -87,6 +99,11 @@ public class ActivityPubSolrInitializer extends AbstractSolrCoreInitializer
                 this.addBooleanField(ActivityPubStorage.IS_PUBLIC_FIELD, false, false);
                 this.addStringField(ActivityPubStorage.AUTHORS_FIELD, true, false);
                 this.addStringField(ActivityPubStorage.TARGETED_FIELD, true, false);
+                this.addCollectionItemsFields();
+                this.addDeliveryFields();
+                this.addInboxFields();
+                this.addRemoteValidatorsFields();
+                this.addStringField(EntityVersionStore.CONTENT_HASH_FIELD, false, false);
             }
         } catch (IOException | SolrServerException e) {
             throw new SolrException("Error while checking if the schema already exist.", e);
@@ -96,6 +113,67 @@ public class ActivityPubSolrInitializer extends AbstractSolrCoreInitializer
     @Override
     protected void migrateSchema(long cversion) throws SolrException
     {
-        // no migration yet
+        if (cversion < COLLECTION_ITEMS_VERSION) {
+            this.addCollectionItemsFields();
+        }
+        if (cversion < DELIVERY_QUEUE_VERSION) {
+            this.addDeliveryFields();
+        }
+        if (cversion < INBOX_QUEUE_VERSION) {
+            this.addInboxFields();
+        }
+        if (cversion < REMOTE_VALIDATORS_VERSION) {
+            this.addRemoteValidatorsFields();
+        }
+        if (cversion < CONTENT_HASH_VERSION) {
+            this.addStringField(EntityVersionStore.CONTENT_HASH_FIELD, false, false);
+        }
+    }
+
+    /**
+     * Fields used by the records of the items of the ordered collections.
+     */
+    private void addCollectionItemsFields() throws SolrException
+    {
+        this.addStringField(ActivityPubStorage.COLLECTION_FIELD, false, false);
+        this.addStringField(ActivityPubStorage.ITEM_FIELD, false, false);
+        this.addPLongField(ActivityPubStorage.POSITION_FIELD, false, false);
+    }
+
+    /**
+     * Fields used by the records of the outbound delivery queue.
+     */
+    private void addDeliveryFields() throws SolrException
+    {
+        this.addStringField(DeliveryRecordStore.ACTIVITY_FIELD, false, false);
+        this.addStringField(DeliveryRecordStore.ACTOR_FIELD, false, false);
+        this.addStringField(DeliveryRecordStore.INBOX_FIELD, false, false);
+        this.addStringField(DeliveryRecordStore.STATE_FIELD, false, false);
+        this.addPLongField(DeliveryRecordStore.ATTEMPTS_FIELD, false, false);
+        this.addPDateField(DeliveryRecordStore.NEXT_ATTEMPT_FIELD, false, false);
+        this.addStringField(DeliveryRecordStore.ERROR_FIELD, false, false);
+    }
+
+    /**
+     * Fields used by the records of the inbound activities queue.
+     */
+    private void addInboxFields() throws SolrException
+    {
+        this.addStringField(InboxRecordStore.ACTIVITY_FIELD, false, false);
+        this.addStringField(InboxRecordStore.RECIPIENTS_FIELD, true, false);
+        this.addBooleanField(InboxRecordStore.SHARED_FIELD, false, false);
+        this.addStringField(InboxRecordStore.STATE_FIELD, false, false);
+        this.addPLongField(InboxRecordStore.ATTEMPTS_FIELD, false, false);
+        this.addPDateField(InboxRecordStore.NEXT_ATTEMPT_FIELD, false, false);
+        this.addStringField(InboxRecordStore.ERROR_FIELD, false, false);
+    }
+
+    /**
+     * Fields used to store the validators answered by the servers of the remote entities, for conditional requests.
+     */
+    private void addRemoteValidatorsFields() throws SolrException
+    {
+        this.addStringField(ActivityPubStorage.REMOTE_ETAG_FIELD, false, false);
+        this.addStringField(ActivityPubStorage.REMOTE_LAST_MODIFIED_FIELD, false, false);
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.search.solr.SolrException;
+
+/**
+ * Write path of the ActivityPub Solr core.
+ * Depending on {@link ActivityPubConfiguration#getStorageCommitWithin()} the writes are either committed by Solr
+ * within a given time window, or committed before returning. In the latter case, the commits are grouped: a writer
+ * arriving while a commit is in progress waits for the next commit, which is then shared by all the writers that
+ * arrived in the meantime. So concurrent writes only cost a single commit, while each writer still has the guarantee
+ * that its documents are visible when {@link #write(SolrInputDocument)} returns.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = ActivityPubSolrWriter.class)
+@Singleton
+public class ActivityPubSolrWriter
+{
+    private static final String ACTIVITYPUB = "activitypub";
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private ActivityPubConfiguration configuration;
+
+    private final Object commitLock = new Object();
+
+    /**
+     * Sequence number of the last document added to the client.
+     */
+    private long writeSequence;
+
+    /**
+     * Sequence number of the last document known to be committed: the documents written with a commit window might be
+     * committed by Solr before.
+     */
+    private long commitSequence;
+
+    private boolean commitInProgress;
+
+    private SolrClient getSolrClient() throws SolrException
+    {
+        return this.solr.getClient(ACTIVITYPUB);
+    }
+
+    /**
+     * Write the given document in the storage.
+     *
+     * @param document the document to write.
+     * @throws SolrException in case of problem to retrieve the Solr client.
+     * @throws IOException in case of problem when communicating with Solr.
+     * @throws SolrServerException in case of problem reported by Solr.
+     */
+    public void write(SolrInputDocument document) throws SolrException, IOException, SolrServerException
+    {
+        write(Collections.singletonList(document));
+    }
+
+    /**
+     * Write all the given documents in the storage. The documents are sent with a single request.
+     *
+     * @param documents the documents to write.
+     * @throws SolrException in case of problem to retrieve the Solr client.
+     * @throws IOException in case of problem when communicating with Solr.
+     * @throws SolrServerException in case of problem reported by Solr.
+     */
+    public void write(Collection<SolrInputDocument> documents)
+        throws SolrException, IOException, SolrServerException
+    {
+        if (!documents.isEmpty()) {
+            update(null, documents);
+        }
+    }
+
+    /**
+     * Delete the documents matching the given query and write the given documents, as part of the same commit.
+     *
+     * @param deleteQuery the query matching the documents to delete, or {@code null} to not delete anything.
+     * @param documents the documents to write.
+     * @throws SolrException in case of problem to retrieve the Solr client.
+     * @throws IOException in case of problem when communicating with Solr.
+     * @throws SolrServerException in case of problem reported by Solr.
+     */
+    public void replace(String deleteQuery, Collection<SolrInputDocument> documents)
+        throws SolrException, IOException, SolrServerException
+    {
+        if (deleteQuery != null || !documents.isEmpty()) {
+            update(deleteQuery, documents);
+        }
+    }
+
+    /**
+     * Make all the writes performed so far visible to the searches. This is only needed when the writes are committed
+     * within a time window, before a search whose result is used to decide of a write: the real-time get is enough to
+     * retrieve a document by its identifier.
+     *
+     * @throws SolrException in case of problem to retrieve the Solr client.
+     * @throws IOException in case of problem when communicating with Solr.
+     * @throws SolrServerException in case of problem reported by Solr.
+     */
+    public void flush() throws SolrException, IOException, SolrServerException
+    {
+        long ticket;
+        synchronized (this.commitLock) {
+            ticket = this.writeSequence;
+        }
+        awaitCommit(getSolrClient(), ticket);
+    }
+
+    private void update(String deleteQuery, Collection<SolrInputDocument> documents)
+        throws SolrException, IOException, SolrServerException
+    {
+        SolrClient solrClient = getSolrClient();
+        int commitWithin = this.configuration.getStorageCommitWithin();
+        if (commitWithin > 0) {
+            if (deleteQuery != null) {
+                solrClient.deleteByQuery(deleteQuery, commitWithin);
+            }
+            if (!documents.isEmpty()) {
+                solrClient.add(documents, commitWithin);
+            }
+            synchronized (this.commitLock) {
+                ++this.writeSequence;
+            }
+        } else {
+            if (deleteQuery != null) {
+                solrClient.deleteByQuery(deleteQuery);
+            }
+            if (!documents.isEmpty()) {
+                solrClient.add(documents);
+            }
+            long ticket;
+            synchronized (this.commitLock) {
+                ticket = ++this.writeSequence;
+            }
+            awaitCommit(solrClient, ticket);
+        }
+    }
+
+    /**
+     * Wait until the write identified by the given ticket is committed. If no commit is in progress the current thread
+     * performs the commit for all the writes received so far, else it waits for the ongoing commit to finish and
+     * checks again if its own write has been covered.
+     */
+    private void awaitCommit(SolrClient solrClient, long ticket)
+        throws IOException, SolrServerException, SolrException
+    {
+        long target;
+        synchronized (this.commitLock) {
+            while (this.commitSequence < ticket && this.commitInProgress) {
+                try {
+                    this.commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SolrException("Interrupted while waiting for a commit.", e);
+                }
+            }
+            if (this.commitSequence >= ticket) {
+                return;
+            }
+            this.commitInProgress = true;
+            target = this.writeSequence;
+        }
+
+        boolean committed = false;
+        try {
+            solrClient.commit(true, true, this.configuration.isStorageSoftCommitEnabled());
+            committed = true;
+        } finally {
+            synchronized (this.commitLock) {
+                if (committed) {
+                    this.commitSequence = Math.max(this.commitSequence, target);
+                }
+                this.commitInProgress = false;
+                this.commitLock.notifyAll();
+            }
+        }
+    }
+}
@@ -22,11 +22,17 @@ package org.xwiki.contrib.activitypub.internal.storage;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -41,6 +47,7 @@ import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.activitypub.ActivityPubException;
@@ -53,6 +60,7 @@ import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Inbox;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.entities.Outbox;
 import org.xwiki.contrib.activitypub.internal.DefaultURLHandler;
 import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
@@ -79,6 +87,23 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
     private static final String OUTBOX_SUFFIX_ID = "outbox";
     private static final String WEBFINGER_TYPE = "webfinger";
     private static final String ACTIVITYPUB = "activitypub";
+    private static final String COLLECTION_ITEM_TYPE = "collectionItem";
+    private static final String ITEM_ID_FORMAT = "%s#%s";
+    private static final int ITEMS_BATCH_SIZE = 1000;
+    private static final int ENTITIES_BATCH_SIZE = 500;
+
+    /**
+     * Solr field holding the version of a document, used for optimistic concurrency.
+     */
+    private static final String VERSION_FIELD = "_version_";
+
+    /**
+     * Solr atomic update operation replacing the value of a field.
+     */
+    private static final String ATOMIC_SET = "set";
+
+    private static final String PUBLIC_ITEMS_FILTER =
+        String.format("{!join from=%s to=%s}%s:true", ID_FIELD, ITEM_FIELD, IS_PUBLIC_FIELD);
 
     @Inject
     private ResourceReferenceSerializer<ActivityPubResourceReference, URI> serializer;
@@ -115,6 +140,17 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
     @Inject
     private Solr solr;
 
+    @Inject
+    private ActivityPubSolrWriter solrWriter;
+
+    @Inject
+    private ActivityPubEntityCache entityCache;
+
+    @Inject
+    private EntityVersionStore entityVersionStore;
+
+    private final AtomicLong lastPosition = new AtomicLong();
+
     private SolrClient getSolrClient() throws SolrException
     {
         return this.solr.getClient(ACTIVITYPUB);
@@ -131,16 +167,20 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
         }
     }
 
-    private void storeInformation(ActivityPubObject entity, String id)
-        throws ActivityPubException, SolrException, IOException, SolrServerException
+    private SolrInputDocument createInputDocument(ActivityPubObject entity, String id)
+        throws ActivityPubException
     {
         SolrInputDocument inputDocument = new SolrInputDocument();
         inputDocument.addField(ID_FIELD, id);
         inputDocument.addField(TYPE_FIELD, entity.getType());
-        inputDocument.addField(CONTENT_FIELD, this.jsonSerializer.serialize(entity));
+        String content = this.jsonSerializer.serialize(entity);
+        inputDocument.addField(CONTENT_FIELD, content);
+        inputDocument.addField(EntityVersionStore.CONTENT_HASH_FIELD, this.entityVersionStore.hash(content));
         inputDocument.addField(UPDATED_DATE_FIELD, new Date());
         inputDocument.addField(XWIKI_REFERENCE_FIELD, entity.getXwikiReference());
         inputDocument.addField(IS_PUBLIC_FIELD, entity.isPublic());
+        inputDocument.addField(REMOTE_ETAG_FIELD, entity.getRemoteETag());
+        inputDocument.addField(REMOTE_LAST_MODIFIED_FIELD, entity.getRemoteLastModified());
         this.solrUtils.set(AUTHORS_FIELD, Objects.isNull(entity.getAttributedTo()) ? Collections.emptyList()
             : entity.getAttributedTo().stream()
             .map(ActivityPubObjectReference::getLink)
@@ -152,8 +192,148 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
             .map(this.internalURINormalizer::relativizeURI)
             .map(URI::toASCIIString)
             .collect(Collectors.toSet()), inputDocument);
-        this.getSolrClient().add(inputDocument);
-        this.getSolrClient().commit();
+        return inputDocument;
+    }
+
+    private void storeInformation(ActivityPubObject entity, String id)
+        throws ActivityPubException, SolrException, IOException, SolrServerException
+    {
+        this.solrWriter.write(createInputDocument(entity, id));
+    }
+
+    /**
+     * Store an ordered collection: the collection document only contains the metadata of the collection, while each
+     * item is stored as a separated record. If the stored records are a prefix of the given items, only the new items
+     * are written, else all records of the collection are replaced.
+     */
+    private <T extends ActivityPubObject> void storeCollection(OrderedCollection<T> collection, String id)
+        throws ActivityPubException, SolrException, IOException, SolrServerException
+    {
+        List<ActivityPubObjectReference<T>> items = collection.getOrderedItems();
+        SolrInputDocument collectionDocument;
+        collection.setOrderedItems(Collections.emptyList());
+        try {
+            collectionDocument = createInputDocument(collection, id);
+        } finally {
+            collection.setOrderedItems(items);
+        }
+
+        // The stored items are counted with a search: the previous writes must be visible to it, else the new items
+        // would be appended twice or the collection wrongly replaced.
+        this.solrWriter.flush();
+        SolrQuery lastItemQuery = createItemsQuery(id)
+            .addSort(POSITION_FIELD, SolrQuery.ORDER.desc)
+            .setRows(1);
+        SolrDocumentList lastItemResults = this.getSolrClient().query(lastItemQuery).getResults();
+        int storedCount = (int) lastItemResults.getNumFound();
+
+        String deleteQuery = null;
+        int firstNewItem = storedCount;
+        if (storedCount > items.size() || (storedCount > 0
+            && !getItemStorageId(items.get(storedCount - 1)).equals(lastItemResults.get(0).getFieldValue(ITEM_FIELD))))
+        {
+            deleteQuery = String.format("%s:%s AND %s:%s", TYPE_FIELD, COLLECTION_ITEM_TYPE, COLLECTION_FIELD,
+                ClientUtils.escapeQueryChars(id));
+            firstNewItem = 0;
+        }
+
+        List<SolrInputDocument> documents = new ArrayList<>();
+        documents.add(collectionDocument);
+        for (ActivityPubObjectReference<T> item : items.subList(firstNewItem, items.size())) {
+            documents.add(createItemDocument(id, getItemStorageId(item)));
+        }
+        this.solrWriter.replace(deleteQuery, documents);
+    }
+
+    private SolrInputDocument createItemDocument(String collectionId, String itemId)
+    {
+        SolrInputDocument inputDocument = new SolrInputDocument();
+        inputDocument.addField(ID_FIELD, String.format(ITEM_ID_FORMAT, collectionId, itemId));
+        inputDocument.addField(TYPE_FIELD, COLLECTION_ITEM_TYPE);
+        inputDocument.addField(COLLECTION_FIELD, collectionId);
+        inputDocument.addField(ITEM_FIELD, itemId);
+        inputDocument.addField(POSITION_FIELD, nextPosition());
+        inputDocument.addField(UPDATED_DATE_FIELD, new Date());
+        return inputDocument;
+    }
+
+    private String getItemStorageId(ActivityPubObjectReference<? extends ActivityPubObject> item)
+        throws ActivityPubException
+    {
+        URI link = item.getLink();
+        // the item has never been stored: we store it so we can reference it.
+        if (link == null) {
+            link = this.storeEntity(item.getObject());
+        }
+        return this.internalURINormalizer.relativizeURI(link).toASCIIString();
+    }
+
+    private SolrQuery createItemsQuery(String collectionId)
+    {
+        return new SolrQuery()
+            .addFilterQuery(String.format("filter(%s:%s)", TYPE_FIELD, COLLECTION_ITEM_TYPE))
+            .addFilterQuery(
+                String.format("filter(%s:%s)", COLLECTION_FIELD, ClientUtils.escapeQueryChars(collectionId)));
+    }
+
+    /**
+     * The item records of a collection whose entity is stored and addressed publicly: the join matches the item
+     * field of the records with the identifier of the public entities.
+     */
+    private SolrQuery createPublicItemsQuery(String collectionId)
+    {
+        return createItemsQuery(collectionId).addFilterQuery(PUBLIC_ITEMS_FILTER);
+    }
+
+    /**
+     * Compute the ordering key of a new item: this key is based on the current time so that it keeps increasing
+     * across restarts, and is guaranteed to be strictly increasing inside the same instance.
+     */
+    private long nextPosition()
+    {
+        long now = System.currentTimeMillis() * 1000;
+        return this.lastPosition.updateAndGet(previous -> Math.max(previous + 1, now));
+    }
+
+    @Override
+    public <T extends ActivityPubObject> void appendItem(OrderedCollection<T> collection, T item)
+        throws ActivityPubException
+    {
+        List<ActivityPubObjectReference<T>> items = collection.getOrderedItems();
+        int previousSize = items.size();
+        int previousTotal = collection.getTotalItems();
+        // the summaries of the collections, see retrieveCollectionSummary, only give the number of their items.
+        boolean summary = previousTotal > previousSize;
+        collection.addItem(item);
+
+        // some collections such as the boxes ignore items they already contain.
+        if (collection.getOrderedItems().size() > previousSize) {
+            if (collection.getId() == null) {
+                this.storeEntity(collection);
+            } else {
+                try {
+                    String collectionId = this.internalURINormalizer.relativizeURI(collection.getId()).toASCIIString();
+                    String itemId = getItemStorageId(items.get(items.size() - 1));
+                    // the items of a summary are not loaded: the record of the item is looked for instead.
+                    if (!summary || !containsItem(collectionId, itemId)) {
+                        this.solrWriter.write(createItemDocument(collectionId, itemId));
+                        if (summary) {
+                            collection.setTotalItems(previousTotal + 1);
+                        }
+                    }
+                } catch (SolrException | SolrServerException | IOException e) {
+                    throw new ActivityPubException(
+                        String.format("Error while appending [%s] to the collection [%s].", item, collection), e);
+                }
+            }
+        }
+    }
+
+    private boolean containsItem(String collectionId, String itemId) throws SolrServerException, IOException
+    {
+        // getById relies on Solr real-time get: the items appended but not committed yet are found too.
+        SolrDocument itemDocument = this.getSolrClient().getById(String.format(ITEM_ID_FORMAT, collectionId, itemId));
+        return itemDocument != null && !itemDocument.isEmpty();
     }
 
     @Override
@@ -198,7 +378,15 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
             // we don't store the entity ID in the content: instead we rely on the ID put on the document.
             URI entityID = entity.getId();
             entity.setId(null);
-            this.storeInformation(entity, storageId.toASCIIString());
+            try {
+                if (entity instanceof OrderedCollection) {
+                    this.storeCollection((OrderedCollection<?>) entity, storageId.toASCIIString());
+                } else {
+                    this.storeInformation(entity, storageId.toASCIIString());
+                }
+            } finally {
+                this.entityCache.invalidate(storageId.toASCIIString());
+            }
 
             // we put back the ID in case the entity would be used afterwards
             entity.setId(entityID);
@@ -209,6 +397,26 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
         }
     }
 
+    @Override
+    public Date touchEntity(URI id) throws ActivityPubException
+    {
+        String storageId = this.internalURINormalizer.relativizeURI(id).toASCIIString();
+        Date result = new Date();
+        try {
+            // Atomic update of the date only: a version of 1 requires the document to exist.
+            SolrInputDocument inputDocument = new SolrInputDocument();
+            inputDocument.addField(ID_FIELD, storageId);
+            inputDocument.addField(VERSION_FIELD, 1L);
+            inputDocument.addField(UPDATED_DATE_FIELD, Collections.singletonMap(ATOMIC_SET, result));
+            this.solrWriter.write(inputDocument);
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error while updating the date of [%s].", id), e);
+        } finally {
+            this.entityCache.invalidate(storageId);
+        }
+        return result;
+    }
+
     private String getActorEntityUID(AbstractActor actor, String entitySuffix)
     {
         return String.format("%s-%s", actor.getXwikiReference(), entitySuffix);
@@ -216,13 +424,32 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
 
     @Override
     public <T extends ActivityPubObject> T retrieveEntity(URI uri) throws ActivityPubException
+    {
+        return this.retrieveEntity(uri, true);
+    }
+
+    @Override
+    public <T extends ActivityPubObject> T retrieveCollectionSummary(URI id) throws ActivityPubException
+    {
+        return this.retrieveEntity(id, false);
+    }
+
+    private <T extends ActivityPubObject> T retrieveEntity(URI uri, boolean loadItems) throws ActivityPubException
     {
         T result = null;
         try {
-            URI storageId = this.internalURINormalizer.relativizeURI(uri);
-            SolrDocument solrDocument = this.getSolrClient().getById(storageId.toASCIIString());
+            String storageId = this.internalURINormalizer.relativizeURI(uri).toASCIIString();
+            SolrDocument solrDocument = this.entityCache.get(storageId);
+            if (solrDocument == null) {
+                long cacheGeneration = this.entityCache.getGeneration();
+                // getById relies on Solr real-time get: the entity is found even if its write is not committed yet.
+                solrDocument = this.getSolrClient().getById(storageId);
+                if (solrDocument != null && !solrDocument.isEmpty()) {
+                    this.entityCache.put(storageId, solrDocument, cacheGeneration);
+                }
+            }
             if (solrDocument != null && !solrDocument.isEmpty()) {
-                result = this.createObjectFromResult(solrDocument);
+                result = this.createObjectFromResult(solrDocument, loadItems);
             }
             return result;
         } catch (Exception e) {
@@ -231,6 +458,56 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
         }
     }
 
+    @Override
+    public <T extends ActivityPubObject> List<T> retrieveEntities(Collection<URI> ids) throws ActivityPubException
+    {
+        try {
+            List<String> storageIds = new ArrayList<>(ids.size());
+            Map<String, SolrDocument> documents = new HashMap<>();
+            Set<String> missingIds = new LinkedHashSet<>();
+            for (URI id : ids) {
+                String storageId = this.internalURINormalizer.relativizeURI(id).toASCIIString();
+                storageIds.add(storageId);
+                SolrDocument solrDocument = this.entityCache.get(storageId);
+                if (solrDocument != null) {
+                    documents.put(storageId, solrDocument);
+                } else {
+                    missingIds.add(storageId);
+                }
+            }
+
+            // Retrieve all the entities missing from the cache with a few multi-id real-time get requests.
+            List<String> missingIdList = new ArrayList<>(missingIds);
+            for (int i = 0; i < missingIdList.size(); i += ENTITIES_BATCH_SIZE) {
+                List<String> batch =
+                    missingIdList.subList(i, Math.min(i + ENTITIES_BATCH_SIZE, missingIdList.size()));
+                long cacheGeneration = this.entityCache.getGeneration();
+                SolrDocumentList solrDocuments = this.getSolrClient().getById(batch);
+                if (solrDocuments != null) {
+                    for (SolrDocument solrDocument : solrDocuments) {
+                        String storageId = (String) solrDocument.getFieldValue(ID_FIELD);
+                        documents.put(storageId, solrDocument);
+                        this.entityCache.put(storageId, solrDocument, cacheGeneration);
+                    }
+                }
+            }
+
+            List<T> result = new ArrayList<>(storageIds.size());
+            for (String storageId : storageIds) {
+                SolrDocument solrDocument = documents.get(storageId);
+                if (solrDocument != null && !solrDocument.isEmpty()) {
+                    result.add(this.createObjectFromResult(solrDocument, true));
+                } else {
+                    result.add(null);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            throw new ActivityPubException(String.format("Error when trying to retrieve the entities of ids [%s]", ids),
+                e);
+        }
+    }
+
     @Override
     public void storeWebFinger(JSONResourceDescriptor jsonResourceDescriptor) throws ActivityPubException
     {
@@ -240,8 +517,7 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
             inputDocument.addField(TYPE_FIELD, WEBFINGER_TYPE);
             inputDocument.addField(CONTENT_FIELD, this.webfingerJsonSerializer.serialize(jsonResourceDescriptor));
             inputDocument.addField(UPDATED_DATE_FIELD, new Date());
-            this.getSolrClient().add(inputDocument);
-            this.getSolrClient().commit();
+            this.solrWriter.write(inputDocument);
         } catch (IOException | SolrException | SolrServerException e) {
             throw new ActivityPubException(
                 String.format("Error while storing WebFinger record [%s]", jsonResourceDescriptor), e);
@@ -284,7 +560,7 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
             QueryResponse queryResponse = this.getSolrClient().query(solrQuery);
             SolrDocumentList queryResults = queryResponse.getResults();
             for (SolrDocument queryResult : queryResults) {
-                result.add(this.createObjectFromResult(queryResult));
+                result.add(this.createObjectFromResult(queryResult, true));
             }
         } catch (SolrException | SolrServerException | IOException e) {
             throw new ActivityPubException(
@@ -300,7 +576,8 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
         return ClientUtils.escapeQueryChars(queryElement);
     }
 
-    private <T extends ActivityPubObject> T createObjectFromResult(SolrDocument queryResult) throws ActivityPubException
+    private <T extends ActivityPubObject> T createObjectFromResult(SolrDocument queryResult, boolean loadItems)
+        throws ActivityPubException, SolrException, SolrServerException, IOException
     {
         T activityPubObject =
             this.jsonParser.parse((String) queryResult.getFieldValue(CONTENT_FIELD));
@@ -308,6 +585,151 @@ public class DefaultActivityPubStorage implements ActivityPubStorage
         URI id = this.internalURINormalizer.retrieveAbsoluteURI(URI.create(uid));
         activityPubObject.setId(id);
         activityPubObject.setLastUpdated((Date) queryResult.getFieldValue(UPDATED_DATE_FIELD));
+        activityPubObject.setRemoteETag((String) queryResult.getFieldValue(REMOTE_ETAG_FIELD));
+        activityPubObject.setRemoteLastModified((String) queryResult.getFieldValue(REMOTE_LAST_MODIFIED_FIELD));
+        if (activityPubObject instanceof OrderedCollection) {
+            OrderedCollection<?> collection = (OrderedCollection<?>) activityPubObject;
+            // collections with items serialized in their content by older versions are always fully loaded.
+            if (loadItems || !collection.getOrderedItems().isEmpty()) {
+                this.loadCollectionItems(collection, uid);
+            } else {
+                collection.setTotalItems(
+                    (int) this.getSolrClient().query(createItemsQuery(uid).setRows(0)).getResults().getNumFound());
+            }
+        }
         return activityPubObject;
     }
+
+    /**
+     * Load the item records of the given collection, in their order of insertion. Items which might have been
+     * serialized in the content of the collection by older versions are kept first.
+     */
+    private <T extends ActivityPubObject> void loadCollectionItems(OrderedCollection<T> collection,
+        String collectionId) throws ActivityPubException, SolrException, SolrServerException, IOException
+    {
+        List<ActivityPubObjectReference<T>> items = new ArrayList<>(collection.getOrderedItems());
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        boolean done = false;
+        while (!done) {
+            SolrQuery solrQuery = createItemsQuery(collectionId)
+                .addSort(POSITION_FIELD, SolrQuery.ORDER.asc)
+                .addSort(ID_FIELD, SolrQuery.ORDER.asc)
+                .setRows(ITEMS_BATCH_SIZE);
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            QueryResponse queryResponse = this.getSolrClient().query(solrQuery);
+            for (SolrDocument itemDocument : queryResponse.getResults()) {
+                items.add(createItemReference(itemDocument));
+            }
+            String nextCursorMark = queryResponse.getNextCursorMark();
+            done = nextCursorMark == null || cursorMark.equals(nextCursorMark);
+            cursorMark = nextCursorMark;
+        }
+        collection.setOrderedItems(items);
+    }
+
+    @Override
+    public <T extends ActivityPubObject> List<ActivityPubObjectReference<T>> retrieveItems(
+        OrderedCollection<T> collection, int startIndex, int count) throws ActivityPubException
+    {
+        // the items are already loaded in the collection, or there's nothing to load.
+        if (!collection.getOrderedItems().isEmpty() || collection.getTotalItems() == 0 || collection.getId() == null
+            || count <= 0)
+        {
+            return ActivityPubStorage.super.retrieveItems(collection, startIndex, count);
+        }
+
+        String collectionId = this.internalURINormalizer.relativizeURI(collection.getId()).toASCIIString();
+        return queryItems(collection, createItemsQuery(collectionId), startIndex, count);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The item records are filtered with a join on the entity documents, so the entities are not retrieved.
+     */
+    @Override
+    public <T extends ActivityPubObject> List<ActivityPubObjectReference<T>> retrievePublicItems(
+        OrderedCollection<T> collection, int startIndex, int count) throws ActivityPubException
+    {
+        List<ActivityPubObjectReference<T>> result;
+        // the items are already loaded in the collection, or there's nothing to load.
+        if (!collection.getOrderedItems().isEmpty() || collection.getTotalItems() == 0 || collection.getId() == null) {
+            result = ActivityPubStorage.super.retrievePublicItems(collection, startIndex, count);
+        } else if (count <= 0) {
+            result = new ArrayList<>();
+        } else {
+            String collectionId = this.internalURINormalizer.relativizeURI(collection.getId()).toASCIIString();
+            result = queryItems(collection, createPublicItemsQuery(collectionId), startIndex, count);
+        }
+        return result;
+    }
+
+    @Override
+    public int countPublicItems(OrderedCollection<?> collection) throws ActivityPubException
+    {
+        int result;
+        if (!collection.getOrderedItems().isEmpty() || collection.getTotalItems() == 0 || collection.getId() == null) {
+            result = ActivityPubStorage.super.countPublicItems(collection);
+        } else {
+            String collectionId = this.internalURINormalizer.relativizeURI(collection.getId()).toASCIIString();
+            try {
+                result = (int) this.getSolrClient().query(createPublicItemsQuery(collectionId).setRows(0))
+                    .getResults().getNumFound();
+            } catch (SolrException | SolrServerException | IOException e) {
+                throw new ActivityPubException(
+                    String.format("Error when counting the public items of the collection [%s]", collection.getId()),
+                    e);
+            }
+        }
+        return result;
+    }
+
+    private <T extends ActivityPubObject> List<ActivityPubObjectReference<T>> queryItems(
+        OrderedCollection<T> collection, SolrQuery itemsQuery, int startIndex, int count) throws ActivityPubException
+    {
+        try {
+            SolrQuery solrQuery = itemsQuery
+                .addSort(POSITION_FIELD, SolrQuery.ORDER.asc)
+                .addSort(ID_FIELD, SolrQuery.ORDER.asc)
+                .setStart(Math.max(startIndex, 0))
+                .setRows(count);
+            List<ActivityPubObjectReference<T>> result = new ArrayList<>();
+            for (SolrDocument itemDocument : this.getSolrClient().query(solrQuery).getResults()) {
+                result.add(createItemReference(itemDocument));
+            }
+            return result;
+        } catch (SolrException | SolrServerException | IOException e) {
+            throw new ActivityPubException(
+                String.format("Error when retrieving the items of the collection [%s]", collection.getId()), e);
+        }
+    }
+
+    @Override
+    public List<URI> retrieveCollectionsContaining(URI itemId, int limit) throws ActivityPubException
+    {
+        try {
+            String item = this.internalURINormalizer.relativizeURI(itemId).toASCIIString();
+            SolrQuery solrQuery = new SolrQuery()
+                .addFilterQuery(String.format("filter(%s:%s)", TYPE_FIELD, COLLECTION_ITEM_TYPE))
+                .addFilterQuery(String.format("filter(%s:%s)", ITEM_FIELD, ClientUtils.escapeQueryChars(item)))
+                .setFields(COLLECTION_FIELD)
+                .setRows(limit);
+            List<URI> result = new ArrayList<>();
+            for (SolrDocument itemDocument : this.getSolrClient().query(solrQuery).getResults()) {
+                URI collectionId = URI.create((String) itemDocument.getFieldValue(COLLECTION_FIELD));
+                result.add(this.internalURINormalizer.retrieveAbsoluteURI(collectionId));
+            }
+            return result;
+        } catch (SolrException | SolrServerException | IOException e) {
+            throw new ActivityPubException(
+                String.format("Error when retrieving the collections containing [%s]", itemId), e);
+        }
+    }
+
+    private <T extends ActivityPubObject> ActivityPubObjectReference<T> createItemReference(SolrDocument itemDocument)
+        throws ActivityPubException
+    {
+        URI itemId = URI.create((String) itemDocument.getFieldValue(ITEM_FIELD));
+        return new ActivityPubObjectReference<T>().setLink(this.internalURINormalizer.retrieveAbsoluteURI(itemId));
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.util.Date;
+
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * The metadata identifying the stored version of an entity, available without parsing its content: they are used to
+ * answer the conditional requests.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+public class EntityVersion
+{
+    private final String type;
+
+    private final boolean isPublic;
+
+    private final Date updatedDate;
+
+    private final String contentHash;
+
+    /**
+     * Default constructor.
+     *
+     * @param type the type of the entity.
+     * @param isPublic {@code true} if the entity is addressed publicly.
+     * @param updatedDate the date of the last storage of the entity.
+     * @param contentHash the hash of the stored content of the entity.
+     */
+    public EntityVersion(String type, boolean isPublic, Date updatedDate, String contentHash)
+    {
+        this.type = type;
+        this.isPublic = isPublic;
+        this.updatedDate = updatedDate;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * @return the type of the entity.
+     */
+    public String getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * @return {@code true} if the entity is addressed publicly.
+     */
+    public boolean isPublic()
+    {
+        return this.isPublic;
+    }
+
+    /**
+     * @return the date of the last storage of the entity.
+     */
+    public Date getUpdatedDate()
+    {
+        return this.updatedDate;
+    }
+
+    /**
+     * @return the hash of the stored content of the entity, which changes whenever the content changes.
+     */
+    public String getContentHash()
+    {
+        return this.contentHash;
+    }
+
+    /**
+     * @return the strong entity tag of the entity, as sent in the {@code ETag} header.
+     */
+    public String getETag()
+    {
+        return String.format("\"%s\"", this.contentHash);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("type", getType())
+            .append("updatedDate", getUpdatedDate())
+            .append("contentHash", getContentHash())
+            .build();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.search.solr.SolrException;
+
+/**
+ * Retrieve the {@link EntityVersion} of the stored entities without retrieving nor parsing their content. The hash of
+ * the content is computed when the entity is stored, see {@link #hash(String)}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = EntityVersionStore.class)
+@Singleton
+public class EntityVersionStore
+{
+    /**
+     * Storage field used to store the hash of the content of an entity.
+     */
+    public static final String CONTENT_HASH_FIELD = "contentHash";
+
+    private static final String ACTIVITYPUB = "activitypub";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private static final String FIELDS = String.join(",", ActivityPubStorage.ID_FIELD, ActivityPubStorage.TYPE_FIELD,
+        ActivityPubStorage.IS_PUBLIC_FIELD, ActivityPubStorage.UPDATED_DATE_FIELD, CONTENT_HASH_FIELD);
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private ActivityPubEntityCache entityCache;
+
+    @Inject
+    private InternalURINormalizer internalURINormalizer;
+
+    /**
+     * Compute the hash of the content of an entity.
+     *
+     * @param content the serialized entity, as stored.
+     * @return the SHA-256 digest of the content, encoded in URL-safe base 64 without padding.
+     */
+    public String hash(String content)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(content.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every implementation of the Java platform is required to support SHA-256.
+            throw new IllegalStateException(String.format("The [%s] algorithm is not supported.", HASH_ALGORITHM),
+                e);
+        }
+    }
+
+    /**
+     * Retrieve the version of a stored entity, from the storage cache if the entity is cached, or with a real-time get
+     * of the version fields only.
+     *
+     * @param id the identifier of the entity.
+     * @return the version of the entity, or {@code null} if the entity is not stored or has been stored without a
+     *     content hash.
+     * @throws ActivityPubException in case of error when querying the storage.
+     */
+    public EntityVersion getVersion(URI id) throws ActivityPubException
+    {
+        String storageId = this.internalURINormalizer.relativizeURI(id).toASCIIString();
+        try {
+            SolrDocument document = this.entityCache.get(storageId);
+            if (document == null) {
+                document = this.solr.getClient(ACTIVITYPUB)
+                    .getById(storageId, new ModifiableSolrParams().set(CommonParams.FL, FIELDS));
+            }
+            return createVersion(document);
+        } catch (SolrException | SolrServerException | IOException e) {
+            throw new ActivityPubException(String.format("Error when retrieving the version of [%s]", id), e);
+        }
+    }
+
+    private EntityVersion createVersion(SolrDocument document)
+    {
+        EntityVersion result = null;
+        if (document != null) {
+            String contentHash = (String) document.getFieldValue(CONTENT_HASH_FIELD);
+            Date updatedDate = (Date) document.getFieldValue(ActivityPubStorage.UPDATED_DATE_FIELD);
+            if (contentHash != null && updatedDate != null) {
+                result = new EntityVersion((String) document.getFieldValue(ActivityPubStorage.TYPE_FIELD),
+                    Boolean.TRUE.equals(document.getFieldValue(ActivityPubStorage.IS_PUBLIC_FIELD)), updatedDate,
+                    contentHash);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.contrib.activitypub.internal.json.relative.StoredJsonRewriter;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.search.solr.SolrException;
+
+/**
+ * Write the stored entities directly from their stored JSON, without parsing them, see {@link StoredJsonRewriter}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = StoredEntityWriter.class)
+@Singleton
+public class StoredEntityWriter
+{
+    private static final String ACTIVITYPUB = "activitypub";
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private ActivityPubEntityCache entityCache;
+
+    @Inject
+    private InternalURINormalizer internalURINormalizer;
+
+    @Inject
+    private StoredJsonRewriter storedJsonRewriter;
+
+    /**
+     * @param type the type of an entity.
+     * @return {@code true} if the entities of this type can be written with {@link #write(URI, OutputStream)}.
+     */
+    public boolean isSupported(String type)
+    {
+        return this.storedJsonRewriter.isSupported(type);
+    }
+
+    /**
+     * Write a stored entity, in the same form as {@link org.xwiki.contrib.activitypub.ActivityPubJsonSerializer}.
+     *
+     * @param id the identifier of the entity.
+     * @param output the stream where to write the entity: it is closed once the entity is written.
+     * @throws ActivityPubException if the entity is not stored or in case of error when writing it.
+     */
+    public void write(URI id, OutputStream output) throws ActivityPubException
+    {
+        String storageId = this.internalURINormalizer.relativizeURI(id).toASCIIString();
+        SolrDocument document;
+        try {
+            document = this.entityCache.get(storageId);
+            if (document == null) {
+                long cacheGeneration = this.entityCache.getGeneration();
+                document = this.solr.getClient(ACTIVITYPUB).getById(storageId);
+                if (document != null && !document.isEmpty()) {
+                    this.entityCache.put(storageId, document, cacheGeneration);
+                }
+            }
+        } catch (SolrException | SolrServerException | IOException e) {
+            throw new ActivityPubException(String.format("Error when retrieving the entity [%s]", id), e);
+        }
+        if (document == null || document.isEmpty()) {
+            throw new ActivityPubException(String.format("The entity [%s] is not stored.", id));
+        }
+        this.storedJsonRewriter.write((String) document.getFieldValue(ActivityPubStorage.CONTENT_FIELD),
+            (String) document.getFieldValue(ActivityPubStorage.TYPE_FIELD), id, output);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.script;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.internal.client.HostHealth;
+import org.xwiki.contrib.activitypub.internal.client.RemoteHostMonitor;
+import org.xwiki.contrib.activitypub.internal.delivery.ActivityPubDeliveryQueue;
+import org.xwiki.contrib.activitypub.internal.inbox.ActivityPubInboxQueue;
+import org.xwiki.contrib.activitypub.internal.storage.ActivityPubEntityCache;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.stability.Unstable;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
+
+/**
+ * Component dedicated to the monitoring of the ActivityPub internals for {@link ActivityPubScriptService}.
+ * All the information are only available to the wiki administrators.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@Component(roles = { ActivityPubMonitoringScriptService.class })
+@Singleton
+@Unstable
+public class ActivityPubMonitoringScriptService
+{
+    @Inject
+    private ActivityPubEntityCache entityCache;
+
+    @Inject
+    private ActivityPubDeliveryQueue deliveryQueue;
+
+    @Inject
+    private ActivityPubInboxQueue inboxQueue;
+
+    @Inject
+    private RemoteHostMonitor remoteHostMonitor;
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ContextualAuthorizationManager authorizationManager;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    /**
+     * @return the hits, misses, evictions and invalidations counts of the storage cache since the start of the
+     *         instance, or {@code null} if the current user is not an administrator of the wiki.
+     */
+    public Map<String, Long> getStorageCacheStatistics()
+    {
+        if (isAdmin()) {
+            return this.entityCache.getStatistics();
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of outbound deliveries waiting to be performed ({@code pending}), of the deliveries given
+     *         up after too many failed attempts ({@code failed}) and of the activities whose delivery has been given up
+     *         for some of their inboxes since the start of the instance ({@code undeliveredActivities}), or
+     *         {@code null} if the current user is not an administrator of the wiki or in case of error.
+     */
+    public Map<String, Long> getDeliveryQueueStatistics()
+    {
+        if (isAdmin()) {
+            try {
+                return this.deliveryQueue.getStatistics();
+            } catch (ActivityPubException e) {
+                this.logger.warn("Error while retrieving the delivery queue statistics. Cause: [{}]",
+                    getRootCauseMessage(e));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of received activities waiting to be processed ({@code pending}) and of the activities
+     *         given up after too many failed attempts ({@code failed}), or {@code null} if the current user is not an
+     *         administrator of the wiki or in case of error.
+     */
+    public Map<String, Long> getInboxQueueStatistics()
+    {
+        if (isAdmin()) {
+            try {
+                return this.inboxQueue.getStatistics();
+            } catch (ActivityPubException e) {
+                this.logger.warn("Error while retrieving the inbox queue statistics. Cause: [{}]",
+                    getRootCauseMessage(e));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the health of the remote hosts to which requests have been performed since the start of the instance,
+     *         with their state ({@code closed}, or {@code open} when their requests are suspended), or {@code null}
+     *         if the current user is not an administrator of the wiki.
+     */
+    public List<HostHealth> getRemoteHosts()
+    {
+        if (isAdmin()) {
+            return this.remoteHostMonitor.getHosts();
+        }
+        return null;
+    }
+
+    private boolean isAdmin()
+    {
+        return this.authorizationManager.hasAccess(Right.ADMIN, this.contextProvider.get().getWikiReference());
+    }
+}
@@ -64,7 +64,6 @@ import org.xwiki.contrib.activitypub.internal.DefaultURLHandler;
 import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
 import org.xwiki.contrib.activitypub.internal.XWikiUserBridge;
 import org.xwiki.contrib.activitypub.internal.script.ActivityPubScriptServiceActor;
-import org.xwiki.contrib.activitypub.internal.stream.StreamActivityPubObjectReferenceResolver;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.script.service.ScriptService;
@@ -155,9 +154,6 @@ public class ActivityPubScriptService implements ScriptService
     @Inject
     private InternalURINormalizer internalURINormalizer;
 
-    @Inject
-    private StreamActivityPubObjectReferenceResolver streamActivityPubObjectReferenceResolver;
-
     @Inject
     private DefaultURLHandler urlHandler;
 
@@ -170,6 +166,9 @@ public class ActivityPubScriptService implements ScriptService
     @Inject
     private ActivityPubScriptServiceActor activityPubScriptServiceActor;
 
+    @Inject
+    private ActivityPubMonitoringScriptService activityPubMonitoringScriptService;
+
     /**
      * @param <S> the type of the {@link ScriptService}
      * @param serviceName the name of the sub {@link ScriptService}
@@ -318,7 +317,7 @@ public class ActivityPubScriptService implements ScriptService
             this.activityPubStorage.storeEntity(follow);
             HttpMethod httpMethod = this.activityPubClient.postInbox(remoteActor, follow);
             try {
-                this.activityPubClient.checkAnswer(httpMethod);
+                this.activityPubClient.checkDelivery(httpMethod);
             } finally {
                 httpMethod.releaseConnection();
             }
@@ -470,8 +469,8 @@ public class ActivityPubScriptService implements ScriptService
         if (following != null) {
             OrderedCollection<AbstractActor> activityPubObjectReferences =
                 this.activityPubObjectReferenceResolver.resolveReference(following);
-            abstractActorStream = activityPubObjectReferences.getOrderedItems().stream()
-                .map(this.streamActivityPubObjectReferenceResolver.getFunction());
+            abstractActorStream = this.activityPubObjectReferenceResolver
+                .resolveReferences(activityPubObjectReferences.getOrderedItems()).stream();
         }
         return Optional.ofNullable(abstractActorStream);
     }
@@ -487,8 +486,8 @@ public class ActivityPubScriptService implements ScriptService
             if (followers != null) {
                 OrderedCollection<AbstractActor> activityPubObjectReferences =
                     this.activityPubObjectReferenceResolver.resolveReference(followers);
-                return activityPubObjectReferences.getOrderedItems().stream()
-                    .map(this.streamActivityPubObjectReferenceResolver.getFunction())
+                return this.activityPubObjectReferenceResolver
+                    .resolveReferences(activityPubObjectReferences.getOrderedItems()).stream()
                     .filter(Objects::nonNull).collect(Collectors.toList());
             }
         } catch (ActivityPubException e) {
@@ -608,7 +607,7 @@ public class ActivityPubScriptService implements ScriptService
                         this.activityPubObjectReferenceResolver.resolveReference(activity.getActor());
                     HttpMethod httpMethod = this.activityPubClient.postInbox(originalActivityActor, likeActivity);
                     try {
-                        this.activityPubClient.checkAnswer(httpMethod);
+                        this.activityPubClient.checkDelivery(httpMethod);
                     } finally {
                         httpMethod.releaseConnection();
                     }
@@ -722,4 +721,14 @@ public class ActivityPubScriptService implements ScriptService
     {
         return this.publishNoteScriptService;
     }
+
+    /**
+     * @return the service dedicated to the monitoring of the ActivityPub internals
+     * @since 1.7.12
+     */
+    @Unstable
+    public ActivityPubMonitoringScriptService getMonitoring()
+    {
+        return this.activityPubMonitoringScriptService;
+    }
 }
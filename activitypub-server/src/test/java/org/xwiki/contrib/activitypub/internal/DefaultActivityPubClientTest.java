@@ -22,31 +22,44 @@ package org.xwiki.contrib.activitypub.internal;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.SerializedActivity;
+import org.xwiki.contrib.activitypub.SignatureService;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Create;
 import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.Outbox;
 import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.internal.client.RemoteHostMonitor;
+import org.xwiki.contrib.activitypub.internal.client.SkippedRequestException;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -73,6 +86,12 @@ public class DefaultActivityPubClientTest
     @MockComponent
     private ActivityPubJsonSerializer activityPubJsonSerializer;
 
+    @MockComponent
+    private SignatureService signatureService;
+
+    @MockComponent
+    private RemoteHostMonitor remoteHostMonitor;
+
     private URI uri;
 
     @BeforeEach
@@ -82,6 +101,14 @@ public class DefaultActivityPubClientTest
         this.uri = new URI(TEST_URL);
     }
 
+    private void verifyRequestEntity(PostMethod postMethod) throws Exception
+    {
+        assertTrue(postMethod.getRequestEntity() instanceof ByteArrayRequestEntity);
+        ByteArrayRequestEntity retrievedRequestEntity = (ByteArrayRequestEntity) postMethod.getRequestEntity();
+        assertArrayEquals("{activity:create}".getBytes(StandardCharsets.UTF_8), retrievedRequestEntity.getContent());
+        assertEquals(CLIENT_CONTENT_TYPE + "; charset=UTF-8", retrievedRequestEntity.getContentType());
+    }
+
     @Test
     public void get() throws IOException
     {
@@ -93,6 +120,39 @@ public class DefaultActivityPubClientTest
         assertEquals(CLIENT_CONTENT_TYPE, httpMethod.getRequestHeader("Accept").getValue());
     }
 
+    @Test
+    public void getConditional() throws IOException
+    {
+        HttpMethod httpMethod = this.activityPubClient.get(this.uri, "\"42\"", "Sat, 17 Oct 2026 10:00:00 GMT");
+        verify(this.httpClient, times(1)).executeMethod(httpMethod);
+
+        assertEquals("\"42\"", httpMethod.getRequestHeader("If-None-Match").getValue());
+        assertEquals("Sat, 17 Oct 2026 10:00:00 GMT", httpMethod.getRequestHeader("If-Modified-Since").getValue());
+        assertNull(this.activityPubClient.get(this.uri).getRequestHeader("If-None-Match"));
+    }
+
+    @Test
+    public void getRecordsOutcome() throws IOException
+    {
+        when(this.httpClient.executeMethod(any())).thenReturn(404);
+        this.activityPubClient.get(this.uri);
+        verify(this.remoteHostMonitor).checkRequest(this.uri, true);
+        verify(this.remoteHostMonitor).recordResponse(eq(this.uri), eq(404), anyLong(), eq(true));
+
+        IOException exception = new IOException("timeout");
+        when(this.httpClient.executeMethod(any())).thenThrow(exception);
+        assertThrows(IOException.class, () -> this.activityPubClient.get(this.uri));
+        verify(this.remoteHostMonitor).recordFailure(eq(this.uri), anyLong(), same(exception));
+    }
+
+    @Test
+    public void getSkipped() throws IOException
+    {
+        doThrow(new SkippedRequestException("unavailable")).when(this.remoteHostMonitor).checkRequest(this.uri, true);
+        assertThrows(SkippedRequestException.class, () -> this.activityPubClient.get(this.uri));
+        verify(this.httpClient, never()).executeMethod(any());
+    }
+
     @Test
     public void post() throws Exception
     {
@@ -105,11 +165,7 @@ public class DefaultActivityPubClientTest
         assertTrue(httpMethod instanceof PostMethod);
         PostMethod postMethod = (PostMethod) httpMethod;
         assertEquals(new org.apache.commons.httpclient.URI(TEST_URL, false), httpMethod.getURI());
-        assertTrue(postMethod.getRequestEntity() instanceof StringRequestEntity);
-        StringRequestEntity retrievedRequestEntity = (StringRequestEntity) postMethod.getRequestEntity();
-        assertEquals("{activity:create}", retrievedRequestEntity.getContent());
-        assertEquals("UTF-8", retrievedRequestEntity.getCharset());
-        assertEquals(CLIENT_CONTENT_TYPE + "; charset=UTF-8", retrievedRequestEntity.getContentType());
+        this.verifyRequestEntity(postMethod);
     }
 
     @Test
@@ -126,11 +182,7 @@ public class DefaultActivityPubClientTest
         assertTrue(httpMethod instanceof PostMethod);
         PostMethod postMethod = (PostMethod) httpMethod;
         assertEquals(new org.apache.commons.httpclient.URI(TEST_URL, false), httpMethod.getURI());
-        assertTrue(postMethod.getRequestEntity() instanceof StringRequestEntity);
-        StringRequestEntity retrievedRequestEntity = (StringRequestEntity) postMethod.getRequestEntity();
-        assertEquals("{activity:create}", retrievedRequestEntity.getContent());
-        assertEquals("UTF-8", retrievedRequestEntity.getCharset());
-        assertEquals(CLIENT_CONTENT_TYPE + "; charset=UTF-8", retrievedRequestEntity.getContentType());
+        this.verifyRequestEntity(postMethod);
     }
 
     @Test
@@ -146,11 +198,7 @@ public class DefaultActivityPubClientTest
         assertTrue(httpMethod instanceof PostMethod);
         PostMethod postMethod = (PostMethod) httpMethod;
         assertEquals(new org.apache.commons.httpclient.URI(TEST_URL, false), httpMethod.getURI());
-        assertTrue(postMethod.getRequestEntity() instanceof StringRequestEntity);
-        StringRequestEntity retrievedRequestEntity = (StringRequestEntity) postMethod.getRequestEntity();
-        assertEquals("{activity:create}", retrievedRequestEntity.getContent());
-        assertEquals("UTF-8", retrievedRequestEntity.getCharset());
-        assertEquals(CLIENT_CONTENT_TYPE + "; charset=UTF-8", retrievedRequestEntity.getContentType());
+        this.verifyRequestEntity(postMethod);
     }
 
     @Test
@@ -167,11 +215,7 @@ public class DefaultActivityPubClientTest
         assertTrue(httpMethod instanceof PostMethod);
         PostMethod postMethod = (PostMethod) httpMethod;
         assertEquals(new org.apache.commons.httpclient.URI(TEST_URL, false), httpMethod.getURI());
-        assertTrue(postMethod.getRequestEntity() instanceof StringRequestEntity);
-        StringRequestEntity retrievedRequestEntity = (StringRequestEntity) postMethod.getRequestEntity();
-        assertEquals("{activity:create}", retrievedRequestEntity.getContent());
-        assertEquals("UTF-8", retrievedRequestEntity.getCharset());
-        assertEquals(CLIENT_CONTENT_TYPE + "; charset=UTF-8", retrievedRequestEntity.getContentType());
+        this.verifyRequestEntity(postMethod);
     }
 
     @Test
@@ -187,11 +231,25 @@ public class DefaultActivityPubClientTest
         assertTrue(httpMethod instanceof PostMethod);
         PostMethod postMethod = (PostMethod) httpMethod;
         assertEquals(new org.apache.commons.httpclient.URI(TEST_URL, false), httpMethod.getURI());
-        assertTrue(postMethod.getRequestEntity() instanceof StringRequestEntity);
-        StringRequestEntity retrievedRequestEntity = (StringRequestEntity) postMethod.getRequestEntity();
-        assertEquals("{activity:create}", retrievedRequestEntity.getContent());
-        assertEquals("UTF-8", retrievedRequestEntity.getCharset());
-        assertEquals(CLIENT_CONTENT_TYPE + "; charset=UTF-8", retrievedRequestEntity.getContentType());
+        this.verifyRequestEntity(postMethod);
+    }
+
+    @Test
+    void postSerializedActivity() throws Exception
+    {
+        Person actor = new Person();
+        SerializedActivity serializedActivity = new SerializedActivity("{activity:create}");
+
+        HttpMethod firstMethod = this.activityPubClient.post(this.uri, actor, serializedActivity);
+        HttpMethod secondMethod =
+            this.activityPubClient.post(URI.create("http://other.org/inbox"), actor, serializedActivity);
+
+        this.verifyRequestEntity((PostMethod) firstMethod);
+        this.verifyRequestEntity((PostMethod) secondMethod);
+        verify(this.signatureService).generateSignature(same(firstMethod), same(actor), same(serializedActivity));
+        verify(this.signatureService).generateSignature(same(secondMethod), same(actor), same(serializedActivity));
+        verify(this.signatureService, never()).generateSignature(any(), any(), any(String.class));
+        verify(this.activityPubJsonSerializer, never()).serialize(any(Create.class));
     }
 
     @Test
@@ -232,4 +290,34 @@ public class DefaultActivityPubClientTest
         this.activityPubClient.checkAnswer(method);
         verify(method, times(3)).getResponseHeader("Content-Type");
     }
+
+    @Test
+    void checkDelivery() throws Exception
+    {
+        HttpMethod method = mock(PostMethod.class);
+        when(method.getURI()).thenReturn(new org.apache.commons.httpclient.URI("http://www.xwiki.org", false));
+        when(method.getName()).thenReturn("POST");
+
+        when(method.isRequestSent()).thenReturn(false);
+        ActivityPubException activityPubException = assertThrows(ActivityPubException.class, () -> {
+            this.activityPubClient.checkDelivery(method);
+        });
+        assertEquals("Error when performing [POST] on [http://www.xwiki.org]: The request has not been sent.",
+            activityPubException.getMessage());
+
+        when(method.isRequestSent()).thenReturn(true);
+        when(method.getStatusCode()).thenReturn(401);
+        when(method.getResponseBodyAsString()).thenReturn("Unauthorized.");
+        activityPubException = assertThrows(ActivityPubException.class, () -> {
+            this.activityPubClient.checkDelivery(method);
+        });
+        assertEquals("Error when performing [POST] on [http://www.xwiki.org]: "
+                         + "2xx status code expected, got [401] instead with body: [Unauthorized.].",
+            activityPubException.getMessage());
+
+        // Mastodon accepts the activities with a 202 status and an empty body, without any Content-Type.
+        when(method.getStatusCode()).thenReturn(202);
+        this.activityPubClient.checkDelivery(method);
+        verify(method, never()).getResponseHeader("Content-Type");
+    }
 }
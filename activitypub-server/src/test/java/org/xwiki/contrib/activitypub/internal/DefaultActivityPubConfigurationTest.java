@@ -29,6 +29,7 @@ import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 /**
@@ -46,6 +47,10 @@ public class DefaultActivityPubConfigurationTest
     @Named("activitypub")
     private ConfigurationSource configuration;
 
+    @MockComponent
+    @Named("xwikiproperties")
+    private ConfigurationSource xwikiProperties;
+
     @Test
     public void getFollowPolicyAccept()
     {
@@ -73,4 +78,51 @@ public class DefaultActivityPubConfigurationTest
         when(this.configuration.getProperty("followPolicy", "reject")).thenReturn("err");
         assertEquals(ActivityPubConfiguration.FollowPolicy.REJECT, this.activityPubConfiguration.getFollowPolicy());
     }
+
+    @Test
+    public void getStorageCommitWithin()
+    {
+        when(this.xwikiProperties.getProperty("activitypub.storage.commitWithin", 0)).thenReturn(500);
+        assertEquals(500, this.activityPubConfiguration.getStorageCommitWithin());
+    }
+
+    @Test
+    public void getCollectionPageSize()
+    {
+        when(this.xwikiProperties.getProperty("activitypub.collection.pageSize", 20)).thenReturn(50);
+        assertEquals(50, this.activityPubConfiguration.getCollectionPageSize());
+    }
+
+    @Test
+    public void getDeliveryConfiguration()
+    {
+        when(this.xwikiProperties.getProperty("activitypub.delivery.threads", 16)).thenReturn(8);
+        when(this.xwikiProperties.getProperty("activitypub.delivery.maxConnectionsPerHost", 2)).thenReturn(4);
+        when(this.xwikiProperties.getProperty("activitypub.delivery.maxAttempts", 10)).thenReturn(3);
+        when(this.xwikiProperties.getProperty("activitypub.delivery.initialBackoff", 60)).thenReturn(5);
+        assertEquals(8, this.activityPubConfiguration.getDeliveryThreads());
+        assertEquals(4, this.activityPubConfiguration.getDeliveryMaxConnectionsPerHost());
+        assertEquals(3, this.activityPubConfiguration.getDeliveryMaxAttempts());
+        assertEquals(5, this.activityPubConfiguration.getDeliveryInitialBackoff());
+    }
+
+    @Test
+    public void getInboxConfiguration()
+    {
+        when(this.xwikiProperties.getProperty("activitypub.inbox.async", false)).thenReturn(true);
+        when(this.xwikiProperties.getProperty("activitypub.inbox.threads", 4)).thenReturn(2);
+        assertTrue(this.activityPubConfiguration.isInboxAsyncEnabled());
+        assertEquals(2, this.activityPubConfiguration.getInboxThreads());
+    }
+
+    @Test
+    public void getRemoteHostConfiguration()
+    {
+        when(this.xwikiProperties.getProperty("activitypub.client.failureThreshold", 5)).thenReturn(3);
+        when(this.xwikiProperties.getProperty("activitypub.client.retryDelay", 60)).thenReturn(30);
+        when(this.xwikiProperties.getProperty("activitypub.client.notFoundCacheDuration", 3600)).thenReturn(600);
+        assertEquals(3, this.activityPubConfiguration.getRemoteHostFailureThreshold());
+        assertEquals(30, this.activityPubConfiguration.getRemoteHostRetryDelay());
+        assertEquals(600, this.activityPubConfiguration.getNotFoundCacheDuration());
+    }
 }
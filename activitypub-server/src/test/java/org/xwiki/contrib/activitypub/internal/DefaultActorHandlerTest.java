@@ -196,6 +196,12 @@ class DefaultActorHandlerTest
         });
     }
 
+    private OrderedCollection<AbstractActor> createOwnedCollection()
+    {
+        return new OrderedCollection<AbstractActor>().setAttributedTo(
+            singletonList(new ActivityPubObjectReference<AbstractActor>().setLink(URI.create(GENERIC_ACTOR_ID))));
+    }
+
     @Test
     void getActorWithStoredPerson() throws Exception
     {
@@ -229,9 +235,9 @@ class DefaultActorHandlerTest
                 new Outbox().setAttributedTo(singletonList(
                     new ActivityPubObjectReference<AbstractActor>().setObject(expectedActor)))))
             .setFollowers(
-                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(new OrderedCollection<>()))
+                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(createOwnedCollection()))
             .setFollowing(
-                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(new OrderedCollection<>()))
+                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(createOwnedCollection()))
             .setName("Foo Foo")
             .setId(new URI(GENERIC_ACTOR_ID))
             .setXwikiReference("xwiki:XWiki.Foo");
@@ -242,13 +248,13 @@ class DefaultActorHandlerTest
         // Ensure the store is called the right number of times
         verify(this.activityPubStorage, times(1)).storeEntity(any(Outbox.class));
         verify(this.activityPubStorage, times(1)).storeEntity(any(Inbox.class));
-        // Twice for followers & followings, but Inbox & Outbox are also OrderedCollection.
-        verify(this.activityPubStorage, times(4)).storeEntity(any(OrderedCollection.class));
+        // Twice for followers & followings to set their owner, but Inbox & Outbox are also OrderedCollection.
+        verify(this.activityPubStorage, times(6)).storeEntity(any(OrderedCollection.class));
         // Twice: we need to call it first to get ID and then to store keys
         verify(this.activityPubStorage, times(2)).storeEntity(any(Person.class));
 
         // Total number of call
-        verify(this.activityPubStorage, times(6)).storeEntity(any());
+        verify(this.activityPubStorage, times(8)).storeEntity(any());
     }
 
     @Test
@@ -287,9 +293,9 @@ class DefaultActorHandlerTest
                 new Outbox().setAttributedTo(singletonList(
                     new ActivityPubObjectReference<AbstractActor>().setObject(expectedActor)))))
             .setFollowers(
-                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(new OrderedCollection<>()))
+                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(createOwnedCollection()))
             .setFollowing(
-                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(new OrderedCollection<>()))
+                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(createOwnedCollection()))
             .setName("Wiki FooWiki")
             .setId(new URI(GENERIC_ACTOR_ID));
 
@@ -367,9 +373,9 @@ class DefaultActorHandlerTest
                 new Outbox().setAttributedTo(singletonList(
                     new ActivityPubObjectReference<AbstractActor>().setObject(expectedActor)))))
             .setFollowers(
-                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(new OrderedCollection<>()))
+                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(createOwnedCollection()))
             .setFollowing(
-                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(new OrderedCollection<>()))
+                new ActivityPubObjectReference<OrderedCollection<AbstractActor>>().setObject(createOwnedCollection()))
             .setName("Foo Foo")
             .setId(new URI(GENERIC_ACTOR_ID))
             .setXwikiReference("xwiki:XWiki.Foo");
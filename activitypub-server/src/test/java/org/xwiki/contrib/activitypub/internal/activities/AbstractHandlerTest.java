@@ -37,9 +37,11 @@ import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
 import org.xwiki.contrib.activitypub.ActivityPubStorage;
 import org.xwiki.contrib.activitypub.ActorHandler;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
+import org.xwiki.contrib.activitypub.internal.delivery.ActivityPubDeliveryQueue;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -81,6 +83,9 @@ public class AbstractHandlerTest
     @MockComponent
     protected ActivityPubConfiguration activityPubConfiguration;
 
+    @MockComponent
+    protected ActivityPubDeliveryQueue deliveryQueue;
+
     @Mock
     protected PostMethod postMethod;
 
@@ -88,6 +93,11 @@ public class AbstractHandlerTest
     {
         when(this.servletResponse.getOutputStream()).thenReturn(this.responseOutput);
         when(this.activityPubClient.postInbox(any(), any())).thenReturn(this.postMethod);
+        // rely on the default implementation to keep the in-memory collections up to date in the tests
+        doCallRealMethod().when(this.activityPubStorage).appendItem(any(), any());
+        // rely on the default implementation to resolve the references one by one with the stubbed resolveReference
+        doCallRealMethod().when(this.activityPubObjectReferenceResolver).resolveReferences(any());
+        doCallRealMethod().when(this.activityPubObjectReferenceResolver).resolveTargetInboxes(any());
     }
 
     protected void verifyResponse(int code, String message) throws IOException
@@ -33,6 +33,7 @@ import org.xwiki.contrib.activitypub.entities.Accept;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Document;
 import org.xwiki.contrib.activitypub.entities.Follow;
+import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.entities.Person;
 import org.xwiki.test.LogLevel;
@@ -175,7 +176,8 @@ public class AcceptActivityHandlerTest extends AbstractHandlerTest
             .setFollowers(followers.getReference());
 
         Person followingPerson = new Person()
-            .setPreferredUsername("Following");
+            .setPreferredUsername("Following")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://following/inbox")));
 
         Follow follow = new Follow()
             .setActor(followingPerson.getReference())
@@ -198,8 +200,6 @@ public class AcceptActivityHandlerTest extends AbstractHandlerTest
         assertEquals(Collections.singletonList(followingPerson.getReference()), followers.getOrderedItems());
         verify(this.activityPubStorage).storeEntity(followers);
         verify(this.notifier, never()).notify(eq(accept), any(Set.class));
-        verify(this.activityPubClient).checkAnswer(any());
-        verify(this.activityPubClient).postInbox(followingPerson, accept);
-        verify(this.postMethod).releaseConnection();
+        verify(this.deliveryQueue).enqueue(accept, Collections.singleton(URI.create("http://following/inbox")));
     }
 }
@@ -107,13 +107,16 @@ class AnnounceActivityHandlerTest extends AbstractHandlerTest
 
         Inbox inbox = new Inbox();
         when(this.activityPubObjectReferenceResolver.resolveReference(inboxRef)).thenReturn(inbox);
+        when(this.activityPubObjectReferenceResolver.resolveReference(shares)).thenReturn(sharesCollection);
 
         this.handler.handleInboxRequest(
                 new ActivityRequest<>(receiver, announce, this.servletRequest, this.servletResponse));
 
         this.verifyResponse(announce);
         assertEquals(announce.getReference(), new ArrayList<>(inbox.getAllItems()).get(0));
+        verify(this.activityPubStorage).appendItem(inbox, announce);
         verify(this.activityPubStorage).storeEntity(inbox);
+        verify(this.activityPubStorage).appendItem(sharesCollection, announce);
         assertEquals(new URI("http://www.xwiki.org"), sharesCollection
                 .getOrderedItems()
                 .get(0)
@@ -149,7 +152,9 @@ class AnnounceActivityHandlerTest extends AbstractHandlerTest
         when(this.activityPubObjectReferenceResolver.resolveReference(sender.getReference())).thenReturn(sender);
         Outbox outbox = new Outbox();
         when(this.activityPubObjectReferenceResolver.resolveReference(outboxRef)).thenReturn(outbox);
-        Person to = new Person().setName("TO");
+        Person to = new Person()
+            .setName("TO")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://to/inbox")));
         when(this.activityPubObjectReferenceResolver.resolveReference(pa)).thenReturn(to);
         when(this.activityPubObjectReferenceResolver.resolveReference(to.getReference())).thenReturn(to);
         when(this.activityPubObjectReferenceResolver.resolveTargets(announce))
@@ -160,7 +165,6 @@ class AnnounceActivityHandlerTest extends AbstractHandlerTest
 
         this.verifyResponse(announce);
         verify(this.activityPubStorage).storeEntity(outbox);
-        verify(this.activityPubClient).postInbox(to, announce);
-        verify(this.activityPubClient).checkAnswer(any());
+        verify(this.deliveryQueue).enqueue(announce, singleton(URI.create("http://to/inbox")));
     }
 }
\ No newline at end of file
@@ -100,6 +100,34 @@ public class CreateActivityHandlerTest extends AbstractHandlerTest
         verifyResponse(activity);
     }
 
+    @Test
+    void handleSharedInbox() throws Exception
+    {
+        Note note = new Note();
+        Create activity = new Create().setObject(note).setId(new URI("http://www.xwiki.org"));
+        Person foo = new Person()
+            .setPreferredUsername("XWiki.Foo")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://foo/inbox")));
+        Person bar = new Person()
+            .setPreferredUsername("XWiki.Bar")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://bar/inbox")));
+        Inbox fooInbox = new Inbox();
+        Inbox barInbox = new Inbox();
+        // the items of the inboxes are not loaded to append the activity.
+        when(this.activityPubStorage.retrieveCollectionSummary(URI.create("http://foo/inbox"))).thenReturn(fooInbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(URI.create("http://bar/inbox"))).thenReturn(barInbox);
+        when(this.activityPubObjectReferenceResolver.resolveReference(activity.getObject())).thenReturn(note);
+
+        this.handler.handleSharedInboxRequest(activity, new HashSet<>(Arrays.asList(foo, bar)));
+
+        verify(this.activityPubStorage, times(1)).storeEntity(activity);
+        verify(this.activityPubStorage).appendItem(fooInbox, activity);
+        verify(this.activityPubStorage).appendItem(barInbox, activity);
+        verify(this.activityPubObjectReferenceResolver, never()).resolveReference(foo.getInbox());
+        verify(this.activityPubObjectReferenceResolver, never()).resolveReference(bar.getInbox());
+        verify(this.notifier).notify(activity, new HashSet<>(Arrays.asList(foo, bar)));
+    }
+
     @Test
     public void handleOutboxNoFollowersNoId() throws Exception
     {
@@ -132,9 +160,12 @@ public class CreateActivityHandlerTest extends AbstractHandlerTest
     {
         UserReference userReference = mock(UserReference.class);
         Person follower1 = new Person()
-                               .setPreferredUsername("Bar");
+            .setPreferredUsername("Bar")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://bar/inbox")));
 
-        Person follower2 = new Person().setPreferredUsername("Baz");
+        Person follower2 = new Person()
+            .setPreferredUsername("Baz")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://baz/inbox")));
 
         Create activity = new Create()
                               .setObject(new Note())
@@ -157,9 +188,9 @@ public class CreateActivityHandlerTest extends AbstractHandlerTest
         verify(this.activityPubStorage).storeEntity(outbox);
         verify(this.notifier, never()).notify(any(), any());
         this.verifyResponse(activity);
-        verify(this.activityPubClient, times(2)).checkAnswer(any());
-        verify(this.activityPubClient).postInbox(follower1, activity);
-        verify(this.activityPubClient).postInbox(follower2, activity);
-        verify(this.postMethod, times(2)).releaseConnection();
+        verify(this.deliveryQueue).enqueue(activity,
+            new HashSet<>(Arrays.asList(URI.create("http://bar/inbox"), URI.create("http://baz/inbox"))));
+        assertTrue(activity.getObject().isExpand());
+        verify(this.activityPubClient, never()).postInbox(any(), any());
     }
 }
@@ -21,6 +21,7 @@ package org.xwiki.contrib.activitypub.internal.activities;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -31,6 +32,7 @@ import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Document;
 import org.xwiki.contrib.activitypub.entities.Follow;
+import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.entities.Person;
 import org.xwiki.contrib.activitypub.entities.Reject;
@@ -134,7 +136,8 @@ public class RejectActivityHandlerTest extends AbstractHandlerTest
                                     .setFollowers(followers.getReference());
 
         Person followingPerson = new Person()
-                                     .setPreferredUsername("Following");
+            .setPreferredUsername("Following")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://following/inbox")));
 
         Follow follow = new Follow()
                             .setActor(followingPerson.getReference())
@@ -156,8 +159,43 @@ public class RejectActivityHandlerTest extends AbstractHandlerTest
         verifyResponse(reject);
         assertEquals(new ArrayList<>(), followers.getOrderedItems());
         verify(this.notifier, never()).notify(eq(reject), any(Set.class));
-        verify(this.activityPubClient).checkAnswer(any());
-        verify(this.activityPubClient).postInbox(followingPerson, reject);
-        verify(this.postMethod).releaseConnection();
+        verify(this.deliveryQueue).enqueue(reject, Collections.singleton(URI.create("http://following/inbox")));
+    }
+
+    @Test
+    void handleOutboxWithExpandedInbox() throws Exception
+    {
+        OrderedCollection<AbstractActor> followers = new OrderedCollection<>().setName("followers");
+        UserReference followedRef = mock(UserReference.class);
+        Person followedPerson = new Person()
+                                    .setPreferredUsername("Followed")
+                                    .setFollowers(followers.getReference());
+
+        Person followingPerson = new Person()
+            .setPreferredUsername("Following")
+            .setInbox(new ActivityPubObjectReference<Inbox>()
+                .setObject(new Inbox().setId(URI.create("http://following/inbox"))));
+
+        Follow follow = new Follow()
+                            .setActor(followingPerson.getReference())
+                            .setObject(followedPerson.getReference());
+
+        Reject reject = new Reject()
+                            .setActor(followedPerson.getReference())
+                            .setObject(follow.getReference());
+        when(this.activityPubObjectReferenceResolver.resolveReference(reject.getActor())).thenReturn(followedPerson);
+        when(this.activityPubObjectReferenceResolver.resolveReference(
+            (ActivityPubObjectReference<Follow>) reject.getObject())).thenReturn(follow);
+        when(this.activityPubObjectReferenceResolver.resolveReference(follow.getActor())).thenReturn(followingPerson);
+        when(this.activityPubObjectReferenceResolver.resolveReference(followedPerson.getFollowers()))
+            .thenReturn(followers);
+        when(this.actorHandler.getXWikiUserReference(followedPerson)).thenReturn(followedRef);
+
+        this.handler.handleOutboxRequest(
+            new ActivityRequest<>(followedPerson, reject, this.servletRequest, this.servletResponse));
+        verifyResponse(reject);
+        assertEquals(new ArrayList<>(), followers.getOrderedItems());
+        verify(this.notifier, never()).notify(eq(reject), any(Set.class));
+        verify(this.deliveryQueue).enqueue(reject, Collections.singleton(URI.create("http://following/inbox")));
     }
 }
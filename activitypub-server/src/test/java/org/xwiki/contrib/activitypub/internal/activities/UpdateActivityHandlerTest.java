@@ -46,7 +46,6 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -132,8 +131,11 @@ public class UpdateActivityHandlerTest extends AbstractHandlerTest
     {
         UserReference userReference = mock(UserReference.class);
         Person follower1 = new Person()
-            .setPreferredUsername("Bar");
-        Person follower2 = new Person().setPreferredUsername("Baz");
+            .setPreferredUsername("Bar")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://bar/inbox")));
+        Person follower2 = new Person()
+            .setPreferredUsername("Baz")
+            .setInbox(new ActivityPubObjectReference<Inbox>().setLink(URI.create("http://baz/inbox")));
 
         Update activity = new Update()
             .setObject(new Note())
@@ -157,9 +159,9 @@ public class UpdateActivityHandlerTest extends AbstractHandlerTest
         verify(this.activityPubStorage).storeEntity(outbox);
         verify(this.notifier, never()).notify(any(), any());
         this.verifyResponse(activity);
-        verify(this.activityPubClient, times(2)).checkAnswer(any());
-        verify(this.activityPubClient).postInbox(follower1, activity);
-        verify(this.activityPubClient).postInbox(follower2, activity);
-        verify(this.postMethod, times(2)).releaseConnection();
+        verify(this.deliveryQueue).enqueue(activity,
+            new HashSet<>(Arrays.asList(URI.create("http://bar/inbox"), URI.create("http://baz/inbox"))));
+        assertTrue(activity.getObject().isExpand());
+        verify(this.activityPubClient, never()).postInbox(any(), any());
     }
 }
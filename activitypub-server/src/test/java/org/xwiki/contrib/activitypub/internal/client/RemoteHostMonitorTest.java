@@ -0,0 +1,208 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.client;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link RemoteHostMonitor}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class RemoteHostMonitorTest
+{
+    private static final URI URI_1 = URI.create("http://remote/users/foo");
+
+    private static final URI URI_2 = URI.create("http://remote/users/bar");
+
+    @InjectMockComponents
+    private RemoteHostMonitor monitor;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private ActivityPubConfiguration configuration;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.INFO);
+
+    private Cache<Long> notFound;
+
+    private HttpClient httpClient;
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        this.notFound = mock(Cache.class);
+        when(this.cacheManager.<Long>createNewCache(any(CacheConfiguration.class))).thenReturn(this.notFound);
+    }
+
+    @BeforeEach
+    void setup()
+    {
+        when(this.configuration.getRemoteHostFailureThreshold()).thenReturn(2);
+        when(this.configuration.getRemoteHostRetryDelay()).thenReturn(0);
+        when(this.configuration.getNotFoundCacheDuration()).thenReturn(3600);
+        this.httpClient = mock(HttpClient.class);
+        this.monitor.setHttpClient(this.httpClient);
+    }
+
+    private HostHealth getHealth()
+    {
+        assertEquals(1, this.monitor.getHosts().size());
+        return this.monitor.getHosts().get(0);
+    }
+
+    private void openHost()
+    {
+        this.monitor.recordFailure(URI_1, 10, new IOException("timeout"));
+        this.monitor.recordResponse(URI_2, 503, 10, true);
+        assertTrue(this.logCapture.getMessage(0).startsWith("The host [remote] is considered unavailable"));
+    }
+
+    @Test
+    void checkRequestUnknownHost() throws Exception
+    {
+        this.monitor.checkRequest(URI_1, true);
+        assertTrue(this.monitor.getHosts().isEmpty());
+    }
+
+    @Test
+    void hostUnavailableAfterConsecutiveFailures() throws Exception
+    {
+        this.monitor.recordFailure(URI_1, 10, new IOException("timeout"));
+        this.monitor.checkRequest(URI_2, false);
+        this.monitor.recordResponse(URI_2, 503, 30, false);
+
+        SkippedRequestException exception =
+            assertThrows(SkippedRequestException.class, () -> this.monitor.checkRequest(URI_2, false));
+        assertTrue(exception.getMessage().startsWith("The host [remote] is considered unavailable until ["));
+        HostHealth health = getHealth();
+        assertEquals(HostHealth.OPEN, health.getState());
+        assertEquals(2, health.getFailures());
+        assertEquals(14, health.getAverageLatency());
+        assertEquals("Status code [503]", health.getLastError());
+        assertEquals("The host [remote] is considered unavailable after [2] consecutive failures: its requests are "
+            + "suspended until it answers again. Cause: [Status code [503]]", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void successResetsFailures() throws Exception
+    {
+        this.monitor.recordFailure(URI_1, 10, new IOException("timeout"));
+        this.monitor.recordResponse(URI_1, 403, 10, true);
+        this.monitor.recordResponse(URI_1, 429, 10, true);
+
+        this.monitor.checkRequest(URI_1, true);
+        HostHealth health = getHealth();
+        assertEquals(HostHealth.CLOSED, health.getState());
+        assertEquals(1, health.getConsecutiveFailures());
+        assertEquals(1, health.getSuccesses());
+    }
+
+    @Test
+    void notFoundRemembered() throws Exception
+    {
+        this.monitor.recordResponse(URI_1, 404, 10, true);
+        verify(this.notFound).set(eq(URI_1.toString()), anyLong());
+        this.monitor.recordResponse(URI_2, 410, 10, false);
+        verify(this.notFound, never()).set(eq(URI_2.toString()), anyLong());
+
+        when(this.notFound.get(URI_1.toString())).thenReturn(System.currentTimeMillis() + 60000);
+        SkippedRequestException exception =
+            assertThrows(SkippedRequestException.class, () -> this.monitor.checkRequest(URI_1, true));
+        assertEquals("[http://remote/users/foo] has recently been answered as not found.", exception.getMessage());
+        this.monitor.checkRequest(URI_1, false);
+
+        when(this.notFound.get(URI_1.toString())).thenReturn(System.currentTimeMillis() - 1);
+        this.monitor.checkRequest(URI_1, true);
+        assertEquals(HostHealth.CLOSED, getHealth().getState());
+    }
+
+    @Test
+    void checkUnavailableHostsAvailableAgain() throws Exception
+    {
+        openHost();
+        when(this.httpClient.executeMethod(any(HeadMethod.class))).thenReturn(404);
+
+        this.monitor.checkUnavailableHosts();
+
+        assertEquals(HostHealth.CLOSED, getHealth().getState());
+        this.monitor.checkRequest(URI_1, false);
+        assertEquals("The host [remote] is available again.", this.logCapture.getMessage(1));
+    }
+
+    @Test
+    void checkUnavailableHostsStillUnavailable() throws Exception
+    {
+        openHost();
+        when(this.httpClient.executeMethod(any(HeadMethod.class))).thenThrow(new IOException("Connection refused"));
+
+        this.monitor.checkUnavailableHosts();
+
+        HostHealth health = getHealth();
+        assertEquals(HostHealth.OPEN, health.getState());
+        assertEquals("IOException: Connection refused", health.getLastError());
+        assertThrows(SkippedRequestException.class, () -> this.monitor.checkRequest(URI_1, false));
+    }
+
+    @Test
+    void leastRecentlyRequestedHostsForgotten()
+    {
+        this.monitor.recordResponse(URI_1, 200, 10, true);
+        for (int i = 0; i < 1000; i++) {
+            this.monitor.recordResponse(URI.create(String.format("http://remote%s/users/foo", i)), 200, 10, true);
+        }
+
+        assertEquals(1000, this.monitor.getHosts().size());
+        assertTrue(this.monitor.getHosts().stream().noneMatch(health -> "remote".equals(health.getHost())));
+    }
+}
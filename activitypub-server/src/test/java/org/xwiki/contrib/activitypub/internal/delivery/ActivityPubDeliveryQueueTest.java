@@ -0,0 +1,318 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.delivery;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.contrib.activitypub.ActivityPubClient;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.SerializedActivity;
+import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link ActivityPubDeliveryQueue}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ActivityPubDeliveryQueueTest
+{
+    private static final long TIMEOUT = 5000;
+
+    @InjectMockComponents
+    private ActivityPubDeliveryQueue deliveryQueue;
+
+    @MockComponent
+    private DeliveryRecordStore store;
+
+    @MockComponent
+    private ActivityPubJsonSerializer activityPubJsonSerializer;
+
+    @MockComponent
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @MockComponent
+    private ActivityPubClient activityPubClient;
+
+    @MockComponent
+    private ActivityPubConfiguration configuration;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    @BeforeComponent
+    void beforeComponent()
+    {
+        when(this.configuration.getDeliveryThreads()).thenReturn(2);
+        when(this.configuration.getDeliveryMaxConnectionsPerHost()).thenReturn(1);
+        when(this.configuration.getDeliveryMaxAttempts()).thenReturn(2);
+        when(this.configuration.getDeliveryInitialBackoff()).thenReturn(60);
+    }
+
+    private Create createActivity(Person actor) throws Exception
+    {
+        Create create = new Create()
+            .setActor(actor)
+            .setId(URI.create("http://server/create/1"));
+        when(this.activityPubJsonSerializer.serialize(create)).thenReturn("{create}");
+        when(this.resolver.resolveReference(any())).thenReturn(actor);
+        return create;
+    }
+
+    @Test
+    void enqueue() throws Exception
+    {
+        Person actor = new Person().setId(URI.create("http://server/actor"));
+        Create create = createActivity(actor);
+        HttpMethod httpMethod = mock(HttpMethod.class);
+        when(this.activityPubClient.post(any(), any(), any(SerializedActivity.class))).thenReturn(httpMethod);
+
+        List<CompletableFuture<DeliveryRecord>> outcomes =
+            this.deliveryQueue.enqueue(create,
+                Arrays.asList(URI.create("http://remote1/inbox"), URI.create("http://remote2/inbox")));
+
+        ArgumentCaptor<Collection<DeliveryRecord>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(this.store).save(captor.capture());
+        List<DeliveryRecord> records = (List<DeliveryRecord>) captor.getValue();
+        assertEquals(2, records.size());
+        assertEquals(URI.create("http://remote1/inbox"), records.get(0).getInbox());
+        assertEquals(URI.create("http://remote2/inbox"), records.get(1).getInbox());
+        for (DeliveryRecord record : records) {
+            assertEquals(create.getId(), record.getActivity());
+            assertEquals(actor.getId(), record.getActor());
+            assertEquals("{create}", record.getContent());
+            assertEquals(DeliveryRecord.PENDING, record.getState());
+        }
+
+        // The activity is serialized and its actor resolved only once for all the deliveries.
+        SerializedActivity serializedActivity = records.get(0).getSerializedActivity();
+        assertSame(serializedActivity, records.get(1).getSerializedActivity());
+        assertEquals("{create}", serializedActivity.getContentAsString());
+        verify(this.activityPubClient, timeout(TIMEOUT))
+            .post(URI.create("http://remote1/inbox"), actor, serializedActivity);
+        verify(this.activityPubClient, timeout(TIMEOUT))
+            .post(URI.create("http://remote2/inbox"), actor, serializedActivity);
+        verify(this.activityPubJsonSerializer).serialize(create);
+        verify(this.resolver).resolveReference(any());
+        verify(this.store, timeout(TIMEOUT)).remove(records.get(0));
+        verify(this.store, timeout(TIMEOUT)).remove(records.get(1));
+        verify(httpMethod, timeout(TIMEOUT).times(2)).releaseConnection();
+        assertEquals(DeliveryRecord.DELIVERED, outcomes.get(0).get(TIMEOUT, TimeUnit.MILLISECONDS).getState());
+        assertEquals(DeliveryRecord.DELIVERED, outcomes.get(1).get(TIMEOUT, TimeUnit.MILLISECONDS).getState());
+    }
+
+    @Test
+    void enqueueWithSameHost() throws Exception
+    {
+        Person actor = new Person().setId(URI.create("http://server/actor"));
+        Create create = createActivity(actor);
+        HttpMethod httpMethod = mock(HttpMethod.class);
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+        when(this.activityPubClient.post(any(), any(), any(SerializedActivity.class))).then(invocation -> {
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inProgress.decrementAndGet();
+            return httpMethod;
+        });
+
+        List<CompletableFuture<DeliveryRecord>> outcomes = this.deliveryQueue.enqueue(create, Arrays.asList(
+            URI.create("http://remote/users/1/inbox"),
+            URI.create("http://remote/users/2/inbox"),
+            URI.create("http://remote/users/3/inbox")));
+
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0])).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        for (CompletableFuture<DeliveryRecord> outcome : outcomes) {
+            assertEquals(DeliveryRecord.DELIVERED, outcome.get().getState());
+        }
+        // Only one delivery at a time is allowed to the same host.
+        assertEquals(1, maxInProgress.get());
+        verify(httpMethod, times(3)).releaseConnection();
+    }
+
+    @Test
+    void enqueueWithFailure() throws Exception
+    {
+        Person actor = new Person().setId(URI.create("http://server/actor"));
+        Create create = createActivity(actor);
+        when(this.activityPubClient.post(any(), any(), any(SerializedActivity.class)))
+            .thenThrow(new ActivityPubException("error"));
+
+        List<CompletableFuture<DeliveryRecord>> outcomes =
+            this.deliveryQueue.enqueue(create, Collections.singletonList(URI.create("http://remote/inbox")));
+
+        ArgumentCaptor<Collection<DeliveryRecord>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(this.store, timeout(TIMEOUT).times(2)).save(captor.capture());
+        DeliveryRecord record = captor.getValue().iterator().next();
+        assertSame(record, outcomes.get(0).get(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(1, record.getAttempts());
+        assertEquals(DeliveryRecord.PENDING, record.getState());
+        assertEquals("ActivityPubException: error", record.getLastError());
+        assertTrue(record.getNextAttempt().getTime() > System.currentTimeMillis());
+        assertEquals("The delivery of the activity [http://server/create/1] to [http://remote/inbox] failed, it will "
+            + "be retried in [60] seconds. Cause: [ActivityPubException: error]", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void enqueueWithSaveFailure() throws Exception
+    {
+        Person actor = new Person().setId(URI.create("http://server/actor"));
+        Create create = createActivity(actor);
+        HttpMethod httpMethod = mock(HttpMethod.class);
+        when(this.activityPubClient.post(any(), any(), any(SerializedActivity.class))).thenReturn(httpMethod);
+        doThrow(new ActivityPubException("error")).when(this.store).save(any());
+
+        assertThrows(ActivityPubException.class,
+            () -> this.deliveryQueue.enqueue(create, Collections.singletonList(URI.create("http://remote/inbox"))));
+
+        ArgumentCaptor<Collection<DeliveryRecord>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(this.store).save(captor.capture());
+        verify(this.activityPubClient, never()).post(any(), any(), any(SerializedActivity.class));
+
+        // The delivery is not marked as scheduled anymore: it is performed if it has been stored nevertheless.
+        DeliveryRecord record = captor.getValue().iterator().next();
+        when(this.store.getDueRecords(anyInt())).thenReturn(Collections.singletonList(record));
+        when(this.store.get(record.getId())).thenReturn(record);
+        this.deliveryQueue.sweep();
+        verify(this.activityPubClient, timeout(TIMEOUT).atLeastOnce()).post(eq(URI.create("http://remote/inbox")),
+            same(actor), any(SerializedActivity.class));
+    }
+
+    @Test
+    void enqueueGivenUp() throws Exception
+    {
+        when(this.configuration.getDeliveryMaxAttempts()).thenReturn(1);
+        Person actor = new Person().setId(URI.create("http://server/actor"));
+        Create create = createActivity(actor);
+        HttpMethod httpMethod = mock(HttpMethod.class);
+        when(this.activityPubClient.post(eq(URI.create("http://remote1/inbox")), any(), any(SerializedActivity.class)))
+            .thenReturn(httpMethod);
+        when(this.activityPubClient.post(eq(URI.create("http://remote2/inbox")), any(), any(SerializedActivity.class)))
+            .thenThrow(new ActivityPubException("error"));
+
+        List<CompletableFuture<DeliveryRecord>> outcomes = this.deliveryQueue.enqueue(create,
+            Arrays.asList(URI.create("http://remote1/inbox"), URI.create("http://remote2/inbox")));
+
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0])).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(DeliveryRecord.DELIVERED, outcomes.get(0).get().getState());
+        assertEquals(DeliveryRecord.FAILED, outcomes.get(1).get().getState());
+        // The outcome of the deliveries is reported right after the completion of the last one.
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (this.logCapture.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Giving up the delivery of the activity [http://server/create/1] to [http://remote2/inbox] after "
+            + "[1] attempts. Cause: [ActivityPubException: error]", this.logCapture.getMessage(0));
+        assertEquals("Delivery of [http://server/create/1] to [2] inboxes: [1] delivered, [0] to be retried, [1] "
+            + "failed.", this.logCapture.getMessage(1));
+        assertEquals(1L, this.deliveryQueue.getStatistics().get(ActivityPubDeliveryQueue.UNDELIVERED_ACTIVITIES));
+    }
+
+    private DeliveryRecord createRecord(String id, String inbox, Date nextAttempt)
+    {
+        return new DeliveryRecord()
+            .setId(id)
+            .setActivity(URI.create("http://server/create/1"))
+            .setActor(URI.create("http://server/actor"))
+            .setInbox(URI.create(inbox))
+            .setContent("{create}")
+            .setNextAttempt(nextAttempt)
+            .setState(DeliveryRecord.PENDING);
+    }
+
+    @Test
+    void sweep() throws Exception
+    {
+        Person actor = new Person().setId(URI.create("http://server/actor"));
+        when(this.resolver.resolveReference(any())).thenReturn(actor);
+        HttpMethod httpMethod = mock(HttpMethod.class);
+        when(this.activityPubClient.post(any(), any(), any(SerializedActivity.class))).thenReturn(httpMethod);
+
+        Date past = new Date(System.currentTimeMillis() - TIMEOUT);
+        DeliveryRecord delivered = createRecord("delivered", "http://remote1/inbox", past);
+        DeliveryRecord postponed = createRecord("postponed", "http://remote2/inbox", past);
+        DeliveryRecord due = createRecord("due", "http://remote3/inbox", past);
+        when(this.store.getDueRecords(anyInt())).thenReturn(Arrays.asList(delivered, postponed, due));
+        // The search is not up to date: the first delivery has been performed and the second one failed since.
+        when(this.store.get("postponed")).thenReturn(
+            createRecord("postponed", "http://remote2/inbox", new Date(System.currentTimeMillis() + TIMEOUT)));
+        when(this.store.get("due")).thenReturn(due);
+
+        this.deliveryQueue.sweep();
+
+        // The initial sweep of the queue might run concurrently.
+        verify(this.store, timeout(TIMEOUT).atLeastOnce()).remove(due);
+        verify(this.activityPubClient, atLeastOnce()).post(eq(URI.create("http://remote3/inbox")), same(actor),
+            any(SerializedActivity.class));
+        verify(this.activityPubClient, never()).post(eq(URI.create("http://remote1/inbox")), any(),
+            any(SerializedActivity.class));
+        verify(this.activityPubClient, never()).post(eq(URI.create("http://remote2/inbox")), any(),
+            any(SerializedActivity.class));
+    }
+
+    @Test
+    void getStatistics() throws Exception
+    {
+        when(this.store.count(DeliveryRecord.PENDING)).thenReturn(3L);
+        when(this.store.count(DeliveryRecord.FAILED)).thenReturn(1L);
+        assertEquals(3L, this.deliveryQueue.getStatistics().get(DeliveryRecord.PENDING));
+        assertEquals(1L, this.deliveryQueue.getStatistics().get(DeliveryRecord.FAILED));
+        assertEquals(0L, this.deliveryQueue.getStatistics().get(ActivityPubDeliveryQueue.UNDELIVERED_ACTIVITIES));
+    }
+}
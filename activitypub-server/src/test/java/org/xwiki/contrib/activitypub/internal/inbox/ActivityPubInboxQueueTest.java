@@ -0,0 +1,223 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.inbox;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.activitypub.ActivityHandler;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.internal.resource.SharedInboxRecipientResolver;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link ActivityPubInboxQueue}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class ActivityPubInboxQueueTest
+{
+    private static final long TIMEOUT = 5000;
+
+    @InjectMockComponents
+    private ActivityPubInboxQueue inboxQueue;
+
+    @MockComponent
+    private InboxRecordStore store;
+
+    @MockComponent
+    private ActivityPubJsonParser activityPubJsonParser;
+
+    @MockComponent
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @MockComponent
+    private SharedInboxRecipientResolver sharedInboxRecipientResolver;
+
+    @MockComponent
+    private ActivityPubConfiguration configuration;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    private ActivityHandler<Create> activityHandler;
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        when(this.configuration.getInboxThreads()).thenReturn(2);
+        Provider<ComponentManager> componentManagerProvider = this.componentManager.registerMockComponent(
+            new DefaultParameterizedType(null, Provider.class, ComponentManager.class), "context");
+        when(componentManagerProvider.get()).thenReturn(this.componentManager);
+        this.activityHandler = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
+    }
+
+    private Create createActivity() throws Exception
+    {
+        Create create = new Create().setId(URI.create("http://remote/create/1"));
+        when(this.activityPubJsonParser.parse("{create}")).thenReturn(create);
+        return create;
+    }
+
+    @Test
+    void enqueue() throws Exception
+    {
+        Create create = createActivity();
+        Person recipient = new Person().setId(URI.create("http://server/actor"));
+        when(this.resolver.resolveReference(
+            new ActivityPubObjectReference<AbstractActor>().setLink(recipient.getId()))).thenReturn(recipient);
+
+        InboxRecord record =
+            this.inboxQueue.enqueue("{create}", create, Collections.singletonList(recipient.getId()));
+
+        assertEquals(create.getId(), record.getActivity());
+        assertEquals("{create}", record.getContent());
+        assertFalse(record.isSharedInbox());
+        verify(this.store).save(record);
+        verify(this.activityHandler, timeout(TIMEOUT))
+            .handleSharedInboxRequest(create, Collections.singleton(recipient));
+        verify(this.store, timeout(TIMEOUT)).remove(record);
+        assertEquals(InboxRecord.PROCESSED, record.getState());
+    }
+
+    @Test
+    void enqueueFromSharedInbox() throws Exception
+    {
+        Create create = createActivity();
+        Set<AbstractActor> recipients = new LinkedHashSet<>();
+        recipients.add(new Person().setId(URI.create("http://server/actor1")));
+        recipients.add(new Person().setId(URI.create("http://server/actor2")));
+        when(this.sharedInboxRecipientResolver.resolveRecipients(create)).thenReturn(recipients);
+
+        InboxRecord record = this.inboxQueue.enqueue("{create}", create, Collections.emptyList());
+
+        assertTrue(record.isSharedInbox());
+        verify(this.activityHandler, timeout(TIMEOUT)).handleSharedInboxRequest(create, recipients);
+        verify(this.store, timeout(TIMEOUT)).remove(record);
+        verify(this.resolver, never()).resolveReference(any());
+    }
+
+    @Test
+    void enqueueWithFailure() throws Exception
+    {
+        Create create = createActivity();
+        when(this.sharedInboxRecipientResolver.resolveRecipients(create)).thenReturn(Collections.emptySet());
+        doThrow(new ActivityPubException("error")).when(this.activityHandler)
+            .handleSharedInboxRequest(create, Collections.emptySet());
+
+        InboxRecord record = this.inboxQueue.enqueue("{create}", create, Collections.emptyList());
+
+        ArgumentCaptor<InboxRecord> captor = ArgumentCaptor.forClass(InboxRecord.class);
+        verify(this.store, timeout(TIMEOUT).times(2)).save(captor.capture());
+        assertEquals(record, captor.getValue());
+        assertEquals(1, record.getAttempts());
+        assertEquals(InboxRecord.PENDING, record.getState());
+        assertEquals("ActivityPubException: error", record.getLastError());
+        assertTrue(record.getNextAttempt().getTime() > System.currentTimeMillis());
+        verify(this.store, never()).remove(any());
+        assertEquals("The processing of the activity [http://remote/create/1] failed, it will be retried in [60] "
+            + "seconds. Cause: [ActivityPubException: error]", this.logCapture.getMessage(0));
+    }
+
+    private InboxRecord createRecord(String id, Date nextAttempt)
+    {
+        return new InboxRecord()
+            .setId(id)
+            .setActivity(URI.create("http://remote/create/1"))
+            .setContent("{create}")
+            .setSharedInbox(true)
+            .setNextAttempt(nextAttempt)
+            .setState(InboxRecord.PENDING);
+    }
+
+    @Test
+    void sweep() throws Exception
+    {
+        Create create = createActivity();
+        when(this.sharedInboxRecipientResolver.resolveRecipients(create)).thenReturn(Collections.emptySet());
+
+        Date past = new Date(System.currentTimeMillis() - TIMEOUT);
+        InboxRecord processed = createRecord("processed", past);
+        InboxRecord postponed = createRecord("postponed", past);
+        InboxRecord due = createRecord("due", past);
+        when(this.store.getDueRecords(anyInt())).thenReturn(Arrays.asList(processed, postponed, due));
+        // The search is not up to date: the first activity has been processed and the second one failed since.
+        when(this.store.get("postponed"))
+            .thenReturn(createRecord("postponed", new Date(System.currentTimeMillis() + TIMEOUT)));
+        when(this.store.get("due")).thenReturn(due);
+
+        this.inboxQueue.sweep();
+
+        // The initial sweep of the queue might run concurrently.
+        verify(this.store, timeout(TIMEOUT).atLeastOnce()).remove(due);
+        verify(this.activityHandler, atLeastOnce()).handleSharedInboxRequest(create, Collections.emptySet());
+        verify(this.store, never()).remove(processed);
+        verify(this.store, never()).remove(postponed);
+    }
+
+    @Test
+    void purgeFailedRecords() throws Exception
+    {
+        verify(this.store, timeout(TIMEOUT)).removeFailed(ActivityPubInboxQueue.FAILED_RETENTION);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.inbox;
+
+import java.net.URI;
+import java.util.Collections;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxDeduplicator.Registration;
+import org.xwiki.contrib.activitypub.internal.storage.ActivityPubSolrWriter;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link InboxDeduplicator}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class InboxDeduplicatorTest
+{
+    private static final URI ACTIVITY = URI.create("http://remote/create/1");
+
+    private static final URI RECIPIENT = URI.create("http://server/actor");
+
+    private static final String KEY = "inboxSeen-http://remote/create/1 http://server/actor";
+
+    @InjectMockComponents
+    private InboxDeduplicator deduplicator;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private Solr solr;
+
+    @MockComponent
+    private ActivityPubSolrWriter solrWriter;
+
+    private Cache<Boolean> cache;
+
+    private SolrClient solrClient;
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        this.cache = mock(Cache.class);
+        when(this.cacheManager.<Boolean>createNewCache(any(CacheConfiguration.class))).thenReturn(this.cache);
+    }
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.solrClient = mock(SolrClient.class);
+        when(this.solr.getClient("activitypub")).thenReturn(this.solrClient);
+    }
+
+    @Test
+    void registerNewActivity() throws Exception
+    {
+        assertEquals(Registration.FIRST, this.deduplicator.register(ACTIVITY, RECIPIENT));
+
+        ArgumentCaptor<SolrInputDocument> captor = ArgumentCaptor.forClass(SolrInputDocument.class);
+        verify(this.solrWriter).write(captor.capture());
+        assertEquals(KEY, captor.getValue().getFieldValue("id"));
+        assertEquals(InboxDeduplicator.SEEN_TYPE, captor.getValue().getFieldValue("type"));
+        verify(this.cache).set(KEY, Boolean.TRUE);
+    }
+
+    @Test
+    void registerCachedActivity() throws Exception
+    {
+        when(this.cache.get(KEY)).thenReturn(Boolean.TRUE);
+
+        assertEquals(Registration.DUPLICATE, this.deduplicator.register(ACTIVITY, RECIPIENT));
+        verifyNoInteractions(this.solrClient);
+        verifyNoInteractions(this.solrWriter);
+    }
+
+    @Test
+    void registerStoredActivity() throws Exception
+    {
+        when(this.solrClient.getById(KEY)).thenReturn(new SolrDocument());
+
+        assertEquals(Registration.DUPLICATE, this.deduplicator.register(ACTIVITY, RECIPIENT));
+        verify(this.solrWriter, never()).write(any(SolrInputDocument.class));
+        verify(this.cache).set(KEY, Boolean.TRUE);
+    }
+
+    @Test
+    void registerActivityWithoutId() throws Exception
+    {
+        assertEquals(Registration.FIRST, this.deduplicator.register(null, RECIPIENT));
+        assertEquals(Registration.FIRST, this.deduplicator.register(null, RECIPIENT));
+        verifyNoInteractions(this.solrClient);
+    }
+
+    @Test
+    void registerOnSharedInbox() throws Exception
+    {
+        assertEquals(Registration.FIRST, this.deduplicator.register(ACTIVITY, null));
+        verify(this.solrClient).getById("inboxSeen-http://remote/create/1 ");
+    }
+
+    @Test
+    void unregister() throws Exception
+    {
+        this.deduplicator.unregister(ACTIVITY, RECIPIENT);
+
+        verify(this.cache).remove(KEY);
+        verify(this.solrWriter).replace("id:inboxSeen\\-http\\:\\/\\/remote\\/create\\/1\\ http\\:\\/\\/server\\/actor",
+            Collections.emptyList());
+    }
+
+    @Test
+    void registerActivityInProgress() throws Exception
+    {
+        assertEquals(Registration.FIRST, this.deduplicator.register(ACTIVITY, RECIPIENT));
+        // The cache is filled once the first delivery is registered.
+        when(this.cache.get(KEY)).thenReturn(Boolean.TRUE);
+
+        assertEquals(Registration.IN_PROGRESS, this.deduplicator.register(ACTIVITY, RECIPIENT));
+        this.deduplicator.release(ACTIVITY, RECIPIENT);
+        assertEquals(Registration.DUPLICATE, this.deduplicator.register(ACTIVITY, RECIPIENT));
+    }
+
+    @Test
+    void registerActivityAfterFailure() throws Exception
+    {
+        assertEquals(Registration.FIRST, this.deduplicator.register(ACTIVITY, RECIPIENT));
+        assertEquals(Registration.IN_PROGRESS, this.deduplicator.register(ACTIVITY, RECIPIENT));
+
+        this.deduplicator.unregister(ACTIVITY, RECIPIENT);
+
+        assertEquals(Registration.FIRST, this.deduplicator.register(ACTIVITY, RECIPIENT));
+        verify(this.solrWriter, times(2)).write(any(SolrInputDocument.class));
+    }
+}
@@ -19,20 +19,28 @@
  */
 package org.xwiki.contrib.activitypub.internal.resource;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.inject.Provider;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -41,6 +49,7 @@ import org.xwiki.container.servlet.ServletRequest;
 import org.xwiki.container.servlet.ServletResponse;
 import org.xwiki.contrib.activitypub.ActivityHandler;
 import org.xwiki.contrib.activitypub.ActivityPubClient;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
 import org.xwiki.contrib.activitypub.ActivityPubJsonSerializer;
@@ -53,14 +62,26 @@ import org.xwiki.contrib.activitypub.entities.AbstractActivity;
 import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.Endpoints;
 import org.xwiki.contrib.activitypub.entities.Inbox;
 import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.entities.OrderedCollectionPage;
 import org.xwiki.contrib.activitypub.entities.Outbox;
 import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.entities.ProxyActor;
+import org.xwiki.contrib.activitypub.entities.PublicKey;
 import org.xwiki.contrib.activitypub.internal.XWikiUserBridge;
-import org.xwiki.contrib.activitypub.internal.filters.CollectionFilter;
+import org.xwiki.contrib.activitypub.internal.inbox.ActivityPubInboxQueue;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxDeduplicator;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxDeduplicator.Registration;
+import org.xwiki.contrib.activitypub.internal.signature.HttpSignatureException;
+import org.xwiki.contrib.activitypub.internal.signature.HttpSignatureVerifier;
+import org.xwiki.contrib.activitypub.internal.storage.EntityVersion;
+import org.xwiki.contrib.activitypub.internal.storage.EntityVersionStore;
+import org.xwiki.contrib.activitypub.internal.storage.StoredEntityWriter;
 import org.xwiki.contrib.activitypub.webfinger.WebfingerService;
 import org.xwiki.resource.ResourceReferenceHandlerChain;
+import org.xwiki.resource.ResourceReferenceSerializer;
 import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectComponentManager;
@@ -73,8 +94,13 @@ import com.xpn.xwiki.XWikiContext;
 
 import static java.util.Collections.singletonList;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -114,10 +140,31 @@ public class ActivityPubResourceReferenceHandlerTest
     private MockitoComponentManager componentManager;
 
     @MockComponent
-    private CollectionFilter<OrderedCollection<AbstractActivity>> publicActivityCollectionFilter;
+    private WebfingerService webfingerService;
 
     @MockComponent
-    private WebfingerService webfingerService;
+    private ActivityPubConfiguration configuration;
+
+    @MockComponent
+    private SharedInboxRecipientResolver sharedInboxRecipientResolver;
+
+    @MockComponent
+    private ResourceReferenceSerializer<ActivityPubResourceReference, URI> serializer;
+
+    @MockComponent
+    private HttpSignatureVerifier signatureVerifier;
+
+    @MockComponent
+    private ActivityPubInboxQueue inboxQueue;
+
+    @MockComponent
+    private InboxDeduplicator inboxDeduplicator;
+
+    @MockComponent
+    private EntityVersionStore entityVersionStore;
+
+    @MockComponent
+    private StoredEntityWriter storedEntityWriter;
 
     @Mock
     private ResourceReferenceHandlerChain handlerChain;
@@ -153,6 +200,50 @@ public class ActivityPubResourceReferenceHandlerTest
         when(contextProvider.get()).thenReturn(xWikiContext);
     }
 
+    @BeforeEach
+    void setup() throws Exception
+    {
+        when(this.inboxDeduplicator.register(any(), any())).thenReturn(Registration.FIRST);
+    }
+
+    private ServletInputStream createInputStream(String content)
+    {
+        ByteArrayInputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        return new ServletInputStream()
+        {
+            @Override
+            public int read()
+            {
+                return input.read();
+            }
+
+            public boolean isFinished()
+            {
+                return input.available() == 0;
+            }
+
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            public void setReadListener(ReadListener readListener)
+            {
+                // Not used in the tests.
+            }
+        };
+    }
+
+    /**
+     * Mock the JSON round trip used to copy the given collection before serving it.
+     */
+    private void mockCopy(OrderedCollection<?> collection, OrderedCollection<?> copy) throws Exception
+    {
+        String json = String.format("{\"type\":\"%s\"}", collection.getType());
+        when(this.activityPubJsonSerializer.serialize(collection)).thenReturn(json);
+        when(this.activityPubJsonParser.parse(json)).thenReturn(copy);
+    }
+
     private void verifyResponse(int code, String message) throws IOException
     {
         verify(this.servletResponse, times(1)).setStatus(code);
@@ -207,7 +298,10 @@ public class ActivityPubResourceReferenceHandlerTest
         when(this.actorHandler.getActor(resourceReference)).thenReturn(person);
         when(this.servletRequest.getMethod()).thenReturn("GET");
         when(this.servletRequest.getHeader("Accept")).thenReturn("application/json");
+        URI sharedInbox = URI.create("http://domain.org/xwiki/activitypub/sharedinbox/instance");
+        when(this.serializer.serialize(SharedInboxRecipientResolver.SHARED_INBOX_REFERENCE)).thenReturn(sharedInbox);
         this.handler.handle(resourceReference, this.handlerChain);
+        assertEquals(new Endpoints().setSharedInbox(sharedInbox), person.getEndpoints());
         verify(this.servletResponse, times(1)).setStatus(200);
         verify(this.servletResponse, times(1)).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
         verify(this.servletResponse, times(1)).setCharacterEncoding(StandardCharsets.UTF_8.toString());
@@ -231,6 +325,110 @@ public class ActivityPubResourceReferenceHandlerTest
         verify(this.servletResponse, times(1)).setCharacterEncoding(StandardCharsets.UTF_8.toString());
         verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, create);
         verify(this.handlerChain, times(1)).handleNext(resourceReference);
+        verify(this.servletResponse).setHeader("Cache-Control", "private, no-cache");
+        verify(this.servletResponse, never()).setHeader(eq("ETag"), any());
+    }
+
+    @Test
+    void handleGetStoredEntityWithVersion() throws Exception
+    {
+        Create create = new Create().setName("Create 42");
+        create.setTo(singletonList(ProxyActor.getPublicActor()));
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("create", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Create/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.servletRequest.getHeader("If-None-Match")).thenReturn("\"other\"");
+        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(create);
+        EntityVersion version = new EntityVersion("Create", true, new Date(42000), "hash");
+        when(this.entityVersionStore.getVersion(new URI(requestURL))).thenReturn(version);
+        this.handler.handle(resourceReference, this.handlerChain);
+        verify(this.servletResponse).setStatus(200);
+        verify(this.servletResponse).setHeader("ETag", "\"hash\"");
+        verify(this.servletResponse).setDateHeader("Last-Modified", 42000);
+        verify(this.servletResponse).setHeader("Cache-Control", "public, max-age=60");
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, create);
+    }
+
+    @Test
+    void handleGetStoredEntityFromStoredJson() throws Exception
+    {
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("create", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Create/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        EntityVersion version = new EntityVersion("Create", true, new Date(42000), "hash");
+        when(this.entityVersionStore.getVersion(new URI(requestURL))).thenReturn(version);
+        when(this.storedEntityWriter.isSupported("Create")).thenReturn(true);
+        this.handler.handle(resourceReference, this.handlerChain);
+        verify(this.servletResponse).setStatus(200);
+        verify(this.servletResponse).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
+        verify(this.servletResponse).setHeader("ETag", "\"hash\"");
+        verify(this.servletResponse).setHeader("Cache-Control", "public, max-age=60");
+        verify(this.storedEntityWriter).write(new URI(requestURL), this.responseOutput);
+        verify(this.activityPubStorage, never()).retrieveEntity(any());
+        verify(this.activityPubJsonSerializer, never()).serialize(any(), any());
+        verify(this.handlerChain).handleNext(resourceReference);
+    }
+
+    @Test
+    void handleGetStoredEntityNotModified() throws Exception
+    {
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("create", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Create/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.servletRequest.getHeader("If-None-Match")).thenReturn("\"other\", W/\"hash\"");
+        EntityVersion version = new EntityVersion("Create", false, new Date(42000), "hash");
+        when(this.entityVersionStore.getVersion(new URI(requestURL))).thenReturn(version);
+        this.handler.handle(resourceReference, this.handlerChain);
+        verify(this.servletResponse).setStatus(304);
+        verify(this.servletResponse).setHeader("ETag", "\"hash\"");
+        verify(this.servletResponse).setDateHeader("Last-Modified", 42000);
+        verify(this.servletResponse).setHeader("Cache-Control", "private, no-cache");
+        verify(this.activityPubStorage, never()).retrieveEntity(any());
+        verify(this.activityPubJsonSerializer, never()).serialize(any(), any());
+        verify(this.handlerChain).handleNext(resourceReference);
+    }
+
+    @Test
+    void handleGetActorNotModifiedSince() throws Exception
+    {
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("person", "Foo");
+        String requestURL = "http://domain.org/xwiki/activitypub/Person/Foo";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.servletRequest.getHeader("Accept")).thenReturn("application/activity+json");
+        when(this.servletRequest.getDateHeader("If-Modified-Since")).thenReturn(42000L);
+        EntityVersion version = new EntityVersion("Person", false, new Date(42500), "hash");
+        when(this.entityVersionStore.getVersion(new URI(requestURL))).thenReturn(version);
+        this.handler.handle(resourceReference, this.handlerChain);
+        verify(this.servletResponse).setStatus(304);
+        verify(this.servletResponse).setHeader("Cache-Control", "public, max-age=300");
+        verify(this.servletResponse).setHeader("Vary", "Accept");
+        verify(this.activityPubStorage, never()).retrieveEntity(any());
+        verify(this.actorHandler, never()).getActor(any());
+    }
+
+    @Test
+    void handleGetActorModifiedSince() throws Exception
+    {
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("person", "Foo");
+        String requestURL = "http://domain.org/xwiki/activitypub/Person/Foo";
+        Person person = new Person().setPreferredUsername("Foo");
+        person.setPublicKey(new PublicKey());
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.servletRequest.getHeader("Accept")).thenReturn("application/activity+json");
+        when(this.servletRequest.getDateHeader("If-Modified-Since")).thenReturn(42000L);
+        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(person);
+        EntityVersion version = new EntityVersion("Person", false, new Date(43000), "hash");
+        when(this.entityVersionStore.getVersion(new URI(requestURL))).thenReturn(version);
+        this.handler.handle(resourceReference, this.handlerChain);
+        verify(this.servletResponse).setStatus(200);
+        verify(this.servletResponse).setHeader("ETag", "\"hash\"");
+        verify(this.servletResponse).setHeader("Cache-Control", "public, max-age=300");
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, person);
     }
 
     @Test
@@ -255,7 +453,7 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/Inbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(inbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
         this.handler.handle(resourceReference, this.handlerChain);
         this.verifyResponse(500,
             "This box is not attributed. Please report the error to the administrator.");
@@ -274,21 +472,195 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/Inbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(inbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
 
         Create create = new Create().setName("Create 42");
-        when(this.servletRequest.getInputStream()).thenReturn(mock(ServletInputStream.class));
+        when(this.servletRequest.getInputStream()).thenReturn(createInputStream("{}"));
         when(this.activityPubJsonParser.parse(any(Reader.class))).thenReturn(create);
         ActivityHandler<Create> activityHandler = this.componentManager
             .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
 
         this.handler.handle(resourceReference, this.handlerChain);
 
+        verify(this.signatureVerifier).verify(this.servletRequest, "{}".getBytes(StandardCharsets.UTF_8), create);
         verify(activityHandler, times(1))
             .handleInboxRequest(new ActivityRequest<>(person, create, this.servletRequest, this.servletResponse));
         verify(this.handlerChain, times(1)).handleNext(resourceReference);
     }
 
+    @Test
+    void handlePostInboxAsync() throws Exception
+    {
+        Person person = new Person().setPreferredUsername("Foo");
+        person.setId(URI.create("http://domain.org/xwiki/activitypub/Person/Foo"));
+        ActivityPubObjectReference<AbstractActor> actorReference =
+            new ActivityPubObjectReference<AbstractActor>().setObject(person);
+        when(this.objectReferenceResolver.resolveReference(actorReference)).thenReturn(person);
+        Inbox inbox = new Inbox().setAttributedTo(singletonList(actorReference));
+        when(this.servletRequest.getMethod()).thenReturn("POST");
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Inbox/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
+        when(this.configuration.isInboxAsyncEnabled()).thenReturn(true);
+
+        Create create = new Create().setName("Create 42");
+        when(this.servletRequest.getInputStream()).thenReturn(createInputStream("{}"));
+        when(this.activityPubJsonParser.parse(any(Reader.class))).thenReturn(create);
+        ActivityHandler<Create> activityHandler = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        verify(this.signatureVerifier).verify(this.servletRequest, "{}".getBytes(StandardCharsets.UTF_8), create);
+        verify(this.inboxQueue).enqueue("{}", create, singletonList(person.getId()));
+        verify(this.servletResponse).setStatus(202);
+        verify(this.servletResponse).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, create);
+        verify(activityHandler, never()).handleInboxRequest(any());
+        verify(this.inboxDeduplicator).release(null, person.getId());
+        verify(this.inboxDeduplicator, never()).unregister(any(), any());
+        verify(this.handlerChain, times(1)).handleNext(resourceReference);
+    }
+
+    @Test
+    void handlePostInboxReplay() throws Exception
+    {
+        Person person = new Person().setPreferredUsername("Foo");
+        person.setId(URI.create("http://domain.org/xwiki/activitypub/Person/Foo"));
+        ActivityPubObjectReference<AbstractActor> actorReference =
+            new ActivityPubObjectReference<AbstractActor>().setObject(person);
+        when(this.objectReferenceResolver.resolveReference(actorReference)).thenReturn(person);
+        Inbox inbox = new Inbox().setAttributedTo(singletonList(actorReference));
+        when(this.servletRequest.getMethod()).thenReturn("POST");
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Inbox/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
+
+        Create create = new Create().setName("Create 42");
+        create.setId(URI.create("http://remote/create/42"));
+        when(this.servletRequest.getInputStream()).thenReturn(createInputStream("{}"));
+        when(this.activityPubJsonParser.parse(any(Reader.class))).thenReturn(create);
+        ActivityHandler<Create> activityHandler = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
+        when(this.inboxDeduplicator.register(create.getId(), person.getId())).thenReturn(Registration.DUPLICATE);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        verify(this.servletResponse).setStatus(202);
+        verify(this.servletResponse).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, create);
+        verify(activityHandler, never()).handleInboxRequest(any());
+        verify(this.inboxQueue, never()).enqueue(any(), any(), any());
+        verify(this.handlerChain, times(1)).handleNext(resourceReference);
+    }
+
+    @Test
+    void handlePostInboxInProgress() throws Exception
+    {
+        Person person = new Person().setPreferredUsername("Foo");
+        person.setId(URI.create("http://domain.org/xwiki/activitypub/Person/Foo"));
+        ActivityPubObjectReference<AbstractActor> actorReference =
+            new ActivityPubObjectReference<AbstractActor>().setObject(person);
+        when(this.objectReferenceResolver.resolveReference(actorReference)).thenReturn(person);
+        Inbox inbox = new Inbox().setAttributedTo(singletonList(actorReference));
+        when(this.servletRequest.getMethod()).thenReturn("POST");
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Inbox/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
+
+        Create create = new Create().setName("Create 42");
+        create.setId(URI.create("http://remote/create/42"));
+        when(this.servletRequest.getInputStream()).thenReturn(createInputStream("{}"));
+        when(this.activityPubJsonParser.parse(any(Reader.class))).thenReturn(create);
+        ActivityHandler<Create> activityHandler = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
+        when(this.inboxDeduplicator.register(create.getId(), person.getId())).thenReturn(Registration.IN_PROGRESS);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        this.verifyResponse(503, "The activity [http://remote/create/42] is already being handled.");
+        verify(this.servletResponse).setHeader("Retry-After", "60");
+        verify(activityHandler, never()).handleInboxRequest(any());
+        verify(this.inboxQueue, never()).enqueue(any(), any(), any());
+        verify(this.inboxDeduplicator, never()).unregister(any(), any());
+        verify(this.handlerChain, times(1)).handleNext(resourceReference);
+    }
+
+    @Test
+    void handlePostInboxInvalidSignature() throws Exception
+    {
+        Person person = new Person().setPreferredUsername("Foo");
+        ActivityPubObjectReference<AbstractActor> actorReference =
+            new ActivityPubObjectReference<AbstractActor>().setObject(person);
+        when(this.objectReferenceResolver.resolveReference(actorReference)).thenReturn(person);
+        Inbox inbox = new Inbox().setAttributedTo(singletonList(actorReference));
+        when(this.servletRequest.getMethod()).thenReturn("POST");
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
+        String requestURL = "http://domain.org/xwiki/activitypub/Inbox/42";
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
+
+        Create create = new Create().setName("Create 42");
+        when(this.servletRequest.getInputStream()).thenReturn(createInputStream("{}"));
+        when(this.activityPubJsonParser.parse(any(Reader.class))).thenReturn(create);
+        ActivityHandler<Create> activityHandler = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
+        doThrow(new HttpSignatureException("The request must have a Signature header."))
+            .when(this.signatureVerifier).verify(any(), any(), any());
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        this.verifyResponse(401, "The request must have a Signature header.");
+        verify(activityHandler, never()).handleInboxRequest(any());
+        verify(this.handlerChain, times(1)).handleNext(resourceReference);
+    }
+
+    @Test
+    void handlePostSharedInbox() throws Exception
+    {
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("sharedinbox", "instance");
+        when(this.sharedInboxRecipientResolver.isSharedInbox(resourceReference)).thenReturn(true);
+        when(this.servletRequest.getMethod()).thenReturn("POST");
+
+        Person sender = new Person().setPreferredUsername("Sender");
+        Create create = new Create().setActor(sender);
+        create.setName("Create 42");
+        when(this.servletRequest.getInputStream()).thenReturn(createInputStream("{}"));
+        when(this.activityPubJsonParser.parse(any(Reader.class))).thenReturn(create);
+        ActivityHandler<Create> activityHandler = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, ActivityHandler.class, Create.class));
+        Person foo = new Person().setPreferredUsername("Foo");
+        Person bar = new Person().setPreferredUsername("Bar");
+        Set<AbstractActor> recipients = new LinkedHashSet<>(Arrays.asList(foo, bar));
+        when(this.sharedInboxRecipientResolver.resolveRecipients(create)).thenReturn(recipients);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        verify(this.signatureVerifier).verify(this.servletRequest, "{}".getBytes(StandardCharsets.UTF_8), create);
+        verify(activityHandler).handleSharedInboxRequest(create, recipients);
+        verify(activityHandler, never()).handleInboxRequest(any());
+        verify(this.servletResponse).setStatus(200);
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, create);
+        verify(this.activityPubStorage, never()).retrieveEntity(any());
+        verify(this.handlerChain).handleNext(resourceReference);
+    }
+
+    @Test
+    void handleGetSharedInbox() throws Exception
+    {
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("sharedinbox", "instance");
+        when(this.sharedInboxRecipientResolver.isSharedInbox(resourceReference)).thenReturn(true);
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        this.verifyResponse(405, "Only POST requests are allowed on the shared inbox.");
+        verify(this.handlerChain).handleNext(resourceReference);
+    }
+
     @Test
     void handlePostOutboxNotAuthorized() throws Exception
     {
@@ -304,7 +676,7 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("outbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/Outbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(outbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(outbox);
 
         Create create = new Create().setName("Create 42");
         when(this.servletRequest.getInputStream()).thenReturn(mock(ServletInputStream.class));
@@ -336,7 +708,7 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("outbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/Outbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(outbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(outbox);
 
         Create create = new Create().setName("Create 42");
         when(this.servletRequest.getInputStream()).thenReturn(mock(ServletInputStream.class));
@@ -373,16 +745,21 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/inbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(inbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
+        Inbox copy = new Inbox().setName("Inbox 42");
+        this.mockCopy(inbox, copy);
         when(this.servletRequest.getMethod()).thenReturn("GET");
-        when(this.publicActivityCollectionFilter.filter(inbox)).thenReturn(inbox);
         this.handler.handle(resourceReference, this.handlerChain);
         verify(this.servletResponse, times(1)).setStatus(200);
         verify(this.servletResponse, times(1)).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
         verify(this.servletResponse, times(1)).setCharacterEncoding(StandardCharsets.UTF_8.toString());
-        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, inbox);
+        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, copy);
         verify(this.handlerChain, times(1)).handleNext(resourceReference);
-        verify(this.publicActivityCollectionFilter).filter(inbox);
+        verify(this.activityPubStorage).countPublicItems(inbox);
+        verify(this.activityPubStorage).retrievePublicItems(inbox, 0, 1);
+        verify(this.activityPubStorage, never()).retrieveItems(any(), anyInt(), anyInt());
+        verify(this.servletResponse).setHeader("Cache-Control", "private, no-cache");
+        verify(this.entityVersionStore, never()).getVersion(any());
     }
 
     @Test
@@ -394,16 +771,19 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("outbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/outbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(outbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(outbox);
+        Outbox copy = new Outbox().setName("Outbox 42");
+        this.mockCopy(outbox, copy);
         when(this.servletRequest.getMethod()).thenReturn("GET");
-        when(this.publicActivityCollectionFilter.filter(outbox)).thenReturn(outbox);
         this.handler.handle(resourceReference, this.handlerChain);
         verify(this.servletResponse, times(1)).setStatus(200);
         verify(this.servletResponse, times(1)).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
         verify(this.servletResponse, times(1)).setCharacterEncoding(StandardCharsets.UTF_8.toString());
-        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, outbox);
+        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, copy);
         verify(this.handlerChain, times(1)).handleNext(resourceReference);
-        verify(this.publicActivityCollectionFilter).filter(outbox);
+        verify(this.activityPubStorage).countPublicItems(outbox);
+        verify(this.activityPubStorage).retrievePublicItems(outbox, 0, 1);
+        verify(this.activityPubStorage, never()).retrieveItems(any(), anyInt(), anyInt());
     }
 
     @Test
@@ -416,20 +796,24 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("inbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/inbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(inbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(inbox);
         AbstractActor actor = mock(AbstractActor.class);
         UserReference userReference = mock(UserReference.class);
         when(this.xWikiUserBridge.getCurrentUserReference()).thenReturn(userReference);
         when(this.objectReferenceResolver.resolveReference(reference)).thenReturn(actor);
         when(this.actorHandler.isAuthorizedToActFor(userReference, actor)).thenReturn(true);
+        Inbox copy = new Inbox().setName("Inbox 42");
+        this.mockCopy(inbox, copy);
         when(this.servletRequest.getMethod()).thenReturn("GET");
         this.handler.handle(resourceReference, this.handlerChain);
         verify(this.servletResponse, times(1)).setStatus(200);
         verify(this.servletResponse, times(1)).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
         verify(this.servletResponse, times(1)).setCharacterEncoding(StandardCharsets.UTF_8.toString());
-        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, inbox);
+        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, copy);
         verify(this.handlerChain, times(1)).handleNext(resourceReference);
-        verify(this.publicActivityCollectionFilter, never()).filter(inbox);
+        verify(this.activityPubStorage).retrieveItems(inbox, 0, 1);
+        verify(this.activityPubStorage, never()).countPublicItems(any());
+        verify(this.activityPubStorage, never()).retrievePublicItems(any(), anyInt(), anyInt());
     }
 
     @Test
@@ -442,19 +826,168 @@ public class ActivityPubResourceReferenceHandlerTest
         ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("outbox", "42");
         String requestURL = "http://domain.org/xwiki/activitypub/outbox/42";
         when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(requestURL));
-        when(this.activityPubStorage.retrieveEntity(new URI(requestURL))).thenReturn(outbox);
+        when(this.activityPubStorage.retrieveCollectionSummary(new URI(requestURL))).thenReturn(outbox);
         AbstractActor actor = mock(AbstractActor.class);
         UserReference userReference = mock(UserReference.class);
         when(this.xWikiUserBridge.getCurrentUserReference()).thenReturn(userReference);
         when(this.objectReferenceResolver.resolveReference(reference)).thenReturn(actor);
         when(this.actorHandler.isAuthorizedToActFor(userReference, actor)).thenReturn(true);
+        Outbox copy = new Outbox().setName("outbox 42");
+        this.mockCopy(outbox, copy);
         when(this.servletRequest.getMethod()).thenReturn("GET");
         this.handler.handle(resourceReference, this.handlerChain);
         verify(this.servletResponse, times(1)).setStatus(200);
         verify(this.servletResponse, times(1)).setContentType(ActivityPubClient.CONTENT_TYPE_STRICT);
         verify(this.servletResponse, times(1)).setCharacterEncoding(StandardCharsets.UTF_8.toString());
-        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, outbox);
+        verify(this.activityPubJsonSerializer, times(1)).serialize(this.responseOutput, copy);
         verify(this.handlerChain, times(1)).handleNext(resourceReference);
-        verify(this.publicActivityCollectionFilter, never()).filter(outbox);
+        verify(this.activityPubStorage).retrieveItems(outbox, 0, 1);
+        verify(this.activityPubStorage, never()).countPublicItems(any());
+        verify(this.activityPubStorage, never()).retrievePublicItems(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void handleGetLargeOutboxGuest() throws Exception
+    {
+        URI outboxURI = URI.create("http://domain.org/xwiki/activitypub/outbox/42");
+        Outbox outbox = new Outbox();
+        outbox.setId(outboxURI);
+        outbox.setAttributedTo(singletonList(mock(ActivityPubObjectReference.class)));
+        outbox.setTotalItems(5);
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("outbox", "42");
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(outboxURI.toASCIIString()));
+        when(this.activityPubStorage.retrieveCollectionSummary(outboxURI)).thenReturn(outbox);
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.configuration.getCollectionPageSize()).thenReturn(2);
+        when(this.activityPubStorage.countPublicItems(outbox)).thenReturn(3);
+        Outbox copy = new Outbox();
+        copy.setId(outboxURI);
+        this.mockCopy(outbox, copy);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        // only the public activities are counted.
+        assertEquals(3, copy.getTotalItems());
+        assertEquals(URI.create(outboxURI + "?page=2"), copy.getLast().getLink());
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, copy);
+        // the retrieved outbox is left untouched.
+        assertEquals(5, outbox.getTotalItems());
+        assertNull(outbox.getLast());
+        verify(this.activityPubStorage, never()).retrievePublicItems(any(), anyInt(), anyInt());
+        verify(this.objectReferenceResolver, never()).resolveReferences(any());
+    }
+
+    @Test
+    void handleGetOutboxPageGuest() throws Exception
+    {
+        URI outboxURI = URI.create("http://domain.org/xwiki/activitypub/outbox/42");
+        Outbox outbox = new Outbox();
+        outbox.setId(outboxURI);
+        outbox.setAttributedTo(singletonList(mock(ActivityPubObjectReference.class)));
+        outbox.setTotalItems(5);
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("outbox", "42");
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(outboxURI.toASCIIString()));
+        when(this.servletRequest.getParameter("page")).thenReturn("2");
+        when(this.activityPubStorage.retrieveCollectionSummary(outboxURI)).thenReturn(outbox);
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.configuration.getCollectionPageSize()).thenReturn(2);
+        when(this.activityPubStorage.countPublicItems(outbox)).thenReturn(3);
+        List<ActivityPubObjectReference<AbstractActivity>> items = singletonList(
+            new ActivityPubObjectReference<AbstractActivity>().setLink(URI.create("http://domain.org/create/3")));
+        when(this.activityPubStorage.retrievePublicItems(outbox, 2, 2)).thenReturn(items);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        ArgumentCaptor<OrderedCollectionPage<AbstractActivity>> argumentCaptor =
+            ArgumentCaptor.forClass(OrderedCollectionPage.class);
+        verify(this.activityPubJsonSerializer).serialize(eq(this.responseOutput), argumentCaptor.capture());
+        OrderedCollectionPage<AbstractActivity> page = argumentCaptor.getValue();
+        assertEquals(3, page.getTotalItems());
+        assertEquals(items, page.getOrderedItems());
+        assertNull(page.getNext());
+        verify(this.activityPubStorage, never()).retrieveItems(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void handleGetLargeCollection() throws Exception
+    {
+        URI collectionURI = URI.create("http://domain.org/xwiki/activitypub/OrderedCollection/42");
+        OrderedCollection<AbstractActor> followers = new OrderedCollection<>();
+        followers.setId(collectionURI);
+        followers.setTotalItems(5);
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("OrderedCollection", "42");
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(collectionURI.toASCIIString()));
+        when(this.activityPubStorage.retrieveCollectionSummary(collectionURI)).thenReturn(followers);
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.configuration.getCollectionPageSize()).thenReturn(2);
+        OrderedCollection<AbstractActor> copy = new OrderedCollection<>();
+        copy.setId(collectionURI);
+        this.mockCopy(followers, copy);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        OrderedCollection<AbstractActor> expected = new OrderedCollection<AbstractActor>()
+            .setFirst(new ActivityPubObjectReference<OrderedCollectionPage<AbstractActor>>()
+                .setLink(URI.create(collectionURI + "?page=1")))
+            .setLast(new ActivityPubObjectReference<OrderedCollectionPage<AbstractActor>>()
+                .setLink(URI.create(collectionURI + "?page=3")));
+        expected.setId(collectionURI);
+        verify(this.activityPubJsonSerializer).serialize(this.responseOutput, expected);
+        assertEquals(5, copy.getTotalItems());
+        assertNull(followers.getFirst());
+        assertNull(followers.getLast());
+        verify(this.activityPubStorage, never()).retrieveItems(any(), anyInt(), anyInt());
+        verify(this.activityPubStorage, never()).retrieveEntity(any());
+    }
+
+    @Test
+    void handleGetCollectionPage() throws Exception
+    {
+        URI collectionURI = URI.create("http://domain.org/xwiki/activitypub/OrderedCollection/42");
+        OrderedCollection<AbstractActor> followers = new OrderedCollection<>();
+        followers.setId(collectionURI);
+        followers.setTotalItems(5);
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("OrderedCollection", "42");
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(collectionURI.toASCIIString()));
+        when(this.servletRequest.getParameter("page")).thenReturn("2");
+        when(this.activityPubStorage.retrieveCollectionSummary(collectionURI)).thenReturn(followers);
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+        when(this.configuration.getCollectionPageSize()).thenReturn(2);
+        List<ActivityPubObjectReference<AbstractActor>> items = Arrays.asList(
+            new ActivityPubObjectReference<AbstractActor>().setLink(URI.create("http://domain.org/person/3")),
+            new ActivityPubObjectReference<AbstractActor>().setLink(URI.create("http://domain.org/person/4")));
+        when(this.activityPubStorage.retrieveItems(followers, 2, 2)).thenReturn(items);
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        ArgumentCaptor<OrderedCollectionPage<AbstractActor>> argumentCaptor =
+            ArgumentCaptor.forClass(OrderedCollectionPage.class);
+        verify(this.activityPubJsonSerializer).serialize(eq(this.responseOutput), argumentCaptor.capture());
+        OrderedCollectionPage<AbstractActor> page = argumentCaptor.getValue();
+        assertEquals(URI.create(collectionURI + "?page=2"), page.getId());
+        assertEquals(collectionURI, page.getPartOf().getLink());
+        assertEquals(URI.create(collectionURI + "?page=1"), page.getPrev().getLink());
+        assertEquals(URI.create(collectionURI + "?page=3"), page.getNext().getLink());
+        assertEquals(Integer.valueOf(2), page.getStartIndex());
+        assertEquals(5, page.getTotalItems());
+        assertEquals(items, page.getOrderedItems());
+    }
+
+    @Test
+    void handleGetCollectionInvalidPage() throws Exception
+    {
+        URI collectionURI = URI.create("http://domain.org/xwiki/activitypub/OrderedCollection/42");
+        OrderedCollection<AbstractActor> followers = new OrderedCollection<>();
+        followers.setId(collectionURI);
+        ActivityPubResourceReference resourceReference = new ActivityPubResourceReference("OrderedCollection", "42");
+        when(this.servletRequest.getRequestURL()).thenReturn(new StringBuffer(collectionURI.toASCIIString()));
+        when(this.servletRequest.getParameter("page")).thenReturn("foo");
+        when(this.activityPubStorage.retrieveCollectionSummary(collectionURI)).thenReturn(followers);
+        when(this.servletRequest.getMethod()).thenReturn("GET");
+
+        this.handler.handle(resourceReference, this.handlerChain);
+
+        verify(this.servletResponse).setStatus(400);
+        verify(this.responseOutput).write("The page [foo] is not a valid page number.".getBytes(StandardCharsets.UTF_8));
     }
 }
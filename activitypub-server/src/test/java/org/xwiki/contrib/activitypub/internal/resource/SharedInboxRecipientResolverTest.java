@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.resource;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.ActivityPubResourceReference;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
+import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.entities.ProxyActor;
+import org.xwiki.contrib.activitypub.entities.Service;
+import org.xwiki.contrib.activitypub.internal.DefaultURLHandler;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link SharedInboxRecipientResolver}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class SharedInboxRecipientResolverTest
+{
+    private static final String LOCAL_ACTORS_QUERY = "filter(xwikiReference:[* TO *])";
+
+    @InjectMockComponents
+    private SharedInboxRecipientResolver recipientResolver;
+
+    @MockComponent
+    private ActivityPubStorage activityPubStorage;
+
+    @MockComponent
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @MockComponent
+    private DefaultURLHandler urlHandler;
+
+    private AbstractActor createActor(String id, String following)
+    {
+        Person person = new Person()
+            .setFollowing(new ActivityPubObjectReference<OrderedCollection<AbstractActor>>()
+                .setLink(URI.create(following)))
+            .setFollowers(new ActivityPubObjectReference<OrderedCollection<AbstractActor>>()
+                .setLink(URI.create(id + "/followers")));
+        person.setId(URI.create(id));
+        return person;
+    }
+
+    private OrderedCollection<AbstractActor> mockCollection(URI id, AbstractActor owner) throws Exception
+    {
+        OrderedCollection<AbstractActor> collection = new OrderedCollection<>();
+        collection.setId(id);
+        if (owner != null) {
+            ActivityPubObjectReference<AbstractActor> ownerReference =
+                new ActivityPubObjectReference<AbstractActor>().setLink(owner.getId());
+            collection.setAttributedTo(singletonList(ownerReference));
+            when(this.resolver.resolveReference(ownerReference)).thenReturn(owner);
+        }
+        when(this.activityPubStorage.retrieveCollectionSummary(id)).thenReturn(collection);
+        when(this.resolver.resolveReference(new ActivityPubObjectReference<OrderedCollection<AbstractActor>>()
+            .setLink(id))).thenReturn(collection);
+        return collection;
+    }
+
+    @Test
+    void isSharedInbox()
+    {
+        assertTrue(this.recipientResolver.isSharedInbox(new ActivityPubResourceReference("sharedinbox", "instance")));
+        assertFalse(this.recipientResolver.isSharedInbox(new ActivityPubResourceReference("inbox", "instance")));
+    }
+
+    @Test
+    void resolveRecipients() throws Exception
+    {
+        AbstractActor sender = createActor("http://remote/users/sender", "http://remote/users/sender/following");
+        AbstractActor follower = createActor("http://xwiki/activitypub/Person/Foo",
+            "http://xwiki/activitypub/OrderedCollection/foo-following");
+        AbstractActor notFollower = createActor("http://xwiki/activitypub/Person/Bar",
+            "http://xwiki/activitypub/OrderedCollection/bar-following");
+        AbstractActor addressed = createActor("http://xwiki/activitypub/Person/Baz",
+            "http://xwiki/activitypub/OrderedCollection/baz-following");
+        URI remoteActor = URI.create("http://remote/users/other");
+
+        Create create = new Create()
+            .setActor(sender)
+            .setTo(Arrays.asList(ProxyActor.getPublicActor(),
+                new ProxyActor(sender.getFollowers().getLink())))
+            .setCc(Arrays.asList(new ProxyActor(addressed.getId()), new ProxyActor(remoteActor),
+                new ProxyActor(follower.getId())));
+        when(this.resolver.resolveReference(create.getActor())).thenReturn(sender);
+
+        // The followers collection of a local actor followed by the sender contains it too.
+        when(this.activityPubStorage.retrieveCollectionsContaining(eq(sender.getId()), anyInt()))
+            .thenReturn(Arrays.asList(follower.getFollowing().getLink(), notFollower.getFollowers().getLink()));
+        mockCollection(follower.getFollowing().getLink(), follower);
+        mockCollection(notFollower.getFollowers().getLink(), notFollower);
+
+        when(this.urlHandler.belongsToCurrentInstance(addressed.getId())).thenReturn(true);
+        when(this.urlHandler.belongsToCurrentInstance(follower.getId())).thenReturn(true);
+        when(this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(addressed.getId())))
+            .thenReturn(addressed);
+        when(this.resolver.resolveReference(new ActivityPubObjectReference<>().setLink(follower.getId())))
+            .thenReturn(follower);
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList(follower, addressed)),
+            this.recipientResolver.resolveRecipients(create));
+        verify(this.resolver, never()).resolveReference(new ActivityPubObjectReference<>().setLink(remoteActor));
+        verify(this.activityPubStorage, never()).query(any(), any(), anyInt());
+    }
+
+    @Test
+    void resolveRecipientsWithCollectionsWithoutOwner() throws Exception
+    {
+        AbstractActor sender = createActor("http://remote/users/sender", "http://remote/users/sender/following");
+        AbstractActor follower = createActor("http://xwiki/activitypub/Person/Foo",
+            "http://xwiki/activitypub/OrderedCollection/foo-following");
+        AbstractActor notFollower = createActor("http://xwiki/activitypub/Person/Bar",
+            "http://xwiki/activitypub/OrderedCollection/bar-following");
+        Create create = new Create()
+            .setActor(sender)
+            .setTo(singletonList(new ProxyActor(sender.getFollowers().getLink())));
+        when(this.resolver.resolveReference(create.getActor())).thenReturn(sender);
+
+        when(this.activityPubStorage.retrieveCollectionsContaining(eq(sender.getId()), anyInt()))
+            .thenReturn(singletonList(follower.getFollowing().getLink()));
+        OrderedCollection<AbstractActor> followerFollowing = mockCollection(follower.getFollowing().getLink(), null);
+        OrderedCollection<AbstractActor> followerFollowers = mockCollection(follower.getFollowers().getLink(), null);
+        OrderedCollection<AbstractActor> notFollowerFollowing =
+            mockCollection(notFollower.getFollowing().getLink(), notFollower);
+        OrderedCollection<AbstractActor> notFollowerFollowers =
+            mockCollection(notFollower.getFollowers().getLink(), null);
+        when(this.activityPubStorage.query(eq(Person.class), eq(LOCAL_ACTORS_QUERY), anyInt()))
+            .thenReturn(Arrays.asList((Person) notFollower, (Person) follower));
+        when(this.activityPubStorage.query(eq(Service.class), eq(LOCAL_ACTORS_QUERY), anyInt()))
+            .thenReturn(emptyList());
+
+        assertEquals(singleton(follower), this.recipientResolver.resolveRecipients(create));
+
+        // The owners are set once for all the collections of the local actors.
+        ActivityPubObjectReference<AbstractActor> followerReference =
+            new ActivityPubObjectReference<AbstractActor>().setLink(follower.getId());
+        assertEquals(singletonList(followerReference), followerFollowing.getAttributedTo());
+        assertEquals(singletonList(followerReference), followerFollowers.getAttributedTo());
+        assertEquals(singletonList(new ActivityPubObjectReference<AbstractActor>().setLink(notFollower.getId())),
+            notFollowerFollowers.getAttributedTo());
+        verify(this.activityPubStorage).storeEntity(followerFollowing);
+        verify(this.activityPubStorage).storeEntity(followerFollowers);
+        verify(this.activityPubStorage).storeEntity(notFollowerFollowers);
+        verify(this.activityPubStorage, never()).storeEntity(notFollowerFollowing);
+
+        when(this.resolver.resolveReference(followerReference)).thenReturn(follower);
+        assertEquals(singleton(follower), this.recipientResolver.resolveRecipients(create));
+        verify(this.activityPubStorage, times(1)).query(eq(Person.class), any(), anyInt());
+    }
+
+    @Test
+    void resolveRecipientsWithoutLocalFollowers() throws Exception
+    {
+        AbstractActor sender = createActor("http://remote/users/sender", "http://remote/users/sender/following");
+        Create create = new Create()
+            .setActor(sender)
+            .setTo(singletonList(new ProxyActor(sender.getFollowers().getLink())));
+        when(this.resolver.resolveReference(create.getActor())).thenReturn(sender);
+        when(this.activityPubStorage.retrieveCollectionsContaining(eq(sender.getId()), anyInt()))
+            .thenReturn(emptyList());
+
+        assertTrue(this.recipientResolver.resolveRecipients(create).isEmpty());
+        verify(this.activityPubStorage, never()).query(any(), any(), anyInt());
+    }
+}
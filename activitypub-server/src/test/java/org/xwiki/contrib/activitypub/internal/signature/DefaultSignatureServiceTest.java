@@ -22,6 +22,8 @@ package org.xwiki.contrib.activitypub.internal.signature;
 import java.net.URI;
 import java.nio.file.Path;
 import java.security.KeyPairGenerator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.inject.Named;
@@ -33,26 +35,36 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.contrib.activitypub.ActorHandler;
 import org.xwiki.contrib.activitypub.CryptoService;
 import org.xwiki.contrib.activitypub.entities.Person;
 import org.xwiki.contrib.activitypub.internal.DateProvider;
 import org.xwiki.crypto.params.cipher.asymmetric.PrivateKeyParameters;
+import org.xwiki.crypto.params.cipher.asymmetric.PublicKeyParameters;
 import org.xwiki.crypto.pkix.params.CertifiedKeyPair;
 import org.xwiki.crypto.store.FileStoreReference;
 import org.xwiki.crypto.store.KeyStore;
 import org.xwiki.environment.Environment;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -86,6 +98,9 @@ class DefaultSignatureServiceTest
     @MockComponent
     private Environment environment;
 
+    @MockComponent
+    private CacheManager cacheManager;
+
     private final static byte[] PK = new byte[] {
         48, -126, 1, 84, 2, 1, 0, 48, 13, 6, 9, 42, -122, 72, -122, -9, 13, 1, 1, 1, 5, 0, 4, -126, 1, 62, 48, -126, 1,
         58, 2, 1, 0, 2, 65, 0, -87, 4, -97, -82, -98, -34, -40, 31, 42, -65, 28, -117, -122, 113, 7, -58, 95, -7, -44,
@@ -103,6 +118,22 @@ class DefaultSignatureServiceTest
         -85, 86, 27, 125, 16, 64, 12, 27, -21, -24, -15, 24, 54, 113, -26, -99, 123, 115, -57, 116
     };
 
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        when(this.cacheManager.createNewCache(any(CacheConfiguration.class))).then(invocation -> mockCache());
+    }
+
+    private <T> Cache<T> mockCache()
+    {
+        Map<String, T> entries = new HashMap<>();
+        Cache<T> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> entries.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+        return cache;
+    }
+
     @BeforeEach
     void setUp(@TempDir Path tempDir)
     {
@@ -207,4 +238,43 @@ class DefaultSignatureServiceTest
         inOrder.verify(postMethod).addRequestHeader(eq("Date"), anyString());
         inOrder.verify(postMethod).addRequestHeader("Digest", "SHA-256=RBNvo1WzZ4oRRq0W9+hknpT7T8If536DEMBg9hyq/4o=");
     }
+
+    @Test
+    void keysAreCached() throws Exception
+    {
+        when(this.dateProvider.getFormattedDate()).thenReturn("Mon, 06 Apr 2020 08:39:20 GMT");
+
+        HttpMethod postMethod = mock(HttpMethod.class);
+        org.apache.commons.httpclient.URI postURI = mock(org.apache.commons.httpclient.URI.class);
+        when(postURI.getPath()).thenReturn("/");
+        when(postURI.getHost()).thenReturn("targeturi");
+        when(postMethod.getURI()).thenReturn(postURI);
+        Person actor = mock(Person.class);
+        when(actor.getId()).thenReturn(URI.create("http://actoruri/"));
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "test");
+        when(this.actorHandler.getStoreDocument(actor)).thenReturn(documentReference);
+
+        CertifiedKeyPair certifiedKeyPair = mock(CertifiedKeyPair.class);
+        when(this.keyStore.retrieve(any(FileStoreReference.class))).thenReturn(certifiedKeyPair);
+        PrivateKeyParameters privateKeyParameters = mock(PrivateKeyParameters.class);
+        when(certifiedKeyPair.getPrivateKey()).thenReturn(privateKeyParameters);
+        when(privateKeyParameters.getEncoded()).thenReturn(PK);
+        PublicKeyParameters publicKeyParameters = mock(PublicKeyParameters.class);
+        when(certifiedKeyPair.getPublicKey()).thenReturn(publicKeyParameters);
+        when(publicKeyParameters.getEncoded()).thenReturn(new byte[] { 1, 2, 3 });
+
+        this.signatureService.generateSignature(postMethod, actor, "{}");
+        this.signatureService.generateSignature(postMethod, actor, "{}");
+        verify(postMethod, times(2)).addRequestHeader("Signature", "keyId=\"http://actoruri/\","
+            + "headers=\"(request-target) host date digest\",signature=\"gyFYtjF/9JX9moeR9yYHVYf7/B222obL1IIJDqDf5AK7T"
+            + "hyqIKoJHpARj1+eljAkEvXdQrUUg5y/Su7ljmhpCQ==\"");
+
+        String pem = "-----BEGIN PUBLIC KEY-----\nAQID\n-----END PUBLIC KEY-----\n";
+        assertEquals(pem, this.signatureService.getPublicKeyPEM(actor));
+        assertEquals(pem, this.signatureService.getPublicKeyPEM(actor));
+
+        verify(this.keyStore, times(2)).retrieve(any(FileStoreReference.class));
+        verify(privateKeyParameters, times(1)).getEncoded();
+        verify(publicKeyParameters, times(1)).getEncoded();
+    }
 }
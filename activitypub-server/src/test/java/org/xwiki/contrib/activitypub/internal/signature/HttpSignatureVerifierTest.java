@@ -0,0 +1,218 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.signature;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.entities.Create;
+import org.xwiki.contrib.activitypub.entities.ProxyActor;
+import org.xwiki.contrib.activitypub.internal.DateProvider;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link HttpSignatureVerifier}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class HttpSignatureVerifierTest
+{
+    private static final String ACTOR_ID = "http://remote/users/foo";
+
+    private static final String KEY_ID = ACTOR_ID + "#main-key";
+
+    private static final String DATE = "Mon, 06 Apr 2020 08:39:20 GMT";
+
+    private static final byte[] BODY = "{\"type\":\"Create\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static final String SIGNED_HEADERS = "(request-target) host date digest";
+
+    private static KeyPair keyPair;
+
+    private static String digest;
+
+    @InjectMockComponents
+    private HttpSignatureVerifier verifier;
+
+    @MockComponent
+    private RemotePublicKeyCache keyCache;
+
+    @MockComponent
+    private DateProvider dateProvider;
+
+    private HttpServletRequest request;
+
+    private Create activity;
+
+    @BeforeAll
+    static void generateKeyPair() throws Exception
+    {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        digest = "SHA-256=" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(BODY));
+    }
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        Date date = new Date();
+        when(this.dateProvider.parseFormattedDate(DATE)).thenReturn(date);
+        when(this.dateProvider.currentTime()).thenReturn(date);
+
+        this.request = mock(HttpServletRequest.class);
+        when(this.request.getMethod()).thenReturn("POST");
+        when(this.request.getRequestURI()).thenReturn("/xwiki/activitypub/Inbox/bar");
+        when(this.request.getHeader("host")).thenReturn("xwiki.org");
+        when(this.request.getHeader("date")).thenReturn(DATE);
+        when(this.request.getHeader("digest")).thenReturn(digest);
+        String signature = sign(keyPair.getPrivate(), SIGNED_HEADERS);
+        when(this.request.getHeader("signature")).thenReturn(signature);
+
+        this.activity = new Create().setActor(new ProxyActor(URI.create(ACTOR_ID)));
+        when(this.keyCache.getKey(KEY_ID, false))
+            .thenReturn(new VerificationKey(URI.create(ACTOR_ID), keyPair.getPublic(), 0));
+    }
+
+    private String sign(PrivateKey privateKey, String headers) throws Exception
+    {
+        String signingString = "(request-target): post /xwiki/activitypub/Inbox/bar\nhost: xwiki.org\ndate: " + DATE
+            + "\ndigest: " + digest;
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update(signingString.getBytes(StandardCharsets.UTF_8));
+        return String.format("keyId=\"%s\",algorithm=\"rsa-sha256\",headers=\"%s\",signature=\"%s\"", KEY_ID,
+            headers, Base64.getEncoder().encodeToString(signature.sign()));
+    }
+
+    @Test
+    void verifyValidSignature() throws Exception
+    {
+        this.verifier.verify(this.request, BODY, this.activity);
+
+        verify(this.keyCache, never()).getKey(KEY_ID, true);
+    }
+
+    @Test
+    void verifyWithRotatedKey() throws Exception
+    {
+        KeyPair rotatedKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        String signature = sign(rotatedKeyPair.getPrivate(), SIGNED_HEADERS);
+        when(this.request.getHeader("signature")).thenReturn(signature);
+        when(this.keyCache.getKey(KEY_ID, true))
+            .thenReturn(new VerificationKey(URI.create(ACTOR_ID), rotatedKeyPair.getPublic(), 1));
+
+        this.verifier.verify(this.request, BODY, this.activity);
+
+        verify(this.keyCache).getKey(KEY_ID, true);
+    }
+
+    @Test
+    void verifyWithInvalidSignature() throws Exception
+    {
+        VerificationKey key = new VerificationKey(URI.create(ACTOR_ID), keyPair.getPublic(), 1);
+        when(this.keyCache.getKey(KEY_ID, false)).thenReturn(key);
+        when(this.keyCache.getKey(KEY_ID, true)).thenReturn(key);
+        PrivateKey otherKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPrivate();
+        String signature = sign(otherKey, SIGNED_HEADERS);
+        when(this.request.getHeader("signature")).thenReturn(signature);
+
+        HttpSignatureException exception = assertThrows(HttpSignatureException.class,
+            () -> this.verifier.verify(this.request, BODY, this.activity));
+        assertEquals("The signature of the request cannot be verified with the key "
+            + "[http://remote/users/foo#main-key].", exception.getMessage());
+    }
+
+    @Test
+    void verifyWithInvalidDigest()
+    {
+        HttpSignatureException exception = assertThrows(HttpSignatureException.class,
+            () -> this.verifier.verify(this.request, "{}".getBytes(StandardCharsets.UTF_8), this.activity));
+        assertEquals("The Digest header does not match the body of the request.", exception.getMessage());
+    }
+
+    @Test
+    void verifyWithoutSignedDigest() throws Exception
+    {
+        String signature = sign(keyPair.getPrivate(), "(request-target) date");
+        when(this.request.getHeader("signature")).thenReturn(signature);
+
+        HttpSignatureException exception = assertThrows(HttpSignatureException.class,
+            () -> this.verifier.verify(this.request, BODY, this.activity));
+        assertEquals("The signature must cover the headers [(request-target), date, digest].", exception.getMessage());
+    }
+
+    @Test
+    void verifyWithOldDate()
+    {
+        when(this.dateProvider.parseFormattedDate(anyString())).thenReturn(new Date(0));
+
+        HttpSignatureException exception = assertThrows(HttpSignatureException.class,
+            () -> this.verifier.verify(this.request, BODY, this.activity));
+        assertEquals("The date of the request [" + DATE + "] is too far from the current date.",
+            exception.getMessage());
+    }
+
+    @Test
+    void verifyWithOtherActor()
+    {
+        this.activity.setActor(new ProxyActor(URI.create("http://remote/users/bar")));
+
+        HttpSignatureException exception = assertThrows(HttpSignatureException.class,
+            () -> this.verifier.verify(this.request, BODY, this.activity));
+        assertEquals("The request is signed by [http://remote/users/foo] but the actor of the activity is "
+            + "[http://remote/users/bar].", exception.getMessage());
+    }
+
+    @Test
+    void verifyWithUnknownKey() throws Exception
+    {
+        ActivityPubException cause = new ActivityPubException("Not found");
+        when(this.keyCache.getKey(KEY_ID, false)).thenThrow(cause);
+
+        HttpSignatureException exception = assertThrows(HttpSignatureException.class,
+            () -> this.verifier.verify(this.request, BODY, this.activity));
+        assertEquals("Cannot retrieve the key [http://remote/users/foo#main-key].", exception.getMessage());
+        assertEquals(cause, exception.getCause());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.signature;
+
+import java.net.URI;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.contrib.activitypub.ActivityPubClient;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
+import org.xwiki.contrib.activitypub.ActivityPubObjectReferenceResolver;
+import org.xwiki.contrib.activitypub.ActivityPubStorage;
+import org.xwiki.contrib.activitypub.entities.AbstractActor;
+import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
+import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.entities.PublicKey;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link RemotePublicKeyCache}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class RemotePublicKeyCacheTest
+{
+    private static final String ACTOR_ID = "http://remote/users/foo";
+
+    private static final String KEY_ID = ACTOR_ID + "#main-key";
+
+    private static KeyPair keyPair;
+
+    @InjectMockComponents
+    private RemotePublicKeyCache keyCache;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private ActivityPubObjectReferenceResolver resolver;
+
+    @MockComponent
+    private ActivityPubJsonParser activityPubJsonParser;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    private Cache<VerificationKey> cache;
+
+    private ActivityPubClient activityPubClient;
+
+    private ActivityPubStorage activityPubStorage;
+
+    @BeforeAll
+    static void generateKeyPair() throws Exception
+    {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+    }
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        this.cache = mock(Cache.class);
+        when(this.cacheManager.<VerificationKey>createNewCache(any(CacheConfiguration.class))).thenReturn(this.cache);
+
+        this.activityPubClient = mock(ActivityPubClient.class);
+        Provider<ActivityPubClient> clientProvider = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, Provider.class, ActivityPubClient.class));
+        when(clientProvider.get()).thenReturn(this.activityPubClient);
+        this.activityPubStorage = mock(ActivityPubStorage.class);
+        Provider<ActivityPubStorage> storageProvider = this.componentManager
+            .registerMockComponent(new DefaultParameterizedType(null, Provider.class, ActivityPubStorage.class));
+        when(storageProvider.get()).thenReturn(this.activityPubStorage);
+    }
+
+    private Person createActor(String owner)
+    {
+        String pem = String.format("-----BEGIN PUBLIC KEY-----\n%s\n-----END PUBLIC KEY-----\n",
+            Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        Person actor = new Person();
+        actor.setPublicKey(new PublicKey().setId(KEY_ID).setOwner(owner).setPublicKeyPem(pem));
+        actor.setId(URI.create(ACTOR_ID));
+        return actor;
+    }
+
+    private ActivityPubObjectReference<AbstractActor> getActorReference()
+    {
+        return new ActivityPubObjectReference<AbstractActor>().setLink(URI.create(ACTOR_ID));
+    }
+
+    @Test
+    void getKeyFromStorage() throws Exception
+    {
+        when(this.resolver.resolveReference(getActorReference())).thenReturn(createActor(ACTOR_ID));
+
+        VerificationKey key = this.keyCache.getKey(KEY_ID, false);
+
+        assertEquals(URI.create(ACTOR_ID), key.getOwner());
+        assertEquals(keyPair.getPublic(), key.getPublicKey());
+        assertEquals(0, key.getRefreshTime());
+        verify(this.cache).set(KEY_ID, key);
+        verify(this.activityPubClient, never()).get(any());
+    }
+
+    @Test
+    void getKeyFromCache() throws Exception
+    {
+        VerificationKey key = new VerificationKey(URI.create(ACTOR_ID), keyPair.getPublic(), 0);
+        when(this.cache.get(KEY_ID)).thenReturn(key);
+
+        assertSame(key, this.keyCache.getKey(KEY_ID, false));
+        verify(this.resolver, never()).resolveReference(any());
+    }
+
+    @Test
+    void refreshKey() throws Exception
+    {
+        when(this.cache.get(KEY_ID)).thenReturn(new VerificationKey(URI.create(ACTOR_ID), keyPair.getPublic(), 0));
+        HttpMethod getMethod = mock(HttpMethod.class);
+        when(this.activityPubClient.get(URI.create(ACTOR_ID))).thenReturn(getMethod);
+        when(getMethod.getResponseBodyAsString()).thenReturn("{}");
+        Person actor = createActor(ACTOR_ID);
+        when(this.activityPubJsonParser.parse("{}")).thenReturn(actor);
+
+        VerificationKey key = this.keyCache.getKey(KEY_ID, true);
+
+        assertTrue(key.getRefreshTime() > 0);
+        verify(this.activityPubClient).checkAnswer(getMethod);
+        verify(getMethod).releaseConnection();
+        verify(this.activityPubStorage).storeEntity(actor);
+        verify(this.cache).set(KEY_ID, key);
+    }
+
+    @Test
+    void refreshKeyTooSoon() throws Exception
+    {
+        VerificationKey key =
+            new VerificationKey(URI.create(ACTOR_ID), keyPair.getPublic(), System.currentTimeMillis());
+        when(this.cache.get(KEY_ID)).thenReturn(key);
+
+        assertSame(key, this.keyCache.getKey(KEY_ID, true));
+        verify(this.activityPubClient, never()).get(any());
+    }
+
+    @Test
+    void getKeyWithWrongOwner() throws Exception
+    {
+        when(this.resolver.resolveReference(getActorReference())).thenReturn(createActor("http://remote/users/bar"));
+
+        ActivityPubException exception =
+            assertThrows(ActivityPubException.class, () -> this.keyCache.getKey(KEY_ID, false));
+        assertEquals("The key [http://remote/users/foo#main-key] is owned by [http://remote/users/bar] and not by its "
+            + "actor [http://remote/users/foo].", exception.getMessage());
+        verify(this.cache, never()).set(any(), any());
+    }
+
+    @Test
+    void concurrentRetrievalsAreCoalesced() throws Exception
+    {
+        Map<String, VerificationKey> cachedKeys = new ConcurrentHashMap<>();
+        when(this.cache.get(KEY_ID)).then(invocation -> cachedKeys.get(KEY_ID));
+        doAnswer(invocation -> cachedKeys.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(this.cache).set(any(), any());
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.resolver.resolveReference(getActorReference())).then(invocation -> {
+            resolving.countDown();
+            release.await(1, TimeUnit.MINUTES);
+            return createActor(ACTOR_ID);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<VerificationKey> first = executor.submit(() -> this.keyCache.getKey(KEY_ID, false));
+            resolving.await(1, TimeUnit.MINUTES);
+            Future<VerificationKey> second = executor.submit(() -> this.keyCache.getKey(KEY_ID, false));
+            // Let the second retrieval join the one in progress.
+            Thread.sleep(100);
+            release.countDown();
+
+            assertSame(first.get(1, TimeUnit.MINUTES), second.get(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(this.resolver, times(1)).resolveReference(any());
+    }
+}
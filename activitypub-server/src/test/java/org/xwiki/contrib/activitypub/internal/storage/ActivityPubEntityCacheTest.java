@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link ActivityPubEntityCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ActivityPubEntityCacheTest
+{
+    @InjectMockComponents
+    private ActivityPubEntityCache entityCache;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private ActivityPubConfiguration configuration;
+
+    private Cache<SolrDocument> cache;
+
+    private CacheEntryListener<SolrDocument> listener;
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        this.cache = mock(Cache.class);
+        when(this.configuration.getStorageCacheSize()).thenReturn(100);
+        when(this.cacheManager.<SolrDocument>createNewCache(any(CacheConfiguration.class))).thenReturn(this.cache);
+    }
+
+    @BeforeEach
+    void setup()
+    {
+        ArgumentCaptor<CacheEntryListener<SolrDocument>> argumentCaptor =
+            ArgumentCaptor.forClass(CacheEntryListener.class);
+        verify(this.cache).addCacheEntryListener(argumentCaptor.capture());
+        this.listener = argumentCaptor.getValue();
+    }
+
+    @Test
+    void getAndPut()
+    {
+        SolrDocument document = new SolrDocument();
+        assertNull(this.entityCache.get("foo"));
+        this.entityCache.put("foo", document, this.entityCache.getGeneration());
+        verify(this.cache).set("foo", document);
+
+        when(this.cache.get("foo")).thenReturn(document);
+        assertSame(document, this.entityCache.get("foo"));
+
+        assertEquals(Long.valueOf(1), this.entityCache.getStatistics().get(ActivityPubEntityCache.HITS));
+        assertEquals(Long.valueOf(1), this.entityCache.getStatistics().get(ActivityPubEntityCache.MISSES));
+    }
+
+    @Test
+    void getWhenDisabled()
+    {
+        // a cache which is not initialized has no underlying cache, like a cache whose size is zero.
+        ActivityPubEntityCache disabledCache = new ActivityPubEntityCache();
+        assertNull(disabledCache.get("foo"));
+
+        assertEquals(Long.valueOf(0), disabledCache.getStatistics().get(ActivityPubEntityCache.HITS));
+        assertEquals(Long.valueOf(0), disabledCache.getStatistics().get(ActivityPubEntityCache.MISSES));
+    }
+
+    @Test
+    void putAfterInvalidation()
+    {
+        long generation = this.entityCache.getGeneration();
+        // the entity is stored while the document is being retrieved: the retrieved document might be outdated.
+        this.entityCache.invalidate("foo");
+        this.entityCache.put("foo", new SolrDocument(), generation);
+
+        verify(this.cache, never()).set(any(), any());
+        verify(this.cache, never()).remove("foo");
+    }
+
+    @Test
+    void invalidateAndEvictions()
+    {
+        when(this.cache.get("foo")).thenReturn(new SolrDocument());
+        this.entityCache.invalidate("foo");
+        verify(this.cache).remove("foo");
+        CacheEntryEvent<SolrDocument> event = mock(CacheEntryEvent.class);
+        this.listener.cacheEntryRemoved(event);
+
+        // an entry removed by the cache itself
+        this.listener.cacheEntryRemoved(event);
+        this.listener.cacheEntryRemoved(event);
+
+        assertEquals(Long.valueOf(1), this.entityCache.getStatistics().get(ActivityPubEntityCache.INVALIDATIONS));
+        assertEquals(Long.valueOf(2), this.entityCache.getStatistics().get(ActivityPubEntityCache.EVICTIONS));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.xwiki.contrib.activitypub.ActivityPubConfiguration;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link ActivityPubSolrWriter}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ActivityPubSolrWriterTest
+{
+    @InjectMockComponents
+    private ActivityPubSolrWriter solrWriter;
+
+    @MockComponent
+    private Solr solr;
+
+    @MockComponent
+    private ActivityPubConfiguration configuration;
+
+    @Mock
+    private SolrClient solrClient;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        when(this.solr.getClient("activitypub")).thenReturn(this.solrClient);
+    }
+
+    @Test
+    void writeCommitsEachSequentialWrite() throws Exception
+    {
+        SolrInputDocument document = new SolrInputDocument();
+        this.solrWriter.write(document);
+        this.solrWriter.write(document);
+
+        verify(this.solrClient, times(2)).add(Collections.singletonList(document));
+        verify(this.solrClient, times(2)).commit(true, true, false);
+    }
+
+    @Test
+    void writeWithSoftCommit() throws Exception
+    {
+        when(this.configuration.isStorageSoftCommitEnabled()).thenReturn(true);
+        SolrInputDocument document = new SolrInputDocument();
+        this.solrWriter.write(document);
+
+        verify(this.solrClient).commit(true, true, true);
+    }
+
+    @Test
+    void writeWithCommitWithin() throws Exception
+    {
+        when(this.configuration.getStorageCommitWithin()).thenReturn(1000);
+        SolrInputDocument document = new SolrInputDocument();
+        this.solrWriter.write(document);
+
+        verify(this.solrClient).add(Collections.singletonList(document), 1000);
+        verify(this.solrClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void flushWithCommitWithin() throws Exception
+    {
+        when(this.configuration.getStorageCommitWithin()).thenReturn(1000);
+        this.solrWriter.flush();
+        verify(this.solrClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+
+        SolrInputDocument document = new SolrInputDocument();
+        this.solrWriter.write(document);
+        this.solrWriter.flush();
+        // Nothing was written since the last flush.
+        this.solrWriter.flush();
+
+        verify(this.solrClient).commit(true, true, false);
+    }
+
+    @Test
+    void flushWithoutCommitWithin() throws Exception
+    {
+        SolrInputDocument document = new SolrInputDocument();
+        this.solrWriter.write(document);
+        this.solrWriter.flush();
+
+        // The write is already committed.
+        verify(this.solrClient).commit(true, true, false);
+    }
+
+    @Test
+    void writeEmptyCollection() throws Exception
+    {
+        this.solrWriter.write(Collections.emptyList());
+
+        verify(this.solrClient, never()).add(anyCollection());
+        verify(this.solrClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void replace() throws Exception
+    {
+        SolrInputDocument document = new SolrInputDocument();
+        this.solrWriter.replace("collection:foo", Collections.singletonList(document));
+
+        InOrder inOrder = inOrder(this.solrClient);
+        inOrder.verify(this.solrClient).deleteByQuery("collection:foo");
+        inOrder.verify(this.solrClient).add(Collections.singletonList(document));
+        inOrder.verify(this.solrClient).commit(true, true, false);
+    }
+
+    @Test
+    void writeRetriesCommitAfterFailure() throws Exception
+    {
+        when(this.solrClient.commit(true, true, false)).thenThrow(new SolrServerException("error")).thenReturn(null);
+        SolrInputDocument document = new SolrInputDocument();
+        assertThrows(SolrServerException.class, () -> this.solrWriter.write(document));
+        this.solrWriter.write(document);
+
+        verify(this.solrClient, times(2)).commit(true, true, false);
+    }
+
+    @Test
+    void concurrentWritesShareCommits() throws Exception
+    {
+        int writers = 10;
+        CountDownLatch commitStarted = new CountDownLatch(1);
+        CountDownLatch releaseCommit = new CountDownLatch(1);
+        when(this.solrClient.commit(true, true, false)).then(invocation -> {
+            commitStarted.countDown();
+            releaseCommit.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+
+        ExecutorService executorService = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executorService.submit(() -> {
+                this.solrWriter.write(new SolrInputDocument());
+                return null;
+            }));
+            assertTrue(commitStarted.await(10, TimeUnit.SECONDS));
+
+            // all those writes arrive while the first commit is blocked: they will share the next commit.
+            for (int i = 1; i < writers; i++) {
+                futures.add(executorService.submit(() -> {
+                    this.solrWriter.write(new SolrInputDocument());
+                    return null;
+                }));
+            }
+            verify(this.solrClient, timeout(10000).times(writers)).add(anyCollection());
+            // leave some time to the writers to register their write before releasing the commit.
+            Thread.sleep(100);
+            releaseCommit.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        verify(this.solrClient, atMost(2)).commit(true, true, false);
+    }
+}
@@ -23,8 +23,11 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Named;
@@ -36,10 +39,12 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.xwiki.contrib.activitypub.ActivityPubException;
 import org.xwiki.contrib.activitypub.ActivityPubJsonParser;
@@ -50,9 +55,12 @@ import org.xwiki.contrib.activitypub.entities.AbstractActor;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObject;
 import org.xwiki.contrib.activitypub.entities.ActivityPubObjectReference;
 import org.xwiki.contrib.activitypub.entities.Inbox;
+import org.xwiki.contrib.activitypub.entities.Note;
+import org.xwiki.contrib.activitypub.entities.OrderedCollection;
 import org.xwiki.contrib.activitypub.entities.Outbox;
 import org.xwiki.contrib.activitypub.entities.Page;
 import org.xwiki.contrib.activitypub.entities.Person;
+import org.xwiki.contrib.activitypub.entities.ProxyActor;
 import org.xwiki.contrib.activitypub.internal.DefaultURLHandler;
 import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
 import org.xwiki.contrib.activitypub.webfinger.WebfingerJsonParser;
@@ -77,7 +85,11 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -124,6 +136,15 @@ class DefaultActivityPubStorageTest
     @MockComponent
     private InternalURINormalizer internalURINormalizer;
 
+    @MockComponent
+    private ActivityPubSolrWriter solrWriter;
+
+    @MockComponent
+    private ActivityPubEntityCache entityCache;
+
+    @MockComponent
+    private EntityVersionStore entityVersionStore;
+
     @Mock
     private SolrClient solrClient;
 
@@ -136,10 +157,16 @@ class DefaultActivityPubStorageTest
         when(this.urlHandler.getServerUrl()).thenReturn(new URL(DEFAULT_URL));
     }
 
+    @Mock
+    private QueryResponse emptyQueryResponse;
+
     @BeforeEach
-    public void beforeEach() throws SolrException
+    public void beforeEach() throws Exception
     {
         when(this.solrInstance.getClient("activitypub")).thenReturn(this.solrClient);
+        when(this.emptyQueryResponse.getResults()).thenReturn(new SolrDocumentList());
+        when(this.emptyQueryResponse.getNextCursorMark()).thenReturn(CursorMarkParams.CURSOR_MARK_START);
+        when(this.solrClient.query(any())).thenReturn(this.emptyQueryResponse);
     }
 
     private void verifySolrPutAndPrepareGet(String uid, String content) throws IOException, SolrServerException
@@ -152,10 +179,9 @@ class DefaultActivityPubStorageTest
     {
         ArgumentCaptor<SolrInputDocument> argumentCaptor =
             ArgumentCaptor.forClass(SolrInputDocument.class);
-        verify(this.solrClient, times(timeNumber)).add(argumentCaptor.capture());
+        verify(this.solrWriter, times(timeNumber)).write(argumentCaptor.capture());
         assertEquals(uid, argumentCaptor.getValue().getFieldValue("id"));
         assertEquals(content, argumentCaptor.getValue().getFieldValue("content"));
-        verify(this.solrClient, times(timeNumber)).commit();
 
         Map<String, Object> fields = new HashMap<>();
         fields.put("id", uid);
@@ -164,6 +190,338 @@ class DefaultActivityPubStorageTest
         when(this.solrClient.getById(uid)).thenReturn(solrDocument);
     }
 
+    private List<SolrInputDocument> verifySolrReplaceAndPrepareGet(String uid, String content, int timeNumber)
+        throws IOException, SolrServerException
+    {
+        ArgumentCaptor<List<SolrInputDocument>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(this.solrWriter, times(timeNumber)).replace(isNull(), argumentCaptor.capture());
+        List<SolrInputDocument> documents = argumentCaptor.getValue();
+        assertEquals(uid, documents.get(0).getFieldValue("id"));
+        assertEquals(content, documents.get(0).getFieldValue("content"));
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", uid);
+        fields.put("content", content);
+        SolrDocument solrDocument = new SolrDocument(fields);
+        when(this.solrClient.getById(uid)).thenReturn(solrDocument);
+        return documents;
+    }
+
+    @Test
+    void appendItem() throws Exception
+    {
+        URI collectionURI = URI.create("http://www.xwiki.org/xwiki/activitypub/OrderedCollection/foo");
+        URI itemURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/bar");
+        when(this.internalURINormalizer.relativizeURI(collectionURI)).thenReturn(URI.create("OrderedCollection/foo"));
+        when(this.internalURINormalizer.relativizeURI(itemURI)).thenReturn(URI.create("Note/bar"));
+        OrderedCollection<ActivityPubObject> collection = new OrderedCollection<>();
+        collection.setId(collectionURI);
+        ActivityPubObject item = new ActivityPubObject().setId(itemURI);
+
+        this.activityPubStorage.appendItem(collection, item);
+
+        assertEquals(singletonList(item.getReference()), collection.getOrderedItems());
+        ArgumentCaptor<SolrInputDocument> argumentCaptor = ArgumentCaptor.forClass(SolrInputDocument.class);
+        verify(this.solrWriter).write(argumentCaptor.capture());
+        SolrInputDocument itemDocument = argumentCaptor.getValue();
+        assertEquals("OrderedCollection/foo#Note/bar", itemDocument.getFieldValue("id"));
+        assertEquals("collectionItem", itemDocument.getFieldValue("type"));
+        assertEquals("OrderedCollection/foo", itemDocument.getFieldValue("collection"));
+        assertEquals("Note/bar", itemDocument.getFieldValue("item"));
+        verify(this.jsonSerializer, never()).serialize(any());
+    }
+
+    @Test
+    void appendItemToSummary() throws Exception
+    {
+        URI collectionURI = URI.create("http://www.xwiki.org/xwiki/activitypub/OrderedCollection/foo");
+        URI itemURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/bar");
+        URI otherItemURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/baz");
+        when(this.internalURINormalizer.relativizeURI(collectionURI)).thenReturn(URI.create("OrderedCollection/foo"));
+        when(this.internalURINormalizer.relativizeURI(itemURI)).thenReturn(URI.create("Note/bar"));
+        when(this.internalURINormalizer.relativizeURI(otherItemURI)).thenReturn(URI.create("Note/baz"));
+        // the collection has been retrieved with retrieveCollectionSummary: its items are not loaded.
+        OrderedCollection<ActivityPubObject> collection = new OrderedCollection<>();
+        collection.setId(collectionURI);
+        collection.setTotalItems(2);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", "OrderedCollection/foo#Note/baz");
+        when(this.solrClient.getById("OrderedCollection/foo#Note/baz")).thenReturn(new SolrDocument(fields));
+
+        this.activityPubStorage.appendItem(collection, new ActivityPubObject().setId(itemURI));
+
+        assertEquals(3, collection.getTotalItems());
+        ArgumentCaptor<SolrInputDocument> argumentCaptor = ArgumentCaptor.forClass(SolrInputDocument.class);
+        verify(this.solrWriter).write(argumentCaptor.capture());
+        assertEquals("OrderedCollection/foo#Note/bar", argumentCaptor.getValue().getFieldValue("id"));
+
+        // the item is already in the collection.
+        this.activityPubStorage.appendItem(collection, new ActivityPubObject().setId(otherItemURI));
+
+        assertEquals(3, collection.getTotalItems());
+        verify(this.solrWriter).write(any(SolrInputDocument.class));
+        verify(this.jsonSerializer, never()).serialize(any());
+    }
+
+    @Test
+    void retrieveCollectionWithItems() throws Exception
+    {
+        URI collectionURI = URI.create("http://www.xwiki.org/xwiki/activitypub/OrderedCollection/foo");
+        URI relativeURI = URI.create("OrderedCollection/foo");
+        when(this.internalURINormalizer.relativizeURI(collectionURI)).thenReturn(relativeURI);
+        when(this.internalURINormalizer.retrieveAbsoluteURI(relativeURI)).thenReturn(collectionURI);
+        URI itemURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/bar");
+        when(this.internalURINormalizer.retrieveAbsoluteURI(URI.create("Note/bar"))).thenReturn(itemURI);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", relativeURI.toASCIIString());
+        fields.put("content", "{collection}");
+        when(this.solrClient.getById(relativeURI.toASCIIString())).thenReturn(new SolrDocument(fields));
+        when(this.jsonParser.parse("{collection}")).thenReturn(new OrderedCollection<>());
+
+        SolrDocumentList itemDocuments = new SolrDocumentList();
+        Map<String, Object> itemFields = new HashMap<>();
+        itemFields.put("item", "Note/bar");
+        itemDocuments.add(new SolrDocument(itemFields));
+        QueryResponse queryResponse = mock(QueryResponse.class);
+        when(queryResponse.getResults()).thenReturn(itemDocuments);
+        when(queryResponse.getNextCursorMark()).thenReturn("next");
+        when(this.solrClient.query(any())).thenReturn(queryResponse, this.emptyQueryResponse);
+        when(this.emptyQueryResponse.getNextCursorMark()).thenReturn("next");
+
+        OrderedCollection<ActivityPubObject> collection = this.activityPubStorage.retrieveEntity(collectionURI);
+        assertEquals(collectionURI, collection.getId());
+        assertEquals(singletonList(new ActivityPubObjectReference<>().setLink(itemURI)),
+            collection.getOrderedItems());
+
+        ArgumentCaptor<SolrQuery> argumentCaptor = ArgumentCaptor.forClass(SolrQuery.class);
+        verify(this.solrClient, times(2)).query(argumentCaptor.capture());
+        assertEquals("*", argumentCaptor.getAllValues().get(0).get("cursorMark"));
+        assertEquals("next", argumentCaptor.getAllValues().get(1).get("cursorMark"));
+    }
+
+    @Test
+    void retrieveCollectionSummaryAndItems() throws Exception
+    {
+        URI collectionURI = URI.create("http://www.xwiki.org/xwiki/activitypub/OrderedCollection/foo");
+        URI relativeURI = URI.create("OrderedCollection/foo");
+        when(this.internalURINormalizer.relativizeURI(collectionURI)).thenReturn(relativeURI);
+        when(this.internalURINormalizer.retrieveAbsoluteURI(relativeURI)).thenReturn(collectionURI);
+        URI itemURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/bar");
+        when(this.internalURINormalizer.retrieveAbsoluteURI(URI.create("Note/bar"))).thenReturn(itemURI);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", relativeURI.toASCIIString());
+        fields.put("content", "{collection}");
+        when(this.solrClient.getById(relativeURI.toASCIIString())).thenReturn(new SolrDocument(fields));
+        when(this.jsonParser.parse("{collection}")).thenReturn(new OrderedCollection<>());
+
+        SolrDocumentList itemDocuments = new SolrDocumentList();
+        itemDocuments.setNumFound(42);
+        Map<String, Object> itemFields = new HashMap<>();
+        itemFields.put("item", "Note/bar");
+        itemDocuments.add(new SolrDocument(itemFields));
+        QueryResponse queryResponse = mock(QueryResponse.class);
+        when(queryResponse.getResults()).thenReturn(itemDocuments);
+        when(this.solrClient.query(any())).thenReturn(queryResponse);
+
+        OrderedCollection<ActivityPubObject> collection =
+            this.activityPubStorage.retrieveCollectionSummary(collectionURI);
+        assertEquals(collectionURI, collection.getId());
+        assertEquals(42, collection.getTotalItems());
+        assertTrue(collection.getOrderedItems().isEmpty());
+
+        assertEquals(singletonList(new ActivityPubObjectReference<>().setLink(itemURI)),
+            this.activityPubStorage.retrieveItems(collection, 20, 10));
+
+        ArgumentCaptor<SolrQuery> argumentCaptor = ArgumentCaptor.forClass(SolrQuery.class);
+        verify(this.solrClient, times(2)).query(argumentCaptor.capture());
+        assertEquals(Integer.valueOf(0), argumentCaptor.getAllValues().get(0).getRows());
+        assertEquals(Integer.valueOf(20), argumentCaptor.getAllValues().get(1).getStart());
+        assertEquals(Integer.valueOf(10), argumentCaptor.getAllValues().get(1).getRows());
+    }
+
+    @Test
+    void retrievePublicItems() throws Exception
+    {
+        URI collectionURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Outbox/foo");
+        URI relativeURI = URI.create("Outbox/foo");
+        when(this.internalURINormalizer.relativizeURI(collectionURI)).thenReturn(relativeURI);
+        URI itemURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Create/bar");
+        when(this.internalURINormalizer.retrieveAbsoluteURI(URI.create("Create/bar"))).thenReturn(itemURI);
+        OrderedCollection<ActivityPubObject> collection = new OrderedCollection<>().setTotalItems(42);
+        collection.setId(collectionURI);
+
+        SolrDocumentList itemDocuments = new SolrDocumentList();
+        itemDocuments.setNumFound(3);
+        Map<String, Object> itemFields = new HashMap<>();
+        itemFields.put("item", "Create/bar");
+        itemDocuments.add(new SolrDocument(itemFields));
+        QueryResponse queryResponse = mock(QueryResponse.class);
+        when(queryResponse.getResults()).thenReturn(itemDocuments);
+        when(this.solrClient.query(any())).thenReturn(queryResponse);
+
+        assertEquals(3, this.activityPubStorage.countPublicItems(collection));
+        assertEquals(singletonList(new ActivityPubObjectReference<>().setLink(itemURI)),
+            this.activityPubStorage.retrievePublicItems(collection, 2, 10));
+
+        // the public items are filtered by Solr: the entities are not retrieved.
+        ArgumentCaptor<SolrQuery> argumentCaptor = ArgumentCaptor.forClass(SolrQuery.class);
+        verify(this.solrClient, times(2)).query(argumentCaptor.capture());
+        for (SolrQuery query : argumentCaptor.getAllValues()) {
+            assertTrue(Arrays.asList(query.getFilterQueries()).contains("{!join from=id to=item}isPublic:true"));
+            assertTrue(Arrays.asList(query.getFilterQueries()).contains("filter(collection:Outbox\\/foo)"));
+        }
+        assertEquals(Integer.valueOf(0), argumentCaptor.getAllValues().get(0).getRows());
+        assertEquals(Integer.valueOf(2), argumentCaptor.getAllValues().get(1).getStart());
+        assertEquals(Integer.valueOf(10), argumentCaptor.getAllValues().get(1).getRows());
+        verify(this.solrClient, never()).getById(any(String.class));
+    }
+
+    @Test
+    void retrievePublicItemsLoadedInCollection() throws Exception
+    {
+        Note publicNote = new Note().setTo(singletonList(ProxyActor.getPublicActor()));
+        Note privateNote = new Note();
+        OrderedCollection<ActivityPubObject> collection = new OrderedCollection<>();
+        collection.addItem(privateNote);
+        collection.addItem(publicNote);
+
+        assertEquals(1, this.activityPubStorage.countPublicItems(collection));
+        assertEquals(singletonList(new ActivityPubObjectReference<>().setObject(publicNote)),
+            this.activityPubStorage.retrievePublicItems(collection, 0, 10));
+        verify(this.solrClient, never()).query(any());
+    }
+
+    @Test
+    void retrieveEntityFromCache() throws Exception
+    {
+        URI uri = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/foo");
+        URI relativeURI = URI.create("Note/foo");
+        when(this.internalURINormalizer.relativizeURI(uri)).thenReturn(relativeURI);
+        when(this.internalURINormalizer.retrieveAbsoluteURI(relativeURI)).thenReturn(uri);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", relativeURI.toASCIIString());
+        fields.put("content", "{note}");
+        SolrDocument solrDocument = new SolrDocument(fields);
+        ActivityPubObject note = new ActivityPubObject();
+        when(this.jsonParser.parse("{note}")).thenReturn(note);
+
+        // cache miss: the document is retrieved from Solr and cached.
+        when(this.entityCache.getGeneration()).thenReturn(42L);
+        when(this.solrClient.getById("Note/foo")).thenReturn(solrDocument);
+        assertSame(note, this.activityPubStorage.retrieveEntity(uri));
+        verify(this.entityCache).put("Note/foo", solrDocument, 42L);
+
+        // cache hit: Solr is not requested anymore.
+        when(this.entityCache.get("Note/foo")).thenReturn(solrDocument);
+        assertSame(note, this.activityPubStorage.retrieveEntity(uri));
+        verify(this.solrClient).getById("Note/foo");
+        assertEquals(uri, note.getId());
+    }
+
+    @Test
+    void retrieveEntities() throws Exception
+    {
+        URI cachedURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/cached");
+        URI storedURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/stored");
+        URI missingURI = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/missing");
+        for (URI uri : Arrays.asList(cachedURI, storedURI, missingURI)) {
+            URI relativeURI = URI.create(uri.getPath().substring("/xwiki/activitypub/".length()));
+            when(this.internalURINormalizer.relativizeURI(uri)).thenReturn(relativeURI);
+            when(this.internalURINormalizer.retrieveAbsoluteURI(relativeURI)).thenReturn(uri);
+        }
+        Map<String, Object> cachedFields = new HashMap<>();
+        cachedFields.put("id", "Note/cached");
+        cachedFields.put("content", "{cached}");
+        SolrDocument cachedDocument = new SolrDocument(cachedFields);
+        Map<String, Object> storedFields = new HashMap<>();
+        storedFields.put("id", "Note/stored");
+        storedFields.put("content", "{stored}");
+        SolrDocument storedDocument = new SolrDocument(storedFields);
+        ActivityPubObject cachedNote = new ActivityPubObject();
+        ActivityPubObject storedNote = new ActivityPubObject();
+        when(this.jsonParser.parse("{cached}")).thenReturn(cachedNote);
+        when(this.jsonParser.parse("{stored}")).thenReturn(storedNote);
+
+        when(this.entityCache.get("Note/cached")).thenReturn(cachedDocument);
+        when(this.entityCache.getGeneration()).thenReturn(42L);
+        SolrDocumentList solrDocuments = new SolrDocumentList();
+        solrDocuments.add(storedDocument);
+        when(this.solrClient.getById(Arrays.asList("Note/stored", "Note/missing"))).thenReturn(solrDocuments);
+
+        assertEquals(Arrays.asList(storedNote, cachedNote, null, storedNote),
+            this.activityPubStorage.retrieveEntities(Arrays.asList(storedURI, cachedURI, missingURI, storedURI)));
+        verify(this.solrClient, never()).getById(anyString());
+        verify(this.entityCache).put("Note/stored", storedDocument, 42L);
+        assertEquals(storedURI, storedNote.getId());
+    }
+
+    @Test
+    void storeEntityInvalidatesCache() throws Exception
+    {
+        URI uri = URI.create("http://www.xwiki.org/xwiki/activitypub/Note/foo");
+        ActivityPubObject note = new ActivityPubObject().setId(uri);
+        when(this.internalURINormalizer.relativizeURI(uri)).thenReturn(URI.create("Note/foo"));
+        when(this.jsonSerializer.serialize(note)).thenReturn("{note}");
+
+        this.activityPubStorage.storeEntity(note);
+
+        InOrder inOrder = inOrder(this.solrWriter, this.entityCache);
+        inOrder.verify(this.solrWriter).write(any(SolrInputDocument.class));
+        inOrder.verify(this.entityCache).invalidate("Note/foo");
+    }
+
+    @Test
+    void storeEntityWithRemoteValidators() throws Exception
+    {
+        URI uri = URI.create("http://remote/users/foo");
+        Person person = new Person().setRemoteETag("\"42\"").setRemoteLastModified("Sat, 17 Oct 2026 10:00:00 GMT");
+        person.setId(uri);
+        when(this.internalURINormalizer.relativizeURI(uri)).thenReturn(uri);
+        when(this.internalURINormalizer.retrieveAbsoluteURI(uri)).thenReturn(uri);
+        when(this.jsonSerializer.serialize(person)).thenReturn("{person}");
+        when(this.jsonParser.parse("{person}")).thenReturn(new Person());
+        when(this.entityVersionStore.hash("{person}")).thenReturn("hash");
+
+        this.activityPubStorage.storeEntity(person);
+
+        ArgumentCaptor<SolrInputDocument> argumentCaptor = ArgumentCaptor.forClass(SolrInputDocument.class);
+        verify(this.solrWriter).write(argumentCaptor.capture());
+        SolrInputDocument inputDocument = argumentCaptor.getValue();
+        assertEquals("\"42\"", inputDocument.getFieldValue("remoteETag"));
+        assertEquals("Sat, 17 Oct 2026 10:00:00 GMT", inputDocument.getFieldValue("remoteLastModified"));
+        assertEquals("hash", inputDocument.getFieldValue("contentHash"));
+
+        SolrDocument solrDocument = new SolrDocument();
+        for (String fieldName : inputDocument.getFieldNames()) {
+            solrDocument.setField(fieldName, inputDocument.getFieldValue(fieldName));
+        }
+        when(this.solrClient.getById(uri.toASCIIString())).thenReturn(solrDocument);
+        Person retrieved = this.activityPubStorage.retrieveEntity(uri);
+        assertEquals("\"42\"", retrieved.getRemoteETag());
+        assertEquals("Sat, 17 Oct 2026 10:00:00 GMT", retrieved.getRemoteLastModified());
+    }
+
+    @Test
+    void touchEntity() throws Exception
+    {
+        URI uri = URI.create("http://remote/users/foo");
+        when(this.internalURINormalizer.relativizeURI(uri)).thenReturn(uri);
+
+        Date date = this.activityPubStorage.touchEntity(uri);
+
+        ArgumentCaptor<SolrInputDocument> argumentCaptor = ArgumentCaptor.forClass(SolrInputDocument.class);
+        InOrder inOrder = inOrder(this.solrWriter, this.entityCache);
+        inOrder.verify(this.solrWriter).write(argumentCaptor.capture());
+        inOrder.verify(this.entityCache).invalidate(uri.toASCIIString());
+        SolrInputDocument inputDocument = argumentCaptor.getValue();
+        assertEquals(new HashSet<>(Arrays.asList("id", "_version_", "updatedDate")), inputDocument.getFieldNames());
+        assertEquals(1L, inputDocument.getFieldValue("_version_"));
+        assertEquals(Collections.singletonMap("set", date), inputDocument.getFieldValue("updatedDate"));
+        verify(this.jsonSerializer, never()).serialize(any());
+    }
+
     @Test
     void storeEntityWithoutID() throws Exception
     {
@@ -288,7 +646,7 @@ class DefaultActivityPubStorageTest
 
         assertEquals(uid, this.activityPubStorage.storeEntity(inbox));
         assertEquals(uid, inbox.getId());
-        verifySolrPutAndPrepareGet(relativeURI.toASCIIString(), content);
+        verifySolrReplaceAndPrepareGet(relativeURI.toASCIIString(), content, 1);
 
         when(this.internalURINormalizer.relativizeURI(uid)).thenReturn(relativeURI);
         assertSame(inbox, this.activityPubStorage.retrieveEntity(uid));
@@ -310,7 +668,9 @@ class DefaultActivityPubStorageTest
 
         assertEquals(uid, this.activityPubStorage.storeEntity(outbox));
         assertEquals(uid, outbox.getId());
-        verifySolrPutAndPrepareGet(relativeURI.toASCIIString(), content, 2);
+        verifySolrReplaceAndPrepareGet(relativeURI.toASCIIString(), content, 2);
+        // The pending writes are committed before counting the stored items of each box.
+        verify(this.solrWriter, times(2)).flush();
 
         when(this.internalURINormalizer.relativizeURI(uid)).thenReturn(relativeURI);
         assertSame(outbox, this.activityPubStorage.retrieveEntity(uid));
@@ -365,7 +725,7 @@ class DefaultActivityPubStorageTest
         this.activityPubStorage.storeWebFinger(jsonResourceDescriptor);
         ArgumentCaptor<SolrInputDocument> argumentCaptor =
             ArgumentCaptor.forClass(SolrInputDocument.class);
-        verify(this.solrClient).add(argumentCaptor.capture());
+        verify(this.solrWriter).write(argumentCaptor.capture());
         assertEquals(subject, argumentCaptor.getValue().getFieldValue("id"));
         assertEquals(content, argumentCaptor.getValue().getFieldValue("content"));
         assertEquals("webfinger", argumentCaptor.getValue().getFieldValue("type"));
@@ -428,6 +788,33 @@ class DefaultActivityPubStorageTest
         assertEquals(solrQuery.toString(), argumentCaptor.getValue().toString());
     }
 
+    @Test
+    void retrieveCollectionsContaining() throws Exception
+    {
+        URI actorId = URI.create("http://remote/users/foo");
+        when(this.internalURINormalizer.relativizeURI(actorId)).thenReturn(actorId);
+        SolrDocumentList solrDocumentList = mock(SolrDocumentList.class);
+        QueryResponse queryResponse = mock(QueryResponse.class);
+        when(this.solrClient.query(any())).thenReturn(queryResponse);
+        when(queryResponse.getResults()).thenReturn(solrDocumentList);
+        SolrDocument document1 = mock(SolrDocument.class);
+        when(solrDocumentList.iterator()).thenReturn(singletonList(document1).iterator());
+        when(document1.getFieldValue("collection")).thenReturn("OrderedCollection/following");
+        when(this.internalURINormalizer.retrieveAbsoluteURI(URI.create("OrderedCollection/following")))
+            .thenReturn(URI.create("http://xwiki.org/activitypub/OrderedCollection/following"));
+
+        assertEquals(singletonList(URI.create("http://xwiki.org/activitypub/OrderedCollection/following")),
+            this.activityPubStorage.retrieveCollectionsContaining(actorId, 10));
+        ArgumentCaptor<SolrQuery> argumentCaptor = ArgumentCaptor.forClass(SolrQuery.class);
+        verify(this.solrClient).query(argumentCaptor.capture());
+        SolrQuery solrQuery = new SolrQuery()
+            .addFilterQuery("filter(type:collectionItem)")
+            .addFilterQuery("filter(item:http\\:\\/\\/remote\\/users\\/foo)")
+            .setFields("collection")
+            .setRows(10);
+        assertEquals(solrQuery.toString(), argumentCaptor.getValue().toString());
+    }
+
     @Test
     void isStorageReadyNoClient() throws Exception
     {
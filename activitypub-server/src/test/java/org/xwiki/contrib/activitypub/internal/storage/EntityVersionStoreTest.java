@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.net.URI;
+import java.util.Date;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link EntityVersionStore}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class EntityVersionStoreTest
+{
+    private static final URI ENTITY_URI = URI.create("http://xwiki.org/xwiki/activitypub/Note/42");
+
+    private static final String STORAGE_ID = "Note/42";
+
+    @InjectMockComponents
+    private EntityVersionStore entityVersionStore;
+
+    @MockComponent
+    private Solr solr;
+
+    @MockComponent
+    private ActivityPubEntityCache entityCache;
+
+    @MockComponent
+    private InternalURINormalizer internalURINormalizer;
+
+    private SolrClient solrClient;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.solrClient = mock(SolrClient.class);
+        when(this.solr.getClient("activitypub")).thenReturn(this.solrClient);
+        when(this.internalURINormalizer.relativizeURI(ENTITY_URI)).thenReturn(URI.create(STORAGE_ID));
+    }
+
+    private SolrDocument createDocument(Date updatedDate, String contentHash)
+    {
+        SolrDocument document = new SolrDocument();
+        document.setField("id", STORAGE_ID);
+        document.setField("type", "Note");
+        document.setField("isPublic", true);
+        document.setField("updatedDate", updatedDate);
+        document.setField("contentHash", contentHash);
+        return document;
+    }
+
+    @Test
+    void hash()
+    {
+        String hash = this.entityVersionStore.hash("{\"type\":\"Note\"}");
+        assertEquals(hash, this.entityVersionStore.hash("{\"type\":\"Note\"}"));
+        assertNotEquals(hash, this.entityVersionStore.hash("{\"type\":\"Create\"}"));
+        // URL-safe base 64 of a SHA-256 digest, without padding.
+        assertEquals(43, hash.length());
+        assertTrue(hash.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void getVersionFromCache() throws Exception
+    {
+        Date updatedDate = new Date(42000);
+        when(this.entityCache.get(STORAGE_ID)).thenReturn(createDocument(updatedDate, "hash"));
+
+        EntityVersion version = this.entityVersionStore.getVersion(ENTITY_URI);
+        assertEquals("Note", version.getType());
+        assertTrue(version.isPublic());
+        assertEquals(updatedDate, version.getUpdatedDate());
+        assertEquals("\"hash\"", version.getETag());
+        verify(this.solrClient, never()).getById(any(String.class), any(SolrParams.class));
+    }
+
+    @Test
+    void getVersionFromSolr() throws Exception
+    {
+        Date updatedDate = new Date(42000);
+        when(this.solrClient.getById(eq(STORAGE_ID), any(SolrParams.class)))
+            .thenReturn(createDocument(updatedDate, "hash"));
+
+        EntityVersion version = this.entityVersionStore.getVersion(ENTITY_URI);
+        assertEquals("hash", version.getContentHash());
+        assertEquals(updatedDate, version.getUpdatedDate());
+
+        // Only the version fields are retrieved, and the partial document is not cached.
+        ArgumentCaptor<SolrParams> paramsCaptor = ArgumentCaptor.forClass(SolrParams.class);
+        verify(this.solrClient).getById(eq(STORAGE_ID), paramsCaptor.capture());
+        assertEquals("id,type,isPublic,updatedDate,contentHash", paramsCaptor.getValue().get("fl"));
+        verify(this.entityCache, never()).put(any(), any(), anyLong());
+    }
+
+    @Test
+    void getVersionWithoutHash() throws Exception
+    {
+        when(this.solrClient.getById(eq(STORAGE_ID), any(SolrParams.class)))
+            .thenReturn(createDocument(new Date(), null));
+        assertNull(this.entityVersionStore.getVersion(ENTITY_URI));
+    }
+
+    @Test
+    void getVersionNotStored() throws Exception
+    {
+        assertNull(this.entityVersionStore.getVersion(ENTITY_URI));
+    }
+}
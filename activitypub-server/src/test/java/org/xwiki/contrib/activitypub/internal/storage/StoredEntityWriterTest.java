@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.internal.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.internal.InternalURINormalizer;
+import org.xwiki.contrib.activitypub.internal.json.relative.StoredJsonRewriter;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link StoredEntityWriter}.
+ *
+ * @version $Id$
+ * @since 1.7.12
+ */
+@ComponentTest
+class StoredEntityWriterTest
+{
+    private static final URI ENTITY_URI = URI.create("http://xwiki.org/xwiki/activitypub/Note/42");
+
+    private static final String STORAGE_ID = "Note/42";
+
+    @InjectMockComponents
+    private StoredEntityWriter storedEntityWriter;
+
+    @MockComponent
+    private Solr solr;
+
+    @MockComponent
+    private ActivityPubEntityCache entityCache;
+
+    @MockComponent
+    private InternalURINormalizer internalURINormalizer;
+
+    @MockComponent
+    private StoredJsonRewriter storedJsonRewriter;
+
+    private SolrClient solrClient;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.solrClient = mock(SolrClient.class);
+        when(this.solr.getClient("activitypub")).thenReturn(this.solrClient);
+        when(this.internalURINormalizer.relativizeURI(ENTITY_URI)).thenReturn(URI.create(STORAGE_ID));
+    }
+
+    private SolrDocument createDocument()
+    {
+        SolrDocument document = new SolrDocument();
+        document.setField("id", STORAGE_ID);
+        document.setField("type", "Note");
+        document.setField("content", "{note}");
+        return document;
+    }
+
+    @Test
+    void isSupported()
+    {
+        when(this.storedJsonRewriter.isSupported("Note")).thenReturn(true);
+        assertTrue(this.storedEntityWriter.isSupported("Note"));
+    }
+
+    @Test
+    void writeFromCache() throws Exception
+    {
+        when(this.entityCache.get(STORAGE_ID)).thenReturn(createDocument());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.storedEntityWriter.write(ENTITY_URI, output);
+        verify(this.storedJsonRewriter).write("{note}", "Note", ENTITY_URI, output);
+        verify(this.solrClient, never()).getById(anyString());
+    }
+
+    @Test
+    void writeFromSolr() throws Exception
+    {
+        SolrDocument document = createDocument();
+        when(this.solrClient.getById(STORAGE_ID)).thenReturn(document);
+        when(this.entityCache.getGeneration()).thenReturn(3L);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.storedEntityWriter.write(ENTITY_URI, output);
+        verify(this.storedJsonRewriter).write("{note}", "Note", ENTITY_URI, output);
+        verify(this.entityCache).put(STORAGE_ID, document, 3L);
+    }
+
+    @Test
+    void writeNotStored() throws Exception
+    {
+        ActivityPubException exception = assertThrows(ActivityPubException.class,
+            () -> this.storedEntityWriter.write(ENTITY_URI, new ByteArrayOutputStream()));
+        assertEquals("The entity [" + ENTITY_URI + "] is not stored.", exception.getMessage());
+        verify(this.storedJsonRewriter, never()).write(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.activitypub.script;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.contrib.activitypub.ActivityPubException;
+import org.xwiki.contrib.activitypub.internal.client.HostHealth;
+import org.xwiki.contrib.activitypub.internal.client.RemoteHostMonitor;
+import org.xwiki.contrib.activitypub.internal.delivery.ActivityPubDeliveryQueue;
+import org.xwiki.contrib.activitypub.internal.delivery.DeliveryRecord;
+import org.xwiki.contrib.activitypub.internal.inbox.ActivityPubInboxQueue;
+import org.xwiki.contrib.activitypub.internal.inbox.InboxRecord;
+import org.xwiki.contrib.activitypub.internal.storage.ActivityPubEntityCache;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of {@link ActivityPubMonitoringScriptService}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ActivityPubMonitoringScriptServiceTest
+{
+    private static final WikiReference WIKI_REFERENCE = new WikiReference("xwiki");
+
+    @InjectMockComponents
+    private ActivityPubMonitoringScriptService monitoringScriptService;
+
+    @MockComponent
+    private ActivityPubEntityCache entityCache;
+
+    @MockComponent
+    private ActivityPubDeliveryQueue deliveryQueue;
+
+    @MockComponent
+    private ActivityPubInboxQueue inboxQueue;
+
+    @MockComponent
+    private RemoteHostMonitor remoteHostMonitor;
+
+    @MockComponent
+    private ContextualAuthorizationManager authorizationManager;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    @BeforeEach
+    void setup()
+    {
+        XWikiContext context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(context);
+        when(context.getWikiReference()).thenReturn(WIKI_REFERENCE);
+    }
+
+    @Test
+    void getStorageCacheStatistics()
+    {
+        Map<String, Long> statistics = Collections.singletonMap(ActivityPubEntityCache.HITS, 42L);
+        when(this.entityCache.getStatistics()).thenReturn(statistics);
+        when(this.authorizationManager.hasAccess(Right.ADMIN, WIKI_REFERENCE)).thenReturn(true);
+        assertEquals(statistics, this.monitoringScriptService.getStorageCacheStatistics());
+    }
+
+    @Test
+    void getStorageCacheStatisticsNotAdmin()
+    {
+        assertNull(this.monitoringScriptService.getStorageCacheStatistics());
+    }
+
+    @Test
+    void getDeliveryQueueStatistics() throws Exception
+    {
+        Map<String, Long> statistics = Collections.singletonMap(DeliveryRecord.FAILED, 2L);
+        when(this.deliveryQueue.getStatistics()).thenReturn(statistics);
+        when(this.authorizationManager.hasAccess(Right.ADMIN, WIKI_REFERENCE)).thenReturn(true);
+        assertEquals(statistics, this.monitoringScriptService.getDeliveryQueueStatistics());
+    }
+
+    @Test
+    void getInboxQueueStatistics() throws Exception
+    {
+        Map<String, Long> statistics = Collections.singletonMap(InboxRecord.PENDING, 3L);
+        when(this.inboxQueue.getStatistics()).thenReturn(statistics);
+        when(this.authorizationManager.hasAccess(Right.ADMIN, WIKI_REFERENCE)).thenReturn(true);
+        assertEquals(statistics, this.monitoringScriptService.getInboxQueueStatistics());
+    }
+
+    @Test
+    void getRemoteHosts()
+    {
+        List<HostHealth> hosts = Collections.singletonList(new HostHealth("remote", "http://remote/"));
+        when(this.remoteHostMonitor.getHosts()).thenReturn(hosts);
+        when(this.authorizationManager.hasAccess(Right.ADMIN, WIKI_REFERENCE)).thenReturn(true);
+        assertEquals(hosts, this.monitoringScriptService.getRemoteHosts());
+    }
+
+    @Test
+    void getRemoteHostsNotAdmin()
+    {
+        assertNull(this.monitoringScriptService.getRemoteHosts());
+    }
+
+    @Test
+    void getDeliveryQueueStatisticsError() throws Exception
+    {
+        when(this.deliveryQueue.getStatistics()).thenThrow(new ActivityPubException("error"));
+        when(this.authorizationManager.hasAccess(Right.ADMIN, WIKI_REFERENCE)).thenReturn(true);
+        assertNull(this.monitoringScriptService.getDeliveryQueueStatistics());
+        assertEquals("Error while retrieving the delivery queue statistics. Cause: [ActivityPubException: error]",
+            this.logCapture.getMessage(0));
+    }
+}
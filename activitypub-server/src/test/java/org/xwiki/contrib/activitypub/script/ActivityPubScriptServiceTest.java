@@ -24,7 +24,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Stream;
 
 import javax.inject.Provider;
 
@@ -181,7 +180,7 @@ class ActivityPubScriptServiceTest
         assertEquals("activitypub.follow.followRequested", actual.getMessage());
         verify(this.activityPubStorage).storeEntity(any());
         verify(this.activityPubClient).postInbox(eq(remoteActor), any());
-        verify(this.activityPubClient).checkAnswer(any());
+        verify(this.activityPubClient).checkDelivery(any());
     }
 
     @Test
@@ -204,7 +203,7 @@ class ActivityPubScriptServiceTest
         assertEquals("activitypub.follow.followYourself", actual.getMessage());
         verify(this.activityPubStorage, times(0)).storeEntity(any());
         verify(this.activityPubClient, times(0)).postInbox(eq(actor), any());
-        verify(this.activityPubClient, times(0)).checkAnswer(any());
+        verify(this.activityPubClient, times(0)).checkDelivery(any());
     }
 
     @Test
@@ -218,11 +217,7 @@ class ActivityPubScriptServiceTest
         when(this.activityPubObjectReferenceResolver.resolveReference(mock)).thenReturn(orderedCollection);
         List list1 = mock(List.class);
         when(orderedCollection.getOrderedItems()).thenReturn(list1);
-        Stream stream1 = mock(Stream.class);
-        when(list1.stream()).thenReturn(stream1);
-        Stream stream2 = mock(Stream.class);
-        when(stream1.map(any())).thenReturn(stream2);
-        when(stream2.anyMatch(any())).thenReturn(true);
+        when(this.activityPubObjectReferenceResolver.resolveReferences(list1)).thenReturn(Arrays.asList(null, actor));
         ActivityPubObjectReference actorReference = mock(ActivityPubObjectReference.class);
         when(actor.getReference()).thenReturn(actorReference);
         when(this.actorHandler.getCurrentActor()).thenReturn(current);
@@ -238,7 +233,7 @@ class ActivityPubScriptServiceTest
         assertEquals("activitypub.follow.alreadyFollowed", actual.getMessage());
         verify(this.activityPubStorage, times(0)).storeEntity(any());
         verify(this.activityPubClient, times(0)).postInbox(eq(actor), any());
-        verify(this.activityPubClient, times(0)).checkAnswer(any());
+        verify(this.activityPubClient, times(0)).checkDelivery(any());
     }
 
     @Test
@@ -265,6 +260,23 @@ class ActivityPubScriptServiceTest
         assertTrue(res.isEmpty());
     }
 
+    @Test
+    void followersWithUnresolvedActor() throws Exception
+    {
+        AbstractActor aa = mock(AbstractActor.class);
+        ActivityPubObjectReference apor = mock(ActivityPubObjectReference.class);
+        when(aa.getFollowers()).thenReturn(apor);
+        OrderedCollection orderedCollection = mock(OrderedCollection.class);
+        when(this.activityPubObjectReferenceResolver.resolveReference(apor)).thenReturn(orderedCollection);
+        List items = Arrays.asList(mock(ActivityPubObjectReference.class), mock(ActivityPubObjectReference.class));
+        when(orderedCollection.getOrderedItems()).thenReturn(items);
+        AbstractActor follower = mock(AbstractActor.class);
+        when(this.activityPubObjectReferenceResolver.resolveReferences(items))
+            .thenReturn(Arrays.asList(follower, null));
+
+        assertEquals(Collections.singletonList(follower), this.scriptService.followers(aa));
+    }
+
     @Test
     void isCurrentUser() throws ActivityPubException
     {
@@ -532,7 +544,7 @@ class ActivityPubScriptServiceTest
         HttpMethod httpMethod = mock(HttpMethod.class);
         when(this.activityPubClient.postInbox(otherActor, likeActivity)).thenReturn(httpMethod);
         assertTrue(this.scriptService.likeActivity(activityId));
-        verify(this.activityPubClient).checkAnswer(httpMethod);
+        verify(this.activityPubClient).checkDelivery(httpMethod);
         verify(httpMethod).releaseConnection();
         verify(this.activityPubStorage).storeEntity(likeActivity);
         verify(likeActivityHandler).handleOutboxRequest(new ActivityRequest<>(actor, likeActivity));